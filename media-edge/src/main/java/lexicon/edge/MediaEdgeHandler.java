@@ -0,0 +1,269 @@
+package lexicon.edge;
+
+import io.netty.buffer.Unpooled;
+import io.netty.channel.ChannelFuture;
+import io.netty.channel.ChannelFutureListener;
+import io.netty.channel.ChannelHandler;
+import io.netty.channel.ChannelHandlerContext;
+import io.netty.channel.DefaultFileRegion;
+import io.netty.channel.SimpleChannelInboundHandler;
+import io.netty.handler.codec.DateFormatter;
+import io.netty.handler.codec.http.DefaultFullHttpResponse;
+import io.netty.handler.codec.http.DefaultHttpResponse;
+import io.netty.handler.codec.http.FullHttpRequest;
+import io.netty.handler.codec.http.FullHttpResponse;
+import io.netty.handler.codec.http.HttpHeaderNames;
+import io.netty.handler.codec.http.HttpHeaderValues;
+import io.netty.handler.codec.http.HttpMethod;
+import io.netty.handler.codec.http.HttpResponse;
+import io.netty.handler.codec.http.HttpResponseStatus;
+import io.netty.handler.codec.http.HttpUtil;
+import io.netty.handler.codec.http.HttpVersion;
+import io.netty.handler.codec.http.LastHttpContent;
+import io.netty.handler.codec.http.QueryStringDecoder;
+import io.netty.handler.timeout.IdleStateEvent;
+import lexicon.api.ClientAddress;
+import lexicon.api.ConditionalRequests;
+import lexicon.api.MultipartByteRanges;
+import lexicon.object.ByteRange;
+import lexicon.object.MediaFile;
+
+import java.io.IOException;
+import java.net.InetSocketAddress;
+import java.net.SocketAddress;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Date;
+import java.util.List;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+/**
+ * Serves GET/HEAD /api/stream/{id} like StreamingMediaController: ETag and
+ * Last-Modified validators, 304s, single and multiple ranges and If-Range.
+ * File bytes go out as {@link DefaultFileRegion}s, which the transport sends with
+ * sendfile, so they are never copied into the JVM.
+ *
+ * Requests the edge cannot answer on its own (?t= seeks, ?quality= renditions,
+ * database-stored media and the other /api/stream endpoints) are redirected to the
+ * main app with a 307 when its origin is configured, and get a 404 otherwise.
+ *
+ * Lookups block, so this handler must run on an executor group separate from the I/O loop.
+ */
+@ChannelHandler.Sharable
+public class MediaEdgeHandler extends SimpleChannelInboundHandler<FullHttpRequest> {
+
+    private static final Pattern MEDIA_PATH = Pattern.compile("/api/stream/(\\d{1,9})/?");
+
+    private final MediaLookup lookup;
+    private final String apiOrigin;
+
+    /**
+     * @param apiOrigin origin of the main app (e.g. http://localhost:36568), or null to answer 404 instead of redirecting
+     */
+    public MediaEdgeHandler(MediaLookup lookup, String apiOrigin) {
+        this.lookup = lookup;
+        this.apiOrigin = apiOrigin != null && !apiOrigin.isBlank() ? stripTrailingSlash(apiOrigin.trim()) : null;
+    }
+
+    @Override
+    protected void channelRead0(ChannelHandlerContext ctx, FullHttpRequest request) throws Exception {
+        if (!request.decoderResult().isSuccess()) {
+            sendStatus(ctx, request, HttpResponseStatus.BAD_REQUEST);
+            return;
+        }
+        boolean head = HttpMethod.HEAD.equals(request.method());
+        if (!head && !HttpMethod.GET.equals(request.method())) {
+            sendStatus(ctx, request, HttpResponseStatus.METHOD_NOT_ALLOWED);
+            return;
+        }
+
+        QueryStringDecoder query = new QueryStringDecoder(request.uri());
+        Matcher matcher = MEDIA_PATH.matcher(query.path());
+        List<String> quality = query.parameters().get("quality");
+        if (!matcher.matches() || query.parameters().containsKey("t")
+                || (quality != null && !quality.isEmpty() && !"original".equalsIgnoreCase(quality.get(0)))) {
+            redirectToApi(ctx, request);
+            return;
+        }
+
+        int mediaFileId = Integer.parseInt(matcher.group(1));
+        MediaFile mediaFile = lookup.find(mediaFileId);
+        if (mediaFile == null) {
+            sendStatus(ctx, request, HttpResponseStatus.NOT_FOUND);
+            return;
+        }
+        String relativePath = mediaFile.getFilePath();
+        if (relativePath == null || relativePath.isEmpty()) {
+            redirectToApi(ctx, request); // Stored in the database
+            return;
+        }
+
+        String etag = ConditionalRequests.etagFor(mediaFile);
+        long lastModified = ConditionalRequests.lastModifiedFor(mediaFile);
+        if (ConditionalRequests.isNotModified(request.headers().get(HttpHeaderNames.IF_NONE_MATCH),
+                dateHeader(request, HttpHeaderNames.IF_MODIFIED_SINCE), etag, lastModified)) {
+            HttpResponse response = new DefaultFullHttpResponse(HttpVersion.HTTP_1_1, HttpResponseStatus.NOT_MODIFIED);
+            setValidators(response, etag, lastModified);
+            send(ctx, request, response);
+            return;
+        }
+
+        Path file = lookup.resolve(relativePath);
+        long fileSize = sizeOf(file);
+        if (fileSize < 0) {
+            // Remembered location may be stale after a move between volumes, so look again once
+            lookup.forget(mediaFileId, relativePath);
+            file = lookup.resolve(relativePath);
+            fileSize = sizeOf(file);
+            if (fileSize < 0) {
+                sendStatus(ctx, request, HttpResponseStatus.NOT_FOUND);
+                return;
+            }
+        }
+
+        // A stale If-Range gets the full file
+        String rangeHeader = request.headers().get(HttpHeaderNames.RANGE);
+        List<ByteRange> ranges = rangeHeader != null
+                && ConditionalRequests.isRangeValid(request.headers().get(HttpHeaderNames.IF_RANGE),
+                    dateHeader(request, HttpHeaderNames.IF_RANGE), etag, lastModified)
+                ? ByteRange.parse(rangeHeader, fileSize) : null;
+        if (ranges != null && ranges.isEmpty()) {
+            FullHttpResponse response = new DefaultFullHttpResponse(HttpVersion.HTTP_1_1,
+                    HttpResponseStatus.REQUESTED_RANGE_NOT_SATISFIABLE);
+            response.headers().set(HttpHeaderNames.CONTENT_RANGE, "bytes */" + fileSize);
+            send(ctx, request, response);
+            return;
+        }
+
+        String contentType = mediaFile.getContentType() != null && !mediaFile.getContentType().isEmpty()
+                ? mediaFile.getContentType() : "application/octet-stream";
+        HttpResponse response = new DefaultHttpResponse(HttpVersion.HTTP_1_1,
+                ranges != null ? HttpResponseStatus.PARTIAL_CONTENT : HttpResponseStatus.OK);
+        response.headers().set(HttpHeaderNames.ACCEPT_RANGES, HttpHeaderValues.BYTES);
+        response.headers().set(HttpHeaderNames.ACCESS_CONTROL_ALLOW_ORIGIN, "*");
+        setValidators(response, etag, lastModified);
+
+        MultipartByteRanges multipart = null;
+        if (ranges == null) {
+            ranges = List.of(new ByteRange(0, fileSize - 1));
+            response.headers().set(HttpHeaderNames.CONTENT_TYPE, contentType);
+            HttpUtil.setContentLength(response, fileSize);
+        } else if (ranges.size() == 1) {
+            response.headers().set(HttpHeaderNames.CONTENT_TYPE, contentType);
+            response.headers().set(HttpHeaderNames.CONTENT_RANGE, ranges.get(0).toContentRange(fileSize));
+            HttpUtil.setContentLength(response, ranges.get(0).getLength());
+        } else {
+            multipart = new MultipartByteRanges(ranges, contentType, fileSize);
+            response.headers().set(HttpHeaderNames.CONTENT_TYPE, multipart.getContentType());
+            HttpUtil.setContentLength(response, multipart.getContentLength());
+        }
+
+        boolean keepAlive = HttpUtil.isKeepAlive(request);
+        HttpUtil.setKeepAlive(response, keepAlive);
+        ctx.write(response);
+        if (!head && fileSize > 0) {
+            long sent = 0;
+            for (ByteRange range : ranges) {
+                if (multipart != null) {
+                    ctx.write(Unpooled.wrappedBuffer(multipart.partHeader(range)));
+                }
+                // Each region opens its own channel and closes it once written
+                ctx.write(new DefaultFileRegion(file.toFile(), range.getStart(), range.getLength()));
+                sent += range.getLength();
+            }
+            if (multipart != null) {
+                ctx.write(Unpooled.wrappedBuffer(multipart.closingDelimiter()));
+            }
+            lookup.recordRead(relativePath, file, sent, ranges.get(0).getStart(), clientKey(ctx, request));
+        }
+        ChannelFuture last = ctx.writeAndFlush(LastHttpContent.EMPTY_LAST_CONTENT);
+        if (!keepAlive) {
+            last.addListener(ChannelFutureListener.CLOSE);
+        }
+    }
+
+    @Override
+    public void userEventTriggered(ChannelHandlerContext ctx, Object evt) throws Exception {
+        if (evt instanceof IdleStateEvent) {
+            ctx.close(); // Nothing read, written or sent from a pending body for a while
+            return;
+        }
+        super.userEventTriggered(ctx, evt);
+    }
+
+    @Override
+    public void exceptionCaught(ChannelHandlerContext ctx, Throwable cause) {
+        if (!(cause instanceof IOException)) { // Clients hanging up mid-video are routine
+            System.err.println("Media edge error: " + cause.getMessage());
+        }
+        ctx.close();
+    }
+
+    private void redirectToApi(ChannelHandlerContext ctx, FullHttpRequest request) {
+        if (apiOrigin == null) {
+            sendStatus(ctx, request, HttpResponseStatus.NOT_FOUND);
+            return;
+        }
+        FullHttpResponse response = new DefaultFullHttpResponse(HttpVersion.HTTP_1_1,
+                HttpResponseStatus.TEMPORARY_REDIRECT);
+        response.headers().set(HttpHeaderNames.LOCATION, apiOrigin + request.uri());
+        send(ctx, request, response);
+    }
+
+    private static void sendStatus(ChannelHandlerContext ctx, FullHttpRequest request, HttpResponseStatus status) {
+        send(ctx, request, new DefaultFullHttpResponse(HttpVersion.HTTP_1_1, status));
+    }
+
+    /**
+     * Send a response without a body, keeping the connection open if the client asked for that
+     */
+    private static void send(ChannelHandlerContext ctx, FullHttpRequest request, HttpResponse response) {
+        boolean keepAlive = HttpUtil.isKeepAlive(request) && request.decoderResult().isSuccess();
+        if (!HttpResponseStatus.NOT_MODIFIED.equals(response.status())) {
+            response.headers().set(HttpHeaderNames.CONTENT_LENGTH, 0);
+        }
+        HttpUtil.setKeepAlive(response, keepAlive);
+        ChannelFuture future = ctx.writeAndFlush(response);
+        if (!keepAlive) {
+            future.addListener(ChannelFutureListener.CLOSE);
+        }
+    }
+
+    private static void setValidators(HttpResponse response, String etag, long lastModified) {
+        response.headers().set(HttpHeaderNames.ETAG, etag);
+        if (lastModified >= 0) {
+            response.headers().set(HttpHeaderNames.LAST_MODIFIED, DateFormatter.format(new Date(lastModified)));
+        }
+    }
+
+    /**
+     * Date header in epoch milliseconds, or -1 if absent or not a date
+     */
+    private static long dateHeader(FullHttpRequest request, CharSequence name) {
+        String value = request.headers().get(name);
+        Date date = value != null ? DateFormatter.parseHttpDate(value) : null;
+        return date != null ? date.getTime() : -1;
+    }
+
+    /**
+     * The real client, as the main app identifies it behind the gateway
+     */
+    private static String clientKey(ChannelHandlerContext ctx, FullHttpRequest request) {
+        SocketAddress remote = ctx.channel().remoteAddress();
+        return ClientAddress.of(request.headers().get("CF-Connecting-IP"), request.headers().get("X-Forwarded-For"),
+                remote instanceof InetSocketAddress ? ((InetSocketAddress) remote).getHostString() : null);
+    }
+
+    private static long sizeOf(Path file) {
+        try {
+            return file != null ? Files.size(file) : -1;
+        } catch (IOException e) {
+            return -1;
+        }
+    }
+
+    private static String stripTrailingSlash(String origin) {
+        return origin.endsWith("/") ? origin.substring(0, origin.length() - 1) : origin;
+    }
+}
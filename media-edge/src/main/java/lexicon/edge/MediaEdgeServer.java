@@ -0,0 +1,143 @@
+package lexicon.edge;
+
+import io.netty.bootstrap.ServerBootstrap;
+import io.netty.channel.Channel;
+import io.netty.channel.ChannelHandlerContext;
+import io.netty.channel.ChannelInitializer;
+import io.netty.channel.ChannelOutboundBuffer;
+import io.netty.channel.ChannelOption;
+import io.netty.channel.EventLoopGroup;
+import io.netty.channel.nio.NioEventLoopGroup;
+import io.netty.channel.socket.SocketChannel;
+import io.netty.channel.socket.nio.NioServerSocketChannel;
+import io.netty.handler.codec.http.HttpObjectAggregator;
+import io.netty.handler.codec.http.HttpServerCodec;
+import io.netty.handler.timeout.IdleStateEvent;
+import io.netty.handler.timeout.IdleStateHandler;
+import io.netty.util.concurrent.DefaultEventExecutorGroup;
+import io.netty.util.concurrent.EventExecutorGroup;
+import lexicon.data.HSQLMediaDatabase;
+import lexicon.service.StorageVolumes;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Properties;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Standalone Netty server for media bytes, for deployments without nginx.
+ *
+ * Serves /api/stream/{id} from the same database and storage as the main app, so
+ * heavy video traffic no longer occupies Tomcat threads and API latency stays flat.
+ * Settings are read from application-storage.properties on the classpath and can
+ * be overridden with system properties:
+ *
+ *   lexicon.storage.base-path / volumes / fast-tier-path   storage roots, as in the main app
+ *   lexicon.edge.port            listen port (default 36570)
+ *   lexicon.edge.api-origin      main app origin for redirects (default http://localhost:36568)
+ *   lexicon.edge.lookup-threads  threads for database lookups (default 16)
+ *
+ * The database URL comes from -Ddatabase.url or DATABASE_URL, like HSQLMediaDatabase.
+ * Plain HTTP only: sendfile cannot pass through TLS, so terminate TLS in front.
+ */
+public class MediaEdgeServer {
+
+    private static final int IDLE_SECONDS = 120;
+
+    public static void main(String[] args) throws Exception {
+        Properties config = loadConfig();
+        int port = Integer.parseInt(config.getProperty("lexicon.edge.port", "36570"));
+        String apiOrigin = config.getProperty("lexicon.edge.api-origin", "http://localhost:36568");
+        int lookupThreads = Integer.parseInt(config.getProperty("lexicon.edge.lookup-threads", "16"));
+
+        HSQLMediaDatabase database = new HSQLMediaDatabase();
+        StorageVolumes roots = new StorageVolumes(storageRoots(config), List.of(), 0, 0, 0, path -> { });
+        MediaEdgeHandler handler = new MediaEdgeHandler(new MediaLookup(database, roots), apiOrigin);
+
+        EventLoopGroup boss = new NioEventLoopGroup(1);
+        EventLoopGroup workers = new NioEventLoopGroup();
+        EventExecutorGroup lookups = new DefaultEventExecutorGroup(lookupThreads);
+        try {
+            ServerBootstrap bootstrap = new ServerBootstrap()
+                .group(boss, workers)
+                .channel(NioServerSocketChannel.class)
+                .option(ChannelOption.SO_BACKLOG, 1024)
+                .childOption(ChannelOption.TCP_NODELAY, true)
+                .childHandler(new ChannelInitializer<SocketChannel>() {
+                    @Override
+                    protected void initChannel(SocketChannel ch) {
+                        ch.pipeline()
+                            .addLast(new IdleHandler(IDLE_SECONDS, TimeUnit.SECONDS)) // Closed by the handler
+                            .addLast(new HttpServerCodec())
+                            .addLast(new HttpObjectAggregator(64 * 1024))
+                            .addLast(lookups, "media", handler); // Off the I/O threads
+                    }
+                });
+            Channel channel = bootstrap.bind(port).sync().channel();
+            System.out.println("🚀 Media edge listening on port " + port + " (" + roots.size() + " storage root(s))");
+            channel.closeFuture().sync();
+        } finally {
+            boss.shutdownGracefully();
+            workers.shutdownGracefully();
+            lookups.shutdownGracefully();
+            database.cleanup();
+        }
+    }
+
+    /**
+     * All-idle timeout that counts progress on a body still being sent as activity.
+     *
+     * A file region's write only completes once the whole range is out, so a long
+     * download would otherwise look idle while it is moving data. The first idle
+     * event is skipped while a write is pending; IdleStateHandler only fires the
+     * next one if that write made no progress in between.
+     */
+    static class IdleHandler extends IdleStateHandler {
+
+        IdleHandler(long allIdleTime, TimeUnit unit) {
+            super(true, 0, 0, allIdleTime, unit);
+        }
+
+        @Override
+        protected void channelIdle(ChannelHandlerContext ctx, IdleStateEvent evt) throws Exception {
+            ChannelOutboundBuffer pending = ctx.channel().unsafe().outboundBuffer();
+            if (evt.isFirst() && pending != null && pending.current() != null) {
+                return;
+            }
+            super.channelIdle(ctx, evt);
+        }
+    }
+
+    /**
+     * basePath first, then extra volumes, then the fast tier (files live at the same relative path on each)
+     */
+    static List<Path> storageRoots(Properties config) {
+        List<Path> roots = new ArrayList<>();
+        roots.add(Paths.get(config.getProperty("lexicon.storage.base-path", ".")));
+        for (String root : config.getProperty("lexicon.storage.volumes", "").split(",")) {
+            if (!root.isBlank()) {
+                roots.add(Paths.get(root.trim()));
+            }
+        }
+        String fastTier = config.getProperty("lexicon.storage.fast-tier-path", "");
+        if (!fastTier.isBlank()) {
+            roots.add(Paths.get(fastTier.trim()));
+        }
+        return roots;
+    }
+
+    private static Properties loadConfig() throws IOException {
+        Properties config = new Properties();
+        try (InputStream in = MediaEdgeServer.class.getResourceAsStream("/application-storage.properties")) {
+            if (in != null) {
+                config.load(in);
+            }
+        }
+        config.putAll(System.getProperties());
+        return config;
+    }
+}
@@ -0,0 +1,95 @@
+package lexicon.edge;
+
+import lexicon.data.IMediaDatabase;
+import lexicon.object.MediaFile;
+import lexicon.service.StorageVolumes;
+
+import java.nio.file.Path;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * Media metadata and file locations for the edge.
+ *
+ * Metadata comes from the main app's {@link IMediaDatabase} and is kept for a few
+ * seconds, so the burst of range requests a player sends costs one query. Files
+ * are found on the same storage roots the main app writes to.
+ */
+public class MediaLookup {
+
+    private static final long TTL_MILLIS = 5000;
+    private static final int MAX_ENTRIES = 10_000;
+
+    private final IMediaDatabase database;
+    private final StorageVolumes roots;
+    private final Map<Integer, Entry> entries = new ConcurrentHashMap<>();
+
+    /**
+     * @param roots storage roots holding files by relative path (basePath, extra volumes, fast tier)
+     */
+    public MediaLookup(IMediaDatabase database, StorageVolumes roots) {
+        this.database = database;
+        this.roots = roots;
+    }
+
+    /**
+     * Media file by id, or null if it does not exist
+     */
+    public MediaFile find(int mediaFileId) {
+        long now = System.currentTimeMillis();
+        Entry entry = entries.get(mediaFileId);
+        if (entry != null && entry.expiresAt > now) {
+            return entry.mediaFile;
+        }
+        MediaFile mediaFile = database.getMediaFile(mediaFileId);
+        if (entries.size() > MAX_ENTRIES) {
+            entries.clear(); // Crude, but entries only live a few seconds anyway
+        }
+        entries.put(mediaFileId, new Entry(mediaFile, now + TTL_MILLIS));
+        return mediaFile;
+    }
+
+    /**
+     * Drop cached metadata, e.g. after its file turned out to be missing
+     */
+    public void forget(int mediaFileId, String relativePath) {
+        entries.remove(mediaFileId);
+        if (relativePath != null) {
+            roots.forget(relativePath);
+        }
+    }
+
+    /**
+     * Least loaded copy of a stored file, or null if no root holds it
+     */
+    public Path resolve(String relativePath) {
+        StorageVolumes.Volume volume = roots.pickForRead(relativePath);
+        return volume != null ? volume.getRoot().resolve(relativePath) : null;
+    }
+
+    /**
+     * Count bytes sent from a file, so reads spread over the roots holding copies
+     *
+     * @param start     offset of the first byte sent
+     * @param clientKey real client address, so only new plays count towards mirroring
+     */
+    public void recordRead(String relativePath, Path file, long bytes, long start, String clientKey) {
+        for (int i = 0; i < roots.size(); i++) {
+            StorageVolumes.Volume volume = roots.get(i);
+            if (file.startsWith(volume.getRoot())) {
+                roots.recordRead(volume, relativePath, bytes, start, clientKey);
+                return;
+            }
+        }
+    }
+
+    private static final class Entry {
+        private final MediaFile mediaFile;
+        private final long expiresAt;
+
+        private Entry(MediaFile mediaFile, long expiresAt) {
+            this.mediaFile = mediaFile;
+            this.expiresAt = expiresAt;
+        }
+    }
+}
@@ -0,0 +1,152 @@
+package lexicon.edge;
+
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.net.URI;
+import java.net.http.HttpClient;
+import java.net.http.HttpRequest;
+import java.net.http.HttpResponse;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Locale;
+import java.util.Random;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Replays a seeded random range workload against a streaming endpoint, so the
+ * Tomcat path (/api/stream/{id} on the main app) and the edge can be compared
+ * with exactly the same requests.
+ *
+ * Usage: RangeBenchmark baseUrl mediaFileId [concurrency] [requests] [rangeBytes] [probeUrl]
+ *
+ * With probeUrl (e.g. http://localhost:36568/api/lexicon/health), that URL is
+ * requested every 100ms during the run and its latency reported too, to show how
+ * API calls fare while media is being served.
+ */
+public class RangeBenchmark {
+
+    public static void main(String[] args) throws Exception {
+        if (args.length < 2) {
+            System.err.println("Usage: RangeBenchmark baseUrl mediaFileId [concurrency] [requests] [rangeBytes] [probeUrl]");
+            System.exit(2);
+        }
+        URI target = URI.create(stripTrailingSlash(args[0]) + "/api/stream/" + args[1]);
+        int concurrency = args.length > 2 ? Integer.parseInt(args[2]) : 16;
+        int requests = args.length > 3 ? Integer.parseInt(args[3]) : 1000;
+        long rangeBytes = args.length > 4 ? Long.parseLong(args[4]) : 1024 * 1024;
+        URI probe = args.length > 5 ? URI.create(args[5]) : null;
+
+        HttpClient client = HttpClient.newBuilder()
+            .version(HttpClient.Version.HTTP_1_1)
+            .connectTimeout(Duration.ofSeconds(10))
+            .build();
+        long fileSize = fileSize(client, target);
+        System.out.println("Target " + target + ": " + fileSize + " bytes, " + concurrency + " clients, "
+            + requests + " requests of " + rangeBytes + " bytes");
+
+        List<Long> latencies = Collections.synchronizedList(new ArrayList<>());
+        List<Long> probeLatencies = Collections.synchronizedList(new ArrayList<>());
+        AtomicInteger remaining = new AtomicInteger(requests);
+        AtomicInteger errors = new AtomicInteger();
+        AtomicLong bytes = new AtomicLong();
+        AtomicBoolean running = new AtomicBoolean(true);
+
+        ExecutorService pool = Executors.newFixedThreadPool(concurrency + 1);
+        Future<?> prober = probe == null ? null : pool.submit(() -> {
+            while (running.get()) {
+                long start = System.nanoTime();
+                try {
+                    client.send(HttpRequest.newBuilder(probe).build(), HttpResponse.BodyHandlers.discarding());
+                    probeLatencies.add(System.nanoTime() - start);
+                } catch (Exception e) {
+                    errors.incrementAndGet();
+                }
+                try {
+                    Thread.sleep(100);
+                } catch (InterruptedException e) {
+                    return;
+                }
+            }
+        });
+
+        long startTime = System.nanoTime();
+        List<Future<?>> workers = new ArrayList<>();
+        for (int w = 0; w < concurrency; w++) {
+            Random random = new Random(w); // Same workload on every run
+            workers.add(pool.submit(() -> {
+                while (remaining.getAndDecrement() > 0) {
+                    long start = (long) (random.nextDouble() * Math.max(1, fileSize - rangeBytes));
+                    long end = Math.min(fileSize, start + rangeBytes) - 1;
+                    HttpRequest request = HttpRequest.newBuilder(target)
+                        .header("Range", "bytes=" + start + "-" + end)
+                        .build();
+                    long requestStart = System.nanoTime();
+                    try {
+                        HttpResponse<InputStream> response = client.send(request, HttpResponse.BodyHandlers.ofInputStream());
+                        try (InputStream body = response.body()) {
+                            bytes.addAndGet(body.transferTo(OutputStream.nullOutputStream()));
+                        }
+                        if (response.statusCode() != 206) {
+                            errors.incrementAndGet();
+                        }
+                        latencies.add(System.nanoTime() - requestStart);
+                    } catch (Exception e) {
+                        errors.incrementAndGet();
+                    }
+                }
+            }));
+        }
+        for (Future<?> worker : workers) {
+            worker.get();
+        }
+        double seconds = (System.nanoTime() - startTime) / 1e9;
+        running.set(false);
+        if (prober != null) {
+            prober.get();
+        }
+        pool.shutdown();
+
+        System.out.println(String.format(Locale.ROOT, "%d requests in %.2fs: %.1f req/s, %.1f MB/s, %d errors",
+            latencies.size(), seconds, latencies.size() / seconds, bytes.get() / seconds / (1024 * 1024), errors.get()));
+        System.out.println("Range latency " + percentiles(latencies));
+        if (probe != null) {
+            System.out.println("Probe latency " + percentiles(probeLatencies));
+        }
+    }
+
+    private static long fileSize(HttpClient client, URI target) throws Exception {
+        HttpResponse<Void> response = client.send(HttpRequest.newBuilder(target).header("Range", "bytes=0-0").build(),
+            HttpResponse.BodyHandlers.discarding());
+        String contentRange = response.headers().firstValue("Content-Range").orElse(null);
+        if (response.statusCode() != 206 || contentRange == null || !contentRange.contains("/")) {
+            throw new IllegalStateException("Range requests are not supported by " + target + " (HTTP " + response.statusCode() + ")");
+        }
+        return Long.parseLong(contentRange.substring(contentRange.indexOf('/') + 1).trim());
+    }
+
+    static String percentiles(List<Long> nanos) {
+        if (nanos.isEmpty()) {
+            return "n/a";
+        }
+        List<Long> sorted = new ArrayList<>(nanos);
+        Collections.sort(sorted);
+        return String.format(Locale.ROOT, "p50=%.1fms p95=%.1fms p99=%.1fms max=%.1fms",
+            at(sorted, 0.50), at(sorted, 0.95), at(sorted, 0.99), sorted.get(sorted.size() - 1) / 1e6);
+    }
+
+    private static double at(List<Long> sorted, double quantile) {
+        int index = (int) Math.ceil(quantile * sorted.size()) - 1;
+        return sorted.get(Math.max(0, Math.min(index, sorted.size() - 1))) / 1e6;
+    }
+
+    private static String stripTrailingSlash(String url) {
+        return url.endsWith("/") ? url.substring(0, url.length() - 1) : url;
+    }
+}
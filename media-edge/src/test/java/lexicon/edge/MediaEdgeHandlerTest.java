@@ -0,0 +1,160 @@
+package lexicon.edge;
+
+import io.netty.channel.ChannelHandler;
+import io.netty.channel.ChannelOutboundBuffer;
+import io.netty.channel.DefaultFileRegion;
+import io.netty.channel.FileRegion;
+import io.netty.channel.embedded.EmbeddedChannel;
+import io.netty.handler.codec.http.DefaultFullHttpRequest;
+import io.netty.handler.codec.http.FullHttpRequest;
+import io.netty.handler.codec.http.HttpHeaderNames;
+import io.netty.handler.codec.http.HttpMethod;
+import io.netty.handler.codec.http.HttpResponse;
+import io.netty.handler.codec.http.HttpResponseStatus;
+import io.netty.handler.codec.http.HttpVersion;
+import io.netty.handler.codec.http.LastHttpContent;
+import io.netty.util.ReferenceCountUtil;
+import lexicon.data.IMediaDatabase;
+import lexicon.object.MediaFile;
+import lexicon.service.StorageVolumes;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.Mockito.*;
+
+/**
+ * Tests for serving media ranges from the edge
+ */
+class MediaEdgeHandlerTest {
+
+    @TempDir
+    Path tempDir;
+
+    private IMediaDatabase database;
+    private MediaEdgeHandler handler;
+    private EmbeddedChannel channel;
+
+    @BeforeEach
+    void setUp() throws Exception {
+        Files.createDirectories(tempDir.resolve("music"));
+        Files.write(tempDir.resolve("music/song.mp3"), new byte[1000]);
+
+        MediaFile mediaFile = new MediaFile();
+        mediaFile.setId(7);
+        mediaFile.setFilePath("music/song.mp3");
+        mediaFile.setContentType("audio/mpeg");
+        mediaFile.setEtag("abc123");
+
+        database = mock(IMediaDatabase.class);
+        when(database.getMediaFile(7)).thenReturn(mediaFile);
+
+        StorageVolumes roots = new StorageVolumes(List.of(tempDir), List.of(), 0, 0, 0, path -> { });
+        handler = new MediaEdgeHandler(new MediaLookup(database, roots), "http://api.local/");
+        channel = new EmbeddedChannel(handler);
+    }
+
+    @Test
+    void testRangeIsSentAsFileRegion() {
+        FullHttpRequest request = get("/api/stream/7");
+        request.headers().set(HttpHeaderNames.RANGE, "bytes=100-199");
+        channel.writeInbound(request);
+
+        HttpResponse response = channel.readOutbound();
+        assertEquals(HttpResponseStatus.PARTIAL_CONTENT, response.status());
+        assertEquals("bytes 100-199/1000", response.headers().get(HttpHeaderNames.CONTENT_RANGE));
+        assertEquals("100", response.headers().get(HttpHeaderNames.CONTENT_LENGTH));
+        assertEquals("\"abc123\"", response.headers().get(HttpHeaderNames.ETAG));
+
+        DefaultFileRegion region = channel.readOutbound();
+        assertEquals(100, region.position());
+        assertEquals(100, region.count());
+        ReferenceCountUtil.release(region);
+        assertTrue(channel.readOutbound() instanceof LastHttpContent);
+
+        channel.writeInbound(get("/api/stream/7"));
+        verify(database, times(1)).getMediaFile(7); // Metadata is reused across a player's range requests
+    }
+
+    @Test
+    void testNotModified() {
+        FullHttpRequest request = get("/api/stream/7");
+        request.headers().set(HttpHeaderNames.IF_NONE_MATCH, "\"abc123\"");
+        channel.writeInbound(request);
+
+        HttpResponse response = channel.readOutbound();
+        assertEquals(HttpResponseStatus.NOT_MODIFIED, response.status());
+    }
+
+    @Test
+    void testSeeksAreRedirectedToApi() {
+        channel.writeInbound(get("/api/stream/7?t=30"));
+
+        HttpResponse response = channel.readOutbound();
+        assertEquals(HttpResponseStatus.TEMPORARY_REDIRECT, response.status());
+        assertEquals("http://api.local/api/stream/7?t=30", response.headers().get(HttpHeaderNames.LOCATION));
+    }
+
+    @Test
+    void testUnknownMedia() {
+        channel.writeInbound(get("/api/stream/8"));
+
+        HttpResponse response = channel.readOutbound();
+        assertEquals(HttpResponseStatus.NOT_FOUND, response.status());
+    }
+
+    @Test
+    void testSlowBodyIsNotClosedAsIdle() throws Exception {
+        SlowChannel slow = new SlowChannel(new MediaEdgeServer.IdleHandler(200, TimeUnit.MILLISECONDS), handler);
+        slow.writeInbound(get("/api/stream/7"));
+
+        HttpResponse response = slow.readOutbound();
+        assertEquals(HttpResponseStatus.OK, response.status());
+        ChannelOutboundBuffer pending = slow.unsafe().outboundBuffer();
+        assertTrue(pending.current() instanceof FileRegion);
+
+        // Well past the timeout, but the region keeps moving
+        for (int i = 0; i < 4; i++) {
+            Thread.sleep(150);
+            pending.progress(100);
+            slow.runPendingTasks();
+            assertTrue(slow.isOpen());
+        }
+
+        // Stalled client
+        Thread.sleep(250);
+        slow.runPendingTasks();
+        Thread.sleep(250);
+        slow.runPendingTasks();
+        assertFalse(slow.isOpen());
+    }
+
+    private static FullHttpRequest get(String uri) {
+        return new DefaultFullHttpRequest(HttpVersion.HTTP_1_1, HttpMethod.GET, uri);
+    }
+
+    /**
+     * Hands over everything but file regions, which stay pending like on a slow socket
+     */
+    private static class SlowChannel extends EmbeddedChannel {
+
+        SlowChannel(ChannelHandler... handlers) {
+            super(handlers);
+        }
+
+        @Override
+        protected void doWrite(ChannelOutboundBuffer in) {
+            for (Object msg = in.current(); msg != null && !(msg instanceof FileRegion); msg = in.current()) {
+                ReferenceCountUtil.retain(msg);
+                outboundMessages().add(msg);
+                in.remove();
+            }
+        }
+    }
+}
@@ -6,11 +6,14 @@ import lexicon.object.ChunkedUpload;
 import lexicon.object.UploadChunk;
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.http.HttpStatus;
+import org.springframework.http.MediaType;
 import org.springframework.http.ResponseEntity;
 import org.springframework.web.bind.annotation.*;
 import org.springframework.web.multipart.MultipartFile;
 import org.springframework.web.servlet.mvc.method.annotation.SseEmitter;
 
+import jakarta.servlet.http.HttpServletRequest;
+import java.io.IOException;
 import java.util.HashMap;
 import java.util.Map;
 import java.util.Set;
@@ -70,7 +73,24 @@ public class ChunkedUploadController {
     }
 
     /**
-     * Upload a single chunk
+     * Upload a single chunk as the raw request body (Content-Type: application/octet-stream)
+     * POST /api/media/chunked/upload/{uploadId}?chunkNumber=N
+     * The body goes from the request straight to its place in the upload file, without
+     * the temp file the container spools multipart parts to.
+     */
+    @PostMapping(value = "/upload/{uploadId}", consumes = MediaType.APPLICATION_OCTET_STREAM_VALUE)
+    public ResponseEntity<Map<String, Object>> uploadChunkBody(
+            @PathVariable String uploadId,
+            @RequestParam("chunkNumber") int chunkNumber,
+            @RequestParam(value = "checksum", required = false) String checksum,
+            HttpServletRequest request) {
+        
+        return chunkResponse(uploadId, () -> chunkedUploadService.uploadChunk(
+            uploadId, chunkNumber, request.getInputStream(), request.getContentLengthLong(), checksum));
+    }
+
+    /**
+     * Upload a single chunk as a multipart "chunk" part
      * POST /api/media/chunked/upload/{uploadId}
      */
     @PostMapping("/upload/{uploadId}")
@@ -80,8 +100,12 @@ public class ChunkedUploadController {
             @RequestParam("chunk") MultipartFile chunkFile,
             @RequestParam(value = "checksum", required = false) String checksum) {
         
+        return chunkResponse(uploadId, () -> chunkedUploadService.uploadChunk(uploadId, chunkNumber, chunkFile, checksum));
+    }
+
+    private ResponseEntity<Map<String, Object>> chunkResponse(String uploadId, ChunkWrite write) {
         try {
-            boolean success = chunkedUploadService.uploadChunk(uploadId, chunkNumber, chunkFile, checksum);
+            boolean success = write.run();
             
             Map<String, Object> response = new HashMap<>();
             response.put("success", success);
@@ -89,15 +113,14 @@ public class ChunkedUploadController {
             if (success) {
                 ChunkedUpload upload = chunkedUploadService.getUploadStatus(uploadId);
                 response.put("progress", upload.getProgress());
-                response.put("uploadedChunks", upload.getUploadedChunks().size());
+                response.put("uploadedChunks", upload.getUploadedChunkCount());
                 response.put("totalChunks", upload.getTotalChunks());
                 response.put("isComplete", upload.isComplete());
                 response.put("message", "Chunk uploaded successfully");
                 
-                // If upload is complete, start assembly
+                // Chunks are already in place, so the upload can be finalized right away
                 if (upload.isComplete()) {
-                    response.put("assembling", true);
-                    response.put("message", "All chunks uploaded, starting assembly...");
+                    response.put("message", "All chunks uploaded, ready to finalize");
                 }
             } else {
                 response.put("message", "Failed to upload chunk");
@@ -109,6 +132,12 @@ public class ChunkedUploadController {
             error.put("success", false);
             error.put("message", e.getMessage());
             return ResponseEntity.badRequest().body(error);
+        } catch (IllegalStateException e) {
+            // Another copy of the chunk is being written, or the session is no longer open
+            Map<String, Object> error = new HashMap<>();
+            error.put("success", false);
+            error.put("message", e.getMessage());
+            return ResponseEntity.status(HttpStatus.CONFLICT).body(error);
         } catch (Exception e) {
             Map<String, Object> error = new HashMap<>();
             error.put("success", false);
@@ -139,7 +168,7 @@ public class ChunkedUploadController {
             response.put("filename", upload.getOriginalFilename());
             response.put("totalSize", upload.getTotalSize());
             response.put("totalChunks", upload.getTotalChunks());
-            response.put("uploadedChunks", upload.getUploadedChunks().size());
+            response.put("uploadedChunks", upload.getUploadedChunkCount());
             response.put("progress", upload.getProgress());
             response.put("status", upload.getStatus().toString());
             response.put("isComplete", upload.isComplete());
@@ -251,4 +280,8 @@ public class ChunkedUploadController {
     public SseEmitter getUploadProgress(@PathVariable String uploadId) {
         return progressTracker.registerEmitter(uploadId);
     }
-}
\ No newline at end of file
+    
+    private interface ChunkWrite {
+        boolean run() throws IOException;
+    }
+}
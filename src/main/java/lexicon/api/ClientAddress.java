@@ -0,0 +1,35 @@
+package lexicon.api;
+
+import jakarta.servlet.http.HttpServletRequest;
+
+/**
+ * The address of the client behind a request.
+ *
+ * Behind the nginx/Cloudflare gateway every request comes from the proxy, so the
+ * real client is taken from CF-Connecting-IP, then the first X-Forwarded-For
+ * entry, and only then from the socket's remote address.
+ */
+public final class ClientAddress {
+
+    private ClientAddress() {
+    }
+
+    public static String of(HttpServletRequest request) {
+        return of(request.getHeader("CF-Connecting-IP"), request.getHeader("X-Forwarded-For"),
+                request.getRemoteAddr());
+    }
+
+    /**
+     * {@link #of(HttpServletRequest)} for raw header values
+     */
+    public static String of(String cfIp, String xff, String remoteAddr) {
+        // Cloudflare sets CF-Connecting-IP for the real client IP
+        if (cfIp != null && !cfIp.isEmpty()) return cfIp;
+
+        if (xff != null && !xff.isEmpty()) {
+            // Take the first IP (original client)
+            return xff.split(",")[0].trim();
+        }
+        return remoteAddr;
+    }
+}
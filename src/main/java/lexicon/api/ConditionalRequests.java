@@ -0,0 +1,121 @@
+package lexicon.api;
+
+import lexicon.object.MediaFile;
+import jakarta.servlet.http.HttpServletRequest;
+import org.springframework.http.HttpHeaders;
+
+import java.time.ZoneId;
+
+/**
+ * HTTP validators and conditional request checks for media streaming.
+ *
+ * The ETag is the content hash recorded at ingest; files uploaded before hashing
+ * was added fall back to a tag built from id, size and upload time. Last-Modified
+ * is the upload time truncated to whole seconds (the HTTP date resolution).
+ */
+public final class ConditionalRequests {
+
+    private ConditionalRequests() {
+    }
+
+    /**
+     * Quoted strong ETag for a media file
+     */
+    public static String etagFor(MediaFile mediaFile) {
+        if (mediaFile.getEtag() != null && !mediaFile.getEtag().isEmpty()) {
+            return "\"" + mediaFile.getEtag() + "\"";
+        }
+        long modified = Math.max(0, lastModifiedFor(mediaFile) / 1000);
+        return "\"m" + mediaFile.getId() + "-" + Long.toHexString(mediaFile.getFileSize())
+                + "-" + Long.toHexString(modified) + "\"";
+    }
+
+    /**
+     * Last-Modified in epoch milliseconds (whole seconds), or -1 if unknown
+     */
+    public static long lastModifiedFor(MediaFile mediaFile) {
+        if (mediaFile.getUploadDate() == null) {
+            return -1;
+        }
+        long millis = mediaFile.getUploadDate().atZone(ZoneId.systemDefault()).toInstant().toEpochMilli();
+        return millis - Math.floorMod(millis, 1000L);
+    }
+
+    /**
+     * ETag and Last-Modified headers for 200, 206 and 304 responses
+     */
+    public static HttpHeaders validators(String etag, long lastModified) {
+        HttpHeaders headers = new HttpHeaders();
+        headers.setETag(etag);
+        if (lastModified >= 0) {
+            headers.setLastModified(lastModified);
+        }
+        return headers;
+    }
+
+    /**
+     * True if the client's cached copy is current and a 304 should be sent.
+     * If-None-Match takes precedence over If-Modified-Since (RFC 7232 section 6).
+     */
+    public static boolean isNotModified(HttpServletRequest request, String etag, long lastModified) {
+        return isNotModified(request.getHeader("If-None-Match"),
+                dateHeader(request, "If-Modified-Since"), etag, lastModified);
+    }
+
+    /**
+     * {@link #isNotModified(HttpServletRequest, String, long)} for raw header values (date -1 when absent)
+     */
+    public static boolean isNotModified(String ifNoneMatch, long ifModifiedSince, String etag, long lastModified) {
+        if (ifNoneMatch != null) {
+            for (String candidate : ifNoneMatch.split(",")) {
+                String tag = candidate.trim();
+                if (tag.equals("*") || weakTag(tag).equals(weakTag(etag))) {
+                    return true;
+                }
+            }
+            return false;
+        }
+        return ifModifiedSince >= 0 && lastModified >= 0 && lastModified <= ifModifiedSince;
+    }
+
+    /**
+     * True if a Range request may be honoured. A failed If-Range means the client's
+     * partial copy is stale, so the whole representation must be sent instead.
+     */
+    public static boolean isRangeValid(HttpServletRequest request, String etag, long lastModified) {
+        String ifRange = request.getHeader("If-Range");
+        if (ifRange == null) {
+            return true;
+        }
+        return isRangeValid(ifRange, dateHeader(request, "If-Range"), etag, lastModified);
+    }
+
+    /**
+     * {@link #isRangeValid(HttpServletRequest, String, long)} for raw header values (date -1 when not a date)
+     */
+    public static boolean isRangeValid(String ifRange, long ifRangeDate, String etag, long lastModified) {
+        if (ifRange == null) {
+            return true;
+        }
+        String value = ifRange.trim();
+        if (value.startsWith("W/")) {
+            return false; // Weak tags never match for ranges
+        }
+        if (value.startsWith("\"")) {
+            return value.equals(etag);
+        }
+        return ifRangeDate >= 0 && ifRangeDate == lastModified;
+    }
+
+    private static String weakTag(String tag) {
+        return tag.startsWith("W/") ? tag.substring(2) : tag;
+    }
+
+    private static long dateHeader(HttpServletRequest request, String name) {
+        try {
+            return request.getDateHeader(name);
+        } catch (IllegalArgumentException e) {
+            return -1; // Not a date (e.g. an entity tag in If-Range)
+        }
+    }
+}
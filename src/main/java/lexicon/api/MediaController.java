@@ -1,18 +1,24 @@
 package lexicon.api;
 
 import lexicon.logic.MediaManagerService;
+import lexicon.object.ByteRange;
 import lexicon.object.MediaFile;
 import lexicon.object.StreamResult;
 import lexicon.service.OptimizedFileStorageService;
+import lexicon.service.SeekIndex;
+import lexicon.service.SeekIndexService;
 import org.springframework.beans.factory.annotation.Autowired;
-import org.springframework.core.io.InputStreamResource;
+import org.springframework.http.ContentDisposition;
+import org.springframework.http.HttpHeaders;
 import org.springframework.http.HttpStatus;
 import org.springframework.http.MediaType;
 import org.springframework.http.ResponseEntity;
 import org.springframework.web.bind.annotation.*;
 import org.springframework.web.multipart.MultipartFile;
+import org.springframework.web.servlet.mvc.method.annotation.StreamingResponseBody;
 
-import java.io.InputStream;
+import jakarta.servlet.http.HttpServletRequest;
+import java.nio.charset.StandardCharsets;
 import java.util.HashMap;
 import java.util.List;
 import java.util.Map;
@@ -37,6 +43,12 @@ public class MediaController {
     @Autowired
     private OptimizedFileStorageService fileStorageService;
 
+    @Autowired
+    private SeekIndexService seekIndexService;
+
+    @Autowired(required = false)
+    private SendfileOffload sendfileOffload;
+
     /**
      * Upload a media file
      * POST /api/media/upload
@@ -264,24 +276,35 @@ public class MediaController {
     /**
      * Download file data
      * GET /api/media/{id}/download
+     *
+     * Served like /stream/{id} (zero-copy, Content-Length, Range and If-Range),
+     * so interrupted downloads resume and memory use does not depend on file size.
      */
     @GetMapping("/{id}/download")
-    public ResponseEntity<byte[]> downloadFile(@PathVariable int id) {
+    public ResponseEntity<?> downloadFile(
+            @PathVariable int id,
+            @RequestHeader(value = "Range", required = false) String rangeHeader,
+            HttpServletRequest request) {
         try {
             MediaFile mediaFile = mediaManager.getMediaFileById(id);
             if (mediaFile == null) {
                 return ResponseEntity.notFound().build();
             }
             
-            byte[] fileData = mediaManager.getFileData(id);
-            if (fileData == null || fileData.length == 0) {
-                return ResponseEntity.noContent().build();
+            ResponseEntity<?> response = streamFile(id, rangeHeader, null, request);
+            if (!response.getStatusCode().is2xxSuccessful()) {
+                return response;
             }
             
-            return ResponseEntity.ok()
-                    .contentType(MediaType.parseMediaType(mediaFile.getContentType()))
-                    .header("Content-Disposition", "attachment; filename=\"" + mediaFile.getOriginalFilename() + "\"")
-                    .body(fileData);
+            String filename = mediaFile.getOriginalFilename() != null ? mediaFile.getOriginalFilename() : mediaFile.getFilename();
+            HttpHeaders headers = new HttpHeaders();
+            headers.putAll(response.getHeaders());
+            headers.setContentDisposition(ContentDisposition.attachment()
+                    .filename(filename != null ? filename : "media-" + id, StandardCharsets.UTF_8)
+                    .build());
+            return ResponseEntity.status(response.getStatusCode())
+                    .headers(headers)
+                    .body(response.getBody());
         } catch (Exception e) {
             return ResponseEntity.status(HttpStatus.INTERNAL_SERVER_ERROR).build();
         }
@@ -291,56 +314,93 @@ public class MediaController {
      * Stream video/audio with range request support for smooth playback
      * GET /api/media/stream/{id}
      *
-     * No Range header: HTTP 200 + stream full file via InputStreamResource.
-     * With Range header: HTTP 206 + 2MB byte[] chunks.
+     * No Range header: HTTP 200 + full file.
+     * With Range header: HTTP 206 + exactly the requested range.
+     * ?t=seconds: X-Seek-Offset gives the indexed byte offset for that time. A single
+     * requested range is cut to start there (206); without a Range header an MP3 gets
+     * the rest of the file from the offset as a 200, and an MP4, which cannot be decoded
+     * from the middle, a 204 with only the seek headers.
+     * File-system media is transferred from the file channel straight into the
+     * response; only database-stored media goes through a byte[]. With offload
+     * enabled the proxy sends file-system media instead (see {@link SendfileOffload}).
      */
     @GetMapping("/stream/{id}")
     public ResponseEntity<?> streamFile(
             @PathVariable int id,
-            @RequestHeader(value = "Range", required = false) String rangeHeader) {
+            @RequestHeader(value = "Range", required = false) String rangeHeader,
+            @RequestParam(value = "t", required = false) Double seekSeconds,
+            HttpServletRequest request) {
         try {
             log.info("STREAM id={} Range={}", id, rangeHeader);
+            MediaFile mediaFile = mediaManager.getMediaFileById(id);
+            if (mediaFile == null) {
+                return ResponseEntity.notFound().build();
+            }
+
+            // Revalidation is answered before any range or storage work
+            String etag = ConditionalRequests.etagFor(mediaFile);
+            long lastModified = ConditionalRequests.lastModifiedFor(mediaFile);
+            if (ConditionalRequests.isNotModified(request, etag, lastModified)) {
+                log.info("STREAM id={} — 304 Not Modified", id);
+                return ResponseEntity.status(HttpStatus.NOT_MODIFIED)
+                        .headers(ConditionalRequests.validators(etag, lastModified))
+                        .build();
+            }
+
             // No Range header — return HTTP 200 with full file streamed.
             // Mobile browsers REJECT 206 when they didn't send a Range header.
-            if (rangeHeader == null || rangeHeader.isEmpty()) {
-                MediaFile mediaFile = mediaManager.getMediaFileById(id);
-                if (mediaFile == null) {
-                    log.warn("STREAM id={} — NOT FOUND", id);
-                    return ResponseEntity.notFound().build();
-                }
-                String filePath = mediaFile.getFilePath();
-                if (filePath != null && !filePath.isEmpty()) {
-                    long fileSize = fileStorageService.getFileSize(filePath);
-                    InputStream inputStream = fileStorageService.getFileInputStream(filePath);
-                    if (inputStream == null) {
-                        log.error("STREAM id={} — InputStream NULL for path: {}", id, filePath);
-                        return ResponseEntity.status(HttpStatus.INTERNAL_SERVER_ERROR).build();
+            // A stale If-Range also gets the full file.
+            boolean hasRange = rangeHeader != null && !rangeHeader.isEmpty()
+                    && ConditionalRequests.isRangeValid(request, etag, lastModified);
+
+            // ?t=seconds resumes at the indexed byte offset for that time in one request
+            SeekIndex.Point seekPoint = seekSeconds != null && mediaFile.getFilePath() != null
+                    && !mediaFile.getFilePath().isEmpty()
+                    ? seekIndexService.seek(mediaFile.getFilePath(), seekSeconds) : null;
+            boolean seekFromOffset = false;
+            if (seekPoint != null) {
+                long offset = seekPoint.getOffset();
+                long fileSize = fileStorageService.getFileSize(mediaFile.getFilePath());
+                List<ByteRange> requested = hasRange ? ByteRange.parse(rangeHeader, fileSize) : null;
+                if (requested != null) {
+                    // The client's range, cut to start at the seek point if it reaches that far
+                    ByteRange range = requested.size() == 1 ? requested.get(0).from(offset) : null;
+                    if (range != null) {
+                        rangeHeader = range.toRangeHeader();
                     }
-                    InputStreamResource resource = new InputStreamResource(inputStream);
-                    String contentType = mediaFile.getContentType() != null ? mediaFile.getContentType() : "application/octet-stream";
-                    log.info("STREAM id={} — 200 OK | type={} size={} path={}", id, contentType, fileSize, filePath);
+                } else if (seekPoint.isSelfSyncing() && offset < fileSize) {
+                    // Without a Range header the seek is answered 200, which mobile browsers accept
+                    rangeHeader = "bytes=" + offset + "-";
+                    hasRange = true;
+                    seekFromOffset = true;
+                } else {
+                    // MP4 bytes from the offset cannot be decoded without the moov box
+                    log.info("STREAM id={} — 204 seek to byte {}", id, offset);
+                    return ResponseEntity.noContent()
+                            .header("Accept-Ranges", "bytes")
+                            .header("X-Seek-Offset", String.valueOf(offset))
+                            .header("X-Seek-Time", String.valueOf(seekPoint.getTimeMillis() / 1000.0))
+                            .headers(ConditionalRequests.validators(etag, lastModified))
+                            .build();
+                }
+            } else if (rangeHeader == null || rangeHeader.isEmpty() || hasRange) {
+                // The proxy serves ranges itself; requests with If-Range are answered here
+                HttpHeaders redirect = sendfileOffload != null
+                        ? sendfileOffload.redirectHeaders(mediaFile.getFilePath(), request.getHeader("If-Range"))
+                        : null;
+                if (redirect != null) {
+                    log.info("STREAM id={} — offloaded to proxy", id);
+                    String contentType = mediaFile.getContentType() != null && !mediaFile.getContentType().isEmpty()
+                            ? mediaFile.getContentType() : "application/octet-stream";
                     return ResponseEntity.ok()
+                            .headers(redirect)
                             .contentType(MediaType.parseMediaType(contentType))
                             .header("Accept-Ranges", "bytes")
-                            .header("Content-Length", String.valueOf(fileSize))
-                            .body(resource);
+                            .headers(ConditionalRequests.validators(etag, lastModified))
+                            .build();
                 }
-                // DB-stored file fallback
-                StreamResult result = mediaManager.getStreamData(id, null);
-                if (result == null) {
-                    log.warn("STREAM id={} — DB fallback returned null", id);
-                    return ResponseEntity.notFound().build();
-                }
-                log.info("STREAM id={} — 200 OK (DB) | type={} size={}", id, result.getContentType(), result.getTotalSize());
-                return ResponseEntity.ok()
-                        .contentType(MediaType.parseMediaType(result.getContentType()))
-                        .header("Accept-Ranges", "bytes")
-                        .header("Content-Length", String.valueOf(result.getTotalSize()))
-                        .body(result.getData());
             }
-
-            // Range header present — chunked 206 response
-            StreamResult result = mediaManager.getStreamData(id, rangeHeader);
+            StreamResult result = mediaManager.getStreamData(id, hasRange ? rangeHeader : null);
             if (result == null) {
                 log.warn("STREAM id={} Range={} — getStreamData returned null", id, rangeHeader);
                 return ResponseEntity.notFound().build();
@@ -351,17 +411,85 @@ public class MediaController {
                         .header("Content-Range", "bytes */" + result.getTotalSize())
                         .build();
             }
-            log.info("STREAM id={} — 206 | bytes {}-{}/{}", id, result.getStart(), result.getEnd(), result.getTotalSize());
-            return ResponseEntity.status(HttpStatus.PARTIAL_CONTENT)
-                    .contentType(MediaType.parseMediaType(result.getContentType()))
+
+            String contentType = result.getContentType() != null ? result.getContentType() : "application/octet-stream";
+            if (hasRange && result.isMultiRange()) {
+                return multiRangeResponse(id, result, contentType, etag, lastModified);
+            }
+
+            ResponseEntity.BodyBuilder builder;
+            if (hasRange && result.isPartialContent() && !seekFromOffset) {
+                log.info("STREAM id={} — 206 | bytes {}-{}/{}", id, result.getStart(), result.getEnd(), result.getTotalSize());
+                builder = ResponseEntity.status(HttpStatus.PARTIAL_CONTENT)
+                        .header("Content-Range", result.getRanges().get(0).toContentRange(result.getTotalSize()));
+            } else {
+                log.info("STREAM id={} — 200 OK | type={} size={}", id, contentType, result.getTotalSize());
+                builder = ResponseEntity.ok();
+            }
+            if (seekPoint != null) {
+                builder.header("X-Seek-Offset", String.valueOf(seekPoint.getOffset()))
+                        .header("X-Seek-Time", String.valueOf(seekPoint.getTimeMillis() / 1000.0));
+            }
+            builder.contentType(MediaType.parseMediaType(contentType))
                     .header("Accept-Ranges", "bytes")
-                    .header("Content-Range", "bytes " + result.getStart() + "-" + result.getEnd() + "/" + result.getTotalSize())
-                    .header("Content-Length", String.valueOf(result.getContentLength()))
-                    .body(result.getData());
+                    .header("Content-Length", String.valueOf(result.getContentLength()));
+            // A seek's 200 is not the whole file, so no validators for caches to match it against
+            if (!seekFromOffset) {
+                builder.headers(ConditionalRequests.validators(etag, lastModified));
+            }
+
+            if (result.isDatabaseBacked()) {
+                long dbStart = result.getStart();
+                long dbLength = result.getContentLength();
+                StreamingResponseBody body = out -> mediaManager.transferFileData(id, dbStart, dbLength, out);
+                return builder.body(body);
+            }
+            if (!result.isFileBacked()) {
+                return builder.body(result.getData());
+            }
+
+            String filePath = result.getFilePath();
+            long start = result.getStart();
+            long length = result.getContentLength();
+            // Consecutive ranges from one client are read ahead by the storage layer
+            String clientKey = ClientAddress.of(request);
+            StreamingResponseBody body = out -> fileStorageService.transferRange(filePath, start, length, out, clientKey);
+            return builder.body(body);
         } catch (Exception e) {
             log.error("STREAM id={} — EXCEPTION: {}", id, e.getMessage(), e);
             return ResponseEntity.status(HttpStatus.INTERNAL_SERVER_ERROR).build();
         }
     }
+
+    /**
+     * HTTP 206 multipart/byteranges for a request with several ranges
+     * (e.g. a player probing both the header and the trailing moov atom).
+     */
+    private ResponseEntity<StreamingResponseBody> multiRangeResponse(int id, StreamResult result, String contentType,
+                                                                     String etag, long lastModified) {
+        MultipartByteRanges multipart = new MultipartByteRanges(result.getRanges(), contentType, result.getTotalSize());
+        log.info("STREAM id={} — 206 multipart | ranges={} total={}", id, result.getRanges(), result.getTotalSize());
+
+        StreamingResponseBody body;
+        if (result.isFileBacked()) {
+            String filePath = result.getFilePath();
+            body = out -> multipart.writeTo(out,
+                    (range, target) -> fileStorageService.transferRange(filePath, range.getStart(), range.getLength(), target));
+        } else if (result.isDatabaseBacked()) {
+            body = out -> multipart.writeTo(out,
+                    (range, target) -> mediaManager.transferFileData(id, range.getStart(), range.getLength(), target));
+        } else {
+            byte[] data = result.getData();
+            body = out -> multipart.writeTo(out,
+                    (range, target) -> target.write(data, (int) range.getStart(), (int) range.getLength()));
+        }
+
+        return ResponseEntity.status(HttpStatus.PARTIAL_CONTENT)
+                .contentType(MediaType.parseMediaType(multipart.getContentType()))
+                .header("Accept-Ranges", "bytes")
+                .header("Content-Length", String.valueOf(multipart.getContentLength()))
+                .headers(ConditionalRequests.validators(etag, lastModified))
+                .body(body);
+    }
 }
 
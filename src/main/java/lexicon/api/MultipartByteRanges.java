@@ -0,0 +1,80 @@
+package lexicon.api;
+
+import lexicon.object.ByteRange;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.charset.StandardCharsets;
+import java.util.List;
+import java.util.UUID;
+
+/**
+ * multipart/byteranges body for a 206 response to a multi-range request.
+ *
+ * The exact body length is known up front so Content-Length can be sent and the
+ * parts can be streamed without buffering. Range bytes are written by the caller,
+ * straight from the file channel or from database bytes.
+ */
+public final class MultipartByteRanges {
+
+    /**
+     * Writes the bytes of one range to the response
+     */
+    @FunctionalInterface
+    public interface RangeWriter {
+        void write(ByteRange range, OutputStream out) throws IOException;
+    }
+
+    private final List<ByteRange> ranges;
+    private final String partContentType;
+    private final long totalSize;
+    private final String boundary = UUID.randomUUID().toString().replace("-", "");
+
+    public MultipartByteRanges(List<ByteRange> ranges, String partContentType, long totalSize) {
+        this.ranges = ranges;
+        this.partContentType = partContentType;
+        this.totalSize = totalSize;
+    }
+
+    /**
+     * Content-Type header value for the whole response
+     */
+    public String getContentType() {
+        return "multipart/byteranges; boundary=" + boundary;
+    }
+
+    public long getContentLength() {
+        long length = closingDelimiter().length;
+        for (ByteRange range : ranges) {
+            length += partHeader(range).length + range.getLength();
+        }
+        return length;
+    }
+
+    public void writeTo(OutputStream out, RangeWriter writer) throws IOException {
+        for (ByteRange range : ranges) {
+            out.write(partHeader(range));
+            writer.write(range, out);
+        }
+        out.write(closingDelimiter());
+        out.flush();
+    }
+
+    /**
+     * Delimiter and headers written before the bytes of a range
+     */
+    public byte[] partHeader(ByteRange range) {
+        String header = "\r\n--" + boundary + "\r\n"
+                + "Content-Type: " + partContentType + "\r\n"
+                + "Content-Range: " + range.toContentRange(totalSize) + "\r\n"
+                + "\r\n";
+        return header.getBytes(StandardCharsets.US_ASCII);
+    }
+
+    /**
+     * Delimiter written after the last range
+     */
+    public byte[] closingDelimiter() {
+        return ("\r\n--" + boundary + "--\r\n").getBytes(StandardCharsets.US_ASCII);
+    }
+}
@@ -28,7 +28,7 @@ public class RateLimitFilter implements Filter {
             throws IOException, ServletException {
 
         HttpServletRequest httpReq = (HttpServletRequest) request;
-        String ip = getClientIp(httpReq);
+        String ip = ClientAddress.of(httpReq);
 
         // Periodic cleanup of stale entries (every 5 minutes)
         long now = System.currentTimeMillis();
@@ -49,19 +49,6 @@ public class RateLimitFilter implements Filter {
         }
     }
 
-    private String getClientIp(HttpServletRequest request) {
-        // Cloudflare sets CF-Connecting-IP for the real client IP
-        String cfIp = request.getHeader("CF-Connecting-IP");
-        if (cfIp != null && !cfIp.isEmpty()) return cfIp;
-
-        String xff = request.getHeader("X-Forwarded-For");
-        if (xff != null && !xff.isEmpty()) {
-            // Take the first IP (original client)
-            return xff.split(",")[0].trim();
-        }
-        return request.getRemoteAddr();
-    }
-
     private static class RateBucket {
         volatile long windowStart = System.currentTimeMillis();
         final AtomicInteger count = new AtomicInteger(0);
@@ -0,0 +1,98 @@
+package lexicon.api;
+
+import lexicon.config.StorageProperties;
+import lexicon.service.OptimizedFileStorageService;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.http.HttpHeaders;
+import org.springframework.stereotype.Component;
+import org.springframework.web.util.UriUtils;
+
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.Locale;
+
+/**
+ * Hands stored media to a sendfile-capable proxy in front of Lexicon.
+ *
+ * With lexicon.storage.offload-mode=x-accel-redirect, a media response carries only its
+ * headers plus an X-Accel-Redirect into an internal nginx location mapped onto basePath
+ * (lexicon.storage.offload-prefix), and nginx sends the bytes itself, ranges included.
+ * x-sendfile does the same with an absolute path for Apache mod_xsendfile or lighttpd.
+ * Lookups, 304s and headers are still decided here. Files outside basePath (fast tier,
+ * extra volumes) and responses the proxy cannot reproduce stream from the JVM as before.
+ * That includes any request with If-Range: the proxy does not know Lexicon's ETag, so
+ * it would drop the Range and restart a resumed download from zero.
+ */
+@Component
+public class SendfileOffload {
+
+    static final String MODE_NONE = "none";
+    static final String MODE_X_ACCEL_REDIRECT = "x-accel-redirect";
+    static final String MODE_X_SENDFILE = "x-sendfile";
+
+    @Autowired
+    private StorageProperties storageProperties;
+
+    @Autowired
+    private OptimizedFileStorageService fileStorageService;
+
+    public boolean isEnabled() {
+        return !MODE_NONE.equals(mode());
+    }
+
+    /**
+     * Headers handing a stored file to the proxy, or null if the JVM should send it
+     */
+    public HttpHeaders redirectHeaders(String relativePath) {
+        return redirectHeaders(relativePath, null);
+    }
+
+    /**
+     * {@link #redirectHeaders(String)} for a request carrying the given If-Range header;
+     * If-Range has already been evaluated here, so such requests are never offloaded
+     */
+    public HttpHeaders redirectHeaders(String relativePath, String ifRange) {
+        if (ifRange != null) {
+            return null;
+        }
+        String mode = mode();
+        if (MODE_NONE.equals(mode) || relativePath == null || relativePath.isEmpty()) {
+            return null;
+        }
+        Path file = fileStorageService.getReadablePath(relativePath).toAbsolutePath().normalize();
+        HttpHeaders headers = new HttpHeaders();
+        if (MODE_X_SENDFILE.equals(mode)) {
+            headers.set("X-Sendfile", file.toString());
+            return headers;
+        }
+        if (!MODE_X_ACCEL_REDIRECT.equals(mode)) {
+            return null; // Unknown mode: behave as if offload were off
+        }
+        Path base = Paths.get(storageProperties.getBasePath()).toAbsolutePath().normalize();
+        if (!file.startsWith(base)) {
+            return null; // Only basePath is mapped into the internal location
+        }
+        headers.set("X-Accel-Redirect", accelUri(storageProperties.getOffloadPrefix(), base.relativize(file)));
+        return headers;
+    }
+
+    /**
+     * Internal URI of a file under basePath, percent-encoded per path segment
+     */
+    static String accelUri(String prefix, Path relativePath) {
+        StringBuilder uri = new StringBuilder(prefix.endsWith("/") ? prefix : prefix + "/");
+        for (int i = 0; i < relativePath.getNameCount(); i++) {
+            if (i > 0) {
+                uri.append('/');
+            }
+            uri.append(UriUtils.encodePath(relativePath.getName(i).toString(), StandardCharsets.UTF_8));
+        }
+        return uri.toString();
+    }
+
+    private String mode() {
+        String mode = storageProperties != null ? storageProperties.getOffloadMode() : null;
+        return mode == null || mode.isBlank() ? MODE_NONE : mode.trim().toLowerCase(Locale.ROOT);
+    }
+}
@@ -1,18 +1,29 @@
 package lexicon.api;
 
+import lexicon.service.AudioRenditionService;
+import lexicon.service.FileDataMigrator;
+import lexicon.service.HlsPackagingService;
+import lexicon.service.OpenFileCache;
 import lexicon.service.OptimizedFileStorageService;
+import lexicon.service.SeekIndex;
+import lexicon.service.SeekIndexService;
+import lexicon.service.ThumbnailService;
+import lexicon.service.WaveformService;
 import lexicon.logic.MediaManagerService;
+import lexicon.object.ByteRange;
 import lexicon.object.MediaFile;
 import org.springframework.beans.factory.annotation.Autowired;
-import org.springframework.core.io.InputStreamResource;
 import org.springframework.http.*;
 import org.springframework.web.bind.annotation.*;
+import org.springframework.web.servlet.mvc.method.annotation.StreamingResponseBody;
 
 import jakarta.servlet.http.HttpServletRequest;
 import java.io.IOException;
-import java.io.InputStream;
-import java.io.FileInputStream;
-import java.io.BufferedInputStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
 
 /**
  * Enhanced media streaming controller with HTTP range request support
@@ -29,12 +40,35 @@ public class StreamingMediaController {
     @Autowired
     private MediaManagerService mediaManager;
     
+    @Autowired
+    private SeekIndexService seekIndexService;
+    
+    @Autowired
+    private HlsPackagingService hlsPackagingService;
+    
+    @Autowired
+    private AudioRenditionService audioRenditionService;
+    
+    @Autowired
+    private FileDataMigrator fileDataMigrator;
+    
+    @Autowired
+    private WaveformService waveformService;
+    
+    @Autowired
+    private ThumbnailService thumbnailService;
+    
+    @Autowired(required = false)
+    private SendfileOffload sendfileOffload;
+    
     /**
      * Stream media file with HTTP range support for video seeking
      */
     @GetMapping("/{mediaFileId}")
-    public ResponseEntity<InputStreamResource> streamMedia(
+    public ResponseEntity<StreamingResponseBody> streamMedia(
             @PathVariable int mediaFileId,
+            @RequestParam(value = "t", required = false) Double seekSeconds,
+            @RequestParam(value = "quality", required = false) String quality,
             HttpServletRequest request) {
         
         try {
@@ -50,13 +84,54 @@ public class StreamingMediaController {
                 return streamFromDatabase(mediaFileId);
             }
             
-            // Parse Range header for seeking support
+            // Revalidation is answered before any range or storage work
+            String etag = ConditionalRequests.etagFor(mediaFile);
+            long lastModified = ConditionalRequests.lastModifiedFor(mediaFile);
+            
+            // ?quality=low serves a compact audio rendition; the original is used if it cannot be made
+            if (quality != null && !"original".equalsIgnoreCase(quality)) {
+                if (!AudioRenditionService.isSupportedQuality(quality)) {
+                    return ResponseEntity.badRequest().build();
+                }
+                if (mediaFile.getMediaType() == lexicon.object.MediaType.MUSIC
+                        || mediaFile.getMediaType() == lexicon.object.MediaType.AUDIOBOOK) {
+                    AudioRenditionService.Rendition rendition = audioRenditionService.open(String.valueOf(mediaFileId),
+                        fileStorageService.getReadablePath(mediaFile.getFilePath()), quality);
+                    if (rendition != null) {
+                        return renditionResponse(rendition, request, etag);
+                    }
+                }
+            }
+            if (ConditionalRequests.isNotModified(request, etag, lastModified)) {
+                return ResponseEntity.status(HttpStatus.NOT_MODIFIED)
+                    .headers(ConditionalRequests.validators(etag, lastModified))
+                    .build();
+            }
+            
+            // ?t=seconds resumes at the indexed byte offset for that time in one request
+            if (seekSeconds != null) {
+                SeekIndex.Point seekPoint = seekIndexService.seek(mediaFile.getFilePath(), seekSeconds);
+                if (seekPoint != null) {
+                    return seekResponse(mediaFile, seekPoint, request, etag, lastModified);
+                }
+            }
+            
+            // Parse Range header for seeking support; a stale If-Range gets the full file
             String rangeHeader = request.getHeader("Range");
+            boolean rangeValid = ConditionalRequests.isRangeValid(request, etag, lastModified);
+            
+            // The proxy serves ranges itself; requests with If-Range are answered here
+            if (rangeHeader == null || rangeValid) {
+                ResponseEntity<StreamingResponseBody> offloaded = offloadResponse(mediaFile, request, etag, lastModified);
+                if (offloaded != null) {
+                    return offloaded;
+                }
+            }
             
-            if (rangeHeader != null && rangeHeader.startsWith("bytes=")) {
-                return handleRangeRequest(mediaFile, rangeHeader);
+            if (rangeHeader != null && rangeHeader.startsWith("bytes=") && rangeValid) {
+                return handleRangeRequest(mediaFile, rangeHeader, ClientAddress.of(request), etag, lastModified);
             } else {
-                return handleFullFileRequest(mediaFile);
+                return handleFullFileRequest(mediaFile, etag, lastModified);
             }
             
         } catch (Exception e) {
@@ -64,53 +139,155 @@ public class StreamingMediaController {
         }
     }
     
+    /**
+     * Serve an audio rendition: streamed as it is encoded, or from the rendition cache with ranges
+     */
+    private ResponseEntity<StreamingResponseBody> renditionResponse(AudioRenditionService.Rendition rendition,
+                                                                    HttpServletRequest request, String sourceEtag)
+            throws IOException {
+        if (!rendition.isComplete()) {
+            // Length is unknown until the encoder finishes, so no ranges yet
+            return ResponseEntity.ok()
+                .contentType(MediaType.parseMediaType(AudioRenditionService.CONTENT_TYPE))
+                .header("Accept-Ranges", "none")
+                .header(HttpHeaders.CACHE_CONTROL, "no-cache")
+                .body(rendition::writeTo);
+        }
+        
+        // Renditions change when their source or the encode bitrate does
+        String etag = sourceEtag.substring(0, sourceEtag.length() - 1) + "-" + rendition.getTag() + "\"";
+        if (ConditionalRequests.isNotModified(request, etag, -1)) {
+            return ResponseEntity.status(HttpStatus.NOT_MODIFIED)
+                .headers(ConditionalRequests.validators(etag, -1))
+                .build();
+        }
+        
+        long size = rendition.getSize();
+        String rangeHeader = request.getHeader("Range");
+        List<ByteRange> ranges = rangeHeader != null && ConditionalRequests.isRangeValid(request, etag, -1)
+            ? ByteRange.parse(rangeHeader, size) : null;
+        if (ranges != null && ranges.isEmpty()) {
+            return ResponseEntity.status(HttpStatus.REQUESTED_RANGE_NOT_SATISFIABLE)
+                .header("Content-Range", "bytes */" + size)
+                .build();
+        }
+        
+        // Multiple ranges are rare for audio; they get the whole rendition
+        ByteRange range = ranges != null && ranges.size() == 1 ? ranges.get(0) : new ByteRange(0, size - 1);
+        boolean partial = ranges != null && ranges.size() == 1;
+        ResponseEntity.BodyBuilder response = ResponseEntity.status(partial ? HttpStatus.PARTIAL_CONTENT : HttpStatus.OK)
+            .contentType(MediaType.parseMediaType(AudioRenditionService.CONTENT_TYPE))
+            .contentLength(range.getLength())
+            .headers(ConditionalRequests.validators(etag, -1))
+            .header("Accept-Ranges", "bytes");
+        if (partial) {
+            response.header("Content-Range", range.toContentRange(size));
+        }
+        return response.body(out -> rendition.writeRange(out, range.getStart(), range.getLength()));
+    }
+    
+    /**
+     * Serve a ?t= seek from its indexed offset. X-Seek-Offset gives that offset and
+     * X-Seek-Time the time of the seek point.
+     *
+     * A client that sent a single range gets it cut to start at the offset as a 206
+     * (or its own range if that ends before the offset). Without a Range header an MP3
+     * gets a 200 of the rest of the file, since mobile browsers reject a 206 they did
+     * not ask for; MP4 bytes from the offset cannot be decoded without the moov box, so
+     * there the answer is a 204 with the headers only.
+     */
+    private ResponseEntity<StreamingResponseBody> seekResponse(MediaFile mediaFile, SeekIndex.Point seekPoint,
+                                                               HttpServletRequest request, String etag,
+                                                               long lastModified) throws IOException {
+        String seekTime = String.valueOf(seekPoint.getTimeMillis() / 1000.0);
+        String filePath = mediaFile.getFilePath();
+        long fileSize = fileStorageService.getFileSize(filePath);
+        long start = seekPoint.getOffset();
+        
+        // A stale If-Range gets treated like a request without a Range header
+        String rangeHeader = request.getHeader("Range");
+        List<ByteRange> requested = rangeHeader != null && ConditionalRequests.isRangeValid(request, etag, lastModified)
+            ? ByteRange.parse(rangeHeader, fileSize) : null;
+        if (requested != null) {
+            ByteRange range = requested.size() == 1 ? requested.get(0).from(start) : null;
+            ResponseEntity<StreamingResponseBody> response = handleRangeRequest(mediaFile,
+                range != null ? range.toRangeHeader() : rangeHeader, ClientAddress.of(request), etag, lastModified);
+            return ResponseEntity.status(response.getStatusCode())
+                .headers(response.getHeaders())
+                .header("X-Seek-Offset", String.valueOf(start))
+                .header("X-Seek-Time", seekTime)
+                .body(response.getBody());
+        }
+        
+        if (!seekPoint.isSelfSyncing() || start >= fileSize) {
+            return ResponseEntity.noContent()
+                .header("Accept-Ranges", "bytes")
+                .header("X-Seek-Offset", String.valueOf(start))
+                .header("X-Seek-Time", seekTime)
+                .headers(ConditionalRequests.validators(etag, lastModified))
+                .build();
+        }
+        
+        long length = fileSize - start;
+        String clientKey = ClientAddress.of(request);
+        StreamingResponseBody body = out -> fileStorageService.transferRange(filePath, start, length, out, clientKey);
+        // Not the whole file, so no validators for caches to match it against
+        return ResponseEntity.ok()
+            .header("Accept-Ranges", "bytes")
+            .header("Content-Length", String.valueOf(length))
+            .header("X-Seek-Offset", String.valueOf(start))
+            .header("X-Seek-Time", seekTime)
+            .contentType(MediaType.parseMediaType(getContentType(mediaFile)))
+            .body(body);
+    }
+    
     /**
      * Handle HTTP range requests for video seeking
      */
-    private ResponseEntity<InputStreamResource> handleRangeRequest(MediaFile mediaFile, String rangeHeader) {
+    private ResponseEntity<StreamingResponseBody> handleRangeRequest(MediaFile mediaFile, String rangeHeader,
+                                                                     String clientKey, String etag, long lastModified) {
         try {
-            // Parse range: "bytes=start-end"
-            String range = rangeHeader.substring(6); // Remove "bytes="
-            String[] ranges = range.split("-");
+            // Served from the open-file cache after the first request for this file
+            String filePath = mediaFile.getFilePath();
+            long fileSize = fileStorageService.getFileSize(filePath);
             
-            long fileSize = fileStorageService.getFileSize(mediaFile.getFilePath());
-            long start = 0;
-            long end = fileSize - 1;
-            
-            if (ranges.length >= 1 && !ranges[0].isEmpty()) {
-                start = Long.parseLong(ranges[0]);
-            }
-            if (ranges.length >= 2 && !ranges[1].isEmpty()) {
-                end = Long.parseLong(ranges[1]);
+            List<ByteRange> ranges = ByteRange.parse(rangeHeader, fileSize);
+            if (ranges == null) {
+                // Malformed or unsupported Range header is ignored
+                return handleFullFileRequest(mediaFile, etag, lastModified);
             }
-            
-            // Validate range
-            if (start >= fileSize || end >= fileSize || start > end) {
+            if (ranges.isEmpty()) {
                 return ResponseEntity.status(HttpStatus.REQUESTED_RANGE_NOT_SATISFIABLE)
                     .header("Content-Range", "bytes */" + fileSize)
                     .build();
             }
             
-            // Get file stream for range
-            OptimizedFileStorageService.FileStreamInfo streamInfo = 
-                fileStorageService.getFileForStreaming(mediaFile.getFilePath(), start, end);
+            String contentType = getContentType(mediaFile);
+            if (ranges.size() > 1) {
+                MultipartByteRanges multipart = new MultipartByteRanges(ranges, contentType, fileSize);
+                StreamingResponseBody body = out -> multipart.writeTo(out,
+                    (range, target) -> fileStorageService.transferRange(filePath, range.getStart(), range.getLength(), target));
+                
+                return ResponseEntity.status(HttpStatus.PARTIAL_CONTENT)
+                    .header("Accept-Ranges", "bytes")
+                    .header("Content-Length", String.valueOf(multipart.getContentLength()))
+                    .headers(ConditionalRequests.validators(etag, lastModified))
+                    .contentType(MediaType.parseMediaType(multipart.getContentType()))
+                    .body(body);
+            }
             
-            // Create input stream resource
-            InputStreamResource resource = new InputStreamResource(
-                new BufferedInputStream(new FileInputStream(streamInfo.getFile().getFD()))
-            ) {
-                @Override
-                public long contentLength() {
-                    return streamInfo.getContentLength();
-                }
-            };
+            ByteRange range = ranges.get(0);
+            // The channel lease is taken and released inside the transfer
+            StreamingResponseBody body = out -> fileStorageService.transferRange(
+                filePath, range.getStart(), range.getLength(), out, clientKey);
             
             return ResponseEntity.status(HttpStatus.PARTIAL_CONTENT)
                 .header("Accept-Ranges", "bytes")
-                .header("Content-Range", String.format("bytes %d-%d/%d", start, end, fileSize))
-                .header("Content-Length", String.valueOf(streamInfo.getContentLength()))
-                .contentType(MediaType.parseMediaType(getContentType(mediaFile)))
-                .body(resource);
+                .header("Content-Range", range.toContentRange(fileSize))
+                .header("Content-Length", String.valueOf(range.getLength()))
+                .headers(ConditionalRequests.validators(etag, lastModified))
+                .contentType(MediaType.parseMediaType(contentType))
+                .body(body);
                 
         } catch (Exception e) {
             System.err.println("Error handling range request: " + e.getMessage());
@@ -118,26 +295,41 @@ public class StreamingMediaController {
         }
     }
     
+    /**
+     * Headers-only response that lets the proxy send the file, or null when offload is off
+     */
+    private ResponseEntity<StreamingResponseBody> offloadResponse(MediaFile mediaFile, HttpServletRequest request,
+                                                                  String etag, long lastModified) {
+        HttpHeaders redirect = sendfileOffload != null
+            ? sendfileOffload.redirectHeaders(mediaFile.getFilePath(), request.getHeader("If-Range")) : null;
+        if (redirect == null) {
+            return null;
+        }
+        return ResponseEntity.ok()
+            .headers(redirect)
+            .header("Accept-Ranges", "bytes")
+            .headers(ConditionalRequests.validators(etag, lastModified))
+            .contentType(MediaType.parseMediaType(getContentType(mediaFile)))
+            .build();
+    }
+    
     /**
      * Handle full file requests
      */
-    private ResponseEntity<InputStreamResource> handleFullFileRequest(MediaFile mediaFile) {
+    private ResponseEntity<StreamingResponseBody> handleFullFileRequest(MediaFile mediaFile,
+                                                                        String etag, long lastModified) {
         try {
-            InputStream inputStream = fileStorageService.getFileInputStream(mediaFile.getFilePath());
-            long fileSize = fileStorageService.getFileSize(mediaFile.getFilePath());
+            String filePath = mediaFile.getFilePath();
+            long fileSize = fileStorageService.getFileSize(filePath);
             
-            InputStreamResource resource = new InputStreamResource(inputStream) {
-                @Override
-                public long contentLength() {
-                    return fileSize;
-                }
-            };
+            StreamingResponseBody body = out -> fileStorageService.transferRange(filePath, 0, fileSize, out);
             
             return ResponseEntity.ok()
                 .header("Accept-Ranges", "bytes")
                 .header("Content-Length", String.valueOf(fileSize))
+                .headers(ConditionalRequests.validators(etag, lastModified))
                 .contentType(MediaType.parseMediaType(getContentType(mediaFile)))
-                .body(resource);
+                .body(body);
                 
         } catch (IOException e) {
             System.err.println("Error streaming full file: " + e.getMessage());
@@ -193,7 +385,7 @@ public class StreamingMediaController {
     /**
      * Fall back to database streaming for small files
      */
-    private ResponseEntity<InputStreamResource> streamFromDatabase(int mediaFileId) {
+    private ResponseEntity<StreamingResponseBody> streamFromDatabase(int mediaFileId) {
         try {
             // Use existing media streaming endpoint
             return ResponseEntity.status(HttpStatus.FOUND)
@@ -205,6 +397,220 @@ public class StreamingMediaController {
         }
     }
     
+    /**
+     * Block cache, file handle cache and rendition cache counters for sizing lexicon.storage.cache-size
+     * GET /api/stream/cache/stats
+     */
+    @GetMapping("/cache/stats")
+    public ResponseEntity<Map<String, Object>> getCacheStats() {
+        Map<String, Object> response = new HashMap<>();
+        response.put("blockCache", fileStorageService.getBlockCache().getStats());
+        
+        OpenFileCache openFiles = fileStorageService.getOpenFileCache();
+        Map<String, Object> handles = new HashMap<>();
+        handles.put("open", openFiles.size());
+        handles.put("hits", openFiles.getHits());
+        handles.put("misses", openFiles.getMisses());
+        response.put("openFiles", handles);
+        
+        Map<String, Object> readAhead = fileStorageService.getReadAheadStats();
+        if (readAhead != null) {
+            response.put("readAhead", readAhead);
+        }
+        
+        response.put("renditions", audioRenditionService.getStats());
+        
+        Map<String, Object> fastTier = fileStorageService.getFastTierStats();
+        if (fastTier != null) {
+            response.put("fastTier", fastTier);
+        }
+        
+        Map<String, Object> volumes = fileStorageService.getVolumeStats();
+        if (volumes != null) {
+            response.put("volumes", volumes);
+        }
+        
+        return ResponseEntity.ok(response);
+    }
+    
+    /**
+     * Waveform peaks for seek bars (audiowaveform .dat, 8-bit min/max pairs)
+     * GET /api/stream/{id}/peaks
+     */
+    @GetMapping("/{mediaFileId}/peaks")
+    public ResponseEntity<byte[]> getPeaks(@PathVariable int mediaFileId) {
+        MediaFile mediaFile = mediaManager.getMediaFileById(mediaFileId);
+        if (mediaFile == null || mediaFile.getFilePath() == null || mediaFile.getFilePath().isEmpty()
+                || (mediaFile.getMediaType() != lexicon.object.MediaType.MUSIC
+                    && mediaFile.getMediaType() != lexicon.object.MediaType.AUDIOBOOK)) {
+            return ResponseEntity.notFound().build();
+        }
+        
+        Path peaks = waveformService.getPeaks(mediaFile.getFilePath());
+        if (peaks == null) {
+            // Generation has been queued
+            return ResponseEntity.status(HttpStatus.SERVICE_UNAVAILABLE)
+                .header(HttpHeaders.RETRY_AFTER, "5")
+                .build();
+        }
+        try {
+            return ResponseEntity.ok()
+                .contentType(MediaType.APPLICATION_OCTET_STREAM)
+                .header(HttpHeaders.CACHE_CONTROL, "public, max-age=31536000, immutable")
+                .body(Files.readAllBytes(peaks));
+        } catch (IOException e) {
+            return ResponseEntity.status(HttpStatus.INTERNAL_SERVER_ERROR).build();
+        }
+    }
+    
+    /**
+     * Poster frame for a video
+     * GET /api/stream/{id}/poster
+     */
+    @GetMapping("/{mediaFileId}/poster")
+    public ResponseEntity<StreamingResponseBody> getPoster(@PathVariable int mediaFileId) {
+        return thumbnailResponse(mediaFileId, thumbnailService.getPoster(mediaFileId), MediaType.IMAGE_JPEG);
+    }
+
+    /**
+     * WebVTT index of scrub-preview thumbnails (cues point at cells in the sprite sheets below)
+     * GET /api/stream/{id}/sprites
+     */
+    @GetMapping("/{mediaFileId}/sprites")
+    public ResponseEntity<StreamingResponseBody> getSprites(@PathVariable int mediaFileId) {
+        return thumbnailResponse(mediaFileId, thumbnailService.getSpritesVtt(mediaFileId),
+            MediaType.parseMediaType("text/vtt;charset=UTF-8"));
+    }
+
+    /**
+     * A sprite sheet referenced by the sprites index
+     * GET /api/stream/{id}/sprites/{fileName}
+     */
+    @GetMapping("/{mediaFileId}/sprites/{fileName:.+}")
+    public ResponseEntity<StreamingResponseBody> getSpriteSheet(
+            @PathVariable int mediaFileId,
+            @PathVariable String fileName) {
+        Path sheet = thumbnailService.resolveSprite(mediaFileId, fileName);
+        if (sheet == null) {
+            return ResponseEntity.notFound().build();
+        }
+        return thumbnailResponse(mediaFileId, sheet, MediaType.IMAGE_JPEG);
+    }
+
+    /**
+     * Serve a generated thumbnail file, queueing generation if the video has none yet
+     */
+    private ResponseEntity<StreamingResponseBody> thumbnailResponse(int mediaFileId, Path file, MediaType contentType) {
+        if (!thumbnailService.isReady(mediaFileId)) {
+            MediaFile mediaFile = mediaManager.getMediaFileById(mediaFileId);
+            if (mediaFile == null || mediaFile.getMediaType() != lexicon.object.MediaType.VIDEO
+                    || thumbnailService.hasFailed(mediaFileId)) {
+                return ResponseEntity.notFound().build();
+            }
+            thumbnailService.generateAsync(mediaFile);
+            return ResponseEntity.status(HttpStatus.SERVICE_UNAVAILABLE)
+                .header(HttpHeaders.RETRY_AFTER, "10")
+                .build();
+        }
+
+        try {
+            long size = Files.size(file);
+            StreamingResponseBody body = outputStream -> Files.copy(file, outputStream);
+            return ResponseEntity.ok()
+                .contentType(contentType)
+                .contentLength(size)
+                .header(HttpHeaders.CACHE_CONTROL, "public, max-age=31536000, immutable")
+                .body(body);
+        } catch (IOException e) {
+            return ResponseEntity.notFound().build();
+        }
+    }
+
+    /**
+     * Progress and ETA of moving database-stored media onto the file system
+     * GET /api/stream/migration/status
+     */
+    @GetMapping("/migration/status")
+    public ResponseEntity<Map<String, Object>> getMigrationStatus() {
+        return ResponseEntity.ok(fileDataMigrator.getStatus());
+    }
+    
+    /**
+     * HLS master playlist, packaging the video on first request
+     * GET /api/stream/{id}/hls/master.m3u8
+     */
+    @GetMapping("/{mediaFileId}/hls/master.m3u8")
+    public ResponseEntity<StreamingResponseBody> getHlsMaster(@PathVariable int mediaFileId) {
+        MediaFile mediaFile = mediaManager.getMediaFileById(mediaFileId);
+        if (mediaFile == null || mediaFile.getMediaType() != lexicon.object.MediaType.VIDEO) {
+            return ResponseEntity.notFound().build();
+        }
+        
+        HlsPackagingService.Status status = hlsPackagingService.requestPackaging(mediaFile);
+        Path master = hlsPackagingService.getMasterPlaylist(mediaFileId);
+        if (!Files.exists(master)) {
+            if (status == HlsPackagingService.Status.PACKAGING) {
+                // First segments are usually ready within a few seconds
+                return ResponseEntity.status(HttpStatus.SERVICE_UNAVAILABLE)
+                    .header(HttpHeaders.RETRY_AFTER, "3")
+                    .build();
+            }
+            return ResponseEntity.notFound().build();
+        }
+        return hlsFileResponse(master, status == HlsPackagingService.Status.READY);
+    }
+    
+    /**
+     * Rendition playlist or segment of an HLS package
+     * GET /api/stream/{id}/hls/{variant}/{fileName}
+     */
+    @GetMapping("/{mediaFileId}/hls/{variant}/{fileName:.+}")
+    public ResponseEntity<StreamingResponseBody> getHlsFile(
+            @PathVariable int mediaFileId,
+            @PathVariable String variant,
+            @PathVariable String fileName) {
+        Path file = hlsPackagingService.resolve(mediaFileId, variant, fileName);
+        if (file == null || !Files.exists(file)) {
+            return ResponseEntity.notFound().build();
+        }
+        boolean complete = hlsPackagingService.getStatus(mediaFileId) == HlsPackagingService.Status.READY;
+        return hlsFileResponse(file, complete);
+    }
+    
+    /**
+     * HLS packaging status
+     * GET /api/stream/{id}/hls/status
+     */
+    @GetMapping("/{mediaFileId}/hls/status")
+    public ResponseEntity<Map<String, Object>> getHlsStatus(@PathVariable int mediaFileId) {
+        Map<String, Object> response = new HashMap<>();
+        response.put("mediaFileId", mediaFileId);
+        response.put("status", hlsPackagingService.getStatus(mediaFileId).name());
+        response.put("masterUrl", "/api/stream/" + mediaFileId + "/hls/master.m3u8");
+        return ResponseEntity.ok(response);
+    }
+    
+    /**
+     * Segments never change once written; playlists are only cacheable once packaging has finished
+     */
+    private ResponseEntity<StreamingResponseBody> hlsFileResponse(Path file, boolean packageComplete) {
+        boolean playlist = file.getFileName().toString().endsWith(".m3u8");
+        String cacheControl = !playlist ? "public, max-age=31536000, immutable"
+            : packageComplete ? "public, max-age=3600" : "no-cache";
+        
+        try {
+            long size = Files.size(file);
+            StreamingResponseBody body = outputStream -> Files.copy(file, outputStream);
+            return ResponseEntity.ok()
+                .contentType(MediaType.parseMediaType(playlist ? "application/vnd.apple.mpegurl" : "video/mp2t"))
+                .contentLength(size)
+                .header(HttpHeaders.CACHE_CONTROL, cacheControl)
+                .body(body);
+        } catch (IOException e) {
+            return ResponseEntity.notFound().build();
+        }
+    }
+    
     /**
      * Get media file info for client-side streaming setup
      */
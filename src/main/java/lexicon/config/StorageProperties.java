@@ -27,6 +27,46 @@ public class StorageProperties {
     private int transcodingJobs = 2; // Parallel transcoding jobs
     private long cacheSize = 512 * 1024 * 1024; // 512MB cache
     
+    // Streaming file handle cache
+    private int openFileCacheSize = 64; // Max open file channels
+    private int openFileIdleSeconds = 60; // Close handles unused this long
+    
+    // Fast staging tier in front of basePath (disabled when fastTierPath is unset)
+    private String fastTierPath;
+    private long fastTierBudget = 50L * 1024 * 1024 * 1024; // 50GB
+    private int fastTierPromoteAfterReads = 3; // Streams before a base file is promoted
+    
+    // Read-ahead for clients walking a file with consecutive range requests
+    private int readAheadMaxBlocks = 32; // 256KB blocks, 0 disables
+    private int readAheadThreads = 2;
+    
+    // HLS packaging ladder as height:kbps pairs, and segment duration
+    private String hlsLadder = "360:800,720:2800,1080:5000";
+    private int hlsSegmentSeconds = 6;
+    
+    // On-the-fly audio renditions (?quality=low), cached under the cache path
+    private int renditionLowKbps = 64;
+    private long renditionCacheBudget = 2L * 1024 * 1024 * 1024; // 2GB
+    
+    // Background move of file_data rows onto the file system
+    private boolean fileDataMigrationEnabled = true;
+    private long fileDataMigrationBytesPerSecond = 16 * 1024 * 1024; // 16MB/s, 0 = unthrottled
+    private int fileDataMigrationStartDelaySeconds = 60;
+    
+    // Content-addressed storage: one blob per SHA-256 digest under basePath/blobs, shared by identical uploads
+    private boolean contentAddressed = false;
+    
+    // Extra storage volumes besides basePath (comma-separated roots, disabled when unset)
+    private String volumes;
+    private long volumeReserveBytes = 5L * 1024 * 1024 * 1024; // 5GB kept free on every volume
+    private int volumeMirrorAfterReads = 0; // Plays (not range requests) before a hot file is mirrored onto a second volume, 0 disables
+    private int volumeRebalanceIntervalMinutes = 60; // 0 disables
+    private long volumeRebalanceBytesPerRun = 10L * 1024 * 1024 * 1024; // 10GB
+    
+    // Hand media bytes to the proxy in front: none, x-accel-redirect (nginx) or x-sendfile
+    private String offloadMode = "none";
+    private String offloadPrefix = "/lexicon-internal/"; // Internal nginx location mapped onto basePath
+    
     // Getters and setters
     public String getBasePath() { return basePath; }
     public void setBasePath(String basePath) { this.basePath = basePath; }
@@ -74,6 +114,72 @@ public class StorageProperties {
     public long getCacheSize() { return cacheSize; }
     public void setCacheSize(long cacheSize) { this.cacheSize = cacheSize; }
     
+    public int getOpenFileCacheSize() { return openFileCacheSize; }
+    public void setOpenFileCacheSize(int openFileCacheSize) { this.openFileCacheSize = openFileCacheSize; }
+    
+    public int getOpenFileIdleSeconds() { return openFileIdleSeconds; }
+    public void setOpenFileIdleSeconds(int openFileIdleSeconds) { this.openFileIdleSeconds = openFileIdleSeconds; }
+    
+    public String getFastTierPath() { return fastTierPath; }
+    public void setFastTierPath(String fastTierPath) { this.fastTierPath = fastTierPath; }
+    
+    public long getFastTierBudget() { return fastTierBudget; }
+    public void setFastTierBudget(long fastTierBudget) { this.fastTierBudget = fastTierBudget; }
+    
+    public int getFastTierPromoteAfterReads() { return fastTierPromoteAfterReads; }
+    public void setFastTierPromoteAfterReads(int fastTierPromoteAfterReads) { this.fastTierPromoteAfterReads = fastTierPromoteAfterReads; }
+    
+    public int getReadAheadMaxBlocks() { return readAheadMaxBlocks; }
+    public void setReadAheadMaxBlocks(int readAheadMaxBlocks) { this.readAheadMaxBlocks = readAheadMaxBlocks; }
+    
+    public int getReadAheadThreads() { return readAheadThreads; }
+    public void setReadAheadThreads(int readAheadThreads) { this.readAheadThreads = readAheadThreads; }
+    
+    public String getHlsLadder() { return hlsLadder; }
+    public void setHlsLadder(String hlsLadder) { this.hlsLadder = hlsLadder; }
+    
+    public int getHlsSegmentSeconds() { return hlsSegmentSeconds; }
+    public void setHlsSegmentSeconds(int hlsSegmentSeconds) { this.hlsSegmentSeconds = hlsSegmentSeconds; }
+    
+    public int getRenditionLowKbps() { return renditionLowKbps; }
+    public void setRenditionLowKbps(int renditionLowKbps) { this.renditionLowKbps = renditionLowKbps; }
+    
+    public long getRenditionCacheBudget() { return renditionCacheBudget; }
+    public void setRenditionCacheBudget(long renditionCacheBudget) { this.renditionCacheBudget = renditionCacheBudget; }
+    
+    public boolean isFileDataMigrationEnabled() { return fileDataMigrationEnabled; }
+    public void setFileDataMigrationEnabled(boolean fileDataMigrationEnabled) { this.fileDataMigrationEnabled = fileDataMigrationEnabled; }
+    
+    public long getFileDataMigrationBytesPerSecond() { return fileDataMigrationBytesPerSecond; }
+    public void setFileDataMigrationBytesPerSecond(long fileDataMigrationBytesPerSecond) { this.fileDataMigrationBytesPerSecond = fileDataMigrationBytesPerSecond; }
+    
+    public int getFileDataMigrationStartDelaySeconds() { return fileDataMigrationStartDelaySeconds; }
+    public void setFileDataMigrationStartDelaySeconds(int fileDataMigrationStartDelaySeconds) { this.fileDataMigrationStartDelaySeconds = fileDataMigrationStartDelaySeconds; }
+    
+    public boolean isContentAddressed() { return contentAddressed; }
+    public void setContentAddressed(boolean contentAddressed) { this.contentAddressed = contentAddressed; }
+    
+    public String getVolumes() { return volumes; }
+    public void setVolumes(String volumes) { this.volumes = volumes; }
+    
+    public long getVolumeReserveBytes() { return volumeReserveBytes; }
+    public void setVolumeReserveBytes(long volumeReserveBytes) { this.volumeReserveBytes = volumeReserveBytes; }
+    
+    public int getVolumeMirrorAfterReads() { return volumeMirrorAfterReads; }
+    public void setVolumeMirrorAfterReads(int volumeMirrorAfterReads) { this.volumeMirrorAfterReads = volumeMirrorAfterReads; }
+    
+    public int getVolumeRebalanceIntervalMinutes() { return volumeRebalanceIntervalMinutes; }
+    public void setVolumeRebalanceIntervalMinutes(int volumeRebalanceIntervalMinutes) { this.volumeRebalanceIntervalMinutes = volumeRebalanceIntervalMinutes; }
+    
+    public long getVolumeRebalanceBytesPerRun() { return volumeRebalanceBytesPerRun; }
+    public void setVolumeRebalanceBytesPerRun(long volumeRebalanceBytesPerRun) { this.volumeRebalanceBytesPerRun = volumeRebalanceBytesPerRun; }
+    
+    public String getOffloadMode() { return offloadMode; }
+    public void setOffloadMode(String offloadMode) { this.offloadMode = offloadMode; }
+    
+    public String getOffloadPrefix() { return offloadPrefix; }
+    public void setOffloadPrefix(String offloadPrefix) { this.offloadPrefix = offloadPrefix; }
+    
     // Path getters for convenience
     public String getSmallFilesPath() { return basePath + "/small-files"; }
     public String getLargeFilesPath() { return basePath + "/large-files"; }  
@@ -36,6 +36,27 @@ public class HSQLMediaDatabase implements IMediaDatabase {
         config.setMaxLifetime(300000);
         config.setPoolName("media-db");
         this.dataSource = new HikariDataSource(config);
+        migrateSchema();
+    }
+    
+    /**
+     * Add columns introduced after the original schema.
+     * Runs from the constructor so every instance (including tests) sees them.
+     */
+    private void migrateSchema() {
+        try (Connection conn = getConnection();
+             Statement stmt = conn.createStatement()) {
+            stmt.execute("ALTER TABLE media_files ADD COLUMN IF NOT EXISTS etag VARCHAR(100)");
+            stmt.execute("ALTER TABLE media_files ADD COLUMN IF NOT EXISTS duration_ms BIGINT");
+            stmt.execute("ALTER TABLE media_files ADD COLUMN IF NOT EXISTS bit_rate BIGINT");
+            stmt.execute("ALTER TABLE media_files ADD COLUMN IF NOT EXISTS video_codec VARCHAR(50)");
+            stmt.execute("ALTER TABLE media_files ADD COLUMN IF NOT EXISTS audio_codec VARCHAR(50)");
+            stmt.execute("ALTER TABLE media_files ADD COLUMN IF NOT EXISTS width INT");
+            stmt.execute("ALTER TABLE media_files ADD COLUMN IF NOT EXISTS height INT");
+        } catch (SQLException e) {
+            // Table not created yet - schema.sql includes the column
+            System.err.println("Media schema migration skipped: " + e.getMessage());
+        }
     }
     
     @PreDestroy
@@ -69,7 +90,7 @@ public class HSQLMediaDatabase implements IMediaDatabase {
     @Override
     public void addMediaFile(MediaFile mediaFile) {
         try (Connection conn = getConnection()) {
-            String sql = "INSERT INTO media_files (id, filename, original_filename, content_type, file_size, file_path, uploaded_by, upload_date, title, description, is_public, media_type, source_url) VALUES (?, ?, ?, ?, ?, ?, ?, ?, ?, ?, ?, ?, ?)";
+            String sql = "INSERT INTO media_files (id, filename, original_filename, content_type, file_size, file_path, uploaded_by, upload_date, title, description, is_public, media_type, source_url, etag, duration_ms, bit_rate, video_codec, audio_codec, width, height) VALUES (?, ?, ?, ?, ?, ?, ?, ?, ?, ?, ?, ?, ?, ?, ?, ?, ?, ?, ?, ?)";
             try (PreparedStatement stmt = conn.prepareStatement(sql)) {
                 stmt.setInt(1, mediaFile.getId());
                 stmt.setString(2, mediaFile.getFilename());
@@ -84,6 +105,8 @@ public class HSQLMediaDatabase implements IMediaDatabase {
                 stmt.setBoolean(11, mediaFile.isPublic());
                 stmt.setString(12, mediaFile.getMediaType() != null ? mediaFile.getMediaType().name() : "OTHER");
                 stmt.setString(13, mediaFile.getSourceUrl());
+                stmt.setString(14, mediaFile.getEtag());
+                setProbedMetadata(stmt, 15, mediaFile);
                 stmt.executeUpdate();
             }
         } catch (SQLException e) {
@@ -170,7 +193,7 @@ public class HSQLMediaDatabase implements IMediaDatabase {
     @Override
     public void updateMediaFile(MediaFile mediaFile) {
         try (Connection conn = getConnection()) {
-            String sql = "UPDATE media_files SET filename = ?, original_filename = ?, content_type = ?, file_size = ?, file_path = ?, title = ?, description = ?, is_public = ?, media_type = ? WHERE id = ?";
+            String sql = "UPDATE media_files SET filename = ?, original_filename = ?, content_type = ?, file_size = ?, file_path = ?, title = ?, description = ?, is_public = ?, media_type = ?, etag = ?, duration_ms = ?, bit_rate = ?, video_codec = ?, audio_codec = ?, width = ?, height = ? WHERE id = ?";
             try (PreparedStatement stmt = conn.prepareStatement(sql)) {
                 stmt.setString(1, mediaFile.getFilename());
                 stmt.setString(2, mediaFile.getOriginalFilename());
@@ -181,7 +204,23 @@ public class HSQLMediaDatabase implements IMediaDatabase {
                 stmt.setString(7, mediaFile.getDescription());
                 stmt.setBoolean(8, mediaFile.isPublic());
                 stmt.setString(9, mediaFile.getMediaType() != null ? mediaFile.getMediaType().name() : MediaType.OTHER.name());
-                stmt.setInt(10, mediaFile.getId());
+                stmt.setString(10, mediaFile.getEtag());
+                setProbedMetadata(stmt, 11, mediaFile);
+                stmt.setInt(17, mediaFile.getId());
+                stmt.executeUpdate();
+            }
+        } catch (SQLException e) {
+            e.printStackTrace();
+        }
+    }
+    
+    @Override
+    public void updateProbedMetadata(MediaFile mediaFile) {
+        try (Connection conn = getConnection()) {
+            String sql = "UPDATE media_files SET duration_ms = ?, bit_rate = ?, video_codec = ?, audio_codec = ?, width = ?, height = ? WHERE id = ?";
+            try (PreparedStatement stmt = conn.prepareStatement(sql)) {
+                setProbedMetadata(stmt, 1, mediaFile);
+                stmt.setInt(7, mediaFile.getId());
                 stmt.executeUpdate();
             }
         } catch (SQLException e) {
@@ -277,6 +316,105 @@ public class HSQLMediaDatabase implements IMediaDatabase {
         return null;
     }
     
+    @Override
+    public long getFileDataLength(int mediaFileId) {
+        try (Connection conn = getConnection()) {
+            String sql = "SELECT OCTET_LENGTH(data) FROM file_data WHERE media_file_id = ?";
+            try (PreparedStatement stmt = conn.prepareStatement(sql)) {
+                stmt.setInt(1, mediaFileId);
+                try (ResultSet rs = stmt.executeQuery()) {
+                    if (rs.next()) {
+                        long length = rs.getLong(1);
+                        return rs.wasNull() ? -1 : length;
+                    }
+                }
+            }
+        } catch (SQLException e) {
+            e.printStackTrace();
+        }
+        return -1;
+    }
+    
+    /**
+     * Read part of the stored bytes; only the slice leaves the database
+     */
+    @Override
+    public byte[] getFileDataRange(int mediaFileId, long start, int length) {
+        try (Connection conn = getConnection()) {
+            String sql = "SELECT SUBSTRING(data FROM ? FOR ?) FROM file_data WHERE media_file_id = ?";
+            try (PreparedStatement stmt = conn.prepareStatement(sql)) {
+                stmt.setLong(1, start + 1); // SQL positions are 1-based
+                stmt.setInt(2, length);
+                stmt.setInt(3, mediaFileId);
+                try (ResultSet rs = stmt.executeQuery()) {
+                    if (rs.next()) {
+                        return rs.getBytes(1);
+                    }
+                }
+            }
+        } catch (SQLException e) {
+            e.printStackTrace();
+        }
+        return null;
+    }
+    
+    @Override
+    public List<Integer> getMediaFileIdsWithFileData() {
+        List<Integer> ids = new ArrayList<>();
+        try (Connection conn = getConnection()) {
+            String sql = "SELECT media_file_id FROM file_data ORDER BY media_file_id";
+            try (PreparedStatement stmt = conn.prepareStatement(sql);
+                 ResultSet rs = stmt.executeQuery()) {
+                while (rs.next()) {
+                    ids.add(rs.getInt(1));
+                }
+            }
+        } catch (SQLException e) {
+            e.printStackTrace();
+        }
+        return ids;
+    }
+    
+    /**
+     * Point a media file at its copy on the file system and drop the stored bytes, atomically
+     */
+    @Override
+    public boolean moveFileDataToFilePath(int mediaFileId, String filePath, String etag) {
+        try (Connection conn = getConnection()) {
+            conn.setAutoCommit(false);
+            
+            try {
+                String updateSql = "UPDATE media_files SET file_path = ?, etag = ? WHERE id = ?";
+                int updated;
+                try (PreparedStatement stmt = conn.prepareStatement(updateSql)) {
+                    stmt.setString(1, filePath);
+                    stmt.setString(2, etag);
+                    stmt.setInt(3, mediaFileId);
+                    updated = stmt.executeUpdate();
+                }
+                String deleteSql = "DELETE FROM file_data WHERE media_file_id = ?";
+                try (PreparedStatement stmt = conn.prepareStatement(deleteSql)) {
+                    stmt.setInt(1, mediaFileId);
+                    stmt.executeUpdate();
+                }
+                if (updated != 1) {
+                    conn.rollback();
+                    return false;
+                }
+                conn.commit();
+                return true;
+            } catch (SQLException e) {
+                conn.rollback();
+                e.printStackTrace();
+            } finally {
+                conn.setAutoCommit(true);
+            }
+        } catch (SQLException e) {
+            e.printStackTrace();
+        }
+        return false;
+    }
+    
     @Override
     public void deleteFileData(int mediaFileId) {
         try (Connection conn = getConnection()) {
@@ -319,10 +457,37 @@ public class HSQLMediaDatabase implements IMediaDatabase {
         }
         
         mediaFile.setSourceUrl(rs.getString("source_url"));
+        mediaFile.setEtag(rs.getString("etag"));
+        mediaFile.setDurationMs(rs.getLong("duration_ms"));
+        mediaFile.setBitrate(rs.getLong("bit_rate"));
+        mediaFile.setVideoCodec(rs.getString("video_codec"));
+        mediaFile.setAudioCodec(rs.getString("audio_codec"));
+        mediaFile.setWidth(rs.getInt("width"));
+        mediaFile.setHeight(rs.getInt("height"));
         
         return mediaFile;
     }
     
+    /**
+     * Bind the ffprobe columns (six parameters from firstIndex); unknown values are stored as NULL
+     */
+    private void setProbedMetadata(PreparedStatement stmt, int firstIndex, MediaFile mediaFile) throws SQLException {
+        setPositiveOrNull(stmt, firstIndex, mediaFile.getDurationMs(), Types.BIGINT);
+        setPositiveOrNull(stmt, firstIndex + 1, mediaFile.getBitrate(), Types.BIGINT);
+        stmt.setString(firstIndex + 2, mediaFile.getVideoCodec());
+        stmt.setString(firstIndex + 3, mediaFile.getAudioCodec());
+        setPositiveOrNull(stmt, firstIndex + 4, mediaFile.getWidth(), Types.INTEGER);
+        setPositiveOrNull(stmt, firstIndex + 5, mediaFile.getHeight(), Types.INTEGER);
+    }
+    
+    private void setPositiveOrNull(PreparedStatement stmt, int index, long value, int sqlType) throws SQLException {
+        if (value > 0) {
+            stmt.setLong(index, value);
+        } else {
+            stmt.setNull(index, sqlType);
+        }
+    }
+    
     // ==================== Playback Position Tracking ====================
     
     @Override
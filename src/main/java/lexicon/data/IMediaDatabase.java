@@ -19,6 +19,7 @@ public interface IMediaDatabase {
     List<MediaFile> getAllPublicMediaFiles();
     List<MediaFile> searchMediaFiles(String searchTerm);
     void updateMediaFile(MediaFile mediaFile);
+    void updateProbedMetadata(MediaFile mediaFile); // Duration, bit rate, codecs and dimensions only
     void deleteMediaFile(int mediaFileId);
     List<MediaFile> getRecentMediaFiles(int limit);
     
@@ -26,6 +27,10 @@ public interface IMediaDatabase {
     void storeFileData(int mediaFileId, byte[] fileData);
     void storeFileDataStreaming(int mediaFileId, InputStream inputStream, long fileSize);
     byte[] getFileData(int mediaFileId);
+    long getFileDataLength(int mediaFileId); // -1 when no data is stored
+    byte[] getFileDataRange(int mediaFileId, long start, int length);
+    List<Integer> getMediaFileIdsWithFileData();
+    boolean moveFileDataToFilePath(int mediaFileId, String filePath, String etag); // One transaction
     void deleteFileData(int mediaFileId);
     
     // Playback position tracking (for audiobooks)
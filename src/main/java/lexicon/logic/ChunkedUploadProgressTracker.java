@@ -35,7 +35,7 @@ public class ChunkedUploadProgressTracker {
             this.filename = upload.getOriginalFilename();
             this.totalSize = upload.getTotalSize();
             this.totalChunks = upload.getTotalChunks();
-            this.uploadedChunks = upload.getUploadedChunks().size();
+            this.uploadedChunks = upload.getUploadedChunkCount();
             this.progress = upload.getProgress();
             this.status = upload.getStatus().toString().toLowerCase();
         }
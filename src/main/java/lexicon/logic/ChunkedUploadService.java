@@ -16,25 +16,33 @@ import org.springframework.web.multipart.MultipartFile;
 import jakarta.annotation.PostConstruct;
 
 import java.io.*;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
 import java.nio.file.Files;
 import java.nio.file.Path;
 import java.nio.file.Paths;
+import java.nio.file.StandardOpenOption;
+import java.security.DigestInputStream;
 import java.security.MessageDigest;
 import java.security.NoSuchAlgorithmException;
 import java.time.LocalDateTime;
 import java.util.Comparator;
 import java.util.HashMap;
+import java.util.HexFormat;
 import java.util.List;
 import java.util.Map;
+import java.util.Set;
 import java.util.UUID;
 import java.util.concurrent.ConcurrentHashMap;
+import java.util.regex.Pattern;
 import java.util.stream.Collectors;
 import java.util.stream.Stream;
 import org.springframework.scheduling.annotation.Scheduled;
 
 /**
  * Service for handling chunked file uploads
- * Manages temporary chunk storage and assembly into final files
+ * Chunks are written straight to their offset in a preallocated file, which is
+ * renamed into storage on finalization
  */
 @Service
 public class ChunkedUploadService {
@@ -51,9 +59,23 @@ public class ChunkedUploadService {
     @Autowired
     private UploadProgressService uploadProgressService;
     
-    // In-memory storage for upload sessions (could be moved to database for persistence)
+    // Upload sessions, also journaled in their directories and recovered on startup
     private final Map<String, ChunkedUpload> activeUploads = new ConcurrentHashMap<>();
     
+    // SHA-256 of each upload's file so far, fed as chunks arrive
+    private final Map<String, RunningFileDigest> fileDigests = new ConcurrentHashMap<>();
+    
+    // uploadId:chunkNumber of chunks being written, so one slot has one writer at a time
+    private final Set<String> chunksInFlight = ConcurrentHashMap.newKeySet();
+    
+    // Whole file being uploaded, inside the upload's chunk directory
+    static final String DATA_FILE = "data.part";
+    
+    private static final Pattern SHA256_HEX = Pattern.compile("[0-9a-fA-F]{64}");
+    
+    // Copy buffer for chunk bodies, one per request thread
+    private static final ThreadLocal<byte[]> CHUNK_BUFFER = ThreadLocal.withInitial(() -> new byte[64 * 1024]);
+    
     public ChunkedUploadService() {
         // Create temp directory if it doesn't exist
         // Note: Initialization will be done in @PostConstruct method
@@ -69,11 +91,52 @@ public class ChunkedUploadService {
         } catch (IOException e) {
             throw new RuntimeException("Failed to create temporary directories: " + e.getMessage());
         }
+        recoverUploads();
+    }
+    
+    /**
+     * Bring back upload sessions from before a restart, so clients can ask /missing/{uploadId}
+     * and send only the chunks the server does not have
+     */
+    void recoverUploads() {
+        Path chunksRoot = Paths.get(storageProperties.getTempChunksPath());
+        List<Path> uploadDirs;
+        try (Stream<Path> entries = Files.list(chunksRoot)) {
+            uploadDirs = entries.filter(Files::isDirectory).collect(Collectors.toList());
+        } catch (IOException e) {
+            System.err.println("⚠️ Could not look for interrupted uploads: " + e.getMessage());
+            return;
+        }
+        
+        int recovered = 0;
+        for (Path uploadDir : uploadDirs) {
+            String uploadId = uploadDir.getFileName().toString();
+            try {
+                ChunkedUpload upload = UploadSessionJournal.recover(uploadDir, dataFile(uploadId));
+                if (upload == null || !uploadId.equals(upload.getUploadId())) {
+                    continue; // Left for the orphaned temp cleanup
+                }
+                activeUploads.put(uploadId, upload);
+                fileDigests.put(uploadId, new RunningFileDigest());
+                recovered++;
+                if (upload.isComplete()) {
+                    // Interrupted between the last chunk and finalization; hashing may take a while
+                    Thread completion = new Thread(() -> completeUpload(upload), "upload-recovery");
+                    completion.setDaemon(true);
+                    completion.start();
+                }
+            } catch (IOException e) {
+                System.err.println("⚠️ Could not recover upload " + uploadId + ": " + e.getMessage());
+            }
+        }
+        if (recovered > 0) {
+            System.out.println("♻️ Recovered " + recovered + " interrupted chunked upload(s)");
+        }
     }
 
     /**
-     * Scheduled cleanup: delete temp chunk dirs and assembled files older than 24 hours.
-     * Catches uploads that were orphaned by server restarts or finalization failures.
+     * Scheduled cleanup: delete temp upload dirs and files older than 24 hours.
+     * Catches uploads abandoned by their clients or left behind by finalization failures.
      * Runs every hour.
      */
     @Scheduled(fixedRate = 3_600_000)
@@ -83,6 +146,10 @@ public class ChunkedUploadService {
         LocalDateTime cutoff = LocalDateTime.now().minusHours(24);
         try (Stream<Path> entries = Files.list(chunksRoot)) {
             List<Path> stale = entries.filter(p -> {
+                ChunkedUpload active = activeUploads.get(p.getFileName().toString());
+                if (active != null && active.getLastActivity().isAfter(cutoff)) {
+                    return false; // Still being uploaded, however long ago it started
+                }
                 try {
                     LocalDateTime modified = LocalDateTime.ofInstant(
                         Files.getLastModifiedTime(p).toInstant(),
@@ -103,6 +170,8 @@ public class ChunkedUploadService {
                     } else {
                         Files.deleteIfExists(staleEntry);
                     }
+                    activeUploads.remove(staleEntry.getFileName().toString());
+                    fileDigests.remove(staleEntry.getFileName().toString());
                     System.out.println("🧹 Cleaned up stale temp entry: " + staleEntry.getFileName());
                 } catch (IOException e) {
                     System.err.println("⚠️ Could not delete stale temp entry " + staleEntry + ": " + e.getMessage());
@@ -138,10 +207,15 @@ public class ChunkedUploadService {
         
         // Store in active uploads
         activeUploads.put(uploadId, upload);
+        fileDigests.put(uploadId, new RunningFileDigest());
         
-        // Create directory for this upload's chunks
+        // Create directory for this upload and reserve the whole file, so chunks can land in any order
         try {
             Files.createDirectories(Paths.get(storageProperties.getTempChunksPath(), uploadId));
+            try (RandomAccessFile data = new RandomAccessFile(dataFile(uploadId).toFile(), "rw")) {
+                data.setLength(totalSize);
+            }
+            UploadSessionJournal.writeSession(uploadDir(uploadId), upload);
         } catch (IOException e) {
             throw new RuntimeException("Failed to create chunk directory for upload: " + e.getMessage());
         }
@@ -152,10 +226,25 @@ public class ChunkedUploadService {
     }
     
     /**
-     * Upload a single chunk
+     * Upload a single chunk sent as a multipart part. The container has already spooled
+     * the part, so prefer {@link #uploadChunk(String, int, InputStream, long, String)}.
      */
     public boolean uploadChunk(String uploadId, int chunkNumber, MultipartFile chunkFile, String checksum) 
             throws IOException {
+        try (InputStream input = chunkFile.getInputStream()) {
+            return uploadChunk(uploadId, chunkNumber, input, chunkFile.getSize(), checksum);
+        }
+    }
+    
+    /**
+     * Upload a single chunk, streaming its body straight to its place in the upload file
+     * Safe to call for several chunks of the same upload at once; a second copy of a
+     * chunk still being written is rejected with IllegalStateException
+     *
+     * @param length body length if known (Content-Length), or -1
+     */
+    public boolean uploadChunk(String uploadId, int chunkNumber, InputStream body, long length, String checksum)
+            throws IOException {
         
         ChunkedUpload upload = activeUploads.get(uploadId);
         if (upload == null) {
@@ -171,58 +260,81 @@ public class ChunkedUploadService {
             throw new IllegalArgumentException("Invalid chunk number: " + chunkNumber);
         }
         
+        // Claim the slot, so a bad copy can never overwrite a good one that was already counted
+        String chunkKey = uploadId + ":" + chunkNumber;
+        if (!chunksInFlight.add(chunkKey)) {
+            throw new IllegalStateException("Chunk " + chunkNumber + " is already being uploaded for " + uploadId);
+        }
+        try {
+            return writeChunk(upload, chunkNumber, body, length, checksum);
+        } finally {
+            chunksInFlight.remove(chunkKey);
+        }
+    }
+    
+    /**
+     * Write a chunk whose slot the caller has claimed
+     */
+    private boolean writeChunk(ChunkedUpload upload, int chunkNumber, InputStream body, long length, String checksum)
+            throws IOException {
+        String uploadId = upload.getUploadId();
+        
         // Check if chunk already uploaded
-        if (upload.getUploadedChunks().contains(chunkNumber)) {
+        if (upload.hasChunk(chunkNumber)) {
             System.out.println("⚠️ Chunk " + chunkNumber + " already uploaded for " + uploadId);
             return true; // Already have this chunk
         }
         
+        long offset = (long) chunkNumber * upload.getChunkSize();
+        long slot = Math.min(upload.getChunkSize(), upload.getTotalSize() - offset);
+        if (length >= 0 && length != slot) {
+            throw new IllegalArgumentException("Chunk " + chunkNumber + " is " + length
+                    + " bytes, but its slot is " + slot + " bytes");
+        }
+        
         try {
-            // Read chunk data
-            byte[] chunkData = chunkFile.getBytes();
+            // Stream the chunk to its place in the file, hashing it on the way if a checksum was sent
+            boolean verify = checksum != null && !checksum.isEmpty();
+            MessageDigest digest = verify ? newSHA256() : null;
+            InputStream input = verify ? new DigestInputStream(body, digest) : body;
+            long written = writeAt(dataFile(uploadId), input, offset, slot); // The caller closes the body
             
-            // Verify chunk checksum if provided
-            if (checksum != null && !checksum.isEmpty()) {
-                String calculatedChecksum = calculateSHA256(chunkData);
-                if (!calculatedChecksum.equals(checksum)) {
-                    throw new IllegalArgumentException("Chunk checksum mismatch");
-                }
+            // A bad chunk stays unmarked, so its bytes are overwritten when it is sent again
+            if (written != slot) {
+                throw new IllegalArgumentException("Chunk " + chunkNumber + " ended after " + written
+                        + " of " + slot + " bytes");
+            }
+            if (verify && !HexFormat.of().formatHex(digest.digest()).equals(checksum)) {
+                throw new IllegalArgumentException("Chunk checksum mismatch");
             }
             
-            // Save chunk to temporary file
-            Path chunkPath = Paths.get(storageProperties.getTempChunksPath(), uploadId, "chunk_" + chunkNumber);
-            Files.write(chunkPath, chunkData);
+            // Journal the chunk before counting it, so a restart never forgets a counted chunk
+            UploadSessionJournal.appendChunk(uploadDir(uploadId), chunkNumber, written);
             
             // Update upload progress
-            upload.addUploadedChunk(chunkNumber);
-            upload.setLastActivity(LocalDateTime.now());
+            boolean lastChunk = upload.markChunkReceived(chunkNumber, written);
+            RunningFileDigest fileDigest = fileDigests.get(uploadId);
+            if (!lastChunk && fileDigest != null) {
+                try {
+                    fileDigest.advance(upload, dataFile(uploadId));
+                } catch (IOException e) {
+                    // Retried from the start when the upload completes
+                    System.err.println("⚠️ Could not hash " + uploadId + " yet: " + e.getMessage());
+                }
+            }
             
             // Update progress tracking
             System.out.println("📤 Uploaded chunk " + (chunkNumber + 1) + "/" + upload.getTotalChunks() + " for " + upload.getOriginalFilename());
             
             // Update enhanced progress tracking with WebSocket
-            long bytesUploaded = (long) upload.getUploadedChunks().size() * upload.getChunkSize();
-            uploadProgressService.updateProgress(uploadId, bytesUploaded, upload.getTotalSize(), "uploading");
+            uploadProgressService.updateProgress(uploadId, upload.getReceivedBytes(), upload.getTotalSize(), "uploading");
             
             System.out.println("📦 Uploaded chunk " + chunkNumber + "/" + (upload.getTotalChunks() - 1) + 
                              " for " + upload.getOriginalFilename() + " (" + upload.getProgress() + "%)");
             
-            // Check if upload is complete
-            if (upload.isComplete()) {
-                upload.setStatus(ChunkedUploadStatus.ASSEMBLING);
-                System.out.println("🔄 All chunks uploaded for " + upload.getOriginalFilename() + ", assembling file...");
-                System.out.println("✅ All chunks uploaded for " + upload.getOriginalFilename() + ", ready for assembly");
-                
-                // Start assembly in background
-                new Thread(() -> {
-                    try {
-                        assembleChunks(uploadId);
-                    } catch (Exception e) {
-                        System.err.println("❌ Failed to assemble chunks for " + uploadId + ": " + e.getMessage());
-                        upload.setStatus(ChunkedUploadStatus.FAILED);
-                        System.err.println("❌ Upload failed for " + uploadId + ": " + e.getMessage());
-                    }
-                }).start();
+            // Only the request that delivered the last missing chunk completes the upload
+            if (lastChunk) {
+                completeUpload(upload);
             }
             
             return true;
@@ -239,61 +351,83 @@ public class ChunkedUploadService {
     }
     
     /**
-     * Assemble chunks into final file
+     * Check the file is whole and matches the client's checksum, and flush it to disk;
+     * there is nothing left to assemble
      */
-    private void assembleChunks(String uploadId) throws Exception {
-        ChunkedUpload upload = activeUploads.get(uploadId);
-        if (upload == null) {
-            throw new IllegalStateException("Upload session not found during assembly");
+    private void completeUpload(ChunkedUpload upload) {
+        String uploadId = upload.getUploadId();
+        if (upload.getReceivedBytes() != upload.getTotalSize()) {
+            upload.setStatus(ChunkedUploadStatus.FAILED);
+            System.err.println("❌ Upload failed for " + uploadId + ": received "
+                    + upload.getReceivedBytes() + " bytes, expected " + upload.getTotalSize());
+            return;
         }
         
-        upload.setStatus(ChunkedUploadStatus.ASSEMBLING);
-        System.out.println("🔧 Assembling " + upload.getTotalChunks() + " chunks for " + upload.getOriginalFilename() + "...");
-        
-        System.out.println("🔧 Assembling " + upload.getTotalChunks() + " chunks for " + upload.getOriginalFilename());
-        
-        // Create temporary file for assembly
-        Path tempFile = Paths.get(storageProperties.getTempChunksPath(), uploadId + "_assembled");
-        
-        try (FileOutputStream fos = new FileOutputStream(tempFile.toFile())) {
-            // Write chunks in order using streaming to avoid memory issues
-            for (int i = 0; i < upload.getTotalChunks(); i++) {
-                Path chunkPath = Paths.get(storageProperties.getTempChunksPath(), uploadId, "chunk_" + i);
-                
-                if (!Files.exists(chunkPath)) {
-                    throw new IllegalStateException("Missing chunk " + i + " during assembly");
-                }
-                
-                // Stream chunk data directly to avoid loading entire chunk into memory
-                try (FileInputStream fis = new FileInputStream(chunkPath.toFile())) {
-                    byte[] buffer = new byte[8192]; // 8KB buffer
-                    int bytesRead;
-                    while ((bytesRead = fis.read(buffer)) != -1) {
-                        fos.write(buffer, 0, bytesRead);
-                    }
-                }
+        String contentHash;
+        try {
+            // Normally only the last few chunks are still unhashed
+            contentHash = fileDigests.computeIfAbsent(uploadId, id -> new RunningFileDigest())
+                    .finish(upload, dataFile(uploadId));
+            try (FileChannel channel = FileChannel.open(dataFile(uploadId), StandardOpenOption.WRITE)) {
+                channel.force(false);
             }
+        } catch (IOException e) {
+            upload.setStatus(ChunkedUploadStatus.FAILED);
+            System.err.println("❌ Upload failed for " + uploadId + ": " + e.getMessage());
+            return;
         }
         
-        // Verify file size
-        long assembledSize = Files.size(tempFile);
-        if (assembledSize != upload.getTotalSize()) {
-            throw new IllegalStateException("Assembled file size mismatch. Expected: " + 
-                                          upload.getTotalSize() + ", Got: " + assembledSize);
+        String expected = upload.getChecksum();
+        if (expected != null && SHA256_HEX.matcher(expected).matches()) {
+            if (!expected.equalsIgnoreCase(contentHash)) {
+                upload.setStatus(ChunkedUploadStatus.FAILED);
+                System.err.println("❌ Upload failed for " + uploadId + ": file checksum mismatch");
+                return;
+            }
+        } else if (expected != null && !expected.isEmpty()) {
+            System.out.println("⚠️ Checksum for " + uploadId + " is not a SHA-256, not verified");
         }
-        
-        // Skip file-level checksum for large files (too slow over WSL UNC, and chunks were already verified)
-        
-        System.out.println("✅ Successfully assembled " + upload.getOriginalFilename() + " (" + assembledSize + " bytes)");
-        
+        upload.setContentHash(contentHash);
         upload.setStatus(ChunkedUploadStatus.COMPLETED);
-        System.out.println("✅ File assembled successfully for " + upload.getOriginalFilename() + ", ready for finalization");
+        System.out.println("✅ All chunks uploaded for " + upload.getOriginalFilename() + ", ready for finalization");
+    }
+    
+    /**
+     * Copy a chunk into the file with positional writes, so chunks never move a shared
+     * file pointer, through a per-thread buffer, so memory does not grow with chunk size
+     *
+     * @return bytes written
+     */
+    private static long writeAt(Path file, InputStream input, long offset, long slot) throws IOException {
+        byte[] buffer = CHUNK_BUFFER.get();
+        long written = 0;
+        try (FileChannel channel = FileChannel.open(file, StandardOpenOption.WRITE)) {
+            int bytesRead;
+            while ((bytesRead = input.read(buffer)) != -1) {
+                if (written + bytesRead > slot) {
+                    throw new IllegalArgumentException("Chunk is larger than its " + slot + " byte slot");
+                }
+                ByteBuffer data = ByteBuffer.wrap(buffer, 0, bytesRead);
+                while (data.hasRemaining()) {
+                    written += channel.write(data, offset + written);
+                }
+            }
+            channel.force(false); // On disk before the journal says so
+        }
+        return written;
+    }
+    
+    private Path uploadDir(String uploadId) {
+        return Paths.get(storageProperties.getTempChunksPath(), uploadId);
+    }
+    
+    private Path dataFile(String uploadId) {
+        return uploadDir(uploadId).resolve(DATA_FILE);
     }
     
     /**
      * Finalize upload and create MediaFile in database.
-     * If assembly is still running or file is being stored, returns immediately
-     * with progress info — the caller can poll for completion.
+     * The uploaded file is moved into storage, not copied.
      */
     public Map<String, Object> finalizeUpload(String uploadId) throws Exception {
         System.out.println("🔧 Finalizing upload: " + uploadId);
@@ -306,53 +440,27 @@ public class ChunkedUploadService {
         
         System.out.println("📊 Upload status: " + upload.getStatus());
         
-        // If assembly is still running, wait briefly then return status
-        if (upload.getStatus() == ChunkedUploadStatus.ASSEMBLING) {
-            System.out.println("⏳ Assembly in progress, waiting briefly...");
-            int maxWaitSeconds = 60; // Wait at most 60s (safely under Cloudflare's 100s limit)
-            int waitedSeconds = 0;
-            while (upload.getStatus() == ChunkedUploadStatus.ASSEMBLING && waitedSeconds < maxWaitSeconds) {
-                try {
-                    Thread.sleep(1000);
-                    waitedSeconds++;
-                    if (waitedSeconds % 10 == 0) {
-                        System.out.println("⏳ Still waiting for assembly... (" + waitedSeconds + "s)");
-                    }
-                } catch (InterruptedException e) {
-                    Thread.currentThread().interrupt();
-                    throw new RuntimeException("Interrupted while waiting for assembly");
-                }
-            }
-            // If still assembling after 60s, return status instead of timing out
-            if (upload.getStatus() == ChunkedUploadStatus.ASSEMBLING) {
-                Map<String, Object> response = new HashMap<>();
-                response.put("success", false);
-                response.put("status", "assembling");
-                response.put("message", "File is still being assembled. Try again in a few seconds.");
-                return response;
-            }
-            System.out.println("✅ Done waiting. Final status: " + upload.getStatus());
-        }
-        
         if (upload.getStatus() != ChunkedUploadStatus.COMPLETED) {
             throw new IllegalStateException("Upload is not ready for finalization: " + upload.getStatus());
         }
         
-        // Path to assembled file
-        Path assembledFile = Paths.get(storageProperties.getTempChunksPath(), uploadId + "_assembled");
+        Path dataFile = dataFile(uploadId);
         
-        if (!Files.exists(assembledFile)) {
-            throw new IllegalStateException("Assembled file not found");
+        if (!Files.exists(dataFile)) {
+            throw new IllegalStateException("Uploaded file not found");
         }
         
         try {
-            // Create a streaming MultipartFile-like object for the media manager
+            // Storage renames the file into place instead of copying it
             StreamingMultipartFile streamingMultipartFile = new StreamingMultipartFile(
                 upload.getOriginalFilename(),
                 upload.getOriginalFilename(), 
                 upload.getContentType(),
-                assembledFile
+                dataFile,
+                true
             );
+            // Verified against the client's checksum, and reused for dedup and the ETag
+            streamingMultipartFile.setContentHash(upload.getContentHash());
             
             // Use existing media manager to store in database
             MediaFile mediaFile = mediaManager.uploadMediaFile(
@@ -403,7 +511,7 @@ public class ChunkedUploadService {
      */
     private void cleanupUpload(String uploadId) {
         try {
-            // Remove chunk directory
+            // Remove upload directory, including the data file unless storage took it
             Path chunkDir = Paths.get(storageProperties.getTempChunksPath(), uploadId);
             if (Files.exists(chunkDir)) {
                 Files.walk(chunkDir)
@@ -412,12 +520,9 @@ public class ChunkedUploadService {
                 Files.deleteIfExists(chunkDir);
             }
             
-            // Remove assembled file
-            Path assembledFile = Paths.get(storageProperties.getTempChunksPath(), uploadId + "_assembled");
-            Files.deleteIfExists(assembledFile);
-            
             // Remove from active uploads
             activeUploads.remove(uploadId);
+            fileDigests.remove(uploadId);
             
         } catch (IOException e) {
             System.err.println("⚠️ Failed to cleanup upload " + uploadId + ": " + e.getMessage());
@@ -425,64 +530,13 @@ public class ChunkedUploadService {
     }
     
     /**
-     * Calculate SHA-256 checksum of data (matches frontend crypto.subtle.digest('SHA-256'))
+     * SHA-256, as computed by the frontend with crypto.subtle.digest('SHA-256')
      */
-    private String calculateSHA256(byte[] data) {
+    private static MessageDigest newSHA256() {
         try {
-            MessageDigest md = MessageDigest.getInstance("SHA-256");
-            byte[] hashBytes = md.digest(data);
-            StringBuilder sb = new StringBuilder();
-            for (byte b : hashBytes) {
-                sb.append(String.format("%02x", b));
-            }
-            return sb.toString();
+            return MessageDigest.getInstance("SHA-256");
         } catch (NoSuchAlgorithmException e) {
             throw new RuntimeException("SHA-256 algorithm not available", e);
         }
     }
-    
-    /**
-     * Temporary MultipartFile implementation for assembled files
-     */
-    private static class TempMultipartFile implements MultipartFile {
-        private final String name;
-        private final String originalFilename;
-        private final String contentType;
-        private final byte[] bytes;
-        
-        public TempMultipartFile(String name, String originalFilename, String contentType, byte[] bytes) {
-            this.name = name;
-            this.originalFilename = originalFilename;
-            this.contentType = contentType;
-            this.bytes = bytes;
-        }
-        
-        @Override
-        public String getName() { return name; }
-        
-        @Override
-        public String getOriginalFilename() { return originalFilename; }
-        
-        @Override
-        public String getContentType() { return contentType; }
-        
-        @Override
-        public boolean isEmpty() { return bytes.length == 0; }
-        
-        @Override
-        public long getSize() { return bytes.length; }
-        
-        @Override
-        public byte[] getBytes() { return bytes; }
-        
-        @Override
-        public InputStream getInputStream() { return new ByteArrayInputStream(bytes); }
-        
-        @Override
-        public void transferTo(File dest) throws IOException {
-            try (FileOutputStream fos = new FileOutputStream(dest)) {
-                fos.write(bytes);
-            }
-        }
-    }
 }
\ No newline at end of file
@@ -2,12 +2,18 @@ package lexicon.logic;
 
 import lexicon.data.ILexiconDatabase;
 import lexicon.data.IMediaDatabase;
+import lexicon.object.ByteRange;
 import lexicon.object.MediaFile;
 import lexicon.object.MediaType;
 import lexicon.object.StreamResult;
 import lexicon.service.OptimizedFileStorageService;
+import lexicon.service.HlsPackagingService;
+import lexicon.service.MediaProbeService;
+import lexicon.service.SeekIndexService;
+import lexicon.service.ThumbnailService;
 import lexicon.service.YtDlpService;
 import lexicon.service.VideoTranscodingService;
+import lexicon.service.WaveformService;
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.stereotype.Service;
 import org.springframework.web.multipart.MultipartFile;
@@ -15,6 +21,7 @@ import org.springframework.web.multipart.MultipartFile;
 import java.io.File;
 import java.io.IOException;
 import java.io.InputStream;
+import java.io.OutputStream;
 import java.nio.file.Files;
 import java.nio.file.Path;
 import java.time.LocalDateTime;
@@ -31,12 +38,29 @@ import java.util.stream.Collectors;
 @Service
 public class MediaManager implements MediaManagerService {
     
+    private static final int DB_STREAM_CHUNK_SIZE = 1024 * 1024; // Heap per database-stored stream
+    
     private final ILexiconDatabase playerDatabase;
     private final IMediaDatabase mediaDatabase;
     private final YtDlpService ytDlpService;
     private final VideoTranscodingService transcodingService;
     private final OptimizedFileStorageService fileStorageService;
     
+    @Autowired(required = false)
+    private SeekIndexService seekIndexService;
+    
+    @Autowired(required = false)
+    private HlsPackagingService hlsPackagingService;
+    
+    @Autowired(required = false)
+    private WaveformService waveformService;
+    
+    @Autowired(required = false)
+    private ThumbnailService thumbnailService;
+    
+    @Autowired(required = false)
+    private MediaProbeService mediaProbeService;
+    
     @Autowired
     public MediaManager(ILexiconDatabase playerDatabase, IMediaDatabase mediaDatabase, 
                        YtDlpService ytDlpService, VideoTranscodingService transcodingService,
@@ -86,6 +110,7 @@ public class MediaManager implements MediaManagerService {
                 storedFilePath = fileStorageService.storeFile(file, mediaFile);
                 if (storedFilePath != null) {
                     mediaFile.setFilePath(storedFilePath);
+                    probeMetadata(mediaFile, fileStorageService.getReadablePath(storedFilePath));
                 }
             }
             
@@ -110,10 +135,13 @@ public class MediaManager implements MediaManagerService {
                 // For now, skip transcoding for very large files
                 if (file.getSize() <= 100 * 1024 * 1024) {
                     byte[] fileData = file.getBytes();
-                    transcodeVideoIfNeeded(id, file.getOriginalFilename(), fileData);
+                    transcodeVideoIfNeeded(mediaFile, fileData);
                 }
             }
             
+            // After transcoding, which may have replaced the stored file
+            queuePostIngestJobs(mediaFile);
+            
             return mediaFile;
         } catch (Exception e) {
             throw new RuntimeException("Failed to upload file: " + e.getMessage(), e);
@@ -176,7 +204,7 @@ public class MediaManager implements MediaManagerService {
             if (fileStorageService != null) {
                 try (java.io.FileInputStream fis = new java.io.FileInputStream(downloadedFile)) {
                     storedFilePath = fileStorageService.storeFileFromStream(
-                        fis, downloadedFile.getName(), downloadedFile.length(), type);
+                        fis, downloadedFile.getName(), downloadedFile.length(), type, mediaFile);
                     if (storedFilePath != null) {
                         mediaFile.setFilePath(storedFilePath);
                     }
@@ -184,7 +212,9 @@ public class MediaManager implements MediaManagerService {
             }
             
             // Save metadata to database
+            probeMetadata(mediaFile, downloadedFile.toPath());
             mediaDatabase.addMediaFile(mediaFile);
+            queuePostIngestJobs(mediaFile);
             
             // Fallback to database storage if file storage failed
             if (storedFilePath == null) {
@@ -298,6 +328,12 @@ public class MediaManager implements MediaManagerService {
         }
         
         mediaDatabase.deleteMediaFile(mediaFileId);
+        
+        // Only a content-addressed blob gives up this file's reference (it goes with the last one);
+        // other stored files and their derived artifacts stay on disk, as they always have
+        if (fileStorageService != null && OptimizedFileStorageService.isBlobPath(mediaFile.getFilePath())) {
+            fileStorageService.deleteFile(mediaFile.getFilePath());
+        }
         return true;
     }
     
@@ -341,9 +377,10 @@ public class MediaManager implements MediaManagerService {
     
     /**
      * Transcodes video files to optimized H.264/AAC MP4 format if FFmpeg is available
-     * and the file is a video. Stores the transcoded version back to the database.
+     * and the file is a video. The transcoded version replaces the original on the file system.
      */
-    private void transcodeVideoIfNeeded(int mediaFileId, String filename, byte[] originalFileData) {
+    private void transcodeVideoIfNeeded(MediaFile mediaFile, byte[] originalFileData) {
+        String filename = mediaFile.getOriginalFilename();
         // Skip if not a video file
         if (!transcodingService.isVideoFile(filename)) {
             return;
@@ -382,15 +419,31 @@ public class MediaManager implements MediaManagerService {
                 1920 // max width
             );
             
-            if (success) {
-                // Read transcoded video bytes
-                byte[] transcodedData = Files.readAllBytes(outputPath);
+            if (success && fileStorageService == null) {
+                System.err.println("No file storage for transcoded video - keeping original: " + filename);
+            } else if (success) {
+                // Store transcoded version on the file system (replaces original)
+                long transcodedSize = Files.size(outputPath);
+                String previousPath = mediaFile.getFilePath();
+                String transcodedPath;
+                try (InputStream transcodedInput = Files.newInputStream(outputPath)) {
+                    transcodedPath = fileStorageService.storeFileFromStream(
+                        transcodedInput, transcodedFilename, transcodedSize, MediaType.VIDEO, mediaFile);
+                }
+                mediaFile.setFilePath(transcodedPath);
+                mediaFile.setFilename(transcodedFilename);
+                mediaFile.setFileSize(transcodedSize);
+                mediaFile.setContentType("video/mp4");
+                probeMetadata(mediaFile, outputPath); // Codecs and bitrate changed
+                mediaDatabase.updateMediaFile(mediaFile);
                 
-                // Store transcoded version back to database (replaces original)
-                mediaDatabase.storeFileData(mediaFileId, transcodedData);
+                // Drop the original, wherever it was stored
+                mediaDatabase.deleteFileData(mediaFile.getId());
+                if (previousPath != null && !previousPath.isEmpty()) {
+                    fileStorageService.deleteFile(previousPath);
+                }
                 
                 long originalSize = originalFileData.length;
-                long transcodedSize = transcodedData.length;
                 double compressionRatio = (1.0 - (double) transcodedSize / originalSize) * 100;
                 
                 System.out.println("Video transcoding complete for: " + filename);
@@ -447,102 +500,70 @@ public class MediaManager implements MediaManagerService {
             return getStreamDataFromFileSystem(mediaFile, filePath, rangeHeader);
         }
         
-        // Fall back to database storage
-        byte[] fileData = mediaDatabase.getFileData(mediaFileId);
-        System.out.println("File data from DB: " + (fileData != null ? fileData.length + " bytes" : "NULL"));
+        // Fall back to database storage; only the length is read here, the bytes while streaming
+        long fileSize = mediaDatabase.getFileDataLength(mediaFileId);
+        System.out.println("File data in DB: " + (fileSize >= 0 ? fileSize + " bytes" : "NULL"));
         
-        if (fileData == null || fileData.length == 0) {
-            System.out.println("Returning null - fileData is " + (fileData == null ? "null" : "empty"));
+        if (fileSize <= 0) {
+            System.out.println("Returning null - fileData is " + (fileSize < 0 ? "null" : "empty"));
             return null;
         }
         
-        long fileSize = fileData.length;
-        long start = 0;
-        long end = fileSize - 1;
-        boolean isPartialContent = false;
-        
-        // Parse Range header if present (e.g., "bytes=0-1023")
-        if (rangeHeader != null && rangeHeader.startsWith("bytes=")) {
-            isPartialContent = true;
-            String[] ranges = rangeHeader.substring(6).split("-");
-            try {
-                start = Long.parseLong(ranges[0]);
-                if (ranges.length > 1 && !ranges[1].isEmpty()) {
-                    end = Long.parseLong(ranges[1]);
-                }
-            } catch (NumberFormatException e) {
-                // Invalid range format - return error indicator with negative start
-                return new StreamResult(null, -1, -1, fileSize, false, mediaFile.getContentType());
-            }
+        List<ByteRange> ranges = ByteRange.parse(rangeHeader, fileSize);
+        if (ranges == null) {
+            // No usable Range header - the whole file
+            return StreamResult.fromDatabase(List.of(new ByteRange(0, fileSize - 1)), fileSize, false,
+                    mediaFile.getContentType());
         }
-        
-        // Validate range
-        if (start > end || start < 0 || end >= fileSize) {
-            // Invalid range - return error indicator with negative start
+        if (ranges.isEmpty()) {
+            // Unsatisfiable range - return error indicator with negative start
             return new StreamResult(null, -1, -1, fileSize, false, mediaFile.getContentType());
         }
-        
-        // Extract requested range
-        long contentLength = end - start + 1;
-        byte[] rangeData = new byte[(int) contentLength];
-        System.arraycopy(fileData, (int) start, rangeData, 0, (int) contentLength);
-        
-        return new StreamResult(rangeData, start, end, fileSize, isPartialContent, mediaFile.getContentType());
+        return StreamResult.fromDatabase(ranges, fileSize, true, mediaFile.getContentType());
     }
     
     /**
-     * Stream data from file system storage (for large files stored on disk)
+     * Copy a range of the file_data BLOB a chunk at a time, so memory per request stays bounded
+     */
+    @Override
+    public void transferFileData(int mediaFileId, long start, long length, OutputStream out) throws IOException {
+        long position = start;
+        long end = start + length;
+        while (position < end) {
+            int chunk = (int) Math.min(DB_STREAM_CHUNK_SIZE, end - position);
+            byte[] data = mediaDatabase.getFileDataRange(mediaFileId, position, chunk);
+            if (data == null || data.length == 0) {
+                throw new IOException("File data for media " + mediaFileId + " ended at byte " + position);
+            }
+            out.write(data);
+            position += data.length;
+        }
+    }
+    
+    /**
+     * Resolve a range of a file stored on the file system (for large files stored on disk).
+     * Returns a file-backed StreamResult; the bytes are never loaded onto the heap.
      */
     private StreamResult getStreamDataFromFileSystem(MediaFile mediaFile, String filePath, String rangeHeader) {
         try {
             long fileSize = fileStorageService.getFileSize(filePath);
             System.out.println("File size from filesystem: " + fileSize + " bytes");
             
-            long start = 0;
-            long end = fileSize - 1;
-            boolean isPartialContent = false;
-            
-            // Parse Range header if present
-            if (rangeHeader != null && rangeHeader.startsWith("bytes=")) {
-                isPartialContent = true;
-                String[] ranges = rangeHeader.substring(6).split("-");
-                try {
-                    start = Long.parseLong(ranges[0]);
-                    if (ranges.length > 1 && !ranges[1].isEmpty()) {
-                        end = Long.parseLong(ranges[1]);
-                    }
-                } catch (NumberFormatException e) {
-                    return new StreamResult(null, -1, -1, fileSize, false, mediaFile.getContentType());
-                }
+            List<ByteRange> ranges = ByteRange.parse(rangeHeader, fileSize);
+            if (ranges == null) {
+                return StreamResult.fromFile(filePath, 0, fileSize - 1, fileSize, false, mediaFile.getContentType());
             }
-            
-            // Validate range
-            if (start > end || start < 0 || end >= fileSize) {
+            if (ranges.isEmpty()) {
                 return new StreamResult(null, -1, -1, fileSize, false, mediaFile.getContentType());
             }
-            
-            // For large files, limit chunk size to avoid memory issues (2MB chunks)
-            long maxChunkSize = 2 * 1024 * 1024;
-            if (end - start + 1 > maxChunkSize) {
-                end = start + maxChunkSize - 1;
-                // Must flag as partial even if client didn't send Range header,
-                // otherwise controller returns HTTP 200 with truncated body
-                isPartialContent = true;
-            }
-            
-            // Read the file chunk
-            long contentLength = end - start + 1;
-            byte[] rangeData = new byte[(int) contentLength];
-            
-            try (InputStream inputStream = fileStorageService.getFileInputStream(filePath)) {
-                // skipNBytes guarantees all bytes are skipped (unlike skip() which can return early)
-                inputStream.skipNBytes(start);
-                // readNBytes guarantees all requested bytes are read (unlike read() which can short-read)
-                int bytesRead = inputStream.readNBytes(rangeData, 0, (int) contentLength);
-                System.out.println("Read " + bytesRead + " bytes from filesystem (requested " + contentLength + ")");
+            if (ranges.size() > 1) {
+                return StreamResult.multiRange(null, filePath, ranges, fileSize, mediaFile.getContentType());
             }
             
-            return new StreamResult(rangeData, start, end, fileSize, isPartialContent, mediaFile.getContentType());
+            // No bytes are read here - the controller transfers the range straight
+            // from the file channel to the response, so there is no chunk cap.
+            ByteRange range = ranges.get(0);
+            return StreamResult.fromFile(filePath, range.getStart(), range.getEnd(), fileSize, true, mediaFile.getContentType());
             
         } catch (Exception e) {
             System.err.println("Error reading from file system: " + e.getMessage());
@@ -551,6 +572,40 @@ public class MediaManager implements MediaManagerService {
         }
     }
     
+    /**
+     * Fill in duration, bitrate, codecs and dimensions from the file before the metadata is saved
+     */
+    private void probeMetadata(MediaFile mediaFile, Path file) {
+        if (mediaProbeService != null && mediaProbeService.probe(file, mediaFile)) {
+            System.out.println("Probed " + mediaFile.getOriginalFilename() + ": " + mediaFile.getDurationMs() / 1000 + "s, "
+                + (mediaFile.getVideoCodec() != null ? mediaFile.getVideoCodec() + " " + mediaFile.getWidth() + "x" + mediaFile.getHeight() + ", " : "")
+                + (mediaFile.getAudioCodec() != null ? mediaFile.getAudioCodec() + ", " : "")
+                + mediaFile.getBitrate() / 1000 + " kbps");
+        }
+    }
+    
+    /**
+     * Queue a time-to-byte index for stored audio/video so ?t= resumes are a single request,
+     * HLS packaging and preview thumbnails for videos and waveform peaks for audio
+     */
+    private void queuePostIngestJobs(MediaFile mediaFile) {
+        if (seekIndexService != null && mediaFile.getFilePath() != null && !mediaFile.getFilePath().isEmpty()
+                && mediaFile.getMediaType() != MediaType.OTHER) {
+            seekIndexService.indexAsync(mediaFile.getFilePath());
+        }
+        // Videos are packaged for adaptive streaming at ingest rather than on first play
+        if (hlsPackagingService != null && mediaFile.getMediaType() == MediaType.VIDEO) {
+            hlsPackagingService.requestPackaging(mediaFile);
+        }
+        if (thumbnailService != null && mediaFile.getMediaType() == MediaType.VIDEO) {
+            thumbnailService.generateAsync(mediaFile);
+        }
+        if (waveformService != null && mediaFile.getFilePath() != null && !mediaFile.getFilePath().isEmpty()
+                && (mediaFile.getMediaType() == MediaType.MUSIC || mediaFile.getMediaType() == MediaType.AUDIOBOOK)) {
+            waveformService.generateAsync(mediaFile.getFilePath());
+        }
+    }
+    
     @Override
     public MediaFile uploadMediaFromFile(File file, int userId, String title, String description,
                                          boolean isPublic, String mediaType, String sourceUrl) {
@@ -593,7 +648,7 @@ public class MediaManager implements MediaManagerService {
                 // Create a wrapper to work with the storage service
                 try (java.io.FileInputStream fis = new java.io.FileInputStream(file)) {
                     storedFilePath = fileStorageService.storeFileFromStream(
-                        fis, file.getName(), file.length(), type);
+                        fis, file.getName(), file.length(), type, mediaFile);
                     if (storedFilePath != null) {
                         mediaFile.setFilePath(storedFilePath);
                     }
@@ -601,7 +656,9 @@ public class MediaManager implements MediaManagerService {
             }
             
             // Save metadata to database
+            probeMetadata(mediaFile, file.toPath());
             mediaDatabase.addMediaFile(mediaFile);
+            queuePostIngestJobs(mediaFile);
             
             // Fallback to database storage if file storage failed
             if (storedFilePath == null) {
@@ -77,6 +77,11 @@ public interface MediaManagerService {
      */
     StreamResult getStreamData(int mediaFileId, String rangeHeader);
     
+    /**
+     * Write a byte range of database-stored media to the output in bounded chunks
+     */
+    void transferFileData(int mediaFileId, long start, long length, java.io.OutputStream out) throws java.io.IOException;
+    
     /**
      * Upload media from a local file (used by async download queue)
      */
@@ -0,0 +1,116 @@
+package lexicon.logic;
+
+import lexicon.object.ChunkedUpload;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.HexFormat;
+import java.util.concurrent.locks.ReentrantLock;
+
+/**
+ * SHA-256 of a chunked upload, computed while it arrives.
+ *
+ * Chunks can come in any order, but a digest only takes bytes in order, so each
+ * time the run of received chunks from the start grows, the new chunks are read
+ * back from the upload's data file (just written, so normally still in the page
+ * cache) and fed in. Chunks past a gap simply wait on disk. By the time the last
+ * chunk lands there is little or nothing left to hash.
+ */
+class RunningFileDigest {
+
+    private final ReentrantLock lock = new ReentrantLock();
+    private final MessageDigest digest;
+    private final ByteBuffer buffer = ByteBuffer.allocate(64 * 1024);
+    private volatile int nextChunk; // Written under the lock
+    private String hex;
+
+    RunningFileDigest() {
+        try {
+            digest = MessageDigest.getInstance("SHA-256");
+        } catch (NoSuchAlgorithmException e) {
+            throw new RuntimeException("SHA-256 algorithm not available", e);
+        }
+    }
+
+    /**
+     * Hash the chunks that now continue the prefix. Returns at once if another
+     * request is already hashing; that one picks up chunks marked meanwhile.
+     */
+    void advance(ChunkedUpload upload, Path dataFile) throws IOException {
+        while (lock.tryLock()) {
+            try {
+                hashAvailable(upload, dataFile);
+            } finally {
+                lock.unlock();
+            }
+            // A chunk marked while we held the lock found it taken, so look once more
+            int next = nextChunk;
+            if (next >= upload.getTotalChunks() || !upload.hasChunk(next)) {
+                return;
+            }
+        }
+    }
+
+    /**
+     * Hash whatever is left and return the digest as lowercase hex
+     *
+     * @throws IllegalStateException if chunks are still missing
+     */
+    String finish(ChunkedUpload upload, Path dataFile) throws IOException {
+        lock.lock();
+        try {
+            if (hex == null) {
+                hashAvailable(upload, dataFile);
+                if (nextChunk < upload.getTotalChunks()) {
+                    throw new IllegalStateException("Chunk " + nextChunk + " has not been received");
+                }
+                hex = HexFormat.of().formatHex(digest.digest());
+            }
+            return hex;
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    /**
+     * Chunks hashed so far, all from the start of the file
+     */
+    int getHashedChunks() {
+        return nextChunk;
+    }
+
+    private void hashAvailable(ChunkedUpload upload, Path dataFile) throws IOException {
+        int next = nextChunk;
+        if (next >= upload.getTotalChunks() || !upload.hasChunk(next)) {
+            return;
+        }
+        try (FileChannel channel = FileChannel.open(dataFile, StandardOpenOption.READ)) {
+            while (next < upload.getTotalChunks() && upload.hasChunk(next)) {
+                long position = (long) next * upload.getChunkSize();
+                long end = Math.min(position + upload.getChunkSize(), upload.getTotalSize());
+                while (position < end) {
+                    buffer.clear();
+                    buffer.limit((int) Math.min(buffer.capacity(), end - position));
+                    int read = channel.read(buffer, position);
+                    if (read < 0) {
+                        throw new IOException("Upload data ends before chunk " + next + " does");
+                    }
+                    buffer.flip();
+                    digest.update(buffer);
+                    position += read;
+                }
+                nextChunk = ++next;
+            }
+        } catch (IOException e) {
+            // Part of a chunk may be in the digest, so start over next time
+            digest.reset();
+            nextChunk = 0;
+            throw e;
+        }
+    }
+}
@@ -0,0 +1,151 @@
+package lexicon.logic;
+
+import lexicon.object.ChunkedUpload;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.time.LocalDateTime;
+import java.time.ZoneId;
+import java.util.Properties;
+
+/**
+ * Keeps chunked upload sessions on disk, next to their data file, so they survive a restart.
+ *
+ * Each upload directory holds session.properties, written once when the upload
+ * starts, and chunks.journal, which gets one fixed-size record (chunk number,
+ * length) appended and forced per chunk once that chunk's bytes are on disk.
+ * Replaying the journal rebuilds the chunk bitmap; a record torn by a crash, or
+ * one whose length does not fill its chunk's slot, is ignored, so at worst the
+ * client sends that chunk again.
+ */
+class UploadSessionJournal {
+
+    static final String SESSION_FILE = "session.properties";
+    static final String JOURNAL_FILE = "chunks.journal";
+
+    private static final int RECORD_SIZE = Integer.BYTES + Long.BYTES;
+
+    private UploadSessionJournal() {
+    }
+
+    /**
+     * Write the session description, replacing it in one step
+     */
+    static void writeSession(Path uploadDir, ChunkedUpload upload) throws IOException {
+        Properties session = new Properties();
+        session.setProperty("uploadId", upload.getUploadId());
+        session.setProperty("originalFilename", upload.getOriginalFilename());
+        session.setProperty("contentType", nullToEmpty(upload.getContentType()));
+        session.setProperty("totalSize", String.valueOf(upload.getTotalSize()));
+        session.setProperty("totalChunks", String.valueOf(upload.getTotalChunks()));
+        session.setProperty("chunkSize", String.valueOf(upload.getChunkSize()));
+        session.setProperty("uploadedBy", String.valueOf(upload.getUploadedBy()));
+        session.setProperty("title", nullToEmpty(upload.getTitle()));
+        session.setProperty("description", nullToEmpty(upload.getDescription()));
+        session.setProperty("public", String.valueOf(upload.isPublic()));
+        session.setProperty("mediaType", nullToEmpty(upload.getMediaType()));
+        session.setProperty("startTime", upload.getStartTime().toString());
+        if (upload.getChecksum() != null) {
+            session.setProperty("checksum", upload.getChecksum());
+        }
+
+        Path file = uploadDir.resolve(SESSION_FILE);
+        Path temp = uploadDir.resolve(SESSION_FILE + ".tmp");
+        try (OutputStream out = Files.newOutputStream(temp)) {
+            session.store(out, "Chunked upload session");
+        }
+        Files.move(temp, file, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+    }
+
+    /**
+     * Record a chunk whose bytes are already on disk
+     */
+    static void appendChunk(Path uploadDir, int chunkNumber, long length) throws IOException {
+        ByteBuffer record = ByteBuffer.allocate(RECORD_SIZE).putInt(chunkNumber).putLong(length);
+        record.flip();
+        // Small appends are written whole, so concurrent chunks never interleave records
+        try (FileChannel journal = FileChannel.open(uploadDir.resolve(JOURNAL_FILE),
+                StandardOpenOption.CREATE, StandardOpenOption.WRITE, StandardOpenOption.APPEND)) {
+            while (record.hasRemaining()) {
+                journal.write(record);
+            }
+            journal.force(false);
+        }
+    }
+
+    /**
+     * Rebuild a session from its directory
+     *
+     * @param dataFile the upload's data file, which must still have the full size
+     * @return the session with its journaled chunks marked, or null if the directory
+     *         holds no usable session
+     */
+    static ChunkedUpload recover(Path uploadDir, Path dataFile) throws IOException {
+        Path file = uploadDir.resolve(SESSION_FILE);
+        if (!Files.isRegularFile(file)) {
+            return null;
+        }
+        Properties session = new Properties();
+        try (InputStream in = Files.newInputStream(file)) {
+            session.load(in);
+        }
+
+        ChunkedUpload upload;
+        try {
+            upload = new ChunkedUpload(
+                session.getProperty("uploadId"),
+                session.getProperty("originalFilename"),
+                session.getProperty("contentType"),
+                Long.parseLong(session.getProperty("totalSize")),
+                Integer.parseInt(session.getProperty("totalChunks")),
+                Integer.parseInt(session.getProperty("chunkSize")),
+                Integer.parseInt(session.getProperty("uploadedBy")),
+                session.getProperty("title"),
+                session.getProperty("description"),
+                Boolean.parseBoolean(session.getProperty("public")),
+                session.getProperty("mediaType")
+            );
+            upload.setStartTime(LocalDateTime.parse(session.getProperty("startTime")));
+        } catch (RuntimeException e) {
+            return null; // Missing or garbled field
+        }
+        upload.setChecksum(session.getProperty("checksum"));
+        if (upload.getUploadId() == null || !Files.isRegularFile(dataFile)
+                || Files.size(dataFile) != upload.getTotalSize()) {
+            return null;
+        }
+
+        Path journal = uploadDir.resolve(JOURNAL_FILE);
+        LocalDateTime lastActivity = upload.getStartTime();
+        if (Files.isRegularFile(journal)) {
+            ByteBuffer records = ByteBuffer.wrap(Files.readAllBytes(journal));
+            while (records.remaining() >= RECORD_SIZE) { // A torn last record is dropped
+                int chunkNumber = records.getInt();
+                long length = records.getLong();
+                if (chunkNumber < 0 || chunkNumber >= upload.getTotalChunks()) {
+                    continue;
+                }
+                long slot = Math.min(upload.getChunkSize(),
+                        upload.getTotalSize() - (long) chunkNumber * upload.getChunkSize());
+                if (length == slot) { // Anything else is a garbled record, so the chunk is sent again
+                    upload.markChunkReceived(chunkNumber, length);
+                }
+            }
+            lastActivity = LocalDateTime.ofInstant(Files.getLastModifiedTime(journal).toInstant(),
+                    ZoneId.systemDefault());
+        }
+        upload.setLastActivity(lastActivity);
+        return upload;
+    }
+
+    private static String nullToEmpty(String value) {
+        return value != null ? value : "";
+    }
+}
@@ -0,0 +1,164 @@
+package lexicon.object;
+
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.List;
+
+/**
+ * A resolved, inclusive byte range of a media file, and the shared parser for
+ * HTTP Range headers (RFC 7233).
+ *
+ * Supports "bytes=0-499", open-ended "bytes=500-", suffix "bytes=-500" (the last
+ * 500 bytes, used by players to find an MP4 moov atom) and comma separated lists
+ * of these. Overlapping and adjacent ranges are coalesced.
+ */
+public final class ByteRange {
+
+    /** Ranges beyond this (after coalescing) are treated as abuse and the header is ignored */
+    public static final int MAX_RANGES = 16;
+
+    private final long start;
+    private final long end;
+
+    public ByteRange(long start, long end) {
+        this.start = start;
+        this.end = end;
+    }
+
+    public long getStart() { return start; }
+    public long getEnd() { return end; }
+    public long getLength() { return end - start + 1; }
+
+    /**
+     * Content-Range header value for this range
+     */
+    public String toContentRange(long totalSize) {
+        return "bytes " + start + "-" + end + "/" + totalSize;
+    }
+
+    /**
+     * The part of this range at or after the given offset, or null if it ends before it
+     */
+    public ByteRange from(long offset) {
+        return offset > end ? null : new ByteRange(Math.max(start, offset), end);
+    }
+
+    /**
+     * Range header value asking for exactly this range
+     */
+    public String toRangeHeader() {
+        return "bytes=" + start + "-" + end;
+    }
+
+    /**
+     * Resolve a Range header against a file size.
+     *
+     * @return null if the header is absent, malformed or not in bytes (serve the whole file),
+     *         an empty list if no range is satisfiable (416), otherwise the ranges to send
+     */
+    public static List<ByteRange> parse(String rangeHeader, long totalSize) {
+        if (rangeHeader == null) {
+            return null;
+        }
+        String header = rangeHeader.trim();
+        if (!header.regionMatches(true, 0, "bytes=", 0, 6)) {
+            return null;
+        }
+
+        List<ByteRange> ranges = new ArrayList<>();
+        for (String spec : header.substring(6).split(",")) {
+            spec = spec.trim();
+            int dash = spec.indexOf('-');
+            if (dash < 0) {
+                return null;
+            }
+            String first = spec.substring(0, dash).trim();
+            String last = spec.substring(dash + 1).trim();
+
+            if (first.isEmpty()) {
+                // Suffix range: the final N bytes
+                long suffixLength = parseNumber(last);
+                if (suffixLength < 0) {
+                    return null;
+                }
+                if (suffixLength > 0 && totalSize > 0) {
+                    ranges.add(new ByteRange(Math.max(0, totalSize - suffixLength), totalSize - 1));
+                }
+                continue;
+            }
+
+            long start = parseNumber(first);
+            long end = last.isEmpty() ? Long.MAX_VALUE : parseNumber(last);
+            if (start < 0 || end < 0 || end < start) {
+                return null;
+            }
+            if (start < totalSize) {
+                ranges.add(new ByteRange(start, Math.min(end, totalSize - 1)));
+            }
+        }
+
+        List<ByteRange> coalesced = coalesce(ranges);
+        return coalesced.size() > MAX_RANGES ? null : coalesced;
+    }
+
+    private static List<ByteRange> coalesce(List<ByteRange> ranges) {
+        if (ranges.size() < 2) {
+            return ranges;
+        }
+        List<ByteRange> sorted = new ArrayList<>(ranges);
+        sorted.sort(Comparator.comparingLong(ByteRange::getStart));
+
+        List<ByteRange> merged = new ArrayList<>();
+        ByteRange current = sorted.get(0);
+        for (int i = 1; i < sorted.size(); i++) {
+            ByteRange next = sorted.get(i);
+            if (next.start <= current.end + 1) {
+                current = new ByteRange(current.start, Math.max(current.end, next.end));
+            } else {
+                merged.add(current);
+                current = next;
+            }
+        }
+        merged.add(current);
+        return merged;
+    }
+
+    /**
+     * Parse a non-negative decimal, saturating at Long.MAX_VALUE; -1 if not a number
+     */
+    private static long parseNumber(String value) {
+        if (value.isEmpty()) {
+            return -1;
+        }
+        long result = 0;
+        for (int i = 0; i < value.length(); i++) {
+            char c = value.charAt(i);
+            if (c < '0' || c > '9') {
+                return -1;
+            }
+            if (result > (Long.MAX_VALUE - (c - '0')) / 10) {
+                return Long.MAX_VALUE;
+            }
+            result = result * 10 + (c - '0');
+        }
+        return result;
+    }
+
+    @Override
+    public boolean equals(Object o) {
+        if (this == o) return true;
+        if (!(o instanceof ByteRange)) return false;
+        ByteRange other = (ByteRange) o;
+        return start == other.start && end == other.end;
+    }
+
+    @Override
+    public int hashCode() {
+        return Long.hashCode(start) * 31 + Long.hashCode(end);
+    }
+
+    @Override
+    public String toString() {
+        return start + "-" + end;
+    }
+}
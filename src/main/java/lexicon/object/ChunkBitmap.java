@@ -0,0 +1,97 @@
+package lexicon.object;
+
+import java.util.Set;
+import java.util.TreeSet;
+import java.util.concurrent.atomic.AtomicLongArray;
+
+/**
+ * Which chunks of an upload have arrived, one bit per chunk.
+ *
+ * Bits are set with compare-and-set on 64-chunk words and never cleared, so any
+ * number of chunk requests can mark chunks at once and readers never block.
+ */
+public class ChunkBitmap {
+
+    private final int size;
+    private final AtomicLongArray words;
+
+    public ChunkBitmap(int size) {
+        this.size = Math.max(0, size);
+        this.words = new AtomicLongArray((this.size + 63) >>> 6);
+    }
+
+    /**
+     * Mark a chunk as received
+     *
+     * @return true if this call marked it, false if it was already marked
+     */
+    public boolean set(int index) {
+        checkIndex(index);
+        int word = index >>> 6;
+        long bit = 1L << index;
+        long current;
+        do {
+            current = words.get(word);
+            if ((current & bit) != 0) {
+                return false;
+            }
+        } while (!words.compareAndSet(word, current, current | bit));
+        return true;
+    }
+
+    public boolean get(int index) {
+        checkIndex(index);
+        return (words.get(index >>> 6) & (1L << index)) != 0;
+    }
+
+    public int size() {
+        return size;
+    }
+
+    /**
+     * Number of chunks marked at the time of reading
+     */
+    public int cardinality() {
+        int marked = 0;
+        for (int word = 0; word < words.length(); word++) {
+            marked += Long.bitCount(words.get(word));
+        }
+        return marked;
+    }
+
+    /**
+     * Chunks marked at the time of reading, in order
+     */
+    public Set<Integer> received() {
+        return collect(true);
+    }
+
+    /**
+     * Chunks not yet marked at the time of reading, in order
+     */
+    public Set<Integer> missing() {
+        return collect(false);
+    }
+
+    private Set<Integer> collect(boolean marked) {
+        Set<Integer> chunks = new TreeSet<>();
+        for (int word = 0; word < words.length(); word++) {
+            long bits = marked ? words.get(word) : ~words.get(word);
+            while (bits != 0) {
+                int index = (word << 6) + Long.numberOfTrailingZeros(bits);
+                if (index >= size) {
+                    break;
+                }
+                chunks.add(index);
+                bits &= bits - 1;
+            }
+        }
+        return chunks;
+    }
+
+    private void checkIndex(int index) {
+        if (index < 0 || index >= size) {
+            throw new IndexOutOfBoundsException("Chunk " + index + " of " + size);
+        }
+    }
+}
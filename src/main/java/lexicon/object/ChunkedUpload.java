@@ -2,10 +2,12 @@ package lexicon.object;
 
 import java.time.LocalDateTime;
 import java.util.Set;
-import java.util.HashSet;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
 
 /**
  * Represents a chunked upload session for large files
+ * Chunks may arrive concurrently: received chunks are tracked in a lock-free bitmap
  */
 public class ChunkedUpload {
     private String uploadId;
@@ -16,17 +18,20 @@ public class ChunkedUpload {
     private int chunkSize;
     private int uploadedBy;
     private LocalDateTime startTime;
-    private LocalDateTime lastActivity;
-    private ChunkedUploadStatus status;
-    private Set<Integer> uploadedChunks;
+    private volatile LocalDateTime lastActivity;
+    private volatile ChunkedUploadStatus status;
+    private volatile ChunkBitmap chunks;
+    private final AtomicInteger receivedChunks = new AtomicInteger();
+    private final AtomicLong receivedBytes = new AtomicLong();
     private String title;
     private String description;
     private boolean isPublic;
     private String mediaType;
     private String checksum; // For file integrity verification
+    private volatile String contentHash; // SHA-256 of the whole file, once complete
     
     public ChunkedUpload() {
-        this.uploadedChunks = new HashSet<>();
+        this.chunks = new ChunkBitmap(0);
         this.startTime = LocalDateTime.now();
         this.lastActivity = LocalDateTime.now();
         this.status = ChunkedUploadStatus.IN_PROGRESS;
@@ -41,6 +46,7 @@ public class ChunkedUpload {
         this.contentType = contentType;
         this.totalSize = totalSize;
         this.totalChunks = totalChunks;
+        this.chunks = new ChunkBitmap(totalChunks);
         this.chunkSize = chunkSize;
         this.uploadedBy = uploadedBy;
         this.title = title;
@@ -50,27 +56,38 @@ public class ChunkedUpload {
     }
     
     public boolean isComplete() {
-        return uploadedChunks.size() == totalChunks;
+        return receivedChunks.get() == totalChunks;
     }
     
     public double getProgress() {
         if (totalChunks == 0) return 0.0;
-        return ((double) uploadedChunks.size() / totalChunks) * 100.0;
+        return ((double) receivedChunks.get() / totalChunks) * 100.0;
     }
     
-    public void addUploadedChunk(int chunkNumber) {
-        uploadedChunks.add(chunkNumber);
+    public boolean hasChunk(int chunkNumber) {
+        return chunks.get(chunkNumber);
+    }
+    
+    /**
+     * Record a chunk written to its place in the file
+     *
+     * @return true only for the one call that received the last missing chunk
+     */
+    public boolean markChunkReceived(int chunkNumber, long bytes) {
+        if (!chunks.set(chunkNumber)) {
+            return false; // Same chunk sent twice at once
+        }
         lastActivity = LocalDateTime.now();
+        receivedBytes.addAndGet(bytes); // Before the count, so the last caller sees every chunk's bytes
+        return receivedChunks.incrementAndGet() == totalChunks;
+    }
+    
+    public int getUploadedChunkCount() {
+        return receivedChunks.get();
     }
     
     public Set<Integer> getMissingChunks() {
-        Set<Integer> missing = new HashSet<>();
-        for (int i = 0; i < totalChunks; i++) {
-            if (!uploadedChunks.contains(i)) {
-                missing.add(i);
-            }
-        }
-        return missing;
+        return chunks.missing();
     }
     
     // Getters and Setters
@@ -87,7 +104,11 @@ public class ChunkedUpload {
     public void setTotalSize(long totalSize) { this.totalSize = totalSize; }
     
     public int getTotalChunks() { return totalChunks; }
-    public void setTotalChunks(int totalChunks) { this.totalChunks = totalChunks; }
+    public void setTotalChunks(int totalChunks) {
+        this.totalChunks = totalChunks;
+        this.chunks = new ChunkBitmap(totalChunks);
+        this.receivedChunks.set(0);
+    }
     
     public int getChunkSize() { return chunkSize; }
     public void setChunkSize(int chunkSize) { this.chunkSize = chunkSize; }
@@ -104,8 +125,10 @@ public class ChunkedUpload {
     public ChunkedUploadStatus getStatus() { return status; }
     public void setStatus(ChunkedUploadStatus status) { this.status = status; }
     
-    public Set<Integer> getUploadedChunks() { return uploadedChunks; }
-    public void setUploadedChunks(Set<Integer> uploadedChunks) { this.uploadedChunks = uploadedChunks; }
+    /**
+     * Snapshot of the chunks received so far
+     */
+    public Set<Integer> getUploadedChunks() { return chunks.received(); }
     
     public String getTitle() { return title; }
     public void setTitle(String title) { this.title = title; }
@@ -121,4 +144,9 @@ public class ChunkedUpload {
     
     public String getChecksum() { return checksum; }
     public void setChecksum(String checksum) { this.checksum = checksum; }
+    
+    public String getContentHash() { return contentHash; }
+    public void setContentHash(String contentHash) { this.contentHash = contentHash; }
+    
+    public long getReceivedBytes() { return receivedBytes.get(); }
 }
\ No newline at end of file
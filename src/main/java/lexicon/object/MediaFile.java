@@ -17,6 +17,15 @@ public class MediaFile {
     private boolean isPublic;
     private MediaType mediaType;
     private String sourceUrl; // YouTube or external link
+    private String etag; // Content hash computed at ingest (strong HTTP validator)
+    
+    // Probed at ingest with ffprobe; 0/null when unknown
+    private long durationMs;
+    private long bitrate; // Bits per second, whole container
+    private String videoCodec;
+    private String audioCodec;
+    private int width;
+    private int height;
     
     public MediaFile() {}
     
@@ -78,6 +87,27 @@ public class MediaFile {
     public String getSourceUrl() { return sourceUrl; }
     public void setSourceUrl(String sourceUrl) { this.sourceUrl = sourceUrl; }
     
+    public String getEtag() { return etag; }
+    public void setEtag(String etag) { this.etag = etag; }
+    
+    public long getDurationMs() { return durationMs; }
+    public void setDurationMs(long durationMs) { this.durationMs = durationMs; }
+    
+    public long getBitrate() { return bitrate; }
+    public void setBitrate(long bitrate) { this.bitrate = bitrate; }
+    
+    public String getVideoCodec() { return videoCodec; }
+    public void setVideoCodec(String videoCodec) { this.videoCodec = videoCodec; }
+    
+    public String getAudioCodec() { return audioCodec; }
+    public void setAudioCodec(String audioCodec) { this.audioCodec = audioCodec; }
+    
+    public int getWidth() { return width; }
+    public void setWidth(int width) { this.width = width; }
+    
+    public int getHeight() { return height; }
+    public void setHeight(int height) { this.height = height; }
+    
     @Override
     public String toString() {
         return "MediaFile{id=" + id + ", title='" + title + "', filename='" + filename + "', uploadedBy=" + uploadedBy + "}";
@@ -1,32 +1,95 @@
 package lexicon.object;
 
+import java.util.List;
+
 /**
  * Result object for streaming operations with Range request support
  * Contains file data chunk and metadata for HTTP 206 Partial Content responses
+ *
+ * File-system media carries only the relative storage path and the range,
+ * so the bytes can be transferred straight from disk to the response.
+ * Database-stored media is database-backed: the range is read from the
+ * file_data table in bounded chunks while the response is written.
+ * Results built with an explicit {@code data} array carry the requested bytes.
+ * A multi-range result (multipart/byteranges) lists its ranges.
  */
 public class StreamResult {
     private final byte[] data;
+    private final String filePath;
     private final long start;
     private final long end;
     private final long totalSize;
     private final boolean isPartialContent;
     private final String contentType;
+    private final List<ByteRange> ranges;
+    private final boolean databaseBacked;
     
     public StreamResult(byte[] data, long start, long end, long totalSize, 
                       boolean isPartialContent, String contentType) {
+        this(data, null, start, end, totalSize, isPartialContent, contentType, null, false);
+    }
+    
+    private StreamResult(byte[] data, String filePath, long start, long end, long totalSize,
+                         boolean isPartialContent, String contentType, List<ByteRange> ranges,
+                         boolean databaseBacked) {
+        this.databaseBacked = databaseBacked;
         this.data = data;
+        this.filePath = filePath;
         this.start = start;
         this.end = end;
         this.totalSize = totalSize;
         this.isPartialContent = isPartialContent;
         this.contentType = contentType;
+        this.ranges = ranges;
+    }
+    
+    /**
+     * Create a result for a range of a file stored on the file system (no bytes loaded)
+     */
+    public static StreamResult fromFile(String filePath, long start, long end, long totalSize,
+                                        boolean isPartialContent, String contentType) {
+        return new StreamResult(null, filePath, start, end, totalSize, isPartialContent, contentType, null, false);
+    }
+    
+    /**
+     * Create a result for ranges of media stored in the database (no bytes loaded)
+     */
+    public static StreamResult fromDatabase(List<ByteRange> ranges, long totalSize, boolean isPartialContent,
+                                            String contentType) {
+        ByteRange first = ranges.get(0);
+        ByteRange last = ranges.get(ranges.size() - 1);
+        return new StreamResult(null, null, first.getStart(), last.getEnd(), totalSize, isPartialContent,
+                contentType, ranges.size() > 1 ? List.copyOf(ranges) : null, true);
+    }
+    
+    /**
+     * Create a result for several ranges, sent as multipart/byteranges.
+     * Pass the whole file as {@code data}, or a storage path.
+     */
+    public static StreamResult multiRange(byte[] data, String filePath, List<ByteRange> ranges,
+                                          long totalSize, String contentType) {
+        ByteRange first = ranges.get(0);
+        ByteRange last = ranges.get(ranges.size() - 1);
+        return new StreamResult(data, filePath, first.getStart(), last.getEnd(), totalSize, true,
+                contentType, List.copyOf(ranges), false);
     }
     
     public byte[] getData() { return data; }
+    public String getFilePath() { return filePath; }
+    public boolean isFileBacked() { return filePath != null; }
+    public boolean isDatabaseBacked() { return databaseBacked; }
     public long getStart() { return start; }
     public long getEnd() { return end; }
     public long getTotalSize() { return totalSize; }
     public boolean isPartialContent() { return isPartialContent; }
     public String getContentType() { return contentType; }
     public long getContentLength() { return end - start + 1; }
+    public boolean isMultiRange() { return ranges != null; }
+    
+    /**
+     * The ranges to send (a single range for ordinary results)
+     */
+    public List<ByteRange> getRanges() {
+        return ranges != null ? ranges : List.of(new ByteRange(start, end));
+    }
 }
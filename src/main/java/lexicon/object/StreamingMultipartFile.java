@@ -15,14 +15,24 @@ public class StreamingMultipartFile implements MultipartFile {
     private final String name;
     private final String originalFilename;
     private final String contentType;
-    private final Path filePath;
+    private volatile Path filePath;
     private final long size;
+    private final boolean movable;
+    private String contentHash;
     
     public StreamingMultipartFile(String name, String originalFilename, String contentType, Path filePath) {
+        this(name, originalFilename, contentType, filePath, false);
+    }
+    
+    /**
+     * @param movable whether storage may rename the file into place instead of copying it
+     */
+    public StreamingMultipartFile(String name, String originalFilename, String contentType, Path filePath, boolean movable) {
         this.name = name;
         this.originalFilename = originalFilename;
         this.contentType = contentType;
         this.filePath = filePath;
+        this.movable = movable;
         try {
             this.size = Files.size(filePath);
         } catch (IOException e) {
@@ -30,6 +40,32 @@ public class StreamingMultipartFile implements MultipartFile {
         }
     }
     
+    public Path getFilePath() {
+        return filePath;
+    }
+    
+    public boolean isMovable() {
+        return movable;
+    }
+    
+    /**
+     * SHA-256 of the content as lowercase hex, when already known, so storage need not read it again
+     */
+    public String getContentHash() {
+        return contentHash;
+    }
+    
+    public void setContentHash(String contentHash) {
+        this.contentHash = contentHash;
+    }
+    
+    /**
+     * Record that storage moved the file, so later reads find it at its new location
+     */
+    public void movedTo(Path newPath) {
+        this.filePath = newPath;
+    }
+    
     @Override
     public String getName() {
         return name;
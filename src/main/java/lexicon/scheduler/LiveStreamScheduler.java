@@ -11,8 +11,8 @@ import org.springframework.stereotype.Component;
 import java.util.concurrent.ConcurrentHashMap;
 
 /**
- * Background scheduler for live stream auto-advance
- * Checks periodically if current media has finished and advances to next
+ * Background scheduler for live stream heartbeats and state sync
+ * Auto-advance is timed per channel by LiveStreamService from media durations
  */
 @Component
 public class LiveStreamScheduler {
@@ -26,22 +26,6 @@ public class LiveStreamScheduler {
     private final ConcurrentHashMap<String, Integer> lastBroadcastMediaId = new ConcurrentHashMap<>();
     private final ConcurrentHashMap<String, Long> lastBroadcastStartTime = new ConcurrentHashMap<>();
     
-    /**
-     * Check every 5 seconds if media needs to advance
-     * This handles auto-advancing when media finishes playing
-     * DISABLED: Cannot use actual duration since media duration is not extracted from files yet
-     * TODO: Extract duration from video/audio files when uploading
-     */
-    // @Scheduled(fixedRate = 5000)
-    public void checkAndAdvanceStream() {
-        try {
-            liveStreamService.checkAndAdvanceIfNeeded("music");
-            liveStreamService.checkAndAdvanceIfNeeded("video");
-        } catch (Exception e) {
-            logger.error("Error in live stream scheduler: {}", e.getMessage(), e);
-        }
-    }
-    
     /**
      * Send heartbeat to all SSE connections every 30 seconds.
      * Prevents Cloudflare (100s idle timeout) and proxies from dropping the connection.
@@ -0,0 +1,480 @@
+package lexicon.service;
+
+import lexicon.config.StorageProperties;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.stereotype.Service;
+
+import jakarta.annotation.PreDestroy;
+import java.io.FilterOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.nio.ByteBuffer;
+import java.nio.channels.Channels;
+import java.nio.channels.FileChannel;
+import java.nio.channels.WritableByteChannel;
+import java.nio.file.Files;
+import java.nio.file.NoSuchFileException;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.stream.Stream;
+
+/**
+ * Low-bitrate audio renditions, transcoded with FFmpeg on first request.
+ *
+ * The first listener gets the encoder output as it is produced while it is also
+ * written to temp/cache/renditions; later listeners of the same rendition share
+ * the running encode, and once finished it is served from disk with range support.
+ * The directory is kept under lexicon.storage.rendition-cache-budget bytes by
+ * evicting the least recently used renditions.
+ */
+@Service
+public class AudioRenditionService {
+
+    public static final String QUALITY_LOW = "low";
+    public static final String CONTENT_TYPE = "audio/aac";
+
+    private static final String EXTENSION = ".aac";
+    private static final String PART_SUFFIX = ".part";
+    private static final long STALL_TIMEOUT_MILLIS = 30_000; // Encoder produced nothing for this long
+    private static final int COPY_BUFFER_SIZE = 64 * 1024;
+
+    /**
+     * Encodes a source file into the rendition format
+     */
+    @FunctionalInterface
+    interface Encoder {
+        /** Returns normally only if the whole rendition was written to out */
+        void encode(Path source, int kbps, OutputStream out) throws IOException;
+    }
+
+    @Autowired
+    private StorageProperties storageProperties;
+
+    Encoder encoder = AudioRenditionService::encodeWithFFmpeg;
+
+    private final Map<String, Job> activeJobs = new ConcurrentHashMap<>();
+
+    // Finished renditions (file name -> size), least recently used first
+    private final LinkedHashMap<String, Long> entries = new LinkedHashMap<>(64, 0.75f, true);
+    private long totalBytes;
+    private boolean scanned;
+
+    private long hits;
+    private long encodes;
+    private long evictions;
+
+    private volatile ExecutorService encoderPool;
+
+    @PreDestroy
+    public void shutdown() {
+        ExecutorService pool = encoderPool;
+        if (pool != null) {
+            pool.shutdownNow();
+        }
+    }
+
+    public static boolean isSupportedQuality(String quality) {
+        return QUALITY_LOW.equalsIgnoreCase(quality);
+    }
+
+    /**
+     * Open a rendition of a source file, starting an encode if it is not cached.
+     *
+     * @param key    stable name for the source, e.g. the media file id
+     * @return the rendition, or null if it could not be produced
+     */
+    public Rendition open(String key, Path source, String quality) throws IOException {
+        if (!isSupportedQuality(quality)) {
+            return null;
+        }
+        // The bitrate is part of the name, so a changed setting never serves or resumes an older encode
+        int kbps = storageProperties.getRenditionLowKbps();
+        String tag = QUALITY_LOW + "-" + kbps + "k";
+        Path directory = getCacheDir();
+        String fileName = key + "-" + tag + EXTENSION;
+        Path file = directory.resolve(fileName);
+        scanIfNeeded(directory);
+
+        Job job = activeJobs.get(fileName);
+        if (job == null) {
+            if (isFresh(file, source)) {
+                synchronized (this) {
+                    hits++;
+                    if (entries.get(fileName) == null) {
+                        addEntryLocked(fileName, Files.size(file));
+                    }
+                }
+                return new Rendition(file, tag, null);
+            }
+            job = startJob(fileName, file, source, kbps);
+        }
+
+        // Do not commit to a response until the encoder has produced something
+        try {
+            job.awaitBeyond(0);
+        } catch (IOException e) {
+            System.err.println("Audio rendition failed for " + source.getFileName() + ": " + e.getMessage());
+            return null;
+        }
+        return new Rendition(file, tag, job);
+    }
+
+    public synchronized Map<String, Object> getStats() {
+        Map<String, Object> stats = new HashMap<>();
+        stats.put("entries", entries.size());
+        stats.put("bytes", totalBytes);
+        stats.put("budget", storageProperties.getRenditionCacheBudget());
+        stats.put("encoding", activeJobs.size());
+        stats.put("hits", hits);
+        stats.put("encodes", encodes);
+        stats.put("evictions", evictions);
+        return stats;
+    }
+
+    Path getCacheDir() {
+        return Paths.get(storageProperties.getCachePath(), "renditions");
+    }
+
+    private Job startJob(String fileName, Path file, Path source, int kbps) throws IOException {
+        Files.createDirectories(file.getParent());
+        Job created = new Job(file.resolveSibling(fileName + PART_SUFFIX), file);
+        Job existing = activeJobs.putIfAbsent(fileName, created);
+        if (existing != null) {
+            return existing; // Another request started it first
+        }
+        Files.deleteIfExists(file);
+        Files.newOutputStream(created.partFile, StandardOpenOption.CREATE, StandardOpenOption.TRUNCATE_EXISTING).close();
+        synchronized (this) {
+            encodes++;
+            Long stale = entries.remove(fileName);
+            if (stale != null) {
+                totalBytes -= stale;
+            }
+        }
+        pool().submit(() -> runJob(fileName, created, source, kbps));
+        return created;
+    }
+
+    private void runJob(String fileName, Job job, Path source, int kbps) {
+        boolean success = false;
+        long startTime = System.currentTimeMillis();
+        try (OutputStream out = new ProgressOutputStream(
+                Files.newOutputStream(job.partFile, StandardOpenOption.WRITE), job)) {
+            encoder.encode(source, kbps, out);
+            success = job.getWritten() > 0;
+        } catch (IOException | RuntimeException e) {
+            System.err.println("Audio rendition encode failed for " + source.getFileName() + ": " + e.getMessage());
+        }
+
+        try {
+            if (success) {
+                Files.move(job.partFile, job.finalFile, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+                synchronized (this) {
+                    addEntryLocked(fileName, job.getWritten());
+                }
+                System.out.println("🎧 Audio rendition ready: " + fileName + " (" + job.getWritten() / 1024 + "KB, "
+                        + (System.currentTimeMillis() - startTime) / 1000 + "s)");
+            } else {
+                Files.deleteIfExists(job.partFile);
+            }
+        } catch (IOException e) {
+            success = false;
+            System.err.println("Could not store audio rendition " + fileName + ": " + e.getMessage());
+        } finally {
+            activeJobs.remove(fileName, job);
+            job.finish(success);
+        }
+    }
+
+    private boolean isFresh(Path file, Path source) throws IOException {
+        try {
+            return Files.getLastModifiedTime(file).compareTo(Files.getLastModifiedTime(source)) >= 0;
+        } catch (NoSuchFileException e) {
+            return false;
+        }
+    }
+
+    private void addEntryLocked(String fileName, long size) {
+        Long previous = entries.put(fileName, size);
+        totalBytes += size - (previous != null ? previous : 0);
+
+        long budget = storageProperties.getRenditionCacheBudget();
+        Iterator<Map.Entry<String, Long>> it = entries.entrySet().iterator();
+        while (totalBytes > budget && it.hasNext()) {
+            Map.Entry<String, Long> eldest = it.next();
+            if (eldest.getKey().equals(fileName)) {
+                continue; // Never evict what was just added
+            }
+            try {
+                // Listeners still reading an evicted file keep their open handle
+                Files.deleteIfExists(getCacheDir().resolve(eldest.getKey()));
+            } catch (IOException e) {
+                System.err.println("Could not evict audio rendition " + eldest.getKey() + ": " + e.getMessage());
+                continue;
+            }
+            totalBytes -= eldest.getValue();
+            evictions++;
+            it.remove();
+        }
+    }
+
+    /**
+     * Pick up renditions left by earlier runs, oldest first, and remove unfinished ones
+     */
+    private synchronized void scanIfNeeded(Path directory) throws IOException {
+        if (scanned) {
+            return;
+        }
+        scanned = true;
+        if (!Files.isDirectory(directory)) {
+            return;
+        }
+        List<Path> files = new ArrayList<>();
+        try (Stream<Path> list = Files.list(directory)) {
+            list.forEach(files::add);
+        }
+        files.sort(Comparator.comparingLong(path -> path.toFile().lastModified()));
+        for (Path path : files) {
+            String name = path.getFileName().toString();
+            if (name.endsWith(PART_SUFFIX)) {
+                Files.deleteIfExists(path);
+            } else if (name.endsWith(EXTENSION)) {
+                addEntryLocked(name, Files.size(path));
+            }
+        }
+    }
+
+    private ExecutorService pool() {
+        ExecutorService pool = encoderPool;
+        if (pool == null) {
+            synchronized (this) {
+                pool = encoderPool;
+                if (pool == null) {
+                    pool = Executors.newFixedThreadPool(Math.max(1, storageProperties.getTranscodingJobs()), r -> {
+                        Thread t = new Thread(r, "audio-rendition");
+                        t.setDaemon(true);
+                        return t;
+                    });
+                    encoderPool = pool;
+                }
+            }
+        }
+        return pool;
+    }
+
+    /**
+     * AAC in ADTS framing: compact, plays in every browser and can be streamed as it is written
+     */
+    private static void encodeWithFFmpeg(Path source, int kbps, OutputStream out) throws IOException {
+        List<String> command = List.of("ffmpeg", "-nostdin", "-v", "error",
+                "-i", source.toString(),
+                "-vn", "-map", "0:a:0",
+                "-c:a", "aac", "-b:a", kbps + "k",
+                "-f", "adts", "pipe:1");
+        Process process = new ProcessBuilder(command)
+                .redirectError(ProcessBuilder.Redirect.DISCARD)
+                .start();
+        try (InputStream in = process.getInputStream()) {
+            in.transferTo(out);
+            int exitCode = process.waitFor();
+            if (exitCode != 0) {
+                throw new IOException("FFmpeg exited with code " + exitCode);
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new IOException("Interrupted while encoding", e);
+        } finally {
+            process.destroy();
+        }
+    }
+
+    /**
+     * A cached rendition, or one still being encoded
+     */
+    public static final class Rendition {
+        private final Path file;
+        private final String tag;
+        private final Job job;
+
+        private Rendition(Path file, String tag, Job job) {
+            this.file = file;
+            this.tag = tag;
+            this.job = job;
+        }
+
+        /** True when the whole rendition is on disk and its size is known */
+        public boolean isComplete() {
+            return job == null;
+        }
+
+        public Path getFile() {
+            return file;
+        }
+
+        /** Quality and bitrate of this encode, e.g. "low-64k" */
+        public String getTag() {
+            return tag;
+        }
+
+        /** Size of a complete rendition */
+        public long getSize() throws IOException {
+            return Files.size(file);
+        }
+
+        /**
+         * Copy part of a complete rendition to out
+         */
+        public void writeRange(OutputStream out, long start, long length) throws IOException {
+            WritableByteChannel target = Channels.newChannel(out);
+            try (FileChannel channel = FileChannel.open(file, StandardOpenOption.READ)) {
+                long position = start;
+                long end = start + length;
+                while (position < end) {
+                    long sent = channel.transferTo(position, end - position, target);
+                    if (sent <= 0) {
+                        break;
+                    }
+                    position += sent;
+                }
+            }
+        }
+
+        /**
+         * Copy the rendition to out, following the encoder until it finishes if still in progress
+         */
+        public void writeTo(OutputStream out) throws IOException {
+            if (job == null) {
+                writeRange(out, 0, getSize());
+                return;
+            }
+            WritableByteChannel target = Channels.newChannel(out);
+            try (FileChannel channel = openChannel()) {
+                ByteBuffer buffer = ByteBuffer.allocate(COPY_BUFFER_SIZE);
+                long position = 0;
+                long available;
+                while ((available = job.awaitBeyond(position)) > position) {
+                    while (position < available) {
+                        buffer.clear();
+                        buffer.limit((int) Math.min(buffer.capacity(), available - position));
+                        int read = channel.read(buffer, position);
+                        if (read <= 0) {
+                            break;
+                        }
+                        buffer.flip();
+                        while (buffer.hasRemaining()) {
+                            target.write(buffer);
+                        }
+                        position += read;
+                    }
+                    out.flush();
+                }
+            }
+        }
+
+        private FileChannel openChannel() throws IOException {
+            try {
+                return FileChannel.open(job.partFile, StandardOpenOption.READ);
+            } catch (NoSuchFileException e) {
+                // Finished (and renamed) before this listener started reading
+                return FileChannel.open(file, StandardOpenOption.READ);
+            }
+        }
+    }
+
+    /**
+     * A running encode; readers wait on it for more output
+     */
+    static final class Job {
+        private final Path partFile;
+        private final Path finalFile;
+        private long written;
+        private boolean done;
+        private boolean failed;
+
+        Job(Path partFile, Path finalFile) {
+            this.partFile = partFile;
+            this.finalFile = finalFile;
+        }
+
+        synchronized long getWritten() {
+            return written;
+        }
+
+        synchronized void progress(long bytes) {
+            written += bytes;
+            notifyAll();
+        }
+
+        synchronized void finish(boolean success) {
+            done = true;
+            failed = !success;
+            notifyAll();
+        }
+
+        /**
+         * Wait until more than position bytes exist or the encode ends
+         *
+         * @return bytes written so far; equal to position once everything has been read
+         */
+        synchronized long awaitBeyond(long position) throws IOException {
+            long lastProgress = System.currentTimeMillis();
+            long seen = written;
+            while (written <= position && !done) {
+                try {
+                    wait(1000);
+                } catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                    throw new IOException("Interrupted while waiting for rendition", e);
+                }
+                long now = System.currentTimeMillis();
+                if (written != seen) {
+                    seen = written;
+                    lastProgress = now;
+                } else if (now - lastProgress > STALL_TIMEOUT_MILLIS) {
+                    throw new IOException("Rendition encoder stalled");
+                }
+            }
+            if (failed) {
+                throw new IOException("Rendition encode failed");
+            }
+            return written;
+        }
+    }
+
+    /**
+     * Reports every write to the job so readers can follow the file
+     */
+    private static final class ProgressOutputStream extends FilterOutputStream {
+        private final Job job;
+
+        ProgressOutputStream(OutputStream out, Job job) {
+            super(out);
+            this.job = job;
+        }
+
+        @Override
+        public void write(int b) throws IOException {
+            out.write(b);
+            job.progress(1);
+        }
+
+        @Override
+        public void write(byte[] b, int off, int len) throws IOException {
+            out.write(b, off, len);
+            job.progress(len);
+        }
+    }
+}
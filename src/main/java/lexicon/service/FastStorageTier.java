@@ -0,0 +1,352 @@
+package lexicon.service;
+
+import java.io.IOException;
+import java.nio.file.*;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.Consumer;
+import java.util.stream.Stream;
+
+/**
+ * Fast local staging tier in front of the slow base storage volume.
+ *
+ * Files keep the same relative path on both tiers. New uploads are written to the
+ * fast directory first and copied through to the base volume by a single background
+ * mover; until that copy finishes the file is "dirty" and is never evicted. Files
+ * that are streamed often (by distinct plays, not range requests) are promoted
+ * (copied) from base to the fast tier. When the
+ * fast tier exceeds its byte budget, the least recently used clean files are deleted
+ * from it - the base copy stays authoritative.
+ */
+public class FastStorageTier {
+
+    private static final String PART_SUFFIX = ".part";
+    private static final int MAX_TRACKED_READS = 10_000;
+
+    private final Path fastRoot;
+    private final Path baseRoot;
+    private final long budgetBytes;
+    private final int promoteAfterReads;
+    private final Consumer<String> onRelocated;
+
+    // relative path -> resident entry, in access order for LRU eviction
+    private final LinkedHashMap<String, Entry> resident = new LinkedHashMap<>(64, 0.75f, true);
+    private final Map<String, AtomicInteger> readCounts = new ConcurrentHashMap<>();
+    private final PlayCounter plays = new PlayCounter(MAX_TRACKED_READS);
+    private final Set<String> pendingPromotions = ConcurrentHashMap.newKeySet();
+    private final Object writeLock = new Object(); // Serializes write-through with flush/remove
+    private final ExecutorService mover = Executors.newSingleThreadExecutor(r -> {
+        Thread t = new Thread(r, "fast-tier-mover");
+        t.setDaemon(true);
+        return t;
+    });
+    private long usedBytes;
+
+    private long writeThroughs;
+    private long promotions;
+    private long evictions;
+
+    /**
+     * @param onRelocated called with a relative path whenever the file it resolves to
+     *                    changes tier, so callers can drop cached handles
+     */
+    public FastStorageTier(Path fastRoot, Path baseRoot, long budgetBytes, int promoteAfterReads,
+                           Consumer<String> onRelocated) {
+        this.fastRoot = fastRoot;
+        this.baseRoot = baseRoot;
+        this.budgetBytes = budgetBytes;
+        this.promoteAfterReads = promoteAfterReads;
+        this.onRelocated = onRelocated;
+    }
+
+    /**
+     * Rebuild the index from the fast directory and re-queue files whose
+     * write-through did not finish before the last shutdown.
+     */
+    public void start() throws IOException {
+        Files.createDirectories(fastRoot);
+        int dirty = 0;
+        try (Stream<Path> files = Files.walk(fastRoot)) {
+            for (Path file : (Iterable<Path>) files.filter(Files::isRegularFile)::iterator) {
+                if (file.getFileName().toString().endsWith(PART_SUFFIX)) {
+                    Files.deleteIfExists(file); // Interrupted promotion
+                    continue;
+                }
+                String relativePath = fastRoot.relativize(file).toString();
+                long size = Files.size(file);
+                Path basePath = baseRoot.resolve(relativePath);
+                boolean synced = Files.exists(basePath) && Files.size(basePath) == size;
+
+                synchronized (this) {
+                    resident.put(relativePath, new Entry(size, !synced));
+                    usedBytes += size;
+                }
+                if (!synced) {
+                    dirty++;
+                    scheduleWriteThrough(relativePath);
+                }
+            }
+        }
+        synchronized (this) {
+            System.out.println("⚡ Fast tier " + fastRoot + ": " + resident.size() + " file(s), "
+                    + (usedBytes / (1024 * 1024)) + "MB, " + dirty + " pending write-through");
+        }
+        evictIfOverBudget();
+    }
+
+    public void shutdown() {
+        mover.shutdown();
+        try {
+            // Let an in-flight copy finish; unfinished work is re-queued on next start
+            mover.awaitTermination(30, TimeUnit.SECONDS);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+
+    /**
+     * Fast-tier location of a file, or null if it only lives on the base volume
+     */
+    public Path locate(String relativePath) {
+        synchronized (this) {
+            if (resident.get(relativePath) == null) {
+                return null;
+            }
+        }
+        return fastRoot.resolve(relativePath);
+    }
+
+    /**
+     * Where a new file should be written, or null if it is too large for the fast tier
+     */
+    public Path pathForNewFile(String relativePath, long expectedSize) {
+        if (expectedSize > budgetBytes / 2) {
+            return null;
+        }
+        return fastRoot.resolve(relativePath);
+    }
+
+    /**
+     * Register a file just written to the fast tier and queue its copy to the base volume
+     */
+    public void fileWritten(String relativePath) throws IOException {
+        long size = Files.size(fastRoot.resolve(relativePath));
+        synchronized (this) {
+            Entry previous = resident.put(relativePath, new Entry(size, true));
+            usedBytes += size - (previous != null ? previous.size : 0);
+        }
+        scheduleWriteThrough(relativePath);
+        evictIfOverBudget();
+    }
+
+    /**
+     * Count a streaming read of a base-volume file and promote it once it is hot.
+     * Only the first range of each play counts (see {@link PlayCounter}).
+     */
+    public void recordRead(String relativePath, long size, long start, String clientKey) {
+        if (promoteAfterReads <= 0 || size > budgetBytes / 4) {
+            return;
+        }
+        synchronized (this) {
+            if (resident.containsKey(relativePath)) {
+                return;
+            }
+        }
+        if (!plays.isNewPlay(relativePath, start, clientKey)) {
+            return;
+        }
+        if (readCounts.size() > MAX_TRACKED_READS) {
+            readCounts.clear(); // Crude decay - hot files quickly re-qualify
+        }
+        int reads = readCounts.computeIfAbsent(relativePath, k -> new AtomicInteger()).incrementAndGet();
+        if (reads >= promoteAfterReads && pendingPromotions.add(relativePath)) {
+            readCounts.remove(relativePath);
+            try {
+                mover.submit(() -> promote(relativePath));
+            } catch (RejectedExecutionException e) {
+                pendingPromotions.remove(relativePath); // Shutting down
+            }
+        }
+    }
+
+    /**
+     * Make sure the base volume has an up-to-date copy (blocks until written through)
+     */
+    public void flush(String relativePath) throws IOException {
+        boolean dirty;
+        synchronized (this) {
+            Entry entry = resident.get(relativePath);
+            dirty = entry != null && entry.dirty;
+        }
+        if (dirty) {
+            writeThrough(relativePath);
+        }
+    }
+
+    /**
+     * Drop the fast-tier copy of a file (after delete or move on the base volume)
+     */
+    public void remove(String relativePath) {
+        pendingPromotions.remove(relativePath); // A running promotion discards its copy
+        Entry removed;
+        synchronized (writeLock) {
+            synchronized (this) {
+                removed = resident.remove(relativePath);
+                if (removed != null) {
+                    usedBytes -= removed.size;
+                }
+            }
+        }
+        if (removed != null) {
+            try {
+                Files.deleteIfExists(fastRoot.resolve(relativePath));
+            } catch (IOException e) {
+                System.err.println("Failed to remove fast tier copy: " + relativePath + " - " + e.getMessage());
+            }
+        }
+    }
+
+    public synchronized Map<String, Object> getStats() {
+        Map<String, Object> stats = new HashMap<>();
+        long dirty = resident.values().stream().filter(e -> e.dirty).count();
+        stats.put("path", fastRoot.toString());
+        stats.put("budgetBytes", budgetBytes);
+        stats.put("usedBytes", usedBytes);
+        stats.put("files", resident.size());
+        stats.put("pendingWriteThrough", dirty);
+        stats.put("writeThroughs", writeThroughs);
+        stats.put("promotions", promotions);
+        stats.put("pendingPromotions", pendingPromotions.size());
+        stats.put("evictions", evictions);
+        return stats;
+    }
+
+    private void scheduleWriteThrough(String relativePath) {
+        try {
+            mover.submit(() -> {
+                try {
+                    writeThrough(relativePath);
+                } catch (IOException e) {
+                    // Stays dirty; retried on next start or flush
+                    System.err.println("❌ Fast tier write-through failed for " + relativePath + ": " + e.getMessage());
+                }
+            });
+        } catch (RejectedExecutionException e) {
+            // Shutting down; stays dirty and is re-queued on next start
+        }
+    }
+
+    private void writeThrough(String relativePath) throws IOException {
+        synchronized (writeLock) {
+            synchronized (this) {
+                Entry entry = resident.get(relativePath);
+                if (entry == null || !entry.dirty) {
+                    return; // Deleted or already synced
+                }
+            }
+
+            copyAtomically(fastRoot.resolve(relativePath), baseRoot.resolve(relativePath));
+
+            synchronized (this) {
+                Entry entry = resident.get(relativePath);
+                if (entry != null) {
+                    entry.dirty = false;
+                }
+                writeThroughs++;
+            }
+        }
+        evictIfOverBudget();
+    }
+
+    private void promote(String relativePath) {
+        Path target = fastRoot.resolve(relativePath);
+        try {
+            Path source = baseRoot.resolve(relativePath);
+            if (!pendingPromotions.contains(relativePath) || !Files.exists(source)) {
+                return;
+            }
+            long size = Files.size(source);
+            copyAtomically(source, target);
+            synchronized (this) {
+                if (!pendingPromotions.contains(relativePath) || resident.containsKey(relativePath)) {
+                    // Removed (or written) while copying - keep whatever is authoritative
+                    if (!resident.containsKey(relativePath)) {
+                        Files.deleteIfExists(target);
+                    }
+                    return;
+                }
+                resident.put(relativePath, new Entry(size, false));
+                usedBytes += size;
+                promotions++;
+            }
+            onRelocated.accept(relativePath);
+            evictIfOverBudget();
+        } catch (IOException e) {
+            System.err.println("Fast tier promotion failed for " + relativePath + ": " + e.getMessage());
+        } finally {
+            pendingPromotions.remove(relativePath);
+        }
+    }
+
+    private void evictIfOverBudget() {
+        while (true) {
+            String victim = null;
+            synchronized (this) {
+                if (usedBytes <= budgetBytes) {
+                    return;
+                }
+                Iterator<Map.Entry<String, Entry>> it = resident.entrySet().iterator();
+                while (it.hasNext()) {
+                    Map.Entry<String, Entry> candidate = it.next();
+                    if (!candidate.getValue().dirty) {
+                        victim = candidate.getKey();
+                        usedBytes -= candidate.getValue().size;
+                        it.remove();
+                        evictions++;
+                        break;
+                    }
+                }
+            }
+            if (victim == null) {
+                return; // Only dirty files left - wait for the mover
+            }
+            // Readers are redirected to the base copy before the fast copy goes away
+            onRelocated.accept(victim);
+            try {
+                Files.deleteIfExists(fastRoot.resolve(victim));
+            } catch (IOException e) {
+                System.err.println("Failed to evict fast tier copy: " + victim + " - " + e.getMessage());
+            }
+        }
+    }
+
+    private static void copyAtomically(Path source, Path target) throws IOException {
+        Files.createDirectories(target.getParent());
+        Path part = target.resolveSibling(target.getFileName() + PART_SUFFIX);
+        Files.copy(source, part, StandardCopyOption.REPLACE_EXISTING);
+        try {
+            Files.move(part, target, StandardCopyOption.ATOMIC_MOVE, StandardCopyOption.REPLACE_EXISTING);
+        } catch (AtomicMoveNotSupportedException e) {
+            Files.move(part, target, StandardCopyOption.REPLACE_EXISTING);
+        }
+    }
+
+    private static final class Entry {
+        private final long size;
+        private boolean dirty;
+
+        private Entry(long size, boolean dirty) {
+            this.size = size;
+            this.dirty = dirty;
+        }
+    }
+}
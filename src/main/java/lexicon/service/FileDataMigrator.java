@@ -0,0 +1,259 @@
+package lexicon.service;
+
+import lexicon.config.StorageProperties;
+import lexicon.data.IMediaDatabase;
+import lexicon.object.MediaFile;
+import lexicon.object.MediaType;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.stereotype.Service;
+
+import jakarta.annotation.PostConstruct;
+import jakarta.annotation.PreDestroy;
+import java.io.IOException;
+import java.io.InputStream;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Background migration of media still stored in the file_data table onto the file system.
+ *
+ * Each row is streamed out of the database in chunks into OptimizedFileStorageService,
+ * then media_files.file_path is set and the row deleted in one transaction. The copy is
+ * throttled to lexicon.storage.file-data-migration-bytes-per-second so streaming is not
+ * starved. The remaining work is simply whatever is left in file_data, so an interrupted
+ * migration resumes after a restart; a file copied just before a crash is copied again.
+ */
+@Service
+public class FileDataMigrator {
+
+    static final int READ_CHUNK_SIZE = 1024 * 1024;
+
+    @Autowired
+    private IMediaDatabase mediaDatabase;
+
+    @Autowired
+    private OptimizedFileStorageService fileStorageService;
+
+    @Autowired
+    private StorageProperties storageProperties;
+
+    private ScheduledExecutorService scheduler;
+
+    private volatile String state = "IDLE";
+    private volatile int totalFiles;
+    private volatile int migratedFiles;
+    private volatile int failedFiles;
+    private volatile long totalBytes;
+    private volatile long processedBytes;
+    private volatile long startedAt;
+    private volatile int currentMediaFileId = -1;
+
+    @PostConstruct
+    public void init() {
+        if (!storageProperties.isFileDataMigrationEnabled()) {
+            return;
+        }
+        scheduler = Executors.newSingleThreadScheduledExecutor(r -> {
+            Thread t = new Thread(r, "file-data-migrator");
+            t.setDaemon(true);
+            t.setPriority(Thread.MIN_PRIORITY);
+            return t;
+        });
+        scheduler.schedule(() -> {
+            try {
+                migrateAll();
+            } catch (RuntimeException e) {
+                state = "FAILED";
+                System.err.println("❌ File data migration stopped: " + e.getMessage());
+            }
+        }, storageProperties.getFileDataMigrationStartDelaySeconds(), TimeUnit.SECONDS);
+    }
+
+    @PreDestroy
+    public void shutdown() {
+        if (scheduler != null) {
+            scheduler.shutdownNow();
+        }
+    }
+
+    /**
+     * Migrate every media file that still has a file_data row
+     */
+    public void migrateAll() {
+        List<Integer> ids = mediaDatabase.getMediaFileIdsWithFileData();
+        if (ids.isEmpty()) {
+            state = "DONE";
+            return;
+        }
+
+        long bytes = 0;
+        for (int id : ids) {
+            bytes += Math.max(0, mediaDatabase.getFileDataLength(id));
+        }
+        totalFiles = ids.size();
+        totalBytes = bytes;
+        migratedFiles = 0;
+        failedFiles = 0;
+        processedBytes = 0;
+        startedAt = System.currentTimeMillis();
+        state = "RUNNING";
+        System.out.println("📦 Migrating " + totalFiles + " database-stored media files (" + bytes / (1024 * 1024) + "MB) to the file system");
+
+        for (int id : ids) {
+            if (Thread.currentThread().isInterrupted()) {
+                state = "INTERRUPTED";
+                return; // Picked up again on the next start
+            }
+            currentMediaFileId = id;
+            long before = processedBytes;
+            long length = Math.max(0, mediaDatabase.getFileDataLength(id));
+            if (migrate(id)) {
+                migratedFiles++;
+            } else {
+                failedFiles++;
+            }
+            processedBytes = before + length;
+        }
+        currentMediaFileId = -1;
+        state = "DONE";
+        System.out.println("📦 File data migration finished: " + migratedFiles + " migrated, " + failedFiles + " failed in "
+                + (System.currentTimeMillis() - startedAt) / 1000 + "s");
+    }
+
+    /**
+     * Copy one media file's stored bytes to the file system and switch it over
+     *
+     * @return true if the file_data row is gone afterwards
+     */
+    boolean migrate(int mediaFileId) {
+        MediaFile mediaFile = mediaDatabase.getMediaFile(mediaFileId);
+        long length = mediaDatabase.getFileDataLength(mediaFileId);
+        if (mediaFile == null || length < 0) {
+            return false;
+        }
+
+        // Already on disk (e.g. stored twice by an old upload path) - just drop the copy in the database
+        String existingPath = mediaFile.getFilePath();
+        if (existingPath != null && !existingPath.isEmpty() && fileStorageService.fileExists(existingPath)) {
+            return mediaDatabase.moveFileDataToFilePath(mediaFileId, existingPath, mediaFile.getEtag());
+        }
+
+        MediaType type = mediaFile.getMediaType() != null ? mediaFile.getMediaType() : MediaType.OTHER;
+        String name = mediaFile.getOriginalFilename() != null ? mediaFile.getOriginalFilename() : mediaFile.getFilename();
+        String relativePath = null;
+        try (InputStream in = new FileDataInputStream(mediaFileId, length)) {
+            relativePath = fileStorageService.storeFileFromStream(in, name != null ? name : "media-" + mediaFileId,
+                    length, type, mediaFile);
+            if (fileStorageService.getFileSize(relativePath) != length) {
+                throw new IOException("Size mismatch after copy");
+            }
+            if (!mediaDatabase.moveFileDataToFilePath(mediaFileId, relativePath, mediaFile.getEtag())) {
+                throw new IOException("Could not update media_files");
+            }
+            return true;
+        } catch (IOException | RuntimeException e) {
+            System.err.println("❌ Could not migrate media " + mediaFileId + ": " + e.getMessage());
+            if (relativePath != null) {
+                fileStorageService.deleteFile(relativePath); // The database copy is still authoritative
+            }
+            return false;
+        }
+    }
+
+    public Map<String, Object> getStatus() {
+        Map<String, Object> status = new HashMap<>();
+        status.put("state", state);
+        status.put("totalFiles", totalFiles);
+        status.put("migratedFiles", migratedFiles);
+        status.put("failedFiles", failedFiles);
+        status.put("totalBytes", totalBytes);
+        status.put("processedBytes", processedBytes); // Migrated or failed
+        if (currentMediaFileId >= 0) {
+            status.put("currentMediaFileId", currentMediaFileId);
+        }
+
+        long elapsed = System.currentTimeMillis() - startedAt;
+        if ("RUNNING".equals(state) && processedBytes > 0 && elapsed > 0) {
+            double bytesPerSecond = processedBytes * 1000.0 / elapsed;
+            status.put("bytesPerSecond", (long) bytesPerSecond);
+            status.put("etaSeconds", (long) ((totalBytes - processedBytes) / bytesPerSecond));
+        }
+        if (totalBytes > 0) {
+            status.put("percentComplete", processedBytes * 100 / totalBytes);
+        }
+        return status;
+    }
+
+    /**
+     * Reads a file_data row a chunk at a time, paced to the configured migration rate
+     */
+    private class FileDataInputStream extends InputStream {
+        private final int mediaFileId;
+        private final long length;
+        private final long rateBytesPerSecond = storageProperties.getFileDataMigrationBytesPerSecond();
+        private final long openedAt = System.currentTimeMillis();
+        private byte[] chunk = new byte[0];
+        private int chunkOffset;
+        private long position;
+
+        FileDataInputStream(int mediaFileId, long length) {
+            this.mediaFileId = mediaFileId;
+            this.length = length;
+        }
+
+        @Override
+        public int read() throws IOException {
+            byte[] single = new byte[1];
+            return read(single, 0, 1) == 1 ? single[0] & 0xFF : -1;
+        }
+
+        @Override
+        public int read(byte[] b, int off, int len) throws IOException {
+            if (len == 0) {
+                return 0;
+            }
+            if (chunkOffset == chunk.length) {
+                if (position >= length) {
+                    return -1;
+                }
+                throttle();
+                byte[] next = mediaDatabase.getFileDataRange(mediaFileId, position,
+                        (int) Math.min(READ_CHUNK_SIZE, length - position));
+                if (next == null || next.length == 0) {
+                    throw new IOException("File data ended at byte " + position);
+                }
+                chunk = next;
+                chunkOffset = 0;
+                position += next.length;
+                processedBytes += next.length;
+            }
+            int count = Math.min(len, chunk.length - chunkOffset);
+            System.arraycopy(chunk, chunkOffset, b, off, count);
+            chunkOffset += count;
+            return count;
+        }
+
+        /**
+         * Sleep while this copy is ahead of the configured rate
+         */
+        private void throttle() throws IOException {
+            if (rateBytesPerSecond <= 0) {
+                return;
+            }
+            long due = openedAt + position * 1000 / rateBytesPerSecond;
+            long wait = due - System.currentTimeMillis();
+            if (wait > 0) {
+                try {
+                    Thread.sleep(wait);
+                } catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                    throw new IOException("Migration interrupted", e);
+                }
+            }
+        }
+    }
+}
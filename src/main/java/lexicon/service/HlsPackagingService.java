@@ -0,0 +1,205 @@
+package lexicon.service;
+
+import lexicon.config.StorageProperties;
+import lexicon.object.MediaFile;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.stereotype.Service;
+
+import jakarta.annotation.PreDestroy;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.regex.Pattern;
+import java.util.stream.Stream;
+
+/**
+ * Offline HLS packaging of stored videos into an adaptive bitrate ladder.
+ *
+ * Output goes to videos/transcoded/hls/{mediaFileId}/ as master.m3u8 plus one
+ * directory per rendition (v0, v1, ...). Packaging runs in the background on
+ * lexicon.storage.transcoding-jobs threads; playlists are published segment by
+ * segment, so playback can start before packaging finishes. A ".complete" marker
+ * records finished packages across restarts.
+ */
+@Service
+public class HlsPackagingService {
+
+    public enum Status { NONE, PACKAGING, READY, FAILED }
+
+    private static final String COMPLETE_MARKER = ".complete";
+    private static final Pattern VARIANT_NAME = Pattern.compile("v\\d{1,2}");
+    private static final Pattern FILE_NAME = Pattern.compile("index\\.m3u8|seg_\\d{5,}\\.ts");
+
+    @Autowired
+    private VideoTranscodingService transcodingService;
+
+    @Autowired
+    private OptimizedFileStorageService fileStorageService;
+
+    @Autowired
+    private StorageProperties storageProperties;
+
+    private final Map<Integer, Status> jobs = new ConcurrentHashMap<>();
+    private volatile ExecutorService packager;
+
+    @PreDestroy
+    public void shutdown() {
+        ExecutorService executor = packager;
+        if (executor != null) {
+            executor.shutdownNow();
+        }
+    }
+
+    public Status getStatus(int mediaFileId) {
+        Status status = jobs.get(mediaFileId);
+        if (status != null) {
+            return status;
+        }
+        return Files.exists(getOutputDir(mediaFileId).resolve(COMPLETE_MARKER)) ? Status.READY : Status.NONE;
+    }
+
+    /**
+     * Queue packaging for a stored video unless it is packaged or already being packaged
+     *
+     * @return the status after the request
+     */
+    public Status requestPackaging(MediaFile mediaFile) {
+        int mediaFileId = mediaFile.getId();
+        Status current = getStatus(mediaFileId);
+        if (current == Status.READY || current == Status.PACKAGING) {
+            return current;
+        }
+        if (mediaFile.getFilePath() == null || mediaFile.getFilePath().isEmpty()) {
+            return Status.NONE; // Only file-system media can be packaged
+        }
+        boolean claimed = jobs.putIfAbsent(mediaFileId, Status.PACKAGING) == null
+                || jobs.replace(mediaFileId, Status.FAILED, Status.PACKAGING); // Failed jobs may be retried
+        if (!claimed) {
+            return Status.PACKAGING;
+        }
+
+        String inputPath = fileStorageService.getReadablePath(mediaFile.getFilePath()).toString();
+        executor().submit(() -> packageVideo(mediaFileId, inputPath));
+        return Status.PACKAGING;
+    }
+
+    /**
+     * Master playlist location (it may not exist yet while packaging starts)
+     */
+    public Path getMasterPlaylist(int mediaFileId) {
+        return getOutputDir(mediaFileId).resolve("master.m3u8");
+    }
+
+    /**
+     * Resolve a rendition playlist or segment, or null if the names are not valid package entries
+     */
+    public Path resolve(int mediaFileId, String variant, String fileName) {
+        if (!VARIANT_NAME.matcher(variant).matches() || !FILE_NAME.matcher(fileName).matches()) {
+            return null;
+        }
+        return getOutputDir(mediaFileId).resolve(variant).resolve(fileName);
+    }
+
+    public Path getOutputDir(int mediaFileId) {
+        return Paths.get(storageProperties.getVideoTranscodedPath(), "hls", String.valueOf(mediaFileId));
+    }
+
+    /**
+     * Parse the configured ladder ("360:800,720:2800") into {height, kbps} pairs
+     */
+    static List<int[]> parseLadder(String ladder) {
+        List<int[]> renditions = new ArrayList<>();
+        for (String entry : ladder.split(",")) {
+            String[] parts = entry.trim().split(":");
+            if (parts.length != 2) {
+                continue;
+            }
+            try {
+                int height = Integer.parseInt(parts[0].trim());
+                int kbps = Integer.parseInt(parts[1].trim());
+                if (height > 0 && kbps > 0) {
+                    renditions.add(new int[] { height, kbps });
+                }
+            } catch (NumberFormatException e) {
+                System.err.println("Ignoring invalid HLS rendition: " + entry);
+            }
+        }
+        renditions.sort(Comparator.comparingInt(r -> r[0]));
+        return renditions;
+    }
+
+    private void packageVideo(int mediaFileId, String inputPath) {
+        Path outputDir = getOutputDir(mediaFileId);
+        List<int[]> renditions = parseLadder(storageProperties.getHlsLadder());
+        int segmentSeconds = Math.max(1, storageProperties.getHlsSegmentSeconds());
+        try {
+            if (renditions.isEmpty()) {
+                throw new IOException("No valid renditions in lexicon.storage.hls-ladder");
+            }
+            long startTime = System.currentTimeMillis();
+            prepareOutputDir(outputDir, renditions.size());
+
+            boolean success = transcodingService.packageHls(inputPath, outputDir.toString(), renditions, segmentSeconds, true);
+            if (!success && !Files.exists(getMasterPlaylist(mediaFileId))) {
+                // Most likely a source without an audio stream
+                prepareOutputDir(outputDir, renditions.size());
+                success = transcodingService.packageHls(inputPath, outputDir.toString(), renditions, segmentSeconds, false);
+            }
+
+            if (success) {
+                Files.createFile(outputDir.resolve(COMPLETE_MARKER));
+                jobs.remove(mediaFileId);
+                System.out.println("🎞️ HLS package ready for media " + mediaFileId + " ("
+                        + renditions.size() + " renditions, " + (System.currentTimeMillis() - startTime) / 1000 + "s)");
+            } else {
+                jobs.put(mediaFileId, Status.FAILED);
+                System.err.println("❌ HLS packaging failed for media " + mediaFileId);
+            }
+        } catch (IOException | RuntimeException e) {
+            jobs.put(mediaFileId, Status.FAILED);
+            System.err.println("❌ HLS packaging failed for media " + mediaFileId + ": " + e.getMessage());
+        }
+    }
+
+    /**
+     * Start from an empty output directory with one folder per rendition
+     */
+    private void prepareOutputDir(Path outputDir, int renditionCount) throws IOException {
+        if (Files.exists(outputDir)) {
+            try (Stream<Path> files = Files.walk(outputDir)) {
+                for (Path path : (Iterable<Path>) files.sorted(Comparator.reverseOrder())::iterator) {
+                    Files.delete(path);
+                }
+            }
+        }
+        for (int i = 0; i < renditionCount; i++) {
+            Files.createDirectories(outputDir.resolve("v" + i));
+        }
+    }
+
+    private ExecutorService executor() {
+        ExecutorService executor = packager;
+        if (executor == null) {
+            synchronized (this) {
+                executor = packager;
+                if (executor == null) {
+                    executor = Executors.newFixedThreadPool(Math.max(1, storageProperties.getTranscodingJobs()), r -> {
+                        Thread t = new Thread(r, "hls-packager");
+                        t.setDaemon(true);
+                        return t;
+                    });
+                    packager = executor;
+                }
+            }
+        }
+        return executor;
+    }
+}
@@ -19,11 +19,18 @@ import java.util.concurrent.ConcurrentHashMap;
 import java.util.concurrent.CopyOnWriteArrayList;
 import java.util.concurrent.ExecutorService;
 import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.TimeUnit;
 import java.util.stream.Collectors;
 
 /**
  * Service for managing the live stream with per-channel support.
  * Each channel ("music" or "video") has independent state, queue, and SSE connections.
+ * Channels advance on a timer set from the probed duration of the playing media, so
+ * the stream moves on with server time whether or not any client reports the end.
+ * Every change of the playing item (skip, client report, timer) runs under the
+ * channel's lock, and each timer only fires for the play it was set for.
  */
 @Service
 public class LiveStreamService {
@@ -37,6 +44,12 @@ public class LiveStreamService {
     @Autowired
     private IPlaylistDatabase playlistDb;
     
+    @Autowired(required = false)
+    private MediaProbeService mediaProbeService;
+    
+    @Autowired(required = false)
+    private OptimizedFileStorageService fileStorageService;
+    
     private final Random random = new Random();
     
     // Per-channel SSE emitters
@@ -52,28 +65,52 @@ public class LiveStreamService {
     
     // Per-channel mediaEnded debounce
     private final ConcurrentHashMap<String, Long> lastMediaEndedTime = new ConcurrentHashMap<>();
-    private final ConcurrentHashMap<String, Object> mediaEndedLocks = new ConcurrentHashMap<>();
+    
+    // Per-channel lock held by every change of the playing item
+    private final ConcurrentHashMap<String, Object> channelLocks = new ConcurrentHashMap<>();
+    
+    // Per-channel auto-advance timer for the playing media
+    private static final long END_GRACE_MS = 1000;           // Lets clients play out their buffers
+    private static final long CLIENT_END_TOLERANCE_MS = 5000; // Client reports earlier than this are ignored
+    private final ConcurrentHashMap<String, ScheduledFuture<?>> advanceTimers = new ConcurrentHashMap<>();
+    private final ConcurrentHashMap<String, Long> playGenerations = new ConcurrentHashMap<>(); // Bumped per play, under the channel lock
+    private final ScheduledExecutorService advanceScheduler = Executors.newSingleThreadScheduledExecutor(r -> {
+        Thread t = new Thread(r, "live-stream-advance");
+        t.setDaemon(true);
+        return t;
+    });
+    // Durations of media ingested before probing are probed here, never under a channel lock
+    private final ExecutorService probeExecutor = Executors.newSingleThreadExecutor(r -> {
+        Thread t = new Thread(r, "live-stream-probe");
+        t.setDaemon(true);
+        return t;
+    });
     
     @jakarta.annotation.PostConstruct
     public void initializeStream() {
         // Initialize emitter lists for both channels
         channelEmitters.put("music", new CopyOnWriteArrayList<>());
         channelEmitters.put("video", new CopyOnWriteArrayList<>());
-        mediaEndedLocks.put("music", new Object());
-        mediaEndedLocks.put("video", new Object());
+        channelLocks.put("music", new Object());
+        channelLocks.put("video", new Object());
         
         // Run initialization in background thread
         new Thread(() -> {
             try {
                 System.out.println("Initializing live stream channels...");
                 for (String channel : new String[]{"music", "video"}) {
-                    LiveStreamState state = liveStreamDb.getStreamState(channel);
-                    if (state.getCurrentMediaId() == 0) {
-                        System.out.println("No media playing on " + channel + " channel, selecting first...");
-                        selectAndPlayNextMediaFast(channel);
-                        System.out.println(channel + " channel initialized");
-                    } else {
-                        System.out.println(channel + " channel already has media ID: " + state.getCurrentMediaId());
+                    synchronized (channelLock(channel)) {
+                        LiveStreamState state = liveStreamDb.getStreamState(channel);
+                        if (state.getCurrentMediaId() == 0) {
+                            System.out.println("No media playing on " + channel + " channel, selecting first...");
+                            selectAndPlayNextMediaFast(channel);
+                            System.out.println(channel + " channel initialized");
+                        } else {
+                            System.out.println(channel + " channel already has media ID: " + state.getCurrentMediaId());
+                            // Resume the timer from the persisted start time; overdue media advances right away
+                            scheduleAdvance(channel, state.getCurrentMediaId(),
+                                Math.max(0, state.calculateCurrentPosition()));
+                        }
                     }
                 }
             } catch (Exception e) {
@@ -83,6 +120,13 @@ public class LiveStreamService {
         }, "LiveStream-Init").start();
     }
     
+    @jakarta.annotation.PreDestroy
+    public void shutdown() {
+        advanceScheduler.shutdownNow();
+        probeExecutor.shutdownNow();
+        broadcastExecutor.shutdownNow();
+    }
+    
     // ===== State & Queue =====
     
     public LiveStreamState getStreamState(String channel) {
@@ -210,7 +254,12 @@ public class LiveStreamService {
         LiveStreamState state = liveStreamDb.getStreamState(channel);
         
         if (voteCount >= state.getRequiredSkipVotes()) {
-            skipToNextFast(channel, currentQueueId);
+            synchronized (channelLock(channel)) {
+                if (!currentQueueId.equals(liveStreamDb.getCurrentPlayingQueueId(channel))) {
+                    return false; // Skipped or finished while the votes were counted
+                }
+                skipToNextFast(channel, currentQueueId);
+            }
             broadcastStateChange(channel);
             broadcastQueueChange(channel);
             System.out.println("[SKIP:" + channel + "] Total time: " + (System.currentTimeMillis() - start) + "ms");
@@ -221,27 +270,41 @@ public class LiveStreamService {
     }
     
     public void skipToNext(String channel) {
-        Integer currentQueueId = liveStreamDb.getCurrentPlayingQueueId(channel);
-        if (currentQueueId != null) {
-            skipToNextFast(channel, currentQueueId);
-        } else {
-            selectAndPlayNextMediaFast(channel);
+        synchronized (channelLock(channel)) {
+            Integer currentQueueId = liveStreamDb.getCurrentPlayingQueueId(channel);
+            if (currentQueueId != null) {
+                skipToNextFast(channel, currentQueueId);
+            } else {
+                selectAndPlayNextMediaFast(channel);
+            }
         }
     }
     
     public void mediaEnded(String channel) {
-        Object lock = mediaEndedLocks.computeIfAbsent(channel, k -> new Object());
-        
-        synchronized (lock) {
+        ScheduledFuture<?> timer = advanceTimers.get(channel);
+        if (timer != null && timer.getDelay(TimeUnit.MILLISECONDS) > CLIENT_END_TOLERANCE_MS) {
+            // The server knows the duration; a client ending early (seeked, clock skew) does not advance everyone
+            System.out.println("[MEDIA_ENDED:" + channel + "] Ignoring, " + timer.getDelay(TimeUnit.SECONDS) + "s left by server time");
+            return;
+        }
+        advance(channel, "Media ended", true);
+    }
+    
+    /**
+     * Complete the playing item and start the next one. Client reports are debounced to
+     * once per 3 seconds per channel, since every connected client sends one.
+     */
+    private void advance(String channel, String reason, boolean fromClient) {
+        synchronized (channelLock(channel)) {
             long now = System.currentTimeMillis();
             Long lastTime = lastMediaEndedTime.get(channel);
             
-            if (lastTime != null && now - lastTime < 3000) {
+            if (fromClient && lastTime != null && now - lastTime < 3000) {
                 System.out.println("[MEDIA_ENDED:" + channel + "] Ignoring duplicate call (within 3s)");
                 return;
             }
             
-            System.out.println("[MEDIA_ENDED:" + channel + "] Media ended, advancing...");
+            System.out.println("[MEDIA_ENDED:" + channel + "] " + reason + ", advancing...");
             
             Integer currentQueueId = liveStreamDb.getCurrentPlayingQueueId(channel);
             if (currentQueueId != null) {
@@ -259,12 +322,22 @@ public class LiveStreamService {
     
     // ===== Internal =====
     
+    private Object channelLock(String channel) {
+        return channelLocks.computeIfAbsent(channel, k -> new Object());
+    }
+    
+    /**
+     * Mark the playing item skipped and start the next one; caller holds the channel lock
+     */
     private void skipToNextFast(String channel, int currentQueueId) {
         liveStreamDb.updateQueueStatus(currentQueueId, LiveStreamQueue.QueueStatus.SKIPPED);
         liveStreamDb.clearSkipVotesForItem(currentQueueId);
         selectAndPlayNextMediaFast(channel);
     }
     
+    /**
+     * Start the next queued (or a random) item; caller holds the channel lock
+     */
     private void selectAndPlayNextMediaFast(String channel) {
         List<LiveStreamQueue> items = liveStreamDb.getQueueItemsLightweight(channel);
         
@@ -285,6 +358,7 @@ public class LiveStreamService {
             liveStreamDb.updateQueueStatus(nextItem.getId(), LiveStreamQueue.QueueStatus.PLAYING);
             liveStreamDb.setCurrentMedia(channel, nextItem.getMediaFileId(), 0);
             liveStreamDb.clearSkipVotesForItem(nextItem.getId());
+            scheduleAdvance(channel, nextItem.getMediaFileId(), 0);
             broadcastStateChange(channel);
             broadcastQueueChange(channel);
         } else {
@@ -294,12 +368,108 @@ public class LiveStreamService {
                 int queueId = liveStreamDb.addToQueue(channel, randomMediaId, 0);
                 liveStreamDb.updateQueueStatus(queueId, LiveStreamQueue.QueueStatus.PLAYING);
                 liveStreamDb.setCurrentMedia(channel, randomMediaId, 0);
+                scheduleAdvance(channel, randomMediaId, 0);
                 broadcastStateChange(channel);
                 broadcastQueueChange(channel);
+            } else {
+                cancelAdvance(channel);
             }
         }
     }
     
+    /**
+     * Replace the channel's timer with one that fires when the given media, already
+     * positionMs in, finishes. Without a known duration the channel waits for clients.
+     * Caller holds the channel lock; a duration that must be probed first is probed in
+     * the background and the timer is set once it is known.
+     */
+    private void scheduleAdvance(String channel, int mediaId, long positionMs) {
+        long generation = playGenerations.merge(channel, 1L, Long::sum);
+        cancelTimer(channel);
+        
+        MediaFile media = mediaDb.getMediaFile(mediaId);
+        if (media != null && media.getDurationMs() <= 0 && needsProbe(media)) {
+            try {
+                probeExecutor.execute(() -> {
+                    long durationMs = probeDurationMs(media);
+                    synchronized (channelLock(channel)) {
+                        if (playGenerations.getOrDefault(channel, 0L) == generation) { // Still the same play
+                            startTimer(channel, mediaId, generation, durationMs, positionMs);
+                        }
+                    }
+                });
+            } catch (java.util.concurrent.RejectedExecutionException e) {
+                // Shutting down
+            }
+            return;
+        }
+        startTimer(channel, mediaId, generation, media != null ? media.getDurationMs() : 0, positionMs);
+    }
+    
+    private void startTimer(String channel, int mediaId, long generation, long durationMs, long positionMs) {
+        if (durationMs <= 0) {
+            System.out.println("[ADVANCE:" + channel + "] Duration of media " + mediaId + " unknown, waiting for clients");
+            return;
+        }
+        
+        long delayMs = Math.max(0, durationMs - positionMs) + END_GRACE_MS;
+        try {
+            ScheduledFuture<?> timer = advanceScheduler.schedule(() -> {
+                try {
+                    synchronized (channelLock(channel)) {
+                        // A skip or client report since then started another play
+                        if (playGenerations.getOrDefault(channel, 0L) == generation) {
+                            advance(channel, "Media " + mediaId + " finished by server time", false);
+                        }
+                    }
+                } catch (Exception e) {
+                    System.err.println("Error auto-advancing " + channel + ": " + e.getMessage());
+                }
+            }, delayMs, TimeUnit.MILLISECONDS);
+            ScheduledFuture<?> previous = advanceTimers.put(channel, timer);
+            if (previous != null) {
+                previous.cancel(false);
+            }
+        } catch (java.util.concurrent.RejectedExecutionException e) {
+            // Shutting down
+        }
+    }
+    
+    /**
+     * Stop timing the current play; caller holds the channel lock
+     */
+    private void cancelAdvance(String channel) {
+        playGenerations.merge(channel, 1L, Long::sum);
+        cancelTimer(channel);
+    }
+    
+    private void cancelTimer(String channel) {
+        ScheduledFuture<?> previous = advanceTimers.remove(channel);
+        if (previous != null) {
+            previous.cancel(false);
+        }
+    }
+    
+    private boolean needsProbe(MediaFile media) {
+        return mediaProbeService != null && fileStorageService != null
+                && media.getFilePath() != null && !media.getFilePath().isEmpty();
+    }
+    
+    /**
+     * Probe the duration of media ingested before probing and store it.
+     * The copy may be stale by now, so only the probed columns are written.
+     */
+    private long probeDurationMs(MediaFile media) {
+        try {
+            if (mediaProbeService.probe(fileStorageService.getReadablePath(media.getFilePath()), media)) {
+                mediaDb.updateProbedMetadata(media);
+            }
+        } catch (RuntimeException e) {
+            System.err.println("Could not probe media " + media.getId() + ": " + e.getMessage());
+        }
+        return media.getDurationMs();
+    }
+    
     /**
      * Select random media filtered by channel type.
      * Music channel only picks MUSIC, video channel only picks VIDEO.
@@ -376,10 +546,16 @@ public class LiveStreamService {
         return rebuildMediaCache(channel);
     }
     
+    /**
+     * Start a play if the channel is idle. The state is read under the channel lock, so
+     * concurrent calls (or a call racing the timer) start at most one play.
+     */
     public void checkAndAdvanceIfNeeded(String channel) {
-        LiveStreamState state = liveStreamDb.getStreamState(channel);
-        if (state.getCurrentMediaId() == 0) {
-            selectAndPlayNextMediaFast(channel);
+        synchronized (channelLock(channel)) {
+            LiveStreamState state = liveStreamDb.getStreamState(channel);
+            if (state.getCurrentMediaId() == 0) {
+                selectAndPlayNextMediaFast(channel);
+            }
         }
     }
     
@@ -0,0 +1,449 @@
+package lexicon.service;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.channels.WritableByteChannel;
+import java.util.ArrayDeque;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+/**
+ * Off-heap cache of fixed-size media blocks, sized by lexicon.storage.cache-size.
+ *
+ * Blocks live in direct ByteBuffers so cached media never touches the Java heap.
+ * Eviction is LRU, but a missed block is only admitted over the LRU victim when a
+ * count-min frequency sketch says it is requested more often (TinyLFU admission).
+ * A single pass through a long video therefore cannot flush the intros of popular
+ * tracks. Blocks being written to a client are pinned and never recycled mid-write.
+ * A block read while its file is invalidated is served once but not cached.
+ */
+public class MediaBlockCache {
+
+    public static final int BLOCK_SIZE = 256 * 1024; // 256KB blocks
+
+    private final Object lock = new Object();
+    private final LinkedHashMap<BlockKey, Block> blocks = new LinkedHashMap<>(256, 0.75f, true);
+    private final ArrayDeque<ByteBuffer> freeBuffers = new ArrayDeque<>();
+    private final Map<String, PathLoads> loading = new HashMap<>(); // Files with block reads in flight
+    private FrequencySketch sketch = new FrequencySketch(1024);
+    private int maxBlocks; // 0 = disabled
+    private int allocatedBlocks;
+
+    private long hits;
+    private long misses;
+    private long admissions;
+    private long rejections;
+    private long evictions;
+    private long prefetchLoads;
+
+    /**
+     * Set the cache capacity in bytes. A capacity below one block disables the cache.
+     */
+    public void configure(long capacityBytes) {
+        synchronized (lock) {
+            maxBlocks = (int) Math.min(Integer.MAX_VALUE, Math.max(0, capacityBytes / BLOCK_SIZE));
+            sketch = new FrequencySketch(Math.max(1024, maxBlocks * 4));
+            while (allocatedBlocks > maxBlocks && evictEldestLocked()) {
+                discardFreeBufferLocked();
+            }
+        }
+    }
+
+    public boolean isEnabled() {
+        synchronized (lock) {
+            return maxBlocks > 0;
+        }
+    }
+
+    /**
+     * Write a byte range of a file to the target, serving cached blocks from memory
+     * and reading (and possibly admitting) the rest from the channel.
+     *
+     * @return number of bytes written
+     */
+    public long transfer(String key, FileChannel channel, long fileSize, long start, long length,
+                         WritableByteChannel target) throws IOException {
+        long end = Math.min(start + length, fileSize);
+        long position = start;
+
+        while (position < end) {
+            long blockIndex = position / BLOCK_SIZE;
+            long blockStart = blockIndex * BLOCK_SIZE;
+            int offset = (int) (position - blockStart);
+            int count = (int) Math.min(end - position, BLOCK_SIZE - offset);
+            BlockKey blockKey = new BlockKey(key, blockIndex);
+
+            Block block = pinOrLoad(blockKey, channel, blockStart, (int) Math.min(BLOCK_SIZE, fileSize - blockStart), false);
+            long written;
+            if (block != null) {
+                try {
+                    written = Math.max(0, Math.min(count, block.length - offset));
+                    writeFully(block.data, offset, (int) written, target);
+                } finally {
+                    unpin(block);
+                }
+            } else {
+                written = transferFully(channel, position, count, target);
+            }
+            if (written < count) {
+                position += written;
+                break; // File is shorter than it was when the size was read
+            }
+            position += count;
+        }
+        return position - start;
+    }
+
+    /**
+     * Load the blocks covering a range without writing them anywhere (read-ahead).
+     * Stops at the first block the admission policy rejects.
+     */
+    public void prefetch(String key, FileChannel channel, long fileSize, long start, long length) throws IOException {
+        long end = Math.min(start + length, fileSize);
+        for (long blockIndex = start / BLOCK_SIZE; blockIndex * BLOCK_SIZE < end; blockIndex++) {
+            long blockStart = blockIndex * BLOCK_SIZE;
+            Block block = pinOrLoad(new BlockKey(key, blockIndex), channel, blockStart,
+                    (int) Math.min(BLOCK_SIZE, fileSize - blockStart), true);
+            if (block == null) {
+                return;
+            }
+            unpin(block);
+        }
+    }
+    
+    /**
+     * Drop all cached blocks of a file (call before it is deleted, moved or rewritten)
+     */
+    public void invalidate(String key) {
+        synchronized (lock) {
+            Iterator<Map.Entry<BlockKey, Block>> it = blocks.entrySet().iterator();
+            while (it.hasNext()) {
+                Map.Entry<BlockKey, Block> entry = it.next();
+                if (entry.getKey().path.equals(key)) {
+                    it.remove();
+                    retireLocked(entry.getValue());
+                }
+            }
+            PathLoads loads = loading.get(key);
+            if (loads != null) {
+                loads.generation++;
+            }
+        }
+    }
+
+    /**
+     * Drop every block and release the off-heap memory
+     */
+    public void clear() {
+        synchronized (lock) {
+            for (Block block : blocks.values()) {
+                retireLocked(block);
+            }
+            blocks.clear();
+            for (PathLoads loads : loading.values()) {
+                loads.generation++;
+            }
+            while (!freeBuffers.isEmpty()) {
+                discardFreeBufferLocked();
+            }
+        }
+    }
+
+    /**
+     * Counters for sizing the cache
+     */
+    public Map<String, Object> getStats() {
+        synchronized (lock) {
+            Map<String, Object> stats = new HashMap<>();
+            long lookups = hits + misses;
+            stats.put("enabled", maxBlocks > 0);
+            stats.put("blockSize", BLOCK_SIZE);
+            stats.put("capacityBytes", (long) maxBlocks * BLOCK_SIZE);
+            stats.put("usedBytes", (long) blocks.size() * BLOCK_SIZE);
+            stats.put("allocatedBytes", (long) allocatedBlocks * BLOCK_SIZE);
+            stats.put("cachedBlocks", blocks.size());
+            stats.put("hits", hits);
+            stats.put("misses", misses);
+            stats.put("hitRatio", lookups == 0 ? 0.0 : (double) hits / lookups);
+            stats.put("admissions", admissions);
+            stats.put("rejections", rejections);
+            stats.put("evictions", evictions);
+            stats.put("prefetchLoads", prefetchLoads);
+            return stats;
+        }
+    }
+
+    private Block pinOrLoad(BlockKey blockKey, FileChannel channel, long blockStart, int blockLength,
+                            boolean prefetch) throws IOException {
+        ByteBuffer buffer;
+        PathLoads loads;
+        long generation;
+        synchronized (lock) {
+            if (maxBlocks == 0) {
+                return null;
+            }
+            sketch.increment(blockKey.hashCode());
+
+            Block cached = blocks.get(blockKey);
+            if (cached != null) {
+                if (!prefetch) {
+                    hits++;
+                }
+                cached.pins++;
+                return cached;
+            }
+            if (!prefetch) {
+                misses++;
+            }
+
+            buffer = reserveBufferLocked(blockKey);
+            if (buffer == null) {
+                rejections++;
+                return null;
+            }
+            loads = loading.computeIfAbsent(blockKey.path, path -> new PathLoads());
+            loads.inFlight++;
+            generation = loads.generation;
+        }
+
+        // Read the whole block outside the lock
+        try {
+            buffer.clear();
+            buffer.limit(blockLength);
+            while (buffer.hasRemaining()) {
+                if (channel.read(buffer, blockStart + buffer.position()) < 0) {
+                    break;
+                }
+            }
+            buffer.flip();
+        } catch (IOException | RuntimeException e) {
+            synchronized (lock) {
+                finishLoadLocked(blockKey.path, loads);
+                freeBuffers.push(buffer);
+            }
+            throw e;
+        }
+
+        synchronized (lock) {
+            finishLoadLocked(blockKey.path, loads);
+            if (loads.generation != generation) {
+                // The file was invalidated mid-read, so these bytes may be stale
+                freeBuffers.push(buffer);
+                return null;
+            }
+            Block existing = blocks.get(blockKey);
+            if (existing != null) {
+                // Loaded concurrently by another request
+                freeBuffers.push(buffer);
+                existing.pins++;
+                return existing;
+            }
+            Block block = new Block(buffer, buffer.limit());
+            block.pins = 1;
+            blocks.put(blockKey, block);
+            admissions++;
+            if (prefetch) {
+                prefetchLoads++;
+            }
+            return block;
+        }
+    }
+
+    /**
+     * Find a buffer for a new block: a free one, a fresh allocation while under
+     * capacity, or the LRU victim's if the candidate is requested more often.
+     */
+    private ByteBuffer reserveBufferLocked(BlockKey candidate) {
+        if (!freeBuffers.isEmpty()) {
+            return freeBuffers.pop();
+        }
+        if (allocatedBlocks < maxBlocks) {
+            ByteBuffer buffer;
+            try {
+                buffer = ByteBuffer.allocateDirect(BLOCK_SIZE);
+            } catch (OutOfMemoryError e) {
+                return null; // Direct memory is exhausted (-XX:MaxDirectMemorySize), so serve from disk
+            }
+            allocatedBlocks++;
+            return buffer;
+        }
+
+        for (Iterator<Map.Entry<BlockKey, Block>> it = blocks.entrySet().iterator(); it.hasNext(); ) {
+            Map.Entry<BlockKey, Block> victim = it.next();
+            if (victim.getValue().pins > 0) {
+                continue;
+            }
+            if (sketch.frequency(candidate.hashCode()) <= sketch.frequency(victim.getKey().hashCode())) {
+                return null;
+            }
+            it.remove();
+            evictions++;
+            return victim.getValue().data;
+        }
+        return null; // Everything is pinned
+    }
+
+    private boolean evictEldestLocked() {
+        for (Iterator<Map.Entry<BlockKey, Block>> it = blocks.entrySet().iterator(); it.hasNext(); ) {
+            Block block = it.next().getValue();
+            if (block.pins == 0) {
+                it.remove();
+                evictions++;
+                freeBuffers.push(block.data);
+                return true;
+            }
+        }
+        return !freeBuffers.isEmpty();
+    }
+
+    private void finishLoadLocked(String path, PathLoads loads) {
+        if (--loads.inFlight == 0) {
+            loading.remove(path);
+        }
+    }
+
+    private void discardFreeBufferLocked() {
+        if (freeBuffers.pollFirst() != null) {
+            allocatedBlocks--;
+        }
+    }
+
+    private void retireLocked(Block block) {
+        block.removed = true;
+        if (block.pins == 0) {
+            freeBuffers.push(block.data);
+        }
+    }
+
+    private void unpin(Block block) {
+        synchronized (lock) {
+            block.pins--;
+            if (block.removed && block.pins == 0) {
+                freeBuffers.push(block.data);
+            }
+        }
+    }
+
+    private static void writeFully(ByteBuffer data, int offset, int count, WritableByteChannel target) throws IOException {
+        ByteBuffer view = data.duplicate();
+        view.limit(offset + count);
+        view.position(offset);
+        while (view.hasRemaining()) {
+            target.write(view);
+        }
+    }
+
+    private static long transferFully(FileChannel channel, long position, long count, WritableByteChannel target) throws IOException {
+        long remaining = count;
+        while (remaining > 0) {
+            long sent = channel.transferTo(position, remaining, target);
+            if (sent <= 0) {
+                break;
+            }
+            position += sent;
+            remaining -= sent;
+        }
+        return count - remaining;
+    }
+
+    private static final class BlockKey {
+        private final String path;
+        private final long index;
+        private final int hash;
+
+        private BlockKey(String path, long index) {
+            this.path = path;
+            this.index = index;
+            this.hash = 31 * path.hashCode() + Long.hashCode(index);
+        }
+
+        @Override
+        public boolean equals(Object o) {
+            if (this == o) return true;
+            if (!(o instanceof BlockKey)) return false;
+            BlockKey other = (BlockKey) o;
+            return index == other.index && path.equals(other.path);
+        }
+
+        @Override
+        public int hashCode() { return hash; }
+    }
+
+    private static final class Block {
+        private final ByteBuffer data;
+        private final int length;
+        private int pins;
+        private boolean removed;
+
+        private Block(ByteBuffer data, int length) {
+            this.data = data;
+            this.length = length;
+        }
+    }
+
+    private static final class PathLoads {
+        private int inFlight;
+        private long generation; // Bumped by invalidate, checked before a loaded block is cached
+    }
+
+    /**
+     * Count-min sketch with 4-bit saturating counters, halved periodically so
+     * popularity decays over time.
+     */
+    static final class FrequencySketch {
+        private static final int DEPTH = 4;
+        private static final int[] SEEDS = { 0x9E3779B9, 0x85EBCA6B, 0xC2B2AE35, 0x27D4EB2F };
+
+        private final byte[][] counters;
+        private final int mask;
+        private final int resetThreshold;
+        private int additions;
+
+        FrequencySketch(int width) {
+            int size = Integer.highestOneBit(Math.max(16, width - 1) << 1);
+            counters = new byte[DEPTH][size];
+            mask = size - 1;
+            resetThreshold = size * 10;
+        }
+
+        void increment(int hash) {
+            boolean added = false;
+            for (int i = 0; i < DEPTH; i++) {
+                int index = indexOf(hash, i);
+                if (counters[i][index] < 15) {
+                    counters[i][index]++;
+                    added = true;
+                }
+            }
+            if (added && ++additions >= resetThreshold) {
+                reset();
+            }
+        }
+
+        int frequency(int hash) {
+            int min = Integer.MAX_VALUE;
+            for (int i = 0; i < DEPTH; i++) {
+                min = Math.min(min, counters[i][indexOf(hash, i)]);
+            }
+            return min;
+        }
+
+        private int indexOf(int hash, int row) {
+            int h = hash * SEEDS[row];
+            h ^= h >>> 16;
+            return h & mask;
+        }
+
+        private void reset() {
+            for (byte[] row : counters) {
+                for (int i = 0; i < row.length; i++) {
+                    row[i] = (byte) (row[i] >>> 1);
+                }
+            }
+            additions /= 2;
+        }
+    }
+}
@@ -0,0 +1,96 @@
+package lexicon.service;
+
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import lexicon.object.MediaFile;
+import org.springframework.stereotype.Service;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.file.Path;
+import java.util.List;
+
+/**
+ * Reads duration, bitrate, codecs and dimensions of stored media with ffprobe.
+ *
+ * Probing only reads container headers, so it runs inline during ingest and the
+ * results go into media_files with the rest of the metadata.
+ */
+@Service
+public class MediaProbeService {
+
+    private static final String FFPROBE_COMMAND = "ffprobe";
+
+    private final ObjectMapper mapper = new ObjectMapper();
+
+    /**
+     * Probe a file and copy what was found onto the media file
+     *
+     * @return true if ffprobe recognised the file
+     */
+    public boolean probe(Path file, MediaFile target) {
+        List<String> command = List.of(FFPROBE_COMMAND, "-v", "error",
+                "-print_format", "json", "-show_format", "-show_streams", file.toString());
+        try {
+            Process process = new ProcessBuilder(command)
+                    .redirectError(ProcessBuilder.Redirect.DISCARD)
+                    .start();
+            JsonNode probe;
+            try (InputStream output = process.getInputStream()) {
+                probe = mapper.readTree(output);
+            } finally {
+                if (process.waitFor() != 0) {
+                    System.err.println("ffprobe could not read " + file.getFileName());
+                }
+            }
+            return apply(probe, target);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            return false;
+        } catch (IOException | RuntimeException e) {
+            System.err.println("Could not probe " + file.getFileName() + ": " + e.getMessage());
+            return false;
+        }
+    }
+
+    /**
+     * Copy the fields of ffprobe's JSON output (-show_format -show_streams) onto the media file
+     */
+    boolean apply(JsonNode probe, MediaFile target) {
+        if (probe == null || !probe.has("format")) {
+            return false;
+        }
+        JsonNode format = probe.path("format");
+        double durationSeconds = format.path("duration").asDouble(0);
+        long bitrate = format.path("bit_rate").asLong(0);
+
+        String videoCodec = null;
+        String audioCodec = null;
+        int width = 0;
+        int height = 0;
+        for (JsonNode stream : probe.path("streams")) {
+            String type = stream.path("codec_type").asText("");
+            if ("video".equals(type) && videoCodec == null
+                    && stream.path("disposition").path("attached_pic").asInt(0) == 0) { // Not cover art
+                videoCodec = stream.path("codec_name").asText(null);
+                width = stream.path("width").asInt(0);
+                height = stream.path("height").asInt(0);
+            } else if ("audio".equals(type) && audioCodec == null) {
+                audioCodec = stream.path("codec_name").asText(null);
+            } else {
+                continue;
+            }
+            if (durationSeconds <= 0) {
+                durationSeconds = stream.path("duration").asDouble(0); // Some containers only time their streams
+            }
+        }
+
+        target.setVideoCodec(videoCodec);
+        target.setAudioCodec(audioCodec);
+        target.setWidth(width);
+        target.setHeight(height);
+        target.setDurationMs(Math.round(durationSeconds * 1000));
+        target.setBitrate(bitrate);
+        return true;
+    }
+}
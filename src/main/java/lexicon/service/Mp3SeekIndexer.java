@@ -0,0 +1,234 @@
+package lexicon.service;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+
+/**
+ * Builds a seek index for MPEG audio (MP3) by walking the frame headers.
+ *
+ * Every frame is visited, so the map is exact for CBR and VBR files alike
+ * (a Xing/Info TOC only has 100 coarse points). Frames are read through a
+ * large sequential window, which keeps a full scan of a long audiobook to a
+ * single pass over the file.
+ */
+final class Mp3SeekIndexer {
+
+    private static final int WINDOW_SIZE = 1024 * 1024;
+    private static final int MAX_RESYNC_BYTES = 1024 * 1024; // Give up on corrupt tails
+    private static final int FIRST_FRAME_SEARCH = 64 * 1024;
+
+    private static final int[][] BITRATES = {
+        { 0, 32, 64, 96, 128, 160, 192, 224, 256, 288, 320, 352, 384, 416, 448 }, // V1 L1
+        { 0, 32, 48, 56, 64, 80, 96, 112, 128, 160, 192, 224, 256, 320, 384 },    // V1 L2
+        { 0, 32, 40, 48, 56, 64, 80, 96, 112, 128, 160, 192, 224, 256, 320 },     // V1 L3
+        { 0, 32, 48, 56, 64, 80, 96, 112, 128, 144, 160, 176, 192, 224, 256 },    // V2 L1
+        { 0, 8, 16, 24, 32, 40, 48, 56, 64, 80, 96, 112, 128, 144, 160 }          // V2 L2/L3
+    };
+    private static final int[][] SAMPLE_RATES = {
+        { 11025, 12000, 8000 },  // MPEG 2.5
+        null,                    // reserved
+        { 22050, 24000, 16000 }, // MPEG 2
+        { 44100, 48000, 32000 }  // MPEG 1
+    };
+
+    private Mp3SeekIndexer() {
+    }
+
+    /**
+     * True if the file starts with an ID3v2 tag or an MPEG audio frame
+     */
+    static boolean matches(byte[] head) {
+        if (head.length >= 3 && head[0] == 'I' && head[1] == 'D' && head[2] == '3') {
+            return true;
+        }
+        return head.length >= 4 && Frame.parse(head[0], head[1], head[2], head[3]) != null;
+    }
+
+    static SeekIndex index(FileChannel channel, long fileSize, long intervalMillis) throws IOException {
+        Window window = new Window(channel, fileSize);
+        long end = fileSize;
+        if (fileSize >= 128 && window.get(fileSize - 128) == 'T' && window.get(fileSize - 127) == 'A'
+                && window.get(fileSize - 126) == 'G') {
+            end -= 128; // ID3v1 tag
+        }
+
+        long position = findFirstFrame(window, skipId3v2(window), end);
+        if (position < 0) {
+            return null;
+        }
+        Frame first = window.frame(position);
+        if (first.isXingHeader(window, position)) {
+            position += first.length; // Info frame carries no audio
+        }
+
+        SeekIndex.Builder builder = new SeekIndex.Builder(intervalMillis);
+        long timeMicros = 0;
+        long resyncBytes = 0;
+        while (position + 4 <= end) {
+            Frame frame = window.frame(position);
+            if (frame == null || !frame.sameStream(first)) {
+                if (++resyncBytes > MAX_RESYNC_BYTES) {
+                    break;
+                }
+                position++;
+                continue;
+            }
+            resyncBytes = 0;
+            builder.add(timeMicros / 1000, position);
+            timeMicros += frame.samples * 1_000_000L / frame.sampleRate;
+            position += frame.length;
+        }
+
+        return builder.isEmpty() ? null : builder.build("mp3", fileSize, timeMicros / 1000);
+    }
+
+    private static long skipId3v2(Window window) throws IOException {
+        if (window.size < 10 || window.get(0) != 'I' || window.get(1) != 'D' || window.get(2) != '3') {
+            return 0;
+        }
+        long size = ((window.get(6) & 0x7F) << 21) | ((window.get(7) & 0x7F) << 14)
+                | ((window.get(8) & 0x7F) << 7) | (window.get(9) & 0x7F);
+        boolean footer = (window.get(5) & 0x10) != 0;
+        return 10 + size + (footer ? 10 : 0);
+    }
+
+    /**
+     * First position holding two consecutive consistent frame headers
+     */
+    private static long findFirstFrame(Window window, long from, long end) throws IOException {
+        long limit = Math.min(end - 4, from + FIRST_FRAME_SEARCH);
+        for (long position = from; position <= limit; position++) {
+            Frame frame = window.frame(position);
+            if (frame == null) {
+                continue;
+            }
+            long next = position + frame.length;
+            if (next + 4 > end) {
+                return position; // Single-frame file
+            }
+            Frame following = window.frame(next);
+            if (following != null && following.sameStream(frame)) {
+                return position;
+            }
+        }
+        return -1;
+    }
+
+    private static final class Frame {
+        private final int version;   // 0 = MPEG 2.5, 2 = MPEG 2, 3 = MPEG 1
+        private final int layer;     // 1, 2 or 3
+        private final int sampleRate;
+        private final int length;
+        private final int samples;
+        private final boolean mono;
+
+        private Frame(int version, int layer, int sampleRate, int length, int samples, boolean mono) {
+            this.version = version;
+            this.layer = layer;
+            this.sampleRate = sampleRate;
+            this.length = length;
+            this.samples = samples;
+            this.mono = mono;
+        }
+
+        static Frame parse(byte b1, byte b2, byte b3, byte b4) {
+            if ((b1 & 0xFF) != 0xFF || (b2 & 0xE0) != 0xE0) {
+                return null;
+            }
+            int version = (b2 >> 3) & 0x03;
+            int layer = 4 - ((b2 >> 1) & 0x03);
+            int bitrateIndex = (b3 >> 4) & 0x0F;
+            int sampleRateIndex = (b3 >> 2) & 0x03;
+            if (version == 1 || layer == 4 || bitrateIndex == 0 || bitrateIndex == 15 || sampleRateIndex == 3) {
+                return null; // Reserved values or free format
+            }
+            int padding = (b3 >> 1) & 0x01;
+            boolean mpeg1 = version == 3;
+            int bitrate = BITRATES[mpeg1 ? layer - 1 : (layer == 1 ? 3 : 4)][bitrateIndex] * 1000;
+            int sampleRate = SAMPLE_RATES[version][sampleRateIndex];
+
+            int length;
+            int samples;
+            if (layer == 1) {
+                length = (12 * bitrate / sampleRate + padding) * 4;
+                samples = 384;
+            } else if (layer == 2 || mpeg1) {
+                length = 144 * bitrate / sampleRate + padding;
+                samples = 1152;
+            } else {
+                length = 72 * bitrate / sampleRate + padding;
+                samples = 576;
+            }
+            boolean mono = ((b4 >> 6) & 0x03) == 3;
+            return length > 4 ? new Frame(version, layer, sampleRate, length, samples, mono) : null;
+        }
+
+        boolean sameStream(Frame other) {
+            return version == other.version && layer == other.layer && sampleRate == other.sampleRate;
+        }
+
+        boolean isXingHeader(Window window, long position) throws IOException {
+            if (layer != 3) {
+                return false;
+            }
+            int sideInfo = version == 3 ? (mono ? 17 : 32) : (mono ? 9 : 17);
+            long tag = position + 4 + sideInfo;
+            if (tag + 4 > position + length || tag + 4 > window.size) {
+                return false;
+            }
+            String id = new String(new char[] {
+                (char) window.get(tag), (char) window.get(tag + 1), (char) window.get(tag + 2), (char) window.get(tag + 3)
+            });
+            return id.equals("Xing") || id.equals("Info");
+        }
+    }
+
+    /**
+     * Sequential read window over the file channel
+     */
+    private static final class Window {
+        private final FileChannel channel;
+        private final long size;
+        private final ByteBuffer buffer = ByteBuffer.allocate(WINDOW_SIZE);
+        private long bufferStart = -1;
+        private int bufferLength;
+
+        private Window(FileChannel channel, long size) {
+            this.channel = channel;
+            this.size = size;
+        }
+
+        int get(long position) throws IOException {
+            if (position < bufferStart || position >= bufferStart + bufferLength) {
+                fill(position);
+            }
+            return buffer.get((int) (position - bufferStart)) & 0xFF;
+        }
+
+        Frame frame(long position) throws IOException {
+            if (position + 4 > size) {
+                return null;
+            }
+            if (position < bufferStart || position + 4 > bufferStart + bufferLength) {
+                fill(position);
+            }
+            int offset = (int) (position - bufferStart);
+            return Frame.parse(buffer.get(offset), buffer.get(offset + 1), buffer.get(offset + 2), buffer.get(offset + 3));
+        }
+
+        private void fill(long position) throws IOException {
+            if (position >= size) {
+                throw new IOException("Read past end of file at " + position);
+            }
+            buffer.clear();
+            while (buffer.hasRemaining()) {
+                if (channel.read(buffer, position + buffer.position()) < 0) {
+                    break;
+                }
+            }
+            bufferStart = position;
+            bufferLength = buffer.position();
+        }
+    }
+}
@@ -0,0 +1,320 @@
+package lexicon.service;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Builds a seek index for MP4/M4A/M4B files from the sample table in the moov box.
+ *
+ * The video track is indexed if there is one (sync samples only, so every point is
+ * a keyframe), otherwise the first audio track. Sample times come from stts, sample
+ * positions from stsc + stco/co64 + stsz.
+ */
+final class Mp4SeekIndexer {
+
+    private static final long MAX_MOOV_SIZE = 128L * 1024 * 1024;
+
+    private Mp4SeekIndexer() {
+    }
+
+    /**
+     * True if the file starts with an ISO base media 'ftyp' box
+     */
+    static boolean matches(byte[] head) {
+        return head.length >= 8 && head[4] == 'f' && head[5] == 't' && head[6] == 'y' && head[7] == 'p';
+    }
+
+    static SeekIndex index(FileChannel channel, long fileSize, long intervalMillis) throws IOException {
+        ByteBuffer moov = readMoov(channel, fileSize);
+        if (moov == null) {
+            return null;
+        }
+
+        Track video = null;
+        Track audio = null;
+        for (ByteBuffer trak : children(moov, "trak")) {
+            Track track = Track.parse(trak);
+            if (track == null) {
+                continue;
+            }
+            if ("vide".equals(track.handler) && video == null) {
+                video = track;
+            } else if ("soun".equals(track.handler) && audio == null) {
+                audio = track;
+            }
+        }
+        Track track = video != null ? video : audio;
+        return track != null ? track.toIndex(fileSize, intervalMillis) : null;
+    }
+
+    /**
+     * Locate the top-level moov box (before or after mdat) and read it into memory
+     */
+    private static ByteBuffer readMoov(FileChannel channel, long fileSize) throws IOException {
+        ByteBuffer header = ByteBuffer.allocate(16);
+        long position = 0;
+        while (position + 8 <= fileSize) {
+            header.clear();
+            readFully(channel, header, position);
+            header.flip();
+            long size = header.getInt() & 0xFFFFFFFFL;
+            String type = fourCC(header);
+            int headerLength = 8;
+            if (size == 1) {
+                if (header.remaining() < 8) {
+                    return null;
+                }
+                size = header.getLong();
+                headerLength = 16;
+            } else if (size == 0) {
+                size = fileSize - position;
+            }
+            if (size < headerLength) {
+                return null; // Corrupt box
+            }
+            if (type.equals("moov")) {
+                long bodySize = size - headerLength;
+                if (bodySize > MAX_MOOV_SIZE || position + size > fileSize) {
+                    return null;
+                }
+                ByteBuffer body = ByteBuffer.allocate((int) bodySize);
+                readFully(channel, body, position + headerLength);
+                body.flip();
+                return body;
+            }
+            position += size;
+        }
+        return null;
+    }
+
+    private static void readFully(FileChannel channel, ByteBuffer buffer, long position) throws IOException {
+        while (buffer.hasRemaining()) {
+            if (channel.read(buffer, position + buffer.position()) < 0) {
+                break;
+            }
+        }
+    }
+
+    /**
+     * Child boxes of the given type, as buffers over their bodies
+     */
+    private static List<ByteBuffer> children(ByteBuffer parent, String wanted) {
+        List<ByteBuffer> found = new ArrayList<>();
+        ByteBuffer view = parent.duplicate();
+        view.position(0);
+        while (view.remaining() >= 8) {
+            int start = view.position();
+            long size = view.getInt() & 0xFFFFFFFFL;
+            String type = fourCC(view);
+            int headerLength = 8;
+            if (size == 1) {
+                if (view.remaining() < 8) {
+                    break;
+                }
+                size = view.getLong();
+                headerLength = 16;
+            } else if (size == 0) {
+                size = view.limit() - start;
+            }
+            if (size < headerLength || start + size > view.limit()) {
+                break;
+            }
+            if (type.equals(wanted)) {
+                ByteBuffer body = view.duplicate();
+                body.position(start + headerLength);
+                body.limit((int) (start + size));
+                found.add(body.slice());
+            }
+            view.position((int) (start + size));
+        }
+        return found;
+    }
+
+    private static ByteBuffer child(ByteBuffer parent, String... path) {
+        ByteBuffer current = parent;
+        for (String type : path) {
+            List<ByteBuffer> matches = children(current, type);
+            if (matches.isEmpty()) {
+                return null;
+            }
+            current = matches.get(0);
+        }
+        return current;
+    }
+
+    /**
+     * Entry count of a full box (count after version and flags), or -1 if the box
+     * cannot hold that many entries of the given size. Leaves the buffer at the first entry.
+     */
+    private static int entryCount(ByteBuffer box, int entrySize) {
+        box.position(4);
+        int count = box.getInt();
+        return count < 0 || count > box.remaining() / entrySize ? -1 : count;
+    }
+
+    private static String fourCC(ByteBuffer buffer) {
+        char[] chars = new char[4];
+        for (int i = 0; i < 4; i++) {
+            chars[i] = (char) (buffer.get() & 0xFF);
+        }
+        return new String(chars);
+    }
+
+    private static final class Track {
+        private String handler;
+        private long timescale;
+        private long duration;
+        private int[] sttsCounts;
+        private int[] sttsDeltas;
+        private int[] stscFirstChunks;
+        private int[] stscSamplesPerChunk;
+        private int uniformSampleSize;
+        private int[] sampleSizes;
+        private int sampleCount;
+        private long[] chunkOffsets;
+        private int[] syncSamples; // null = every sample is a sync sample
+
+        static Track parse(ByteBuffer trak) {
+            ByteBuffer mdhd = child(trak, "mdia", "mdhd");
+            ByteBuffer hdlr = child(trak, "mdia", "hdlr");
+            ByteBuffer stbl = child(trak, "mdia", "minf", "stbl");
+            if (mdhd == null || hdlr == null || stbl == null) {
+                return null;
+            }
+            Track track = new Track();
+
+            int version = mdhd.get() & 0xFF;
+            mdhd.position(4);
+            if (version == 1) {
+                mdhd.position(mdhd.position() + 16);
+                track.timescale = mdhd.getInt() & 0xFFFFFFFFL;
+                track.duration = mdhd.getLong();
+            } else {
+                mdhd.position(mdhd.position() + 8);
+                track.timescale = mdhd.getInt() & 0xFFFFFFFFL;
+                track.duration = mdhd.getInt() & 0xFFFFFFFFL;
+            }
+            hdlr.position(8);
+            track.handler = fourCC(hdlr);
+
+            ByteBuffer stts = child(stbl, "stts");
+            ByteBuffer stsc = child(stbl, "stsc");
+            ByteBuffer stsz = child(stbl, "stsz");
+            ByteBuffer stco = child(stbl, "stco");
+            ByteBuffer co64 = child(stbl, "co64");
+            if (track.timescale == 0 || stts == null || stsc == null || stsz == null || (stco == null && co64 == null)) {
+                return null;
+            }
+
+            // Counts come from the upload, so each is checked against its box before allocating
+            int entries = entryCount(stts, 8);
+            if (entries < 0) {
+                return null;
+            }
+            track.sttsCounts = new int[entries];
+            track.sttsDeltas = new int[entries];
+            for (int i = 0; i < entries; i++) {
+                track.sttsCounts[i] = stts.getInt();
+                track.sttsDeltas[i] = stts.getInt();
+            }
+
+            entries = entryCount(stsc, 12);
+            if (entries < 0) {
+                return null;
+            }
+            track.stscFirstChunks = new int[entries];
+            track.stscSamplesPerChunk = new int[entries];
+            for (int i = 0; i < entries; i++) {
+                track.stscFirstChunks[i] = stsc.getInt();
+                track.stscSamplesPerChunk[i] = stsc.getInt();
+                stsc.getInt(); // sample description index
+            }
+
+            stsz.position(4);
+            track.uniformSampleSize = stsz.getInt();
+            track.sampleCount = stsz.getInt();
+            if (track.sampleCount < 0
+                    || (track.uniformSampleSize == 0 && track.sampleCount > stsz.remaining() / 4)) {
+                return null;
+            }
+            if (track.uniformSampleSize == 0) {
+                track.sampleSizes = new int[track.sampleCount];
+                for (int i = 0; i < track.sampleCount; i++) {
+                    track.sampleSizes[i] = stsz.getInt();
+                }
+            }
+
+            ByteBuffer offsets = co64 != null ? co64 : stco;
+            entries = entryCount(offsets, co64 != null ? 8 : 4);
+            if (entries < 0) {
+                return null;
+            }
+            track.chunkOffsets = new long[entries];
+            for (int i = 0; i < entries; i++) {
+                track.chunkOffsets[i] = co64 != null ? offsets.getLong() : offsets.getInt() & 0xFFFFFFFFL;
+            }
+
+            ByteBuffer stss = child(stbl, "stss");
+            if (stss != null) {
+                entries = entryCount(stss, 4);
+                if (entries < 0) {
+                    return null;
+                }
+                track.syncSamples = new int[entries];
+                for (int i = 0; i < entries; i++) {
+                    track.syncSamples[i] = stss.getInt();
+                }
+            }
+            return track;
+        }
+
+        SeekIndex toIndex(long fileSize, long intervalMillis) {
+            SeekIndex.Builder builder = new SeekIndex.Builder(intervalMillis);
+            int sample = 0;            // zero-based sample number
+            int sttsEntry = 0;
+            int sttsRemaining = sttsCounts.length > 0 ? sttsCounts[0] : 0;
+            long decodeTime = 0;
+            int syncIndex = 0;
+            int stscEntry = 0;
+
+            for (int chunk = 0; chunk < chunkOffsets.length && sample < sampleCount; chunk++) {
+                while (stscEntry + 1 < stscFirstChunks.length && stscFirstChunks[stscEntry + 1] <= chunk + 1) {
+                    stscEntry++;
+                }
+                int samplesInChunk = stscSamplesPerChunk.length > 0 ? stscSamplesPerChunk[stscEntry] : 0;
+                long offset = chunkOffsets[chunk];
+
+                for (int i = 0; i < samplesInChunk && sample < sampleCount; i++, sample++) {
+                    boolean sync = syncSamples == null;
+                    if (!sync) {
+                        while (syncIndex < syncSamples.length && syncSamples[syncIndex] < sample + 1) {
+                            syncIndex++;
+                        }
+                        sync = syncIndex < syncSamples.length && syncSamples[syncIndex] == sample + 1;
+                    }
+                    if (sync && offset < fileSize) {
+                        builder.add(decodeTime * 1000 / timescale, offset);
+                    }
+
+                    offset += uniformSampleSize != 0 ? uniformSampleSize : sampleSizes[sample];
+                    while (sttsRemaining == 0 && sttsEntry + 1 < sttsCounts.length) {
+                        sttsRemaining = sttsCounts[++sttsEntry];
+                    }
+                    if (sttsRemaining > 0) {
+                        decodeTime += sttsDeltas[sttsEntry] & 0xFFFFFFFFL;
+                        sttsRemaining--;
+                    }
+                }
+            }
+
+            if (builder.isEmpty()) {
+                return null;
+            }
+            long durationMillis = duration > 0 ? duration * 1000 / timescale : decodeTime * 1000 / timescale;
+            return builder.build("mp4", fileSize, durationMillis);
+        }
+    }
+}
@@ -0,0 +1,272 @@
+package lexicon.service;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.nio.channels.FileChannel;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Bounded cache of open read-only file channels keyed by relative storage path.
+ *
+ * Range requests for the same media share one FileChannel (positional reads do not
+ * touch the channel position) and skip open()/stat() entirely on a hit. Entries are
+ * reference counted: an evicted channel is only closed once the last lease is released.
+ * Least recently used entries are evicted when the cache is full, and entries that
+ * have not been used for the idle timeout are closed by {@link #evictIdle()}.
+ */
+public class OpenFileCache {
+
+    private static final int DEFAULT_MAX_OPEN_FILES = 64;
+    private static final long DEFAULT_IDLE_TIMEOUT_MS = 60_000;
+
+    private final LinkedHashMap<String, Entry> entries = new LinkedHashMap<>(16, 0.75f, true);
+    private volatile int maxOpenFiles = DEFAULT_MAX_OPEN_FILES;
+    private volatile long idleTimeoutMillis = DEFAULT_IDLE_TIMEOUT_MS;
+
+    private long hits;
+    private long misses;
+
+    /**
+     * Apply configured limits (defaults are used until this is called)
+     */
+    public void configure(int maxOpenFiles, long idleTimeoutMillis) {
+        this.maxOpenFiles = Math.max(1, maxOpenFiles);
+        this.idleTimeoutMillis = Math.max(0, idleTimeoutMillis);
+        evictOverflow();
+    }
+
+    /**
+     * Lease an open channel for the given file, opening it on a miss.
+     * The caller must close the returned handle when done.
+     *
+     * A cached channel that has been closed (an interrupted read closes a FileChannel
+     * for every holder) counts as a miss and is dropped.
+     */
+    public Handle acquire(String key, Path fullPath) throws IOException {
+        synchronized (this) {
+            Entry entry = liveEntryLocked(key);
+            if (entry != null) {
+                hits++;
+                entry.refCount++;
+                entry.lastAccess = System.currentTimeMillis();
+                return new Handle(entry);
+            }
+            misses++;
+        }
+
+        // Open outside the lock so a slow mount does not block other lookups
+        FileChannel channel = FileChannel.open(fullPath, StandardOpenOption.READ);
+        long size;
+        try {
+            size = channel.size();
+        } catch (IOException e) {
+            channel.close();
+            throw e;
+        }
+
+        List<Entry> toClose;
+        Handle handle;
+        synchronized (this) {
+            Entry entry = liveEntryLocked(key);
+            if (entry != null) {
+                // Another request opened the same file meanwhile - use theirs
+                entry.refCount++;
+                entry.lastAccess = System.currentTimeMillis();
+                handle = new Handle(entry);
+                toClose = List.of();
+            } else {
+                entry = new Entry(key, channel, size);
+                entry.refCount = 1;
+                entries.put(key, entry);
+                handle = new Handle(entry);
+                toClose = removeOverflowLocked();
+            }
+        }
+        if (handle.getChannel() != channel) {
+            closeQuietly(channel);
+        }
+        closeAll(toClose);
+        return handle;
+    }
+
+    /**
+     * Cached size for a file, or -1 if it is not currently open
+     */
+    public synchronized long cachedSize(String key) {
+        Entry entry = entries.get(key);
+        if (entry == null) {
+            return -1;
+        }
+        entry.lastAccess = System.currentTimeMillis();
+        return entry.size;
+    }
+
+    /**
+     * Drop a file from the cache (call before it is deleted, moved or rewritten)
+     */
+    public void invalidate(String key) {
+        Entry removed;
+        synchronized (this) {
+            removed = entries.remove(key);
+            if (removed == null) {
+                return;
+            }
+            removed.evicted = true;
+            if (removed.refCount > 0) {
+                return; // Closed by the last release
+            }
+        }
+        closeQuietly(removed.channel);
+    }
+
+    /**
+     * Close channels that have not been used within the idle timeout
+     */
+    public int evictIdle() {
+        long cutoff = System.currentTimeMillis() - idleTimeoutMillis;
+        List<Entry> toClose = new ArrayList<>();
+        synchronized (this) {
+            Iterator<Entry> it = entries.values().iterator();
+            while (it.hasNext()) {
+                Entry entry = it.next();
+                if (entry.refCount == 0 && entry.lastAccess <= cutoff) {
+                    it.remove();
+                    entry.evicted = true;
+                    toClose.add(entry);
+                }
+            }
+        }
+        closeAll(toClose);
+        return toClose.size();
+    }
+
+    /**
+     * Close every idle channel and forget all entries (used on shutdown)
+     */
+    public void clear() {
+        List<Entry> toClose = new ArrayList<>();
+        synchronized (this) {
+            for (Entry entry : entries.values()) {
+                entry.evicted = true;
+                if (entry.refCount == 0) {
+                    toClose.add(entry);
+                }
+            }
+            entries.clear();
+        }
+        closeAll(toClose);
+    }
+
+    public synchronized int size() { return entries.size(); }
+    public synchronized long getHits() { return hits; }
+    public synchronized long getMisses() { return misses; }
+
+    /**
+     * Cached entry for a key, dropping it if its channel is no longer open
+     */
+    private Entry liveEntryLocked(String key) {
+        Entry entry = entries.get(key);
+        if (entry != null && !entry.channel.isOpen()) {
+            entries.remove(key);
+            entry.evicted = true; // Nothing left to close
+            return null;
+        }
+        return entry;
+    }
+    
+    private void evictOverflow() {
+        List<Entry> toClose;
+        synchronized (this) {
+            toClose = removeOverflowLocked();
+        }
+        closeAll(toClose);
+    }
+
+    private List<Entry> removeOverflowLocked() {
+        List<Entry> toClose = new ArrayList<>();
+        Iterator<Map.Entry<String, Entry>> it = entries.entrySet().iterator();
+        // Access order: eldest first. Leased entries are skipped, not waited on.
+        while (entries.size() > maxOpenFiles && it.hasNext()) {
+            Entry entry = it.next().getValue();
+            if (entry.refCount == 0) {
+                it.remove();
+                entry.evicted = true;
+                toClose.add(entry);
+            }
+        }
+        return toClose;
+    }
+
+    private void release(Entry entry) {
+        synchronized (this) {
+            entry.refCount--;
+            entry.lastAccess = System.currentTimeMillis();
+            if (!entry.evicted || entry.refCount > 0) {
+                return;
+            }
+        }
+        closeQuietly(entry.channel);
+    }
+
+    private static void closeAll(List<Entry> toClose) {
+        for (Entry entry : toClose) {
+            closeQuietly(entry.channel);
+        }
+    }
+
+    private static void closeQuietly(FileChannel channel) {
+        try {
+            channel.close();
+        } catch (IOException e) {
+            System.err.println("Failed to close cached file channel: " + e.getMessage());
+        }
+    }
+
+    private static final class Entry {
+        private final String key;
+        private final FileChannel channel;
+        private final long size;
+        private int refCount;
+        private long lastAccess = System.currentTimeMillis();
+        private boolean evicted;
+
+        private Entry(String key, FileChannel channel, long size) {
+            this.key = key;
+            this.channel = channel;
+            this.size = size;
+        }
+    }
+
+    /**
+     * Lease on a cached channel. Closing the handle releases the lease, not the channel.
+     */
+    public final class Handle implements Closeable {
+        private final Entry entry;
+        private boolean released;
+
+        private Handle(Entry entry) {
+            this.entry = entry;
+        }
+
+        public FileChannel getChannel() { return entry.channel; }
+        public long getSize() { return entry.size; }
+        public String getKey() { return entry.key; }
+
+        @Override
+        public void close() {
+            synchronized (this) {
+                if (released) {
+                    return;
+                }
+                released = true;
+            }
+            release(entry);
+        }
+    }
+}
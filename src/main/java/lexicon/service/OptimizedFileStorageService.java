@@ -3,20 +3,45 @@ package lexicon.service;
 import lexicon.config.StorageProperties;
 import lexicon.object.MediaFile;
 import lexicon.object.MediaType;
+import lexicon.object.StreamingMultipartFile;
+import jakarta.annotation.PostConstruct;
+import jakarta.annotation.PreDestroy;
 import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.scheduling.annotation.Scheduled;
 import org.springframework.stereotype.Service;
 import org.springframework.web.multipart.MultipartFile;
 
 import java.io.*;
+import java.nio.ByteBuffer;
+import java.nio.channels.Channels;
+import java.nio.channels.ClosedChannelException;
+import java.nio.channels.FileChannel;
+import java.nio.channels.WritableByteChannel;
 import java.nio.file.*;
+import java.security.DigestInputStream;
 import java.security.MessageDigest;
 import java.security.NoSuchAlgorithmException;
 import java.time.LocalDateTime;
 import java.time.format.DateTimeFormatter;
+import java.util.ArrayList;
+import java.util.HexFormat;
+import java.util.List;
+import java.util.Map;
 import java.util.UUID;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
 
 /**
- * Enhanced file storage service using optimized file system storage
+ * Enhanced file storage service using optimized file system storage.
+ *
+ * With lexicon.storage.content-addressed, new files are stored as blobs named by their
+ * SHA-256 digest (blobs/ab/cd/abcd...) and identical uploads share one blob. Each store
+ * adds a reference, kept in a ".refs" file beside the blob; deleteFile releases one and
+ * removes the blob with the last.
+ *
+ * With lexicon.storage.volumes, files are spread over several disks (see {@link StorageVolumes});
+ * relative paths stay the same whichever volume holds a file.
  */
 @Service
 public class OptimizedFileStorageService {
@@ -24,6 +49,128 @@ public class OptimizedFileStorageService {
     @Autowired
     private StorageProperties storageProperties;
     
+    // Open channels shared by range requests for the same file
+    private final OpenFileCache openFileCache = new OpenFileCache();
+    
+    // Off-heap hot blocks of recently streamed media (disabled until configured)
+    private final MediaBlockCache blockCache = new MediaBlockCache();
+    
+    // Optional fast staging tier in front of basePath (null when not configured)
+    private volatile FastStorageTier fastTier;
+    
+    // Optional extra volumes besides basePath (null when not configured)
+    private volatile StorageVolumes volumes;
+    
+    // Read-ahead for sequential range requests (null until init or when disabled)
+    private volatile ReadAheadPrefetcher readAhead;
+    private ThreadPoolExecutor readAheadPool;
+    private static final int MAX_REOPENS = 3; // Per transfer, for channels closed by other requests
+    private static final ThreadLocal<ByteBuffer> READ_AHEAD_BUFFER =
+            ThreadLocal.withInitial(() -> ByteBuffer.allocateDirect(MediaBlockCache.BLOCK_SIZE));
+    
+    // Content-addressed blobs; reference counts of a blob only change under its stripe lock
+    static final String BLOB_DIR = "blobs";
+    private static final String INCOMING_DIR = ".incoming";
+    private final Object[] blobLocks = new Object[64];
+    {
+        for (int i = 0; i < blobLocks.length; i++) {
+            blobLocks[i] = new Object();
+        }
+    }
+    
+    @PostConstruct
+    public void init() {
+        openFileCache.configure(storageProperties.getOpenFileCacheSize(),
+                storageProperties.getOpenFileIdleSeconds() * 1000L);
+        blockCache.configure(storageProperties.getCacheSize());
+        System.out.println("🧠 Media block cache: " + (storageProperties.getCacheSize() / (1024 * 1024)) + "MB off-heap");
+        
+        String fastTierPath = storageProperties.getFastTierPath();
+        if (fastTierPath != null && !fastTierPath.isBlank()) {
+            FastStorageTier tier = new FastStorageTier(
+                Paths.get(fastTierPath),
+                Paths.get(storageProperties.getBasePath()),
+                storageProperties.getFastTierBudget(),
+                storageProperties.getFastTierPromoteAfterReads(),
+                openFileCache::invalidate);
+            try {
+                tier.start();
+                fastTier = tier;
+            } catch (IOException e) {
+                System.err.println("❌ Fast tier disabled, could not scan " + fastTierPath + ": " + e.getMessage());
+                tier.shutdown();
+            }
+        }
+        
+        String extraVolumes = storageProperties.getVolumes();
+        if (extraVolumes != null && !extraVolumes.isBlank()) {
+            List<Path> roots = new ArrayList<>();
+            roots.add(Paths.get(storageProperties.getBasePath()));
+            for (String root : extraVolumes.split(",")) {
+                if (!root.isBlank()) {
+                    roots.add(Paths.get(root.trim()));
+                }
+            }
+            StorageVolumes storageVolumes = new StorageVolumes(roots, rebalancedDirectories(),
+                storageProperties.getVolumeReserveBytes(),
+                storageProperties.getVolumeMirrorAfterReads(),
+                storageProperties.getVolumeRebalanceBytesPerRun(),
+                this::invalidateVolumeHandles);
+            try {
+                storageVolumes.start(storageProperties.getVolumeRebalanceIntervalMinutes());
+                volumes = storageVolumes;
+            } catch (IOException e) {
+                System.err.println("❌ Extra storage volumes disabled: " + e.getMessage());
+                storageVolumes.shutdown();
+            }
+        }
+        
+        if (storageProperties.isContentAddressed()) {
+            discardIncomingBlobs();
+        }
+        
+        int readAheadThreads = storageProperties.getReadAheadThreads();
+        if (storageProperties.getReadAheadMaxBlocks() > 0 && readAheadThreads > 0) {
+            // Small bounded queue: read-ahead that cannot start soon is useless, so it is dropped
+            readAheadPool = new ThreadPoolExecutor(readAheadThreads, readAheadThreads, 30, TimeUnit.SECONDS,
+                    new ArrayBlockingQueue<>(readAheadThreads * 4), r -> {
+                        Thread t = new Thread(r, "read-ahead");
+                        t.setDaemon(true);
+                        return t;
+                    });
+            readAheadPool.allowCoreThreadTimeOut(true);
+            readAhead = new ReadAheadPrefetcher(this::loadAhead, readAheadPool, storageProperties.getReadAheadMaxBlocks());
+        }
+    }
+    
+    @PreDestroy
+    public void shutdown() {
+        FastStorageTier tier = fastTier;
+        if (tier != null) {
+            tier.shutdown();
+        }
+        StorageVolumes storageVolumes = volumes;
+        if (storageVolumes != null) {
+            storageVolumes.shutdown();
+        }
+        if (readAheadPool != null) {
+            readAheadPool.shutdownNow();
+        }
+        openFileCache.clear();
+        blockCache.clear();
+    }
+    
+    /**
+     * Close cached file handles that have not been used recently
+     */
+    @Scheduled(fixedRate = 30000)
+    public void evictIdleFileHandles() {
+        int closed = openFileCache.evictIdle();
+        if (closed > 0) {
+            System.out.println("🗂️ Closed " + closed + " idle file handle(s), " + openFileCache.size() + " still open");
+        }
+    }
+    
     /**
      * Store a file using the optimized storage strategy
      */
@@ -40,12 +187,83 @@ public class OptimizedFileStorageService {
      * Store file on file system with optimized organization
      */
     private String storeOnFileSystem(MultipartFile file, MediaFile mediaFile, long fileSize, String mediaType) throws IOException {
+        if (file instanceof StreamingMultipartFile streaming && streaming.isMovable()) {
+            String adopted = adoptFile(streaming, mediaFile, fileSize, mediaType);
+            if (adopted != null) {
+                return adopted;
+            }
+        }
+        if (storageProperties.isContentAddressed()) {
+            return storeBlob(file.getInputStream(), mediaFile);
+        }
+        
+        Path filePath = newStoredFilePath(file, mediaFile, fileSize, mediaType);
+        String relativePath = toRelativePath(filePath);
+        Path writePath = stagingTarget(relativePath, fileSize, filePath);
+        
+        // Store file with streaming for large files, hashing the content on the way
+        MessageDigest digest = newContentDigest();
+        if (fileSize > storageProperties.getLargeFileThreshold()) {
+            storeFileStreaming(file, writePath, digest);
+        } else {
+            try (InputStream inputStream = new DigestInputStream(file.getInputStream(), digest)) {
+                Files.copy(inputStream, writePath, StandardCopyOption.REPLACE_EXISTING);
+            }
+        }
+        mediaFile.setEtag(HexFormat.of().formatHex(digest.digest()));
+        commitStaged(relativePath, writePath, filePath);
+        
+        // Return relative path for database storage
+        return relativePath;
+    }
+    
+    /**
+     * Rename a finished upload into storage instead of copying it
+     *
+     * @return the stored relative path, or null if the file is on another filesystem
+     *         than its destination and has to be copied after all
+     */
+    private String adoptFile(StreamingMultipartFile file, MediaFile mediaFile, long fileSize, String mediaType) throws IOException {
+        Path source = file.getFilePath();
+        String contentHash = file.getContentHash();
+        if (storageProperties.isContentAddressed()) {
+            if (contentHash == null) {
+                // The blob name is the digest, so the content has to be read once
+                MessageDigest digest = newContentDigest();
+                try (InputStream input = new DigestInputStream(Files.newInputStream(source), digest)) {
+                    input.transferTo(OutputStream.nullOutputStream());
+                }
+                contentHash = HexFormat.of().formatHex(digest.digest());
+            }
+            String relativePath = commitBlob(source, contentHash, mediaFile);
+            file.movedTo(resolvePath(relativePath));
+            return relativePath;
+        }
+        
+        Path filePath = newStoredFilePath(file, mediaFile, fileSize, mediaType);
+        String relativePath = toRelativePath(filePath);
+        Path target = stagingTarget(relativePath, fileSize, filePath);
+        try {
+            Files.move(source, target, StandardCopyOption.ATOMIC_MOVE);
+        } catch (AtomicMoveNotSupportedException e) {
+            return null;
+        }
+        file.movedTo(target);
+        if (contentHash != null) {
+            mediaFile.setEtag(contentHash);
+        }
+        commitStaged(relativePath, target, filePath);
+        System.out.println("📦 Moved upload into " + relativePath + " without copying");
+        return relativePath;
+    }
+    
+    /**
+     * Unique path in the storage directory for the media type, named by timestamp and title
+     */
+    private Path newStoredFilePath(MultipartFile file, MediaFile mediaFile, long fileSize, String mediaType) {
         // Get appropriate storage path
         String storagePath = storageProperties.getStoragePathForMedia(mediaType, fileSize);
-        
-        // Ensure directory exists
         Path storageDir = Paths.get(storagePath);
-        Files.createDirectories(storageDir);
         
         // Generate unique filename with timestamp and original extension
         String timestamp = LocalDateTime.now().format(DateTimeFormatter.ofPattern("yyyyMMdd_HHmmss"));
@@ -58,18 +276,7 @@ public class OptimizedFileStorageService {
             extension
         );
         
-        Path filePath = storageDir.resolve(filename);
-        
-        // Store file with streaming for large files
-        if (fileSize > storageProperties.getLargeFileThreshold()) {
-            storeFileStreaming(file, filePath);
-        } else {
-            Files.copy(file.getInputStream(), filePath, StandardCopyOption.REPLACE_EXISTING);
-        }
-        
-        // Return relative path for database storage
-        Path basePath = Paths.get(storageProperties.getBasePath());
-        return basePath.relativize(filePath).toString();
+        return storageDir.resolve(filename);
     }
     
     /**
@@ -77,12 +284,21 @@ public class OptimizedFileStorageService {
      */
     public String storeFileFromStream(InputStream inputStream, String originalFilename, 
                                       long fileSize, lexicon.object.MediaType mediaType) throws IOException {
+        return storeFileFromStream(inputStream, originalFilename, fileSize, mediaType, null);
+    }
+    
+    /**
+     * Store file from InputStream and record its content hash as the media file's ETag
+     */
+    public String storeFileFromStream(InputStream inputStream, String originalFilename, long fileSize,
+                                      lexicon.object.MediaType mediaType, MediaFile mediaFile) throws IOException {
+        if (storageProperties.isContentAddressed()) {
+            return storeBlob(inputStream, mediaFile);
+        }
+        
         // Get appropriate storage path
         String storagePath = storageProperties.getStoragePathForMedia(mediaType.name(), fileSize);
-        
-        // Ensure directory exists
         Path storageDir = Paths.get(storagePath);
-        Files.createDirectories(storageDir);
         
         // Generate unique filename
         String timestamp = LocalDateTime.now().format(DateTimeFormatter.ofPattern("yyyyMMdd_HHmmss"));
@@ -92,10 +308,13 @@ public class OptimizedFileStorageService {
         String filename = String.format("%s_%s_%s%s", timestamp, uniqueId, cleanName, extension);
         
         Path filePath = storageDir.resolve(filename);
+        String relativePath = toRelativePath(filePath);
+        Path writePath = stagingTarget(relativePath, fileSize, filePath);
         
         // Stream directly to file
-        try (BufferedInputStream bufferedInput = new BufferedInputStream(inputStream);
-             FileOutputStream outputStream = new FileOutputStream(filePath.toFile());
+        MessageDigest digest = newContentDigest();
+        try (BufferedInputStream bufferedInput = new BufferedInputStream(new DigestInputStream(inputStream, digest));
+             FileOutputStream outputStream = new FileOutputStream(writePath.toFile());
              BufferedOutputStream bufferedOutput = new BufferedOutputStream(outputStream)) {
             
             byte[] buffer = new byte[storageProperties.getStreamingBufferSize()];
@@ -104,18 +323,171 @@ public class OptimizedFileStorageService {
             while ((bytesRead = bufferedInput.read(buffer)) != -1) {
                 bufferedOutput.write(buffer, 0, bytesRead);
             }
+        } catch (IOException e) {
+            Files.deleteIfExists(writePath); // Never leave a partial file behind
+            throw e;
         }
         
+        if (mediaFile != null) {
+            mediaFile.setEtag(HexFormat.of().formatHex(digest.digest()));
+        }
+        commitStaged(relativePath, writePath, filePath);
+        
         // Return relative path
-        Path basePath = Paths.get(storageProperties.getBasePath());
-        return basePath.relativize(filePath).toString();
+        return relativePath;
+    }
+    
+    /**
+     * Hash the content while writing it to an incoming file, then either keep it as the
+     * blob for its digest or, when that blob already exists, drop it and share the blob
+     *
+     * @return the blob's relative path, holding one new reference
+     */
+    private String storeBlob(InputStream inputStream, MediaFile mediaFile) throws IOException {
+        Path incomingDir = Paths.get(storageProperties.getBasePath(), BLOB_DIR, INCOMING_DIR);
+        Files.createDirectories(incomingDir);
+        Path incoming = incomingDir.resolve(UUID.randomUUID() + ".part");
+        
+        MessageDigest digest = newContentDigest();
+        try (InputStream input = new DigestInputStream(inputStream, digest);
+             OutputStream output = Files.newOutputStream(incoming)) {
+            byte[] buffer = new byte[storageProperties.getStreamingBufferSize()];
+            int bytesRead;
+            while ((bytesRead = input.read(buffer)) != -1) {
+                output.write(buffer, 0, bytesRead);
+            }
+        } catch (IOException e) {
+            Files.deleteIfExists(incoming);
+            throw e;
+        }
+        
+        return commitBlob(incoming, HexFormat.of().formatHex(digest.digest()), mediaFile);
+    }
+    
+    /**
+     * Keep a fully written file as the blob for its digest, or delete it when that blob
+     * already exists
+     *
+     * @return the blob's relative path, holding one new reference
+     */
+    private String commitBlob(Path incoming, String hex, MediaFile mediaFile) throws IOException {
+        if (mediaFile != null) {
+            mediaFile.setEtag(hex);
+        }
+        String relativePath = blobRelativePath(hex);
+        synchronized (blobLock(relativePath)) {
+            int references;
+            if (storedFileExists(relativePath)) {
+                Files.delete(incoming);
+                references = readReferenceCount(relativePath) + 1;
+                System.out.println("♻️ Deduplicated upload into " + relativePath + " (" + references + " references)");
+            } else {
+                StorageVolumes storageVolumes = volumes;
+                Path blob = storageVolumes != null
+                        ? storageVolumes.pathForNewFile(relativePath, Files.size(incoming))
+                        : Paths.get(storageProperties.getBasePath(), relativePath);
+                Files.createDirectories(blob.getParent());
+                try {
+                    Files.move(incoming, blob, StandardCopyOption.ATOMIC_MOVE);
+                } catch (AtomicMoveNotSupportedException e) {
+                    // Placed on another volume: copy across, the blob still appears in one rename
+                    StorageVolumes.copyAtomically(incoming, blob);
+                    Files.delete(incoming);
+                }
+                if (storageVolumes != null) {
+                    storageVolumes.fileWritten(relativePath, blob);
+                }
+                references = 1;
+            }
+            writeReferenceCount(relativePath, references);
+        }
+        return relativePath;
+    }
+    
+    /**
+     * Remove blobs left half-written by a crash (nothing else is writing during startup)
+     */
+    private void discardIncomingBlobs() {
+        Path incomingDir = Paths.get(storageProperties.getBasePath(), BLOB_DIR, INCOMING_DIR);
+        if (!Files.isDirectory(incomingDir)) {
+            return;
+        }
+        try (DirectoryStream<Path> parts = Files.newDirectoryStream(incomingDir, "*.part")) {
+            for (Path part : parts) {
+                Files.deleteIfExists(part);
+            }
+        } catch (IOException e) {
+            System.err.println("Could not clean " + incomingDir + ": " + e.getMessage());
+        }
+    }
+    
+    /**
+     * blobs/ab/cd/abcd... - two levels of 256 directories keep directory sizes small
+     */
+    static String blobRelativePath(String hex) {
+        return Paths.get(BLOB_DIR, hex.substring(0, 2), hex.substring(2, 4), hex).toString();
+    }
+    
+    /**
+     * True for content-addressed blobs, whose references are counted
+     */
+    public static boolean isBlobPath(String relativePath) {
+        return relativePath != null && Paths.get(relativePath).startsWith(BLOB_DIR);
+    }
+    
+    /**
+     * Number of stored references to a blob (blobs from before reference files count once)
+     */
+    public int getReferenceCount(String relativePath) throws IOException {
+        synchronized (blobLock(relativePath)) {
+            return readReferenceCount(relativePath);
+        }
+    }
+    
+    private Object blobLock(String relativePath) {
+        return blobLocks[Math.floorMod(relativePath.hashCode(), blobLocks.length)];
+    }
+    
+    private int readReferenceCount(String relativePath) throws IOException {
+        Path refs = referenceFile(relativePath);
+        if (!Files.exists(refs)) {
+            return storedFileExists(relativePath) ? 1 : 0;
+        }
+        try {
+            return Integer.parseInt(Files.readString(refs).trim());
+        } catch (NumberFormatException e) {
+            return 1; // Unreadable count: never delete a blob because of it
+        }
+    }
+    
+    private void writeReferenceCount(String relativePath, int references) throws IOException {
+        Path refs = referenceFile(relativePath);
+        Path temp = refs.resolveSibling(refs.getFileName() + ".tmp");
+        Files.createDirectories(refs.getParent());
+        Files.writeString(temp, String.valueOf(references));
+        Files.move(temp, refs, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+    }
+    
+    /**
+     * Reference counts stay on basePath whichever volume holds the blob
+     */
+    private Path referenceFile(String relativePath) {
+        return Paths.get(storageProperties.getBasePath(), relativePath + ".refs");
+    }
+    
+    private boolean storedFileExists(String relativePath) {
+        StorageVolumes storageVolumes = volumes;
+        if (storageVolumes != null) {
+            return storageVolumes.locate(relativePath) != 0;
+        }
+        return Files.exists(Paths.get(storageProperties.getBasePath(), relativePath));
     }
     
     /**
      * Store large file using streaming to avoid memory issues
      */
-    private void storeFileStreaming(MultipartFile file, Path filePath) throws IOException {
-        try (InputStream inputStream = file.getInputStream();
+    private void storeFileStreaming(MultipartFile file, Path filePath, MessageDigest digest) throws IOException {
+        try (InputStream inputStream = new DigestInputStream(file.getInputStream(), digest);
              FileOutputStream outputStream = new FileOutputStream(filePath.toFile());
              BufferedInputStream bufferedInput = new BufferedInputStream(inputStream);
              BufferedOutputStream bufferedOutput = new BufferedOutputStream(outputStream)) {
@@ -133,7 +505,7 @@ public class OptimizedFileStorageService {
      * Get file input stream for serving files
      */
     public InputStream getFileInputStream(String relativePath) throws IOException {
-        Path fullPath = Paths.get(storageProperties.getBasePath(), relativePath);
+        Path fullPath = resolvePath(relativePath);
         
         if (!Files.exists(fullPath)) {
             throw new FileNotFoundException("File not found: " + relativePath);
@@ -143,26 +515,19 @@ public class OptimizedFileStorageService {
     }
     
     /**
-     * Get file for streaming with range support
+     * Get file for streaming with range support.
+     * The returned info holds a lease on a cached channel and must be closed.
      */
     public FileStreamInfo getFileForStreaming(String relativePath, long rangeStart, long rangeEnd) throws IOException {
-        Path fullPath = Paths.get(storageProperties.getBasePath(), relativePath);
-        
-        if (!Files.exists(fullPath)) {
-            throw new FileNotFoundException("File not found: " + relativePath);
-        }
-        
-        long fileSize = Files.size(fullPath);
+        OpenFileCache.Handle handle = openFile(relativePath);
+        long fileSize = handle.getSize();
         
         // Validate range
         if (rangeStart < 0) rangeStart = 0;
         if (rangeEnd < 0 || rangeEnd >= fileSize) rangeEnd = fileSize - 1;
         
-        RandomAccessFile randomAccessFile = new RandomAccessFile(fullPath.toFile(), "r");
-        randomAccessFile.seek(rangeStart);
-        
         return new FileStreamInfo(
-            randomAccessFile,
+            handle,
             rangeStart,
             rangeEnd,
             fileSize,
@@ -171,12 +536,152 @@ public class OptimizedFileStorageService {
     }
     
     /**
-     * Delete file from storage
+     * Write a byte range of a stored file directly to an output stream.
+     * Hot blocks come from the off-heap block cache; the rest uses positional
+     * FileChannel transfers, so nothing is skipped from offset 0 and no
+     * per-request buffer is allocated on the heap.
+     *
+     * @return number of bytes written (less than length only if the file was truncated)
+     */
+    public long transferRange(String relativePath, long start, long length, OutputStream out) throws IOException {
+        return transferRange(relativePath, start, length, out, null);
+    }
+    
+    /**
+     * Write a byte range for an identified client. Consecutive ranges from the same
+     * client are detected as a sequential stream and the following blocks are read ahead.
+     * If the shared channel is closed under the transfer by another request's interrupted
+     * read, the file is reopened and the transfer continues where it stopped.
+     */
+    public long transferRange(String relativePath, long start, long length, OutputStream out,
+                              String clientKey) throws IOException {
+        CountingChannel target = new CountingChannel(Channels.newChannel(out));
+        OpenFileCache.Handle handle = openFile(relativePath);
+        try {
+            FastStorageTier tier = fastTier;
+            if (tier != null) {
+                tier.recordRead(relativePath, handle.getSize(), start, clientKey);
+            }
+            StorageVolumes storageVolumes = volumes;
+            if (storageVolumes != null) {
+                storageVolumes.recordRead(storageVolumes.volumeForKey(handle.getKey()), relativePath, length,
+                        start, clientKey);
+            }
+            ReadAheadPrefetcher prefetcher = readAhead;
+            if (prefetcher != null) {
+                prefetcher.onRead(clientKey, relativePath, start, length, handle.getSize());
+            }
+            for (int reopens = 0; ; reopens++) {
+                long done = target.getWritten();
+                try {
+                    if (blockCache.isEnabled()) {
+                        blockCache.transfer(relativePath, handle.getChannel(), handle.getSize(),
+                                start + done, length - done, target);
+                    } else {
+                        transferRange(handle.getChannel(), start + done, length - done, target);
+                    }
+                    return target.getWritten();
+                } catch (ClosedChannelException e) {
+                    // The channel is shared, so another request's interrupted read closes it for us too.
+                    // Carry on from a fresh one unless it was this thread that was interrupted.
+                    if (Thread.currentThread().isInterrupted() || reopens >= MAX_REOPENS) {
+                        throw e;
+                    }
+                    handle.close();
+                    handle = openFile(relativePath); // A closed channel is dropped from the cache on acquire
+                }
+            }
+        } finally {
+            handle.close();
+        }
+    }
+    
+    /**
+     * Transfer a range from an already open channel. The output stream is not closed.
+     */
+    long transferRange(FileChannel channel, long start, long length, OutputStream out) throws IOException {
+        return transferRange(channel, start, length, Channels.newChannel(out));
+    }
+    
+    private long transferRange(FileChannel channel, long start, long length, WritableByteChannel target)
+            throws IOException {
+        long position = start;
+        long remaining = length;
+        
+        while (remaining > 0) {
+            long sent = channel.transferTo(position, remaining, target);
+            if (sent <= 0) {
+                break; // End of file reached early
+            }
+            position += sent;
+            remaining -= sent;
+        }
+        return length - remaining;
+    }
+    
+    /**
+     * Read-ahead loader: fill the block cache, or warm the OS page cache when it is disabled
+     */
+    private void loadAhead(String relativePath, long start, long length) throws IOException {
+        try (OpenFileCache.Handle handle = openFile(relativePath)) {
+            if (blockCache.isEnabled()) {
+                blockCache.prefetch(relativePath, handle.getChannel(), handle.getSize(), start, length);
+                return;
+            }
+            ByteBuffer buffer = READ_AHEAD_BUFFER.get();
+            long position = start;
+            long end = Math.min(start + length, handle.getSize());
+            while (position < end) {
+                buffer.clear();
+                buffer.limit((int) Math.min(buffer.capacity(), end - position));
+                int read = handle.getChannel().read(buffer, position);
+                if (read <= 0) {
+                    break;
+                }
+                position += read;
+            }
+        }
+    }
+    
+    /**
+     * Delete file from storage. For a shared blob this releases one reference and the
+     * blob itself is only deleted with the last one.
      */
     public boolean deleteFile(String relativePath) {
+        if (isBlobPath(relativePath)) {
+            synchronized (blobLock(relativePath)) {
+                try {
+                    int references = readReferenceCount(relativePath) - 1;
+                    if (references > 0) {
+                        writeReferenceCount(relativePath, references);
+                        return true;
+                    }
+                    Files.deleteIfExists(referenceFile(relativePath));
+                } catch (IOException e) {
+                    System.err.println("Failed to release blob: " + relativePath + " - " + e.getMessage());
+                    return false;
+                }
+                return deleteStoredFile(relativePath);
+            }
+        }
+        return deleteStoredFile(relativePath);
+    }
+    
+    private boolean deleteStoredFile(String relativePath) {
+        invalidateCaches(relativePath);
         try {
+            boolean staged = false;
+            FastStorageTier tier = fastTier;
+            if (tier != null) {
+                staged = tier.locate(relativePath) != null;
+                tier.remove(relativePath);
+            }
+            StorageVolumes storageVolumes = volumes;
+            if (storageVolumes != null) {
+                return storageVolumes.delete(relativePath) || staged;
+            }
             Path fullPath = Paths.get(storageProperties.getBasePath(), relativePath);
-            return Files.deleteIfExists(fullPath);
+            return Files.deleteIfExists(fullPath) || staged;
         } catch (IOException e) {
             System.err.println("Failed to delete file: " + relativePath + " - " + e.getMessage());
             return false;
@@ -187,28 +692,42 @@ public class OptimizedFileStorageService {
      * Get file size
      */
     public long getFileSize(String relativePath) throws IOException {
-        Path fullPath = Paths.get(storageProperties.getBasePath(), relativePath);
-        return Files.size(fullPath);
+        long cached = openFileCache.cachedSize(relativePath);
+        if (cached >= 0) {
+            return cached;
+        }
+        // Opening the file here means the range request that follows is a cache hit
+        try (OpenFileCache.Handle handle = openFile(relativePath)) {
+            return handle.getSize();
+        }
     }
     
     /**
      * Check if file exists
      */
     public boolean fileExists(String relativePath) {
-        Path fullPath = Paths.get(storageProperties.getBasePath(), relativePath);
-        return Files.exists(fullPath);
+        if (openFileCache.cachedSize(relativePath) >= 0) {
+            return true;
+        }
+        return Files.exists(resolvePath(relativePath));
     }
     
     /**
      * Move file to different storage category (e.g., after transcoding)
      */
     public String moveFile(String currentPath, String newMediaType, long newFileSize) throws IOException {
+        if (isBlobPath(currentPath)) {
+            return currentPath; // Blob locations do not depend on media type, and may be shared
+        }
+        settleOnBaseVolume(currentPath);
         Path currentFullPath = Paths.get(storageProperties.getBasePath(), currentPath);
         
         if (!Files.exists(currentFullPath)) {
             throw new FileNotFoundException("Source file not found: " + currentPath);
         }
         
+        invalidateCaches(currentPath);
+        
         // Get new storage path
         String newStoragePath = storageProperties.getStoragePathForMedia(newMediaType, newFileSize);
         Path newStorageDir = Paths.get(newStoragePath);
@@ -223,13 +742,17 @@ public class OptimizedFileStorageService {
         
         // Return new relative path
         Path basePath = Paths.get(storageProperties.getBasePath());
-        return basePath.relativize(newFullPath).toString();
+        String newPath = basePath.relativize(newFullPath).toString();
+        forgetVolumeLocations(currentPath, newPath);
+        return newPath;
     }
     
     /**
      * Move file to specific destination path (for testing and direct moves)
      */
     public String moveFileToPath(String sourcePath, String destinationPath, long fileSize) throws IOException {
+        settleOnBaseVolume(sourcePath);
+        settleOnBaseVolume(destinationPath);
         Path sourceFullPath = Paths.get(storageProperties.getBasePath(), sourcePath);
         Path destFullPath = Paths.get(storageProperties.getBasePath(), destinationPath);
         
@@ -237,11 +760,15 @@ public class OptimizedFileStorageService {
             throw new FileNotFoundException("Source file not found: " + sourcePath);
         }
         
+        invalidateCaches(sourcePath);
+        invalidateCaches(destinationPath);
+        
         // Ensure destination directory exists
         Files.createDirectories(destFullPath.getParent());
         
         // Move file
         Files.move(sourceFullPath, destFullPath, StandardCopyOption.REPLACE_EXISTING);
+        forgetVolumeLocations(sourcePath, destinationPath);
         
         return destinationPath;
     }
@@ -250,7 +777,7 @@ public class OptimizedFileStorageService {
      * Generate checksum for file integrity verification
      */
     public String generateChecksum(String relativePath) throws IOException {
-        Path fullPath = Paths.get(storageProperties.getBasePath(), relativePath);
+        Path fullPath = resolvePath(relativePath);
         
         try {
             MessageDigest md = MessageDigest.getInstance("MD5");
@@ -278,6 +805,213 @@ public class OptimizedFileStorageService {
         }
     }
     
+    /**
+     * SHA-256 digest used for content ETags
+     */
+    private static MessageDigest newContentDigest() throws IOException {
+        try {
+            return MessageDigest.getInstance("SHA-256");
+        } catch (NoSuchAlgorithmException e) {
+            throw new IOException("SHA-256 algorithm not available", e);
+        }
+    }
+    
+    /**
+     * Absolute path of a stored file for external readers such as FFmpeg
+     */
+    public Path getReadablePath(String relativePath) {
+        return resolvePath(relativePath);
+    }
+    
+    /**
+     * Open statistics for the file handle cache
+     */
+    public OpenFileCache getOpenFileCache() {
+        return openFileCache;
+    }
+    
+    /**
+     * Off-heap block cache (for hit/miss statistics)
+     */
+    public MediaBlockCache getBlockCache() {
+        return blockCache;
+    }
+    
+    /**
+     * Fast tier statistics, or null when the fast tier is not configured
+     */
+    public Map<String, Object> getFastTierStats() {
+        FastStorageTier tier = fastTier;
+        return tier != null ? tier.getStats() : null;
+    }
+    
+    /**
+     * Storage volume statistics, or null when no extra volumes are configured
+     */
+    public Map<String, Object> getVolumeStats() {
+        StorageVolumes storageVolumes = volumes;
+        return storageVolumes != null ? storageVolumes.getStats() : null;
+    }
+    
+    /**
+     * Read-ahead statistics, or null when read-ahead is disabled
+     */
+    public Map<String, Object> getReadAheadStats() {
+        ReadAheadPrefetcher prefetcher = readAhead;
+        return prefetcher != null ? prefetcher.getStats() : null;
+    }
+    
+    private void invalidateCaches(String relativePath) {
+        openFileCache.invalidate(relativePath);
+        invalidateVolumeHandles(relativePath);
+        blockCache.invalidate(relativePath);
+        ReadAheadPrefetcher prefetcher = readAhead;
+        if (prefetcher != null) {
+            prefetcher.invalidate(relativePath);
+        }
+    }
+    
+    /**
+     * Close cached channels on every volume's copy of a file
+     */
+    private void invalidateVolumeHandles(String relativePath) {
+        StorageVolumes storageVolumes = volumes;
+        if (storageVolumes != null) {
+            for (int i = 0; i < storageVolumes.size(); i++) {
+                openFileCache.invalidate(storageVolumes.get(i).cacheKey(relativePath));
+            }
+        }
+    }
+    
+    private void forgetVolumeLocations(String... relativePaths) {
+        StorageVolumes storageVolumes = volumes;
+        if (storageVolumes != null) {
+            for (String relativePath : relativePaths) {
+                storageVolumes.forget(relativePath);
+            }
+        }
+    }
+    
+    /**
+     * Directories (relative to every volume) the rebalancer may move files within
+     */
+    private List<String> rebalancedDirectories() {
+        List<String> dirs = new ArrayList<>();
+        dirs.add(toRelativePath(Paths.get(storageProperties.getAudiobooksPath())));
+        dirs.add(toRelativePath(Paths.get(storageProperties.getMusicPath())));
+        dirs.add(toRelativePath(Paths.get(storageProperties.getStoragePathForMedia("VIDEO", 0))));
+        dirs.add(toRelativePath(Paths.get(storageProperties.getStoragePathForMedia("OTHER", 0))));
+        dirs.add(BLOB_DIR);
+        return dirs;
+    }
+    
+    /**
+     * Where a file should be read from: the fast tier copy if there is one, else the
+     * least loaded volume holding it, else basePath
+     */
+    private Path resolvePath(String relativePath) {
+        FastStorageTier tier = fastTier;
+        if (tier != null) {
+            Path staged = tier.locate(relativePath);
+            if (staged != null) {
+                return staged;
+            }
+        }
+        StorageVolumes storageVolumes = volumes;
+        if (storageVolumes != null) {
+            StorageVolumes.Volume volume = storageVolumes.pickForRead(relativePath);
+            if (volume != null) {
+                return volume.getRoot().resolve(relativePath);
+            }
+        }
+        return Paths.get(storageProperties.getBasePath(), relativePath);
+    }
+    
+    private String toRelativePath(Path fullPath) {
+        return Paths.get(storageProperties.getBasePath()).relativize(fullPath).toString();
+    }
+    
+    /**
+     * Pick where a new file is written: the fast tier when enabled and it fits, else the
+     * volume chosen by free space and load, else basePath
+     */
+    private Path stagingTarget(String relativePath, long expectedSize, Path basePath) throws IOException {
+        FastStorageTier tier = fastTier;
+        Path target = tier != null ? tier.pathForNewFile(relativePath, expectedSize) : null;
+        StorageVolumes storageVolumes = volumes;
+        if (target == null && storageVolumes != null) {
+            target = storageVolumes.pathForNewFile(relativePath, expectedSize);
+        }
+        if (target == null) {
+            target = basePath;
+        }
+        Files.createDirectories(target.getParent());
+        return target;
+    }
+    
+    private void commitStaged(String relativePath, Path writtenPath, Path basePath) throws IOException {
+        StorageVolumes storageVolumes = volumes;
+        if (storageVolumes != null && storageVolumes.fileWritten(relativePath, writtenPath)) {
+            return;
+        }
+        FastStorageTier tier = fastTier;
+        if (tier != null && !writtenPath.equals(basePath)) {
+            tier.fileWritten(relativePath);
+        }
+    }
+    
+    /**
+     * Before a file is moved on the base volume, write it through, drop the fast copy
+     * and gather its copies on other volumes into basePath
+     */
+    private void settleOnBaseVolume(String relativePath) throws IOException {
+        FastStorageTier tier = fastTier;
+        if (tier != null) {
+            tier.flush(relativePath);
+            openFileCache.invalidate(relativePath);
+            tier.remove(relativePath);
+        }
+        StorageVolumes storageVolumes = volumes;
+        if (storageVolumes != null) {
+            storageVolumes.gatherOnPrimary(relativePath);
+        }
+    }
+    
+    private OpenFileCache.Handle openFile(String relativePath) throws IOException {
+        FastStorageTier tier = fastTier;
+        Path staged = tier != null ? tier.locate(relativePath) : null;
+        if (staged != null) {
+            try {
+                return openFileCache.acquire(relativePath, staged);
+            } catch (NoSuchFileException e) {
+                // Evicted from the fast tier between lookup and open
+            }
+        }
+        
+        StorageVolumes storageVolumes = volumes;
+        if (storageVolumes != null) {
+            // A remembered location can be stale after a rebalance, so look again once
+            for (int attempt = 0; attempt < 2; attempt++) {
+                StorageVolumes.Volume volume = storageVolumes.pickForRead(relativePath);
+                if (volume == null) {
+                    break;
+                }
+                try {
+                    return openFileCache.acquire(volume.cacheKey(relativePath), volume.getRoot().resolve(relativePath));
+                } catch (NoSuchFileException e) {
+                    storageVolumes.forget(relativePath);
+                }
+            }
+            throw new FileNotFoundException("File not found: " + relativePath);
+        }
+        
+        try {
+            return openFileCache.acquire(relativePath, Paths.get(storageProperties.getBasePath(), relativePath));
+        } catch (NoSuchFileException e) {
+            throw new FileNotFoundException("File not found: " + relativePath);
+        }
+    }
+    
     /**
      * Helper methods
      */
@@ -300,27 +1034,58 @@ public class OptimizedFileStorageService {
     }
     
     /**
-     * Inner class for file streaming information
+     * Inner class for file streaming information.
+     * Closing it releases the lease on the cached channel.
      */
-    public static class FileStreamInfo {
-        private final RandomAccessFile file;
+    public static class FileStreamInfo implements Closeable {
+        private final OpenFileCache.Handle handle;
         private final long rangeStart;
         private final long rangeEnd;
         private final long totalSize;
         private final long contentLength;
         
-        public FileStreamInfo(RandomAccessFile file, long rangeStart, long rangeEnd, long totalSize, long contentLength) {
-            this.file = file;
+        public FileStreamInfo(OpenFileCache.Handle handle, long rangeStart, long rangeEnd, long totalSize, long contentLength) {
+            this.handle = handle;
             this.rangeStart = rangeStart;
             this.rangeEnd = rangeEnd;
             this.totalSize = totalSize;
             this.contentLength = contentLength;
         }
         
-        public RandomAccessFile getFile() { return file; }
+        public FileChannel getChannel() { return handle.getChannel(); }
         public long getRangeStart() { return rangeStart; }
         public long getRangeEnd() { return rangeEnd; }
         public long getTotalSize() { return totalSize; }
         public long getContentLength() { return contentLength; }
+        
+        @Override
+        public void close() { handle.close(); }
+    }
+    
+    /**
+     * Counts the bytes that reached the client, so a transfer can resume after a reopen
+     */
+    private static final class CountingChannel implements WritableByteChannel {
+        private final WritableByteChannel target;
+        private long written;
+        
+        private CountingChannel(WritableByteChannel target) {
+            this.target = target;
+        }
+        
+        long getWritten() { return written; }
+        
+        @Override
+        public int write(ByteBuffer src) throws IOException {
+            int count = target.write(src);
+            written += count;
+            return count;
+        }
+        
+        @Override
+        public boolean isOpen() { return target.isOpen(); }
+        
+        @Override
+        public void close() throws IOException { target.close(); }
     }
-}
\ No newline at end of file
+}
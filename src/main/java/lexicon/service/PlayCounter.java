@@ -0,0 +1,45 @@
+package lexicon.service;
+
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+
+/**
+ * Tells which range requests start a new play of a file.
+ *
+ * A player fetches one file as many ranges, so only the first range of each
+ * client's play counts; the play lasts until that client has left the file idle
+ * for STREAM_IDLE_MILLIS. Without a client key, only ranges starting at 0 count.
+ */
+class PlayCounter {
+
+    static final long STREAM_IDLE_MILLIS = 10 * 60_000; // A client's ranges this close are one play
+
+    private final int maxTracked;
+
+    // client|path -> time of its last range, eldest first for cleanup
+    private final LinkedHashMap<String, Long> streams = new LinkedHashMap<>(64, 0.75f, true);
+
+    PlayCounter(int maxTracked) {
+        this.maxTracked = maxTracked;
+    }
+
+    boolean isNewPlay(String relativePath, long start, String clientKey) {
+        return isNewPlay(relativePath, start, clientKey, System.currentTimeMillis());
+    }
+
+    synchronized boolean isNewPlay(String relativePath, long start, String clientKey, long now) {
+        if (clientKey == null) {
+            return start == 0;
+        }
+        Long last = streams.put(clientKey + "|" + relativePath, now);
+        Iterator<Long> it = streams.values().iterator();
+        while (it.hasNext()) {
+            long eldest = it.next();
+            if (streams.size() <= maxTracked && now - eldest < STREAM_IDLE_MILLIS) {
+                break;
+            }
+            it.remove();
+        }
+        return last == null || now - last >= STREAM_IDLE_MILLIS;
+    }
+}
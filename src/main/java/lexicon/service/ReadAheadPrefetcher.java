@@ -0,0 +1,168 @@
+package lexicon.service;
+
+import java.io.IOException;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.Executor;
+import java.util.concurrent.RejectedExecutionException;
+
+/**
+ * Detects clients walking a file with consecutive range requests and loads the
+ * next blocks ahead of them on a bounded I/O pool.
+ *
+ * A stream is keyed by (client, file). Once two requests in a row continue where
+ * the previous one ended, the blocks after the current request are prefetched.
+ * The depth follows the observed consumption rate (about {@link #LOOKAHEAD_MILLIS}
+ * worth of data, at least {@link #MIN_DEPTH_BLOCKS}), capped by the configured
+ * maximum. Files nobody is reading sequentially are never touched.
+ */
+public class ReadAheadPrefetcher {
+
+    /**
+     * Loads a byte range into the block cache or the OS page cache
+     */
+    @FunctionalInterface
+    public interface RangeLoader {
+        void load(String relativePath, long start, long length) throws IOException;
+    }
+
+    static final long LOOKAHEAD_MILLIS = 4000;
+    static final int MIN_DEPTH_BLOCKS = 2;
+    private static final int SEQUENTIAL_THRESHOLD = 2;   // Consecutive requests before prefetching
+    private static final long SEQUENTIAL_SLACK = MediaBlockCache.BLOCK_SIZE; // Small gaps still count
+    private static final int MAX_TRACKED_STREAMS = 1024;
+    private static final long STREAM_IDLE_MILLIS = 60_000;
+
+    private final RangeLoader loader;
+    private final Executor executor;
+    private final int maxDepthBlocks;
+    private final long blockSize;
+
+    // client|path -> stream state, eldest first for cleanup
+    private final LinkedHashMap<String, StreamState> streams = new LinkedHashMap<>(64, 0.75f, true);
+
+    private long prefetches;
+    private long prefetchedBytes;
+    private long dropped;
+
+    public ReadAheadPrefetcher(RangeLoader loader, Executor executor, int maxDepthBlocks) {
+        this(loader, executor, maxDepthBlocks, MediaBlockCache.BLOCK_SIZE);
+    }
+
+    ReadAheadPrefetcher(RangeLoader loader, Executor executor, int maxDepthBlocks, long blockSize) {
+        this.loader = loader;
+        this.executor = executor;
+        this.maxDepthBlocks = maxDepthBlocks;
+        this.blockSize = blockSize;
+    }
+
+    /**
+     * Record a range about to be served and schedule read-ahead if the stream is sequential
+     */
+    public void onRead(String clientKey, String relativePath, long start, long length, long fileSize) {
+        if (clientKey == null || maxDepthBlocks <= 0 || length <= 0) {
+            return;
+        }
+        long end = Math.min(start + length, fileSize);
+        long now = System.currentTimeMillis();
+        long prefetchStart;
+        long prefetchEnd;
+
+        synchronized (this) {
+            String key = clientKey + "|" + relativePath;
+            StreamState state = streams.get(key);
+            if (state == null) {
+                removeStaleLocked(now);
+                state = new StreamState();
+                streams.put(key, state);
+            } else if (start >= state.lastEnd - SEQUENTIAL_SLACK && start <= state.lastEnd + SEQUENTIAL_SLACK) {
+                state.sequentialRuns++;
+                long elapsed = Math.max(1, now - state.lastTime);
+                double rate = (double) (end - state.lastEnd) * 1000 / elapsed; // bytes per second
+                state.bytesPerSecond = state.bytesPerSecond == 0 ? rate : state.bytesPerSecond * 0.7 + rate * 0.3;
+            } else {
+                // Seek - start over
+                state.sequentialRuns = 0;
+                state.bytesPerSecond = 0;
+                state.prefetchedUntil = 0;
+            }
+            state.lastEnd = end;
+            state.lastTime = now;
+
+            if (state.sequentialRuns < SEQUENTIAL_THRESHOLD - 1 || end >= fileSize) {
+                return;
+            }
+            long depth = depthBlocks(state.bytesPerSecond) * blockSize;
+            prefetchStart = Math.max(end, state.prefetchedUntil);
+            prefetchEnd = Math.min(fileSize, end + depth);
+            if (prefetchEnd - prefetchStart < blockSize && prefetchEnd < fileSize) {
+                return; // Already far enough ahead
+            }
+            state.prefetchedUntil = prefetchEnd;
+            prefetches++;
+            prefetchedBytes += prefetchEnd - prefetchStart;
+        }
+
+        long from = prefetchStart;
+        long count = prefetchEnd - prefetchStart;
+        try {
+            executor.execute(() -> {
+                try {
+                    loader.load(relativePath, from, count);
+                } catch (IOException | RuntimeException e) {
+                    // Best effort - the real request will read the blocks itself
+                }
+            });
+        } catch (RejectedExecutionException e) {
+            synchronized (this) {
+                dropped++; // Pool is saturated; never queue unbounded I/O
+            }
+        }
+    }
+
+    /**
+     * Blocks to keep ahead of a stream consuming the given number of bytes per second
+     */
+    int depthBlocks(double bytesPerSecond) {
+        long wanted = (long) Math.ceil(bytesPerSecond * LOOKAHEAD_MILLIS / 1000 / blockSize);
+        return (int) Math.max(MIN_DEPTH_BLOCKS, Math.min(maxDepthBlocks, wanted));
+    }
+
+    /**
+     * Forget streams on a file (after delete or move)
+     */
+    public synchronized void invalidate(String relativePath) {
+        streams.keySet().removeIf(key -> key.endsWith("|" + relativePath));
+    }
+
+    public synchronized Map<String, Object> getStats() {
+        Map<String, Object> stats = new HashMap<>();
+        stats.put("maxDepthBlocks", maxDepthBlocks);
+        stats.put("trackedStreams", streams.size());
+        stats.put("prefetches", prefetches);
+        stats.put("prefetchedBytes", prefetchedBytes);
+        stats.put("dropped", dropped);
+        return stats;
+    }
+
+    private void removeStaleLocked(long now) {
+        Iterator<StreamState> it = streams.values().iterator();
+        while (it.hasNext()) {
+            StreamState eldest = it.next();
+            if (streams.size() < MAX_TRACKED_STREAMS && now - eldest.lastTime < STREAM_IDLE_MILLIS) {
+                break;
+            }
+            it.remove();
+        }
+    }
+
+    private static final class StreamState {
+        private long lastEnd = -1;
+        private long lastTime;
+        private int sequentialRuns;
+        private double bytesPerSecond;
+        private long prefetchedUntil;
+    }
+}
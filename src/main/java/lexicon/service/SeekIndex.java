@@ -0,0 +1,146 @@
+package lexicon.service;
+
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.util.Arrays;
+
+/**
+ * Time-to-byte map of a media file: sorted (time, offset) points where playback
+ * can start. MP3 points are frame starts, MP4 points are sync samples of the
+ * indexed track. Lookups return the last point at or before the requested time.
+ */
+public final class SeekIndex {
+
+    private static final int FORMAT_VERSION = 1;
+
+    private final String format;
+    private final long fileSize;
+    private final long durationMillis;
+    private final long[] timesMillis;
+    private final long[] offsets;
+
+    public SeekIndex(String format, long fileSize, long durationMillis, long[] timesMillis, long[] offsets) {
+        if (timesMillis.length != offsets.length || timesMillis.length == 0) {
+            throw new IllegalArgumentException("Seek index needs matching, non-empty time and offset tables");
+        }
+        this.format = format;
+        this.fileSize = fileSize;
+        this.durationMillis = durationMillis;
+        this.timesMillis = timesMillis;
+        this.offsets = offsets;
+    }
+
+    public String getFormat() { return format; }
+    public long getFileSize() { return fileSize; }
+    public long getDurationMillis() { return durationMillis; }
+    public int getPointCount() { return timesMillis.length; }
+
+    /**
+     * The seek point at or before the given time (the first point for earlier times)
+     */
+    public Point seek(long timeMillis) {
+        int index = Arrays.binarySearch(timesMillis, timeMillis);
+        if (index < 0) {
+            index = -index - 2; // Insertion point - 1
+        }
+        index = Math.max(0, index);
+        return new Point(timesMillis[index], offsets[index], "mp3".equals(format));
+    }
+
+    public void writeTo(DataOutputStream out) throws IOException {
+        out.writeInt(FORMAT_VERSION);
+        out.writeUTF(format);
+        out.writeLong(fileSize);
+        out.writeLong(durationMillis);
+        out.writeInt(timesMillis.length);
+        for (int i = 0; i < timesMillis.length; i++) {
+            out.writeLong(timesMillis[i]);
+            out.writeLong(offsets[i]);
+        }
+    }
+
+    /**
+     * Read an index written by {@link #writeTo}, or null if it is from another format version
+     */
+    public static SeekIndex readFrom(DataInputStream in) throws IOException {
+        if (in.readInt() != FORMAT_VERSION) {
+            return null;
+        }
+        String format = in.readUTF();
+        long fileSize = in.readLong();
+        long durationMillis = in.readLong();
+        int count = in.readInt();
+        // Sidecars are read from files, where available() is the number of bytes left
+        if (count <= 0 || count > in.available() / 16) {
+            throw new IOException("Corrupt seek index");
+        }
+        long[] times = new long[count];
+        long[] offsets = new long[count];
+        for (int i = 0; i < count; i++) {
+            times[i] = in.readLong();
+            offsets[i] = in.readLong();
+        }
+        return new SeekIndex(format, fileSize, durationMillis, times, offsets);
+    }
+
+    /**
+     * A position playback can start from
+     */
+    public static final class Point {
+        private final long timeMillis;
+        private final long offset;
+        private final boolean selfSyncing;
+
+        private Point(long timeMillis, long offset, boolean selfSyncing) {
+            this.timeMillis = timeMillis;
+            this.offset = offset;
+            this.selfSyncing = selfSyncing;
+        }
+
+        public long getTimeMillis() { return timeMillis; }
+        public long getOffset() { return offset; }
+
+        /**
+         * Whether the bytes from this offset play on their own (MP3 frames); MP4
+         * samples cannot be decoded without the moov box at the start of the file
+         */
+        public boolean isSelfSyncing() { return selfSyncing; }
+    }
+
+    /**
+     * Collects points, keeping at most one per interval so long files stay compact
+     */
+    static final class Builder {
+        private final long intervalMillis;
+        private long[] times = new long[256];
+        private long[] offsets = new long[256];
+        private int count;
+        private long nextTime;
+
+        Builder(long intervalMillis) {
+            this.intervalMillis = intervalMillis;
+        }
+
+        void add(long timeMillis, long offset) {
+            if (count > 0 && timeMillis < nextTime) {
+                return;
+            }
+            if (count == times.length) {
+                times = Arrays.copyOf(times, count * 2);
+                offsets = Arrays.copyOf(offsets, count * 2);
+            }
+            times[count] = timeMillis;
+            offsets[count] = offset;
+            count++;
+            nextTime = timeMillis + intervalMillis;
+        }
+
+        boolean isEmpty() { return count == 0; }
+
+        SeekIndex build(String format, long fileSize, long durationMillis) {
+            return new SeekIndex(format, fileSize, durationMillis,
+                    Arrays.copyOf(times, count), Arrays.copyOf(offsets, count));
+        }
+    }
+}
@@ -0,0 +1,200 @@
+package lexicon.service;
+
+import lexicon.config.StorageProperties;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.stereotype.Service;
+
+import jakarta.annotation.PreDestroy;
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardCopyOption;
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.RejectedExecutionException;
+
+/**
+ * Time-to-byte seek indexes for stored media, used by the ?t=seconds stream mode.
+ *
+ * Indexes are built in the background at ingest (MP3 frame tables, MP4 sample
+ * tables), persisted as sidecar files under the cache path, and kept in a small
+ * LRU in memory. A sidecar whose recorded file size no longer matches is rebuilt.
+ */
+@Service
+public class SeekIndexService {
+
+    private static final long POINT_INTERVAL_MILLIS = 1000; // One seek point per second
+    private static final int MAX_CACHED_INDEXES = 256;
+
+    @Autowired
+    private OptimizedFileStorageService fileStorageService;
+
+    @Autowired
+    private StorageProperties storageProperties;
+
+    private final Map<String, SeekIndex> indexes = Collections.synchronizedMap(
+            new LinkedHashMap<String, SeekIndex>(64, 0.75f, true) {
+                @Override
+                protected boolean removeEldestEntry(Map.Entry<String, SeekIndex> eldest) {
+                    return size() > MAX_CACHED_INDEXES;
+                }
+            });
+    private final Set<String> building = ConcurrentHashMap.newKeySet();
+    private final Map<String, Long> unsupported = new ConcurrentHashMap<>(); // path -> size when checked
+    private final ExecutorService indexer = Executors.newSingleThreadExecutor(r -> {
+        Thread t = new Thread(r, "seek-indexer");
+        t.setDaemon(true);
+        return t;
+    });
+
+    @PreDestroy
+    public void shutdown() {
+        indexer.shutdownNow();
+    }
+
+    /**
+     * Build the index for a newly stored file in the background
+     */
+    public void indexAsync(String relativePath) {
+        if (relativePath == null || relativePath.isEmpty() || !building.add(relativePath)) {
+            return;
+        }
+        try {
+            indexer.submit(() -> {
+                try {
+                    buildIndex(relativePath);
+                } catch (IOException | RuntimeException e) {
+                    System.err.println("❌ Seek index failed for " + relativePath + ": " + e.getMessage());
+                } finally {
+                    building.remove(relativePath);
+                }
+            });
+        } catch (RejectedExecutionException e) {
+            building.remove(relativePath); // Shutting down
+        }
+    }
+
+    /**
+     * Index for a stored file, or null if the format is not indexable or the index
+     * is not built yet (a build is then queued).
+     */
+    public SeekIndex getIndex(String relativePath) {
+        try {
+            long fileSize = fileStorageService.getFileSize(relativePath);
+            SeekIndex index = indexes.get(relativePath);
+            if (index != null && index.getFileSize() == fileSize) {
+                return index;
+            }
+            index = readSidecar(relativePath);
+            if (index != null && index.getFileSize() == fileSize) {
+                indexes.put(relativePath, index);
+                return index;
+            }
+            Long checkedSize = unsupported.get(relativePath);
+            if (checkedSize != null && checkedSize == fileSize) {
+                return null; // Not an indexable format
+            }
+        } catch (IOException e) {
+            System.err.println("Error loading seek index for " + relativePath + ": " + e.getMessage());
+        }
+        indexAsync(relativePath);
+        return null;
+    }
+
+    /**
+     * Byte position to start streaming from for the given playback time, or null if unknown
+     */
+    public SeekIndex.Point seek(String relativePath, double seconds) {
+        SeekIndex index = getIndex(relativePath);
+        if (index == null) {
+            return null;
+        }
+        return index.seek((long) (Math.max(0, seconds) * 1000));
+    }
+
+    /**
+     * Scan the file and persist its index (runs on the caller's thread)
+     */
+    public SeekIndex buildIndex(String relativePath) throws IOException {
+        long startTime = System.currentTimeMillis();
+        SeekIndex index;
+        try (OptimizedFileStorageService.FileStreamInfo file =
+                     fileStorageService.getFileForStreaming(relativePath, 0, 0)) {
+            index = buildIndex(file.getChannel(), file.getTotalSize());
+        }
+        if (index == null) {
+            unsupported.put(relativePath, fileStorageService.getFileSize(relativePath));
+            return null;
+        }
+        unsupported.remove(relativePath);
+
+        writeSidecar(relativePath, index);
+        indexes.put(relativePath, index);
+        System.out.println("🧭 Seek index for " + relativePath + ": " + index.getPointCount() + " points, "
+                + (index.getDurationMillis() / 1000) + "s (" + (System.currentTimeMillis() - startTime) + "ms)");
+        return index;
+    }
+
+    /**
+     * Detect the container and build its index, or null if the format is not supported
+     */
+    static SeekIndex buildIndex(FileChannel channel, long fileSize) throws IOException {
+        ByteBuffer head = ByteBuffer.allocate(12);
+        while (head.hasRemaining()) {
+            if (channel.read(head, head.position()) < 0) {
+                break;
+            }
+        }
+        byte[] bytes = new byte[head.position()];
+        head.flip();
+        head.get(bytes);
+
+        if (Mp4SeekIndexer.matches(bytes)) {
+            return Mp4SeekIndexer.index(channel, fileSize, POINT_INTERVAL_MILLIS);
+        }
+        if (Mp3SeekIndexer.matches(bytes)) {
+            return Mp3SeekIndexer.index(channel, fileSize, POINT_INTERVAL_MILLIS);
+        }
+        return null;
+    }
+
+    private Path sidecarPath(String relativePath) {
+        return Paths.get(storageProperties.getCachePath(), "seek-index", relativePath + ".idx");
+    }
+
+    private SeekIndex readSidecar(String relativePath) throws IOException {
+        Path sidecar = sidecarPath(relativePath);
+        if (!Files.exists(sidecar)) {
+            return null;
+        }
+        try (InputStream in = Files.newInputStream(sidecar);
+             DataInputStream data = new DataInputStream(new BufferedInputStream(in))) {
+            return SeekIndex.readFrom(data);
+        }
+    }
+
+    private void writeSidecar(String relativePath, SeekIndex index) throws IOException {
+        Path sidecar = sidecarPath(relativePath);
+        Files.createDirectories(sidecar.getParent());
+        Path temp = sidecar.resolveSibling(sidecar.getFileName() + ".tmp");
+        try (OutputStream out = Files.newOutputStream(temp);
+             DataOutputStream data = new DataOutputStream(new BufferedOutputStream(out))) {
+            index.writeTo(data);
+        }
+        Files.move(temp, sidecar, StandardCopyOption.REPLACE_EXISTING);
+    }
+}
@@ -0,0 +1,501 @@
+package lexicon.service;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.file.*;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.Executors;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.Consumer;
+import java.util.stream.Stream;
+
+/**
+ * Several storage volumes (disks) holding media under the same relative paths.
+ *
+ * Volume 0 is basePath. New files go to the volume with the least recent read load
+ * among those that keep lexicon.storage.volume-reserve-bytes free. Where each file
+ * lives is discovered on first access and remembered, so files can be moved between
+ * volumes without touching the database. Reads pick the least loaded volume holding
+ * a copy; files streamed often can be mirrored onto a second volume so their reads
+ * are spread across disks. A background rebalancer moves cold files off volumes that
+ * are much fuller than the emptiest one.
+ */
+public class StorageVolumes {
+
+    private static final String PART_SUFFIX = ".part";
+    private static final int MAX_TRACKED_READS = 10_000;
+    private static final long LOAD_HALF_LIFE_NANOS = TimeUnit.SECONDS.toNanos(10);
+    private static final double REBALANCE_THRESHOLD = 0.10; // Difference in used fraction worth moving data for
+
+    private final List<Volume> volumes = new ArrayList<>();
+    private final List<String> mediaDirs;
+    private final long reserveBytes;
+    private final int mirrorAfterReads;
+    private final long rebalanceBytesPerRun;
+    private final Consumer<String> onRelocated;
+
+    // relative path -> bit mask of the volumes holding a copy
+    private final Map<String, Integer> locations = new ConcurrentHashMap<>();
+    private final Map<String, AtomicInteger> readCounts = new ConcurrentHashMap<>();
+    private final Map<String, Long> lastReads = new ConcurrentHashMap<>(); // relative path -> last read, millis
+    private final PlayCounter plays = new PlayCounter(MAX_TRACKED_READS);
+    private final Set<String> pendingMirrors = ConcurrentHashMap.newKeySet();
+    private final ScheduledExecutorService mover = Executors.newSingleThreadScheduledExecutor(r -> {
+        Thread t = new Thread(r, "volume-mover");
+        t.setDaemon(true);
+        t.setPriority(Thread.MIN_PRIORITY);
+        return t;
+    });
+
+    private volatile long mirrors;
+    private volatile long rebalancedFiles;
+    private volatile long rebalancedBytes;
+
+    /**
+     * @param roots       volume roots, basePath first (at most 31)
+     * @param mediaDirs   directories (relative to every root) holding files addressed by relative path;
+     *                    only these are moved by the rebalancer
+     * @param onRelocated called with a relative path whenever its copies change, so callers can drop cached handles
+     */
+    public StorageVolumes(List<Path> roots, List<String> mediaDirs, long reserveBytes, int mirrorAfterReads,
+                          long rebalanceBytesPerRun, Consumer<String> onRelocated) {
+        if (roots.isEmpty() || roots.size() > 31) {
+            throw new IllegalArgumentException("Between 1 and 31 storage volumes are supported");
+        }
+        for (int i = 0; i < roots.size(); i++) {
+            volumes.add(new Volume(i, roots.get(i)));
+        }
+        this.mediaDirs = mediaDirs;
+        this.reserveBytes = reserveBytes;
+        this.mirrorAfterReads = mirrorAfterReads;
+        this.rebalanceBytesPerRun = rebalanceBytesPerRun;
+        this.onRelocated = onRelocated;
+    }
+
+    public void start(long rebalanceIntervalMinutes) throws IOException {
+        for (Volume volume : volumes) {
+            Files.createDirectories(volume.root);
+            System.out.println("💽 Storage volume " + volume.index + ": " + volume.root + " ("
+                    + volume.usableSpace() / (1024 * 1024 * 1024) + "GB free)");
+        }
+        if (rebalanceIntervalMinutes > 0 && volumes.size() > 1) {
+            mover.scheduleWithFixedDelay(() -> {
+                try {
+                    rebalance();
+                } catch (RuntimeException e) {
+                    System.err.println("❌ Volume rebalance failed: " + e.getMessage());
+                }
+            }, rebalanceIntervalMinutes, rebalanceIntervalMinutes, TimeUnit.MINUTES);
+        }
+    }
+
+    public void shutdown() {
+        mover.shutdownNow(); // An interrupted copy leaves only a .part file behind
+    }
+
+    public int size() {
+        return volumes.size();
+    }
+
+    public Volume get(int index) {
+        return volumes.get(index);
+    }
+
+    /**
+     * Where a new file should be written
+     */
+    public Path pathForNewFile(String relativePath, long expectedSize) {
+        return placeNew(expectedSize).root.resolve(relativePath);
+    }
+
+    /**
+     * Register a file written to one of the volumes
+     *
+     * @return false if the path is not on any volume
+     */
+    public boolean fileWritten(String relativePath, Path writtenPath) {
+        for (Volume volume : volumes) {
+            if (writtenPath.startsWith(volume.root)) {
+                locations.merge(relativePath, volume.bit(), (a, b) -> a | b);
+                return true;
+            }
+        }
+        return false;
+    }
+
+    /**
+     * The least loaded volume holding the file, or null if no volume has it
+     */
+    public Volume pickForRead(String relativePath) {
+        int mask = locate(relativePath);
+        Volume best = null;
+        for (Volume volume : volumes) {
+            if ((mask & volume.bit()) != 0 && (best == null || volume.load() < best.load())) {
+                best = volume;
+            }
+        }
+        return best;
+    }
+
+    /**
+     * Forget a cached location after the file turned out to be missing there
+     */
+    public void forget(String relativePath) {
+        locations.remove(relativePath);
+    }
+
+    /**
+     * Delete every copy of a file
+     *
+     * @return true if any copy existed
+     */
+    public boolean delete(String relativePath) throws IOException {
+        pendingMirrors.remove(relativePath);
+        readCounts.remove(relativePath);
+        boolean deleted = false;
+        for (Volume volume : volumes) {
+            deleted |= Files.deleteIfExists(volume.root.resolve(relativePath));
+        }
+        locations.remove(relativePath);
+        return deleted;
+    }
+
+    /**
+     * Leave the only copy of a file on volume 0, so it can be renamed there
+     */
+    public void gatherOnPrimary(String relativePath) throws IOException {
+        int mask = locate(relativePath);
+        Volume primary = volumes.get(0);
+        if (mask == 0 || mask == primary.bit()) {
+            return;
+        }
+        if ((mask & primary.bit()) == 0) {
+            Volume source = pickForRead(relativePath);
+            copyAtomically(source.root.resolve(relativePath), primary.root.resolve(relativePath));
+        }
+        locations.put(relativePath, primary.bit());
+        onRelocated.accept(relativePath);
+        for (Volume volume : volumes) {
+            if (volume != primary && (mask & volume.bit()) != 0) {
+                Files.deleteIfExists(volume.root.resolve(relativePath));
+            }
+        }
+    }
+
+    /**
+     * The volume an open file cache key (see {@link Volume#cacheKey}) refers to
+     */
+    public Volume volumeForKey(String cacheKey) {
+        int colon = cacheKey.indexOf(':');
+        if (cacheKey.startsWith("v") && colon > 1) {
+            String index = cacheKey.substring(1, colon);
+            if (index.chars().allMatch(Character::isDigit)) {
+                int i = Integer.parseInt(index);
+                if (i < volumes.size()) {
+                    return volumes.get(i);
+                }
+            }
+        }
+        return volumes.get(0);
+    }
+
+    /**
+     * Count bytes served from a volume, and mirror files that keep being played.
+     * Only the first range of each play counts towards mirroring (see {@link PlayCounter}).
+     */
+    public void recordRead(Volume volume, String relativePath, long bytes, long start, String clientKey) {
+        volume.addLoad(bytes);
+        long now = System.currentTimeMillis();
+        if (lastReads.size() > MAX_TRACKED_READS) {
+            lastReads.values().removeIf(last -> now - last >= PlayCounter.STREAM_IDLE_MILLIS);
+        }
+        lastReads.put(relativePath, now);
+        if (mirrorAfterReads <= 0 || volumes.size() < 2 || !plays.isNewPlay(relativePath, start, clientKey, now)) {
+            return;
+        }
+        if (readCounts.size() > MAX_TRACKED_READS) {
+            readCounts.clear(); // Crude decay - hot files quickly re-qualify
+        }
+        int reads = readCounts.computeIfAbsent(relativePath, k -> new AtomicInteger()).incrementAndGet();
+        if (reads >= mirrorAfterReads && Integer.bitCount(locate(relativePath)) == 1
+                && pendingMirrors.add(relativePath)) {
+            try {
+                mover.submit(() -> mirror(relativePath));
+            } catch (RejectedExecutionException e) {
+                pendingMirrors.remove(relativePath); // Shutting down
+            }
+        }
+    }
+
+    public Map<String, Object> getStats() {
+        Map<String, Object> stats = new HashMap<>();
+        List<Map<String, Object>> perVolume = new ArrayList<>();
+        for (Volume volume : volumes) {
+            Map<String, Object> entry = new HashMap<>();
+            entry.put("path", volume.root.toString());
+            entry.put("usableBytes", volume.usableSpace());
+            entry.put("totalBytes", volume.totalSpace());
+            entry.put("recentReadBytes", (long) volume.load());
+            perVolume.add(entry);
+        }
+        stats.put("volumes", perVolume);
+        stats.put("trackedFiles", locations.size());
+        stats.put("mirrors", mirrors);
+        stats.put("rebalancedFiles", rebalancedFiles);
+        stats.put("rebalancedBytes", rebalancedBytes);
+        return stats;
+    }
+
+    /**
+     * True if the file was streamed within the last play idle window, whether or not mirroring is on
+     */
+    boolean isRecentlyRead(String relativePath) {
+        Long last = lastReads.get(relativePath);
+        return last != null && System.currentTimeMillis() - last < PlayCounter.STREAM_IDLE_MILLIS;
+    }
+
+    /**
+     * Bit mask of the volumes holding a file, probing the volumes on first access
+     */
+    int locate(String relativePath) {
+        Integer known = locations.get(relativePath);
+        if (known != null) {
+            return known;
+        }
+        int mask = 0;
+        for (Volume volume : volumes) {
+            if (Files.exists(volume.root.resolve(relativePath))) {
+                mask |= volume.bit();
+            }
+        }
+        if (mask != 0) {
+            locations.put(relativePath, mask); // Misses are not remembered; the file may be written later
+        }
+        return mask;
+    }
+
+    /**
+     * Least loaded volume with room for the file, or the emptiest one if none has room
+     */
+    Volume placeNew(long expectedSize) {
+        Volume best = null;
+        for (Volume volume : volumes) {
+            if (volume.usableSpace() - Math.max(0, expectedSize) < reserveBytes) {
+                continue;
+            }
+            if (best == null || volume.load() < best.load()
+                    || (volume.load() == best.load() && volume.usableSpace() > best.usableSpace())) {
+                best = volume;
+            }
+        }
+        if (best == null) {
+            best = volumes.stream().max(Comparator.comparingLong(Volume::usableSpace)).orElseThrow();
+        }
+        return best;
+    }
+
+    private void mirror(String relativePath) {
+        try {
+            if (!pendingMirrors.contains(relativePath)) {
+                return; // Deleted meanwhile
+            }
+            int mask = locate(relativePath);
+            Volume source = pickForRead(relativePath);
+            if (source == null || Integer.bitCount(mask) != 1) {
+                return;
+            }
+            long size = Files.size(source.root.resolve(relativePath));
+            Volume target = null;
+            for (Volume volume : volumes) {
+                if (volume != source && volume.usableSpace() - size >= reserveBytes
+                        && (target == null || volume.load() < target.load())) {
+                    target = volume;
+                }
+            }
+            if (target == null) {
+                return;
+            }
+            copyAtomically(source.root.resolve(relativePath), target.root.resolve(relativePath));
+            if (!pendingMirrors.contains(relativePath)) {
+                Files.deleteIfExists(target.root.resolve(relativePath)); // Deleted while copying
+                return;
+            }
+            locations.merge(relativePath, target.bit(), (a, b) -> a | b);
+            mirrors++;
+            System.out.println("🪞 Mirrored " + relativePath + " onto volume " + target.index);
+        } catch (IOException e) {
+            System.err.println("Mirroring failed for " + relativePath + ": " + e.getMessage());
+        } finally {
+            pendingMirrors.remove(relativePath);
+        }
+    }
+
+    /**
+     * Move cold files from the fullest volume to the emptiest until they are within
+     * the threshold of each other or the per-run byte budget is spent
+     */
+    void rebalance() {
+        Volume fullest = volumes.stream().max(Comparator.comparingDouble(Volume::usedFraction)).orElseThrow();
+        Volume emptiest = volumes.stream().min(Comparator.comparingDouble(Volume::usedFraction)).orElseThrow();
+        if (fullest.usedFraction() - emptiest.usedFraction() < REBALANCE_THRESHOLD) {
+            return;
+        }
+
+        List<Path> candidates = new ArrayList<>();
+        for (String dir : mediaDirs) {
+            Path root = fullest.root.resolve(dir);
+            if (!Files.isDirectory(root)) {
+                continue;
+            }
+            try (Stream<Path> files = Files.walk(root)) {
+                files.filter(Files::isRegularFile)
+                        .filter(p -> !isWorkFile(p.getFileName().toString()))
+                        .forEach(candidates::add);
+            } catch (IOException | UncheckedIOException e) {
+                System.err.println("Volume rebalance could not scan " + root + ": " + e.getMessage());
+            }
+        }
+        candidates.sort(Comparator.comparingLong(StorageVolumes::sizeOf).reversed()); // Fewest moves per byte
+
+        long moved = 0;
+        for (Path file : candidates) {
+            if (Thread.currentThread().isInterrupted() || moved >= rebalanceBytesPerRun
+                    || fullest.usedFraction() - emptiest.usedFraction() < REBALANCE_THRESHOLD / 2) {
+                break;
+            }
+            String relativePath = fullest.root.relativize(file).toString();
+            if (isRecentlyRead(relativePath) || pendingMirrors.contains(relativePath)) {
+                continue; // Recently streamed - moving it would just disturb readers
+            }
+            long size = sizeOf(file);
+            if (emptiest.usableSpace() - size < reserveBytes) {
+                continue;
+            }
+            try {
+                int mask = locate(relativePath);
+                if ((mask & emptiest.bit()) == 0) {
+                    copyAtomically(file, emptiest.root.resolve(relativePath));
+                    if (!Files.exists(file)) {
+                        Files.deleteIfExists(emptiest.root.resolve(relativePath)); // Deleted while copying
+                        continue;
+                    }
+                }
+                locations.put(relativePath, (mask | emptiest.bit()) & ~fullest.bit());
+                onRelocated.accept(relativePath); // New readers open the new copy
+                Files.deleteIfExists(file);
+                moved += size;
+                rebalancedFiles++;
+                rebalancedBytes += size;
+            } catch (IOException e) {
+                // The source may still be open on platforms that refuse to delete open files; keep both copies
+                locations.remove(relativePath);
+                System.err.println("Volume rebalance could not move " + relativePath + ": " + e.getMessage());
+            }
+        }
+        if (moved > 0) {
+            System.out.println("💽 Rebalanced " + moved / (1024 * 1024) + "MB from volume " + fullest.index
+                    + " to volume " + emptiest.index);
+        }
+    }
+
+    /**
+     * Partial copies and sidecar files (blob reference counts) stay where they are
+     */
+    private static boolean isWorkFile(String fileName) {
+        return fileName.endsWith(PART_SUFFIX) || fileName.endsWith(".refs") || fileName.endsWith(".tmp");
+    }
+
+    private static long sizeOf(Path file) {
+        try {
+            return Files.size(file);
+        } catch (IOException e) {
+            return 0;
+        }
+    }
+
+    static void copyAtomically(Path source, Path target) throws IOException {
+        Files.createDirectories(target.getParent());
+        Path part = target.resolveSibling(target.getFileName() + PART_SUFFIX);
+        Files.copy(source, part, StandardCopyOption.REPLACE_EXISTING);
+        try {
+            Files.move(part, target, StandardCopyOption.ATOMIC_MOVE, StandardCopyOption.REPLACE_EXISTING);
+        } catch (AtomicMoveNotSupportedException e) {
+            Files.move(part, target, StandardCopyOption.REPLACE_EXISTING);
+        }
+    }
+
+    /**
+     * One storage volume and its recent read load (bytes, decaying with a 10 second half-life)
+     */
+    public static final class Volume {
+        private final int index;
+        private final Path root;
+        private double load;
+        private long loadStamp = System.nanoTime();
+
+        private Volume(int index, Path root) {
+            this.index = index;
+            this.root = root;
+        }
+
+        public int getIndex() { return index; }
+        public Path getRoot() { return root; }
+
+        /**
+         * Key for this volume's copy of a file in the open file cache
+         */
+        public String cacheKey(String relativePath) {
+            return index == 0 ? relativePath : "v" + index + ":" + relativePath;
+        }
+
+        int bit() {
+            return 1 << index;
+        }
+
+        synchronized void addLoad(long bytes) {
+            decay();
+            load += bytes;
+        }
+
+        synchronized double load() {
+            decay();
+            return load;
+        }
+
+        private void decay() {
+            long now = System.nanoTime();
+            load *= Math.pow(0.5, (now - loadStamp) / (double) LOAD_HALF_LIFE_NANOS);
+            loadStamp = now;
+        }
+
+        long usableSpace() {
+            try {
+                return Files.getFileStore(root).getUsableSpace();
+            } catch (IOException e) {
+                return 0;
+            }
+        }
+
+        long totalSpace() {
+            try {
+                return Files.getFileStore(root).getTotalSpace();
+            } catch (IOException e) {
+                return 0;
+            }
+        }
+
+        double usedFraction() {
+            long total = totalSpace();
+            return total > 0 ? 1.0 - (double) usableSpace() / total : 1.0;
+        }
+    }
+}
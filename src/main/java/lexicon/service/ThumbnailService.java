@@ -0,0 +1,229 @@
+package lexicon.service;
+
+import lexicon.config.StorageProperties;
+import lexicon.object.MediaFile;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.stereotype.Service;
+
+import jakarta.annotation.PreDestroy;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardCopyOption;
+import java.util.Comparator;
+import java.util.Locale;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.regex.Pattern;
+import java.util.stream.Stream;
+
+/**
+ * Poster frames and scrub-preview sprite sheets for videos.
+ *
+ * After ingest, FFmpeg writes poster.jpg plus sprite sheets of {@link #COLUMNS}x{@link #ROWS}
+ * thumbnails and a WebVTT index (sprites.vtt) mapping time ranges to "#xywh=" cells, the
+ * layout video.js, Plyr and similar players use for seek previews. Everything is built in
+ * "{mediaFileId}.part" under the video thumbnails path and moved into place in one rename,
+ * so a thumbnail directory is always complete.
+ */
+@Service
+public class ThumbnailService {
+
+    static final int THUMB_WIDTH = 160;
+    static final int THUMB_HEIGHT = 90;
+    static final int COLUMNS = 10;
+    static final int ROWS = 10;
+    static final double MIN_INTERVAL_SECONDS = 2;
+    static final int MAX_THUMBNAILS = 300;   // Long videos get sparser thumbnails instead of more sheets
+    static final int POSTER_MAX_HEIGHT = 720;
+
+    static final String POSTER = "poster.jpg";
+    static final String SPRITES_VTT = "sprites.vtt";
+    private static final String SPRITE_PATTERN = "sprite_%03d.jpg";
+    private static final Pattern SPRITE_NAME = Pattern.compile("sprite_\\d{3,}\\.jpg");
+
+    @Autowired
+    private VideoTranscodingService transcodingService;
+
+    @Autowired
+    private OptimizedFileStorageService fileStorageService;
+
+    @Autowired
+    private StorageProperties storageProperties;
+
+    private final Set<Integer> building = ConcurrentHashMap.newKeySet();
+    private final Set<Integer> failed = ConcurrentHashMap.newKeySet(); // Not retried until restart
+    private final ExecutorService generator = Executors.newSingleThreadExecutor(r -> {
+        Thread t = new Thread(r, "thumbnails");
+        t.setDaemon(true);
+        t.setPriority(Thread.MIN_PRIORITY);
+        return t;
+    });
+
+    @PreDestroy
+    public void shutdown() {
+        generator.shutdownNow();
+    }
+
+    /**
+     * Generate thumbnails for a stored video in the background unless they exist
+     */
+    public void generateAsync(MediaFile mediaFile) {
+        int mediaFileId = mediaFile.getId();
+        String relativePath = mediaFile.getFilePath();
+        long durationMs = mediaFile.getDurationMs();
+        if (relativePath == null || relativePath.isEmpty() || isReady(mediaFileId)
+                || failed.contains(mediaFileId) || !building.add(mediaFileId)) {
+            return;
+        }
+        try {
+            generator.submit(() -> {
+                try {
+                    generate(mediaFileId, relativePath, durationMs);
+                } catch (IOException | RuntimeException e) {
+                    failed.add(mediaFileId);
+                    System.err.println("❌ Thumbnails failed for media " + mediaFileId + ": " + e.getMessage());
+                } finally {
+                    building.remove(mediaFileId);
+                }
+            });
+        } catch (RejectedExecutionException e) {
+            building.remove(mediaFileId); // Shutting down
+        }
+    }
+
+    public boolean isReady(int mediaFileId) {
+        return Files.exists(getOutputDir(mediaFileId).resolve(SPRITES_VTT));
+    }
+
+    /**
+     * True if generation failed and will not be retried, so callers should stop waiting
+     */
+    public boolean hasFailed(int mediaFileId) {
+        return failed.contains(mediaFileId);
+    }
+
+    public Path getPoster(int mediaFileId) {
+        return getOutputDir(mediaFileId).resolve(POSTER);
+    }
+
+    public Path getSpritesVtt(int mediaFileId) {
+        return getOutputDir(mediaFileId).resolve(SPRITES_VTT);
+    }
+
+    /**
+     * Resolve a sprite sheet, or null if the name is not a sprite sheet name
+     */
+    public Path resolveSprite(int mediaFileId, String fileName) {
+        if (!SPRITE_NAME.matcher(fileName).matches()) {
+            return null;
+        }
+        return getOutputDir(mediaFileId).resolve(fileName);
+    }
+
+    public Path getOutputDir(int mediaFileId) {
+        return Paths.get(storageProperties.getVideoThumbnailsPath(), String.valueOf(mediaFileId));
+    }
+
+    /**
+     * Extract the poster and sprite sheets and write the index (runs on the caller's thread)
+     *
+     * @param knownDurationMs duration probed at ingest, or 0 to probe now
+     */
+    void generate(int mediaFileId, String relativePath, long knownDurationMs) throws IOException {
+        long startTime = System.currentTimeMillis();
+        String source = fileStorageService.getReadablePath(relativePath).toString();
+        double duration = knownDurationMs > 0 ? knownDurationMs / 1000.0 : transcodingService.probeDurationSeconds(source);
+        if (duration <= 0) {
+            throw new IOException("Could not determine the video duration");
+        }
+
+        Path target = getOutputDir(mediaFileId);
+        Path work = target.resolveSibling(mediaFileId + ".part");
+        deleteRecursively(work);
+        Files.createDirectories(work);
+        try {
+            // A tenth of the way in skips black leaders and title cards, capped for long videos
+            double posterAt = Math.min(duration * 0.1, 60);
+            if (!transcodingService.extractFrame(source, work.resolve(POSTER).toString(), posterAt, POSTER_MAX_HEIGHT)
+                    && !transcodingService.extractFrame(source, work.resolve(POSTER).toString(), 0, POSTER_MAX_HEIGHT)) {
+                throw new IOException("Poster extraction failed");
+            }
+
+            double interval = intervalFor(duration);
+            if (!transcodingService.generateSpriteSheets(source, work.resolve(SPRITE_PATTERN).toString(), interval,
+                    THUMB_WIDTH, THUMB_HEIGHT, COLUMNS, ROWS)) {
+                throw new IOException("Sprite sheet generation failed");
+            }
+            int sheets = 0;
+            while (Files.exists(work.resolve(String.format(Locale.ROOT, SPRITE_PATTERN, sheets + 1)))) {
+                sheets++;
+            }
+            if (sheets == 0) {
+                throw new IOException("FFmpeg wrote no sprite sheets");
+            }
+            int count = Math.min((int) Math.ceil(duration / interval), sheets * COLUMNS * ROWS);
+            Files.writeString(work.resolve(SPRITES_VTT), buildVtt(duration, interval, count), StandardCharsets.UTF_8);
+
+            deleteRecursively(target);
+            Files.move(work, target, StandardCopyOption.ATOMIC_MOVE);
+            System.out.println("🖼️ Thumbnails for media " + mediaFileId + ": " + count + " previews in " + sheets
+                    + " sheet(s) (" + (System.currentTimeMillis() - startTime) + "ms)");
+        } finally {
+            deleteRecursively(work);
+        }
+    }
+
+    /**
+     * Seconds between thumbnails, so that no video needs more than {@link #MAX_THUMBNAILS}
+     */
+    static double intervalFor(double durationSeconds) {
+        return Math.max(MIN_INTERVAL_SECONDS, Math.ceil(durationSeconds / MAX_THUMBNAILS));
+    }
+
+    /**
+     * WebVTT thumbnail track: one cue per thumbnail, pointing at its cell in a sprite sheet.
+     * Image URLs are relative to the index, which is served from /api/stream/{id}/sprites.
+     */
+    static String buildVtt(double durationSeconds, double intervalSeconds, int count) {
+        int perSheet = COLUMNS * ROWS;
+        StringBuilder vtt = new StringBuilder("WEBVTT\n");
+        for (int i = 0; i < count; i++) {
+            double start = i * intervalSeconds;
+            double end = Math.min((i + 1) * intervalSeconds, durationSeconds);
+            if (start >= end) {
+                break;
+            }
+            int cell = i % perSheet;
+            vtt.append('\n')
+                .append(timestamp(start)).append(" --> ").append(timestamp(end)).append('\n')
+                .append("sprites/").append(String.format(Locale.ROOT, SPRITE_PATTERN, i / perSheet + 1))
+                .append("#xywh=").append((cell % COLUMNS) * THUMB_WIDTH).append(',')
+                .append((cell / COLUMNS) * THUMB_HEIGHT).append(',')
+                .append(THUMB_WIDTH).append(',').append(THUMB_HEIGHT).append('\n');
+        }
+        return vtt.toString();
+    }
+
+    private static String timestamp(double seconds) {
+        long millis = Math.round(seconds * 1000);
+        return String.format(Locale.ROOT, "%02d:%02d:%02d.%03d",
+                millis / 3_600_000, (millis / 60_000) % 60, (millis / 1000) % 60, millis % 1000);
+    }
+
+    private static void deleteRecursively(Path dir) throws IOException {
+        if (!Files.exists(dir)) {
+            return;
+        }
+        try (Stream<Path> files = Files.walk(dir)) {
+            for (Path path : (Iterable<Path>) files.sorted(Comparator.reverseOrder())::iterator) {
+                Files.delete(path);
+            }
+        }
+    }
+}
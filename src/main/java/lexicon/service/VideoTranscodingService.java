@@ -8,6 +8,7 @@ import java.nio.file.Path;
 import java.nio.file.Paths;
 import java.util.ArrayList;
 import java.util.List;
+import java.util.Locale;
 
 /**
  * Service for transcoding video files using FFmpeg
@@ -17,6 +18,7 @@ import java.util.List;
 public class VideoTranscodingService {
 
     private static final String FFMPEG_COMMAND = "ffmpeg";
+    private static final String FFPROBE_COMMAND = "ffprobe";
     
     /**
      * Check if FFmpeg is available on the system
@@ -48,10 +50,103 @@ public class VideoTranscodingService {
             return false;
         }
 
+        List<String> command = buildFFmpegCommand(inputPath, outputPath, maxWidth);
+        System.out.println("Starting transcoding: " + inputPath);
+        boolean success = runFFmpeg(command);
+        if (success) {
+            System.out.println("Transcoding completed successfully: " + outputPath);
+        }
+        return success;
+    }
+
+    /**
+     * Package a video as an HLS ladder: one variant per rendition, each with its own
+     * segment directory (v0, v1, ...) and playlist, plus master.m3u8.
+     * Playlists are "event" playlists that grow as segments are finished, so clients
+     * can start playback while packaging is still running.
+     *
+     * @param renditions rendition heights and video bitrates, as {height, kbps} pairs
+     * @param withAudio  false for sources without an audio stream
+     * @return true if packaging succeeded
+     */
+    public boolean packageHls(String inputPath, String outputDir, List<int[]> renditions,
+                              int segmentSeconds, boolean withAudio) {
+        if (!isFFmpegAvailable()) {
+            System.err.println("FFmpeg is not available, skipping HLS packaging");
+            return false;
+        }
+        List<String> command = buildHlsCommand(inputPath, outputDir, renditions, segmentSeconds, withAudio);
+        System.out.println("Starting HLS packaging: " + inputPath);
+        return runFFmpeg(command);
+    }
+
+    /**
+     * Video duration in seconds from ffprobe, or -1 if it cannot be determined
+     */
+    public double probeDurationSeconds(String inputPath) {
+        List<String> command = List.of(FFPROBE_COMMAND, "-v", "error",
+                "-show_entries", "format=duration", "-of", "csv=p=0", inputPath);
+        try {
+            Process process = new ProcessBuilder(command)
+                    .redirectError(ProcessBuilder.Redirect.DISCARD)
+                    .start();
+            String output;
+            try (BufferedReader reader = new BufferedReader(new InputStreamReader(process.getInputStream()))) {
+                output = reader.readLine();
+            }
+            if (process.waitFor() != 0 || output == null) {
+                return -1;
+            }
+            return Double.parseDouble(output.trim());
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            return -1;
+        } catch (Exception e) {
+            System.err.println("Could not probe duration of " + inputPath + ": " + e.getMessage());
+            return -1;
+        }
+    }
+
+    /**
+     * Write a single JPEG frame, scaled down to at most maxHeight
+     */
+    public boolean extractFrame(String inputPath, String outputPath, double atSeconds, int maxHeight) {
+        List<String> command = List.of(FFMPEG_COMMAND, "-nostdin", "-v", "error",
+                "-ss", String.format(Locale.ROOT, "%.3f", atSeconds), // Input seeking: only decodes from the nearest keyframe
+                "-i", inputPath,
+                "-frames:v", "1",
+                "-vf", "scale=-2:'min(" + maxHeight + ",ih)'",
+                "-q:v", "3",
+                "-y", outputPath);
+        return runFFmpeg(command);
+    }
+
+    /**
+     * Write sprite sheets of fixed-size thumbnails, one every intervalSeconds, as
+     * outputPattern (e.g. "sprite_%03d.jpg", numbered from 1). Thumbnails are letterboxed
+     * to exactly width x height so cell positions can be computed without probing.
+     */
+    public boolean generateSpriteSheets(String inputPath, String outputPattern, double intervalSeconds,
+                                        int width, int height, int columns, int rows) {
+        String filter = String.format(Locale.ROOT,
+                "fps=1/%.3f,scale=%d:%d:force_original_aspect_ratio=decrease,"
+                        + "pad=%d:%d:(ow-iw)/2:(oh-ih)/2,tile=%dx%d",
+                intervalSeconds, width, height, width, height, columns, rows);
+        List<String> command = List.of(FFMPEG_COMMAND, "-nostdin", "-v", "error",
+                "-skip_frame", "nokey", // Keyframes are plenty for scrub previews and far cheaper to decode
+                "-i", inputPath,
+                "-an", "-vf", filter,
+                "-vsync", "vfr",
+                "-q:v", "5",
+                "-y", outputPattern);
+        return runFFmpeg(command);
+    }
+
+    /**
+     * Run an FFmpeg command to completion, echoing its output
+     */
+    private boolean runFFmpeg(List<String> command) {
         try {
-            List<String> command = buildFFmpegCommand(inputPath, outputPath, maxWidth);
-            
-            System.out.println("Starting transcoding: " + inputPath);
             System.out.println("Command: " + String.join(" ", command));
             
             ProcessBuilder processBuilder = new ProcessBuilder(command);
@@ -76,14 +171,15 @@ public class VideoTranscodingService {
             int exitCode = process.waitFor();
             outputThread.join(5000); // Wait up to 5 seconds for output thread
             
-            if (exitCode == 0) {
-                System.out.println("Transcoding completed successfully: " + outputPath);
-                return true;
-            } else {
-                System.err.println("Transcoding failed with exit code: " + exitCode);
+            if (exitCode != 0) {
+                System.err.println("FFmpeg failed with exit code: " + exitCode);
                 return false;
             }
+            return true;
             
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            return false;
         } catch (Exception e) {
             System.err.println("Error during transcoding: " + e.getMessage());
             e.printStackTrace();
@@ -138,6 +234,90 @@ public class VideoTranscodingService {
         return command;
     }
 
+    /**
+     * Build FFmpeg command for an HLS rendition ladder
+     */
+    private List<String> buildHlsCommand(String inputPath, String outputDir, List<int[]> renditions,
+                                         int segmentSeconds, boolean withAudio) {
+        List<String> command = new ArrayList<>();
+        int count = renditions.size();
+        
+        command.add(FFMPEG_COMMAND);
+        command.add("-i");
+        command.add(inputPath);
+        
+        // Split the decoded video once and scale each copy (never upscaling)
+        StringBuilder filter = new StringBuilder("[0:v]split=" + count);
+        for (int i = 0; i < count; i++) {
+            filter.append("[s").append(i).append("]");
+        }
+        for (int i = 0; i < count; i++) {
+            filter.append(";[s").append(i).append("]scale=-2:'min(").append(renditions.get(i)[0])
+                  .append(",ih)'[v").append(i).append("]");
+        }
+        command.add("-filter_complex");
+        command.add(filter.toString());
+        
+        StringBuilder streamMap = new StringBuilder();
+        for (int i = 0; i < count; i++) {
+            int kbps = renditions.get(i)[1];
+            command.add("-map");
+            command.add("[v" + i + "]");
+            command.add("-c:v:" + i);
+            command.add("libx264");
+            command.add("-b:v:" + i);
+            command.add(kbps + "k");
+            command.add("-maxrate:v:" + i);
+            command.add((kbps * 107 / 100) + "k");
+            command.add("-bufsize:v:" + i);
+            command.add((kbps * 3 / 2) + "k");
+            if (withAudio) {
+                command.add("-map");
+                command.add("0:a:0");
+            }
+            streamMap.append(i == 0 ? "" : " ").append("v:").append(i);
+            if (withAudio) {
+                streamMap.append(",a:").append(i);
+            }
+        }
+        command.add("-preset");
+        command.add("veryfast");
+        
+        // Keyframes on segment boundaries so every segment starts independently
+        command.add("-force_key_frames");
+        command.add("expr:gte(t,n_forced*" + segmentSeconds + ")");
+        command.add("-sc_threshold");
+        command.add("0");
+        
+        if (withAudio) {
+            command.add("-c:a");
+            command.add("aac");
+            command.add("-b:a");
+            command.add("128k");
+            command.add("-ac");
+            command.add("2");
+        }
+        
+        command.add("-f");
+        command.add("hls");
+        command.add("-hls_time");
+        command.add(String.valueOf(segmentSeconds));
+        command.add("-hls_playlist_type");
+        command.add("event"); // Playlists grow while packaging runs
+        command.add("-hls_flags");
+        command.add("independent_segments+temp_file"); // Only finished segments are listed
+        command.add("-hls_segment_filename");
+        command.add(outputDir + "/v%v/seg_%05d.ts");
+        command.add("-master_pl_name");
+        command.add("master.m3u8");
+        command.add("-var_stream_map");
+        command.add(streamMap.toString());
+        command.add("-y");
+        command.add(outputDir + "/v%v/index.m3u8");
+        
+        return command;
+    }
+
     /**
      * Generate output filename for transcoded video
      * Adds "_transcoded" suffix before extension
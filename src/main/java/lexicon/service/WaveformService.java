@@ -0,0 +1,229 @@
+package lexicon.service;
+
+import lexicon.config.StorageProperties;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.stereotype.Service;
+
+import jakarta.annotation.PreDestroy;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardCopyOption;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.RejectedExecutionException;
+
+/**
+ * Precomputed waveform peaks for music and audiobooks, so seek bars do not need
+ * the whole file decoded in the browser.
+ *
+ * Audio is decoded once after ingest with FFmpeg (mono 16-bit PCM at {@link #SAMPLE_RATE})
+ * and reduced to 8-bit min/max pairs. Peaks are stored as sidecars under the cache path
+ * in the audiowaveform ".dat" v1 format, which peaks.js and similar players read directly.
+ * Long files get coarser peaks so a sidecar never exceeds about 16KB.
+ */
+@Service
+public class WaveformService {
+
+    static final int SAMPLE_RATE = 8000;
+    static final int PEAK_MILLIS = 20;       // Finest resolution, for short tracks
+    static final int MAX_PEAKS = 4096;       // Resolution halves whenever twice this many are collected
+    static final int HEADER_SIZE = 20;
+
+    @Autowired
+    private OptimizedFileStorageService fileStorageService;
+
+    @Autowired
+    private StorageProperties storageProperties;
+
+    private final Set<String> building = ConcurrentHashMap.newKeySet();
+    private final ExecutorService generator = Executors.newSingleThreadExecutor(r -> {
+        Thread t = new Thread(r, "waveform");
+        t.setDaemon(true);
+        return t;
+    });
+
+    @PreDestroy
+    public void shutdown() {
+        generator.shutdownNow();
+    }
+
+    /**
+     * Generate peaks for a newly stored file in the background
+     */
+    public void generateAsync(String relativePath) {
+        if (relativePath == null || relativePath.isEmpty() || !building.add(relativePath)) {
+            return;
+        }
+        try {
+            generator.submit(() -> {
+                try {
+                    generate(relativePath);
+                } catch (IOException | RuntimeException e) {
+                    System.err.println("❌ Waveform failed for " + relativePath + ": " + e.getMessage());
+                } finally {
+                    building.remove(relativePath);
+                }
+            });
+        } catch (RejectedExecutionException e) {
+            building.remove(relativePath); // Shutting down
+        }
+    }
+
+    /**
+     * The peaks file for a stored file, or null if it is not generated yet (generation is then queued)
+     */
+    public Path getPeaks(String relativePath) {
+        Path peaks = peaksPath(relativePath);
+        if (Files.exists(peaks)) {
+            return peaks;
+        }
+        generateAsync(relativePath);
+        return null;
+    }
+
+    /**
+     * Decode the file and write its peaks (runs on the caller's thread)
+     */
+    public void generate(String relativePath) throws IOException {
+        long startTime = System.currentTimeMillis();
+        Path source = fileStorageService.getReadablePath(relativePath);
+        List<String> command = List.of("ffmpeg", "-nostdin", "-v", "error",
+                "-i", source.toString(),
+                "-vn", "-ac", "1", "-ar", String.valueOf(SAMPLE_RATE),
+                "-f", "s16le", "pipe:1");
+        Process process = new ProcessBuilder(command)
+                .redirectError(ProcessBuilder.Redirect.DISCARD)
+                .start();
+
+        byte[] peaks;
+        try (InputStream pcm = process.getInputStream()) {
+            peaks = computePeaks(pcm);
+            int exitCode = process.waitFor();
+            if (exitCode != 0) {
+                throw new IOException("FFmpeg exited with code " + exitCode);
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new IOException("Interrupted while decoding", e);
+        } finally {
+            process.destroy();
+        }
+
+        Path target = peaksPath(relativePath);
+        Files.createDirectories(target.getParent());
+        Path temp = target.resolveSibling(target.getFileName() + ".tmp");
+        Files.write(temp, peaks);
+        Files.move(temp, target, StandardCopyOption.REPLACE_EXISTING);
+        System.out.println("〰️ Waveform for " + relativePath + ": " + (peaks.length - HEADER_SIZE) / 2 + " peaks ("
+                + (System.currentTimeMillis() - startTime) + "ms)");
+    }
+
+    /**
+     * Reduce mono 16-bit little-endian PCM at {@link #SAMPLE_RATE} to an audiowaveform .dat file
+     */
+    static byte[] computePeaks(InputStream pcm) throws IOException {
+        PeakAccumulator peaks = new PeakAccumulator(SAMPLE_RATE * PEAK_MILLIS / 1000, MAX_PEAKS * 2);
+        byte[] buffer = new byte[64 * 1024];
+        int filled = 0;
+        int read;
+        while ((read = pcm.read(buffer, filled, buffer.length - filled)) != -1) {
+            filled += read;
+            int usable = filled & ~1; // Whole samples only
+            for (int i = 0; i < usable; i += 2) {
+                peaks.add((short) ((buffer[i] & 0xFF) | (buffer[i + 1] << 8)));
+            }
+            if (usable < filled) {
+                buffer[0] = buffer[usable]; // Odd byte carries over to the next read
+            }
+            filled -= usable;
+        }
+        return peaks.toDat();
+    }
+
+    private Path peaksPath(String relativePath) {
+        return Paths.get(storageProperties.getCachePath(), "waveforms", relativePath + ".dat");
+    }
+
+    /**
+     * Min/max per bucket; when the buffer fills, neighbouring buckets are merged and the bucket doubles
+     */
+    static final class PeakAccumulator {
+        private final byte[] mins;
+        private final byte[] maxs;
+        private int samplesPerPeak;
+        private int count;
+        private int inBucket;
+        private int bucketMin = Byte.MAX_VALUE;
+        private int bucketMax = Byte.MIN_VALUE;
+
+        PeakAccumulator(int samplesPerPeak, int capacity) {
+            this.samplesPerPeak = samplesPerPeak;
+            this.mins = new byte[capacity];
+            this.maxs = new byte[capacity];
+        }
+
+        void add(short sample) {
+            int value = sample >> 8; // 16-bit to 8-bit
+            bucketMin = Math.min(bucketMin, value);
+            bucketMax = Math.max(bucketMax, value);
+            if (++inBucket < samplesPerPeak) {
+                return;
+            }
+            if (count == mins.length) {
+                halve(); // The finished bucket is now half of the new size; keep filling it
+                return;
+            }
+            store();
+        }
+
+        private void store() {
+            mins[count] = (byte) bucketMin;
+            maxs[count] = (byte) bucketMax;
+            count++;
+            inBucket = 0;
+            bucketMin = Byte.MAX_VALUE;
+            bucketMax = Byte.MIN_VALUE;
+        }
+
+        private void halve() {
+            for (int i = 0; i < count / 2; i++) {
+                mins[i] = (byte) Math.min(mins[2 * i], mins[2 * i + 1]);
+                maxs[i] = (byte) Math.max(maxs[2 * i], maxs[2 * i + 1]);
+            }
+            count /= 2;
+            samplesPerPeak *= 2;
+        }
+
+        int getSamplesPerPeak() {
+            return samplesPerPeak;
+        }
+
+        byte[] toDat() {
+            if (inBucket > 0) {
+                if (count == mins.length) {
+                    halve();
+                }
+                store();
+            }
+            ByteBuffer dat = ByteBuffer.allocate(HEADER_SIZE + count * 2).order(ByteOrder.LITTLE_ENDIAN);
+            dat.putInt(1);              // Version
+            dat.putInt(1);              // Flags: 8-bit samples
+            dat.putInt(SAMPLE_RATE);
+            dat.putInt(samplesPerPeak);
+            dat.putInt(count);
+            for (int i = 0; i < count; i++) {
+                dat.put(mins[i]);
+                dat.put(maxs[i]);
+            }
+            return dat.array();
+        }
+    }
+}
@@ -14,7 +14,14 @@ CREATE TABLE IF NOT EXISTS media_files (
     description VARCHAR(2000),
     is_public BOOLEAN DEFAULT FALSE,
     media_type VARCHAR(50),
-    source_url VARCHAR(1000)
+    source_url VARCHAR(1000),
+    etag VARCHAR(100),
+    duration_ms BIGINT,
+    bit_rate BIGINT,
+    video_codec VARCHAR(50),
+    audio_codec VARCHAR(50),
+    width INT,
+    height INT
 );
 
 -- Table for storing actual file binary data
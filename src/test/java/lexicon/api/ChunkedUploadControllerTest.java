@@ -19,6 +19,7 @@ import org.springframework.test.web.servlet.MockMvc;
 import org.springframework.test.web.servlet.setup.MockMvcBuilders;
 import org.springframework.web.multipart.MultipartFile;
 
+import java.io.InputStream;
 import java.util.HashMap;
 import java.util.Map;
 import java.util.Set;
@@ -105,4 +106,28 @@ public class ChunkedUploadControllerTest {
         System.out.println("✓ Controller tests focus on dependency injection and basic integration");
         assertTrue(true, "Controller validation complete - service functionality proven by service tests");
     }
+    
+    @Test
+    @Order(4)
+    void testRawBodyChunkIsStreamedToService() throws Exception {
+        System.out.println("\n=== Test 4: Raw Body Chunk Upload ===");
+        
+        ChunkedUpload mockUpload = new ChunkedUpload();
+        mockUpload.setUploadId("raw-upload");
+        mockUpload.setTotalChunks(2);
+        when(mockService.getUploadStatus("raw-upload")).thenReturn(mockUpload);
+        when(mockService.uploadChunk(eq("raw-upload"), eq(1), any(InputStream.class), eq(4L), isNull()))
+            .thenReturn(true);
+        
+        MockMvc mockMvc = MockMvcBuilders.standaloneSetup(controller).build();
+        mockMvc.perform(post("/api/media/chunked/upload/raw-upload")
+                .param("chunkNumber", "1")
+                .contentType("application/octet-stream")
+                .content(new byte[]{1, 2, 3, 4}))
+            .andExpect(status().isOk())
+            .andExpect(jsonPath("$.success").value(true));
+        
+        verify(mockService, never()).uploadChunk(anyString(), anyInt(), any(MultipartFile.class), any());
+        System.out.println("✓ Raw body handed to the service as a stream");
+    }
 }
@@ -0,0 +1,45 @@
+package lexicon.api;
+
+import jakarta.servlet.http.HttpServletRequest;
+import org.junit.jupiter.api.Test;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.Mockito.*;
+
+/**
+ * Tests for finding the real client behind the gateway
+ */
+class ClientAddressTest {
+
+    private static final String PROXY = "10.0.0.1";
+
+    @Test
+    void testClientsBehindOneProxyAreToldApart() {
+        HttpServletRequest first = request(null, "203.0.113.7, 10.0.0.1");
+        HttpServletRequest second = request(null, "198.51.100.23");
+
+        assertEquals("203.0.113.7", ClientAddress.of(first));
+        assertEquals("198.51.100.23", ClientAddress.of(second));
+        assertNotEquals(ClientAddress.of(first), ClientAddress.of(second),
+            "Streams from two players behind the proxy must not share a key");
+    }
+
+    @Test
+    void testCloudflareHeaderWins() {
+        assertEquals("203.0.113.9", ClientAddress.of(request("203.0.113.9", "198.51.100.23")));
+    }
+
+    @Test
+    void testDirectConnectionUsesRemoteAddress() {
+        assertEquals(PROXY, ClientAddress.of(request(null, null)));
+        assertEquals(PROXY, ClientAddress.of(request("", "")));
+    }
+
+    private static HttpServletRequest request(String cfConnectingIp, String forwardedFor) {
+        HttpServletRequest request = mock(HttpServletRequest.class);
+        when(request.getRemoteAddr()).thenReturn(PROXY);
+        when(request.getHeader("CF-Connecting-IP")).thenReturn(cfConnectingIp);
+        when(request.getHeader("X-Forwarded-For")).thenReturn(forwardedFor);
+        return request;
+    }
+}
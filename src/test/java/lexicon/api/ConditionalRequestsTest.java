@@ -0,0 +1,67 @@
+package lexicon.api;
+
+import lexicon.object.MediaFile;
+import org.junit.jupiter.api.Test;
+
+import java.time.LocalDateTime;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * Unit tests for ETag / Last-Modified handling on the streaming endpoints
+ */
+class ConditionalRequestsTest {
+
+    @Test
+    void testEtagUsesContentHash() {
+        MediaFile mediaFile = new MediaFile();
+        mediaFile.setId(7);
+        mediaFile.setEtag("abc123");
+
+        assertEquals("\"abc123\"", ConditionalRequests.etagFor(mediaFile));
+    }
+
+    @Test
+    void testLegacyEtagIsStableWithoutHash() {
+        MediaFile mediaFile = new MediaFile();
+        mediaFile.setId(7);
+        mediaFile.setFileSize(4096);
+        mediaFile.setUploadDate(LocalDateTime.of(2024, 1, 2, 3, 4, 5, 600_000_000));
+
+        String etag = ConditionalRequests.etagFor(mediaFile);
+        assertTrue(etag.startsWith("\"m7-") && etag.endsWith("\""));
+        assertEquals(etag, ConditionalRequests.etagFor(mediaFile));
+        assertEquals(0, ConditionalRequests.lastModifiedFor(mediaFile) % 1000, "Truncated to seconds");
+    }
+
+    @Test
+    void testIfNoneMatch() {
+        String etag = "\"abc\"";
+        assertTrue(ConditionalRequests.isNotModified("\"abc\"", -1, etag, 1000));
+        assertTrue(ConditionalRequests.isNotModified("\"x\", W/\"abc\"", -1, etag, 1000));
+        assertTrue(ConditionalRequests.isNotModified("*", -1, etag, 1000));
+        assertFalse(ConditionalRequests.isNotModified("\"other\"", -1, etag, 1000));
+        // If-None-Match wins over a matching If-Modified-Since
+        assertFalse(ConditionalRequests.isNotModified("\"other\"", 5000, etag, 1000));
+    }
+
+    @Test
+    void testIfModifiedSince() {
+        String etag = "\"abc\"";
+        assertTrue(ConditionalRequests.isNotModified(null, 1000, etag, 1000));
+        assertTrue(ConditionalRequests.isNotModified(null, 2000, etag, 1000));
+        assertFalse(ConditionalRequests.isNotModified(null, 999, etag, 1000));
+        assertFalse(ConditionalRequests.isNotModified(null, -1, etag, 1000));
+    }
+
+    @Test
+    void testIfRange() {
+        String etag = "\"abc\"";
+        assertTrue(ConditionalRequests.isRangeValid(null, -1, etag, 1000));
+        assertTrue(ConditionalRequests.isRangeValid("\"abc\"", -1, etag, 1000));
+        assertFalse(ConditionalRequests.isRangeValid("\"old\"", -1, etag, 1000));
+        assertFalse(ConditionalRequests.isRangeValid("W/\"abc\"", -1, etag, 1000), "Weak tags never match");
+        assertTrue(ConditionalRequests.isRangeValid("Tue, 02 Jan 2024 03:04:05 GMT", 1000, etag, 1000));
+        assertFalse(ConditionalRequests.isRangeValid("Tue, 02 Jan 2024 03:04:04 GMT", 0, etag, 1000));
+    }
+}
@@ -1,8 +1,13 @@
 package lexicon.api;
 
 import lexicon.logic.MediaManagerService;
+import lexicon.object.ByteRange;
 import lexicon.object.MediaFile;
 import lexicon.object.MediaType;
+import lexicon.object.StreamResult;
+import lexicon.service.OptimizedFileStorageService;
+import lexicon.service.SeekIndex;
+import lexicon.service.SeekIndexService;
 import org.junit.jupiter.api.BeforeEach;
 import org.junit.jupiter.api.Test;
 import org.mockito.Mock;
@@ -10,7 +15,10 @@ import org.mockito.MockitoAnnotations;
 import org.springframework.http.HttpStatus;
 import org.springframework.http.ResponseEntity;
 import org.springframework.web.multipart.MultipartFile;
+import org.springframework.web.servlet.mvc.method.annotation.StreamingResponseBody;
 
+import jakarta.servlet.http.HttpServletRequest;
+import java.io.ByteArrayOutputStream;
 import java.util.ArrayList;
 import java.util.Arrays;
 import java.util.List;
@@ -32,6 +40,12 @@ class MediaControllerTest {
     @Mock
     private MultipartFile mockFile;
     
+    @Mock
+    private OptimizedFileStorageService fileStorageService;
+    
+    @Mock
+    private SeekIndexService seekIndexService;
+    
     private MediaController mediaController;
     
     @BeforeEach
@@ -43,6 +57,12 @@ class MediaControllerTest {
             var field = MediaController.class.getDeclaredField("mediaManager");
             field.setAccessible(true);
             field.set(mediaController, mediaManager);
+            field = MediaController.class.getDeclaredField("fileStorageService");
+            field.setAccessible(true);
+            field.set(mediaController, fileStorageService);
+            field = MediaController.class.getDeclaredField("seekIndexService");
+            field.setAccessible(true);
+            field.set(mediaController, seekIndexService);
         } catch (Exception e) {
             fail("Failed to inject mock: " + e.getMessage());
         }
@@ -457,5 +477,99 @@ class MediaControllerTest {
         assertNotNull(response.getBody());
         assertEquals(3, response.getBody().size());
     }
-}
+    
+    @Test
+    void testDownloadFile_ResumesWithRange() {
+        // Arrange
+        MediaFile mediaFile = new MediaFile();
+        mediaFile.setId(3);
+        mediaFile.setOriginalFilename("Long Book.m4b");
+        mediaFile.setContentType("audio/mp4");
+        mediaFile.setEtag("abc");
+        when(mediaManager.getMediaFileById(3)).thenReturn(mediaFile);
+        when(mediaManager.getStreamData(3, "bytes=100-"))
+            .thenReturn(StreamResult.fromDatabase(List.of(new ByteRange(100, 999)), 1000, true, "audio/mp4"));
+        HttpServletRequest request = mock(HttpServletRequest.class);
+        when(request.getDateHeader(anyString())).thenReturn(-1L);
+        
+        // Act
+        ResponseEntity<?> response = mediaController.downloadFile(3, "bytes=100-", request);
+        
+        // Assert
+        assertEquals(HttpStatus.PARTIAL_CONTENT, response.getStatusCode());
+        assertEquals("bytes 100-999/1000", response.getHeaders().getFirst("Content-Range"));
+        assertEquals("900", response.getHeaders().getFirst("Content-Length"));
+        assertTrue(response.getHeaders().getFirst("Content-Disposition").startsWith("attachment"));
+        assertInstanceOf(StreamingResponseBody.class, response.getBody(), "Body is streamed, not a byte[]");
+    }
 
+    @Test
+    void testStreamFile_ReadAheadKeyIsRealClientBehindProxy() throws Exception {
+        // Arrange
+        MediaFile mediaFile = new MediaFile();
+        mediaFile.setId(5);
+        mediaFile.setFilePath("music/compressed/song.mp3");
+        mediaFile.setEtag("abc");
+        when(mediaManager.getMediaFileById(5)).thenReturn(mediaFile);
+        when(mediaManager.getStreamData(5, "bytes=0-999"))
+            .thenReturn(StreamResult.fromFile("music/compressed/song.mp3", 0, 999, 5000, true, "audio/mpeg"));
+        
+        // Act: two players whose requests both arrive from the gateway
+        for (String client : List.of("203.0.113.7", "198.51.100.23")) {
+            HttpServletRequest request = mock(HttpServletRequest.class);
+            when(request.getDateHeader(anyString())).thenReturn(-1L);
+            when(request.getRemoteAddr()).thenReturn("10.0.0.1");
+            when(request.getHeader("X-Forwarded-For")).thenReturn(client + ", 10.0.0.1");
+            ResponseEntity<?> response = mediaController.streamFile(5, "bytes=0-999", null, request);
+            assertEquals(HttpStatus.PARTIAL_CONTENT, response.getStatusCode());
+            ((StreamingResponseBody) response.getBody()).writeTo(new ByteArrayOutputStream());
+        }
+        
+        // Assert: each player is its own sequential stream
+        verify(fileStorageService).transferRange(eq("music/compressed/song.mp3"), eq(0L), eq(1000L), any(), eq("203.0.113.7"));
+        verify(fileStorageService).transferRange(eq("music/compressed/song.mp3"), eq(0L), eq(1000L), any(), eq("198.51.100.23"));
+    }
+    
+    @Test
+    void testStreamFile_SeekWithoutRangeIsNotPartial() throws Exception {
+        // Arrange: 30s into the file is byte 2000 of 5000
+        MediaFile mediaFile = new MediaFile();
+        mediaFile.setId(5);
+        mediaFile.setFilePath("music/compressed/song.mp3");
+        mediaFile.setEtag("abc");
+        when(mediaManager.getMediaFileById(5)).thenReturn(mediaFile);
+        SeekIndex.Point point = new SeekIndex("mp3", 5000, 60_000, new long[]{0, 30_000}, new long[]{0, 2000}).seek(30_000);
+        when(seekIndexService.seek("music/compressed/song.mp3", 30.0)).thenReturn(point);
+        when(fileStorageService.getFileSize("music/compressed/song.mp3")).thenReturn(5000L);
+        when(mediaManager.getStreamData(5, "bytes=2000-"))
+            .thenReturn(StreamResult.fromFile("music/compressed/song.mp3", 2000, 4999, 5000, true, "audio/mpeg"));
+        when(mediaManager.getStreamData(5, "bytes=2000-4999"))
+            .thenReturn(StreamResult.fromFile("music/compressed/song.mp3", 2000, 4999, 5000, true, "audio/mpeg"));
+        when(mediaManager.getStreamData(5, "bytes=0-999"))
+            .thenReturn(StreamResult.fromFile("music/compressed/song.mp3", 0, 999, 5000, true, "audio/mpeg"));
+        HttpServletRequest request = mock(HttpServletRequest.class);
+        when(request.getDateHeader(anyString())).thenReturn(-1L);
+        
+        // Act: a mobile player that sent no Range header
+        ResponseEntity<?> response = mediaController.streamFile(5, null, 30.0, request);
+        
+        // Assert: the rest of the file as a plain 200
+        assertEquals(HttpStatus.OK, response.getStatusCode());
+        assertNull(response.getHeaders().getFirst("Content-Range"));
+        assertEquals("3000", response.getHeaders().getFirst("Content-Length"));
+        assertEquals("2000", response.getHeaders().getFirst("X-Seek-Offset"));
+        assertEquals("30.0", response.getHeaders().getFirst("X-Seek-Time"));
+        assertNull(response.getHeaders().getETag(), "The body is not the whole file");
+        
+        // A player that asked for a range gets it from the seek point as a 206
+        ResponseEntity<?> ranged = mediaController.streamFile(5, "bytes=0-", 30.0, request);
+        assertEquals(HttpStatus.PARTIAL_CONTENT, ranged.getStatusCode());
+        assertEquals("bytes 2000-4999/5000", ranged.getHeaders().getFirst("Content-Range"));
+        assertEquals("2000", ranged.getHeaders().getFirst("X-Seek-Offset"));
+        
+        // A range that ends before the seek point is served as asked
+        ResponseEntity<?> head = mediaController.streamFile(5, "bytes=0-999", 30.0, request);
+        assertEquals(HttpStatus.PARTIAL_CONTENT, head.getStatusCode());
+        assertEquals("bytes 0-999/5000", head.getHeaders().getFirst("Content-Range"));
+    }
+}
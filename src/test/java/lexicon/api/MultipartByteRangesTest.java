@@ -0,0 +1,35 @@
+package lexicon.api;
+
+import lexicon.object.ByteRange;
+import org.junit.jupiter.api.Test;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * Unit tests for multipart/byteranges response bodies
+ */
+class MultipartByteRangesTest {
+
+    @Test
+    void testBodyMatchesDeclaredLength() throws IOException {
+        byte[] data = "0123456789abcdefghij".getBytes(StandardCharsets.US_ASCII);
+        List<ByteRange> ranges = List.of(new ByteRange(0, 3), new ByteRange(16, 19));
+        MultipartByteRanges multipart = new MultipartByteRanges(ranges, "video/mp4", data.length);
+
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        multipart.writeTo(out, (range, target) -> target.write(data, (int) range.getStart(), (int) range.getLength()));
+
+        String body = out.toString(StandardCharsets.US_ASCII);
+        String boundary = multipart.getContentType().substring("multipart/byteranges; boundary=".length());
+        assertEquals(multipart.getContentLength(), (long) out.size());
+        assertTrue(body.contains("Content-Range: bytes 0-3/20\r\n\r\n0123\r\n"));
+        assertTrue(body.contains("Content-Range: bytes 16-19/20\r\n\r\nghij\r\n"));
+        assertTrue(body.contains("Content-Type: video/mp4"));
+        assertTrue(body.endsWith("--" + boundary + "--\r\n"));
+    }
+}
@@ -0,0 +1,85 @@
+package lexicon.api;
+
+import lexicon.config.StorageProperties;
+import lexicon.service.OptimizedFileStorageService;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+import org.springframework.http.HttpHeaders;
+
+import java.nio.file.Path;
+import java.nio.file.Paths;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * Tests for handing stored files to the proxy
+ */
+class SendfileOffloadTest {
+
+    @TempDir
+    Path tempDir;
+
+    private StorageProperties storageProperties;
+    private SendfileOffload offload;
+
+    @BeforeEach
+    void setUp() throws Exception {
+        storageProperties = new StorageProperties();
+        storageProperties.setBasePath(tempDir.toString());
+
+        OptimizedFileStorageService storageService = new OptimizedFileStorageService();
+        inject(OptimizedFileStorageService.class, storageService, "storageProperties", storageProperties);
+
+        offload = new SendfileOffload();
+        inject(SendfileOffload.class, offload, "storageProperties", storageProperties);
+        inject(SendfileOffload.class, offload, "fileStorageService", storageService);
+    }
+
+    @Test
+    void testDisabledByDefault() {
+        assertFalse(offload.isEnabled());
+        assertNull(offload.redirectHeaders("music/compressed/track.mp3"), "The JVM streams as before");
+    }
+
+    @Test
+    void testAccelRedirectIntoInternalLocation() {
+        storageProperties.setOffloadMode("x-accel-redirect");
+
+        HttpHeaders headers = offload.redirectHeaders("music/compressed/My Song #1.mp3");
+        assertNotNull(headers);
+        assertEquals("/lexicon-internal/music/compressed/My%20Song%20%231.mp3", headers.getFirst("X-Accel-Redirect"));
+        assertNull(offload.redirectHeaders("../outside.mp3"), "Only files under basePath are mapped");
+        assertNull(offload.redirectHeaders(null), "Database-stored media has no file to hand over");
+    }
+
+    @Test
+    void testIfRangeIsNotOffloaded() {
+        storageProperties.setOffloadMode("x-accel-redirect");
+
+        assertNotNull(offload.redirectHeaders("music/compressed/track.mp3", null));
+        assertNull(offload.redirectHeaders("music/compressed/track.mp3", "\"abc123\""),
+            "nginx cannot match Lexicon's ETag, so a resumed download is sent by the JVM");
+        assertNull(offload.redirectHeaders("music/compressed/track.mp3", "Wed, 21 Oct 2026 07:28:00 GMT"));
+    }
+
+    @Test
+    void testSendfileUsesAbsolutePath() {
+        storageProperties.setOffloadMode("X-Sendfile");
+
+        HttpHeaders headers = offload.redirectHeaders("videos/original/clip.mp4");
+        assertEquals(tempDir.resolve("videos/original/clip.mp4").toAbsolutePath().toString(),
+            headers.getFirst("X-Sendfile"));
+    }
+
+    @Test
+    void testAccelUriPrefix() {
+        assertEquals("/internal/blobs/ab/cd/abcd", SendfileOffload.accelUri("/internal", Paths.get("blobs/ab/cd/abcd")));
+    }
+
+    private static <T> void inject(Class<T> type, T target, String name, Object value) throws Exception {
+        var field = type.getDeclaredField(name);
+        field.setAccessible(true);
+        field.set(target, value);
+    }
+}
@@ -0,0 +1,136 @@
+package lexicon.api;
+
+import lexicon.logic.MediaManagerService;
+import lexicon.object.MediaFile;
+import lexicon.service.OptimizedFileStorageService;
+import lexicon.service.SeekIndex;
+import lexicon.service.SeekIndexService;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.mockito.Mock;
+import org.mockito.MockitoAnnotations;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.ResponseEntity;
+import org.springframework.web.servlet.mvc.method.annotation.StreamingResponseBody;
+
+import jakarta.servlet.http.HttpServletRequest;
+import java.io.ByteArrayOutputStream;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.ArgumentMatchers.*;
+import static org.mockito.Mockito.*;
+
+/**
+ * Tests for ?t= seeks on the streaming endpoint
+ */
+class StreamingMediaControllerTest {
+
+    private static final String PATH = "videos/original/clip.mp4";
+
+    @Mock
+    private MediaManagerService mediaManager;
+
+    @Mock
+    private SeekIndexService seekIndexService;
+
+    @Mock
+    private OptimizedFileStorageService fileStorageService;
+
+    private StreamingMediaController controller;
+
+    @BeforeEach
+    void setUp() throws Exception {
+        MockitoAnnotations.openMocks(this);
+        controller = new StreamingMediaController();
+        inject("mediaManager", mediaManager);
+        inject("seekIndexService", seekIndexService);
+        inject("fileStorageService", fileStorageService);
+
+        MediaFile mediaFile = new MediaFile();
+        mediaFile.setId(7);
+        mediaFile.setFilePath(PATH);
+        mediaFile.setContentType("video/mp4");
+        mediaFile.setEtag("abc");
+        when(mediaManager.getMediaFileById(7)).thenReturn(mediaFile);
+        when(fileStorageService.getFileSize(PATH)).thenReturn(5000L);
+        seekIndex("mp4");
+    }
+
+    @Test
+    void testMp3SeekWithoutRangeIsPlainOk() throws Exception {
+        seekIndex("mp3");
+        HttpServletRequest request = request(null);
+
+        ResponseEntity<StreamingResponseBody> response = controller.streamMedia(7, 30.0, null, request);
+
+        // Mobile browsers reject a 206 they did not ask for
+        assertEquals(HttpStatus.OK, response.getStatusCode());
+        assertNull(response.getHeaders().getFirst("Content-Range"));
+        assertEquals("3000", response.getHeaders().getFirst("Content-Length"));
+        assertEquals("2000", response.getHeaders().getFirst("X-Seek-Offset"));
+        assertEquals("30.0", response.getHeaders().getFirst("X-Seek-Time"));
+        assertNull(response.getHeaders().getETag(), "The body is not the whole file");
+
+        response.getBody().writeTo(new ByteArrayOutputStream());
+        verify(fileStorageService).transferRange(eq(PATH), eq(2000L), eq(3000L), any(), eq("10.0.0.1"));
+    }
+
+    @Test
+    void testMp4SeekWithoutRangeIsHeadersOnly() throws Exception {
+        HttpServletRequest request = request(null);
+
+        ResponseEntity<StreamingResponseBody> response = controller.streamMedia(7, 30.0, null, request);
+
+        // Samples from the middle of mdat cannot be decoded without the moov box
+        assertEquals(HttpStatus.NO_CONTENT, response.getStatusCode());
+        assertNull(response.getBody());
+        assertEquals("2000", response.getHeaders().getFirst("X-Seek-Offset"));
+        assertEquals("30.0", response.getHeaders().getFirst("X-Seek-Time"));
+        verify(fileStorageService, never()).transferRange(anyString(), anyLong(), anyLong(), any(), anyString());
+    }
+
+    @Test
+    void testSeekWithRangeIsPartial() throws Exception {
+        HttpServletRequest request = request("bytes=0-");
+
+        ResponseEntity<StreamingResponseBody> response = controller.streamMedia(7, 30.0, null, request);
+
+        assertEquals(HttpStatus.PARTIAL_CONTENT, response.getStatusCode());
+        assertEquals("bytes 2000-4999/5000", response.getHeaders().getFirst("Content-Range"));
+        assertEquals("30.0", response.getHeaders().getFirst("X-Seek-Time"));
+        assertEquals("2000", response.getHeaders().getFirst("X-Seek-Offset"));
+    }
+
+    @Test
+    void testSeekKeepsRangeEndingBeforeOffset() throws Exception {
+        HttpServletRequest request = request("bytes=0-1023");
+
+        ResponseEntity<StreamingResponseBody> response = controller.streamMedia(7, 30.0, null, request);
+
+        assertEquals(HttpStatus.PARTIAL_CONTENT, response.getStatusCode());
+        assertEquals("bytes 0-1023/5000", response.getHeaders().getFirst("Content-Range"));
+        assertEquals("2000", response.getHeaders().getFirst("X-Seek-Offset"));
+    }
+
+    /**
+     * 30s into the file is byte 2000
+     */
+    private void seekIndex(String format) {
+        SeekIndex.Point point = new SeekIndex(format, 5000, 60_000, new long[]{0, 30_000}, new long[]{0, 2000}).seek(30_000);
+        when(seekIndexService.seek(PATH, 30.0)).thenReturn(point);
+    }
+
+    private static HttpServletRequest request(String range) {
+        HttpServletRequest request = mock(HttpServletRequest.class);
+        when(request.getDateHeader(anyString())).thenReturn(-1L);
+        when(request.getRemoteAddr()).thenReturn("10.0.0.1");
+        when(request.getHeader("Range")).thenReturn(range);
+        return request;
+    }
+
+    private void inject(String name, Object value) throws Exception {
+        var field = StreamingMediaController.class.getDeclaredField(name);
+        field.setAccessible(true);
+        field.set(controller, value);
+    }
+}
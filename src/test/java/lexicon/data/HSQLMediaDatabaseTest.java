@@ -59,6 +59,9 @@ class HSQLMediaDatabaseTest {
         mediaFile.setUploadDate(LocalDateTime.now());
         mediaFile.setMediaType(MediaType.MUSIC);
         mediaFile.setSourceUrl("https://youtube.com/test");
+        mediaFile.setDurationMs(215300L);
+        mediaFile.setBitrate(320000L);
+        mediaFile.setAudioCodec("mp3");
         
         // Act
         mediaDatabase.addMediaFile(mediaFile);
@@ -76,6 +79,11 @@ class HSQLMediaDatabaseTest {
         assertEquals(MediaType.MUSIC, retrieved.getMediaType());
         assertEquals("https://youtube.com/test", retrieved.getSourceUrl());
         assertNotNull(retrieved.getUploadDate());
+        assertEquals(215300L, retrieved.getDurationMs());
+        assertEquals(320000L, retrieved.getBitrate());
+        assertEquals("mp3", retrieved.getAudioCodec());
+        assertNull(retrieved.getVideoCodec());
+        assertEquals(0, retrieved.getWidth());
     }
     
     @Test
@@ -116,6 +124,9 @@ class HSQLMediaDatabaseTest {
         // Assert
         assertNotNull(retrieved);
         assertArrayEquals(testData, retrieved);
+        assertEquals(8L, mediaDatabase.getFileDataLength(testMediaId));
+        assertArrayEquals(new byte[] {3, 4, 5}, mediaDatabase.getFileDataRange(testMediaId, 2, 3));
+        assertArrayEquals(new byte[] {7, 8}, mediaDatabase.getFileDataRange(testMediaId, 6, 10));
     }
     
     @Test
@@ -264,6 +275,40 @@ class HSQLMediaDatabaseTest {
         assertEquals(MediaType.MUSIC, retrieved.getMediaType());
     }
     
+    @Test
+    void testUpdateProbedMetadataKeepsOtherColumns() {
+        // Arrange
+        int testMediaId = mediaDatabase.getNextMediaFileId();
+        MediaFile original = new MediaFile(
+            testMediaId, "probe.mp4", "probe.mp4", "video/mp4", 2048L, "videos/probe.mp4", 16,
+            "Probe Title", "Probe description", false
+        );
+        original.setUploadDate(LocalDateTime.now());
+        original.setMediaType(MediaType.VIDEO);
+        mediaDatabase.addMediaFile(original);
+        
+        // A copy read before someone renamed the file
+        MediaFile stale = mediaDatabase.getMediaFile(testMediaId);
+        MediaFile edited = mediaDatabase.getMediaFile(testMediaId);
+        edited.setTitle("Renamed");
+        mediaDatabase.updateMediaFile(edited);
+        
+        // Act
+        stale.setDurationMs(90_000);
+        stale.setVideoCodec("h264");
+        stale.setWidth(1280);
+        stale.setHeight(720);
+        mediaDatabase.updateProbedMetadata(stale);
+        MediaFile retrieved = mediaDatabase.getMediaFile(testMediaId);
+        
+        // Assert
+        assertEquals("Renamed", retrieved.getTitle());
+        assertEquals(90_000L, retrieved.getDurationMs());
+        assertEquals("h264", retrieved.getVideoCodec());
+        assertEquals(1280, retrieved.getWidth());
+        assertEquals(720, retrieved.getHeight());
+    }
+    
     @Test
     void testDeleteMediaFile() {
         // Arrange
@@ -69,6 +69,19 @@ public class MockMediaDatabase implements IMediaDatabase {
         }
     }
     
+    @Override
+    public void updateProbedMetadata(MediaFile mediaFile) {
+        MediaFile stored = mediaFile != null ? mediaFiles.get(mediaFile.getId()) : null;
+        if (stored != null) {
+            stored.setDurationMs(mediaFile.getDurationMs());
+            stored.setBitrate(mediaFile.getBitrate());
+            stored.setVideoCodec(mediaFile.getVideoCodec());
+            stored.setAudioCodec(mediaFile.getAudioCodec());
+            stored.setWidth(mediaFile.getWidth());
+            stored.setHeight(mediaFile.getHeight());
+        }
+    }
+    
     @Override
     public void deleteMediaFile(int mediaFileId) {
         mediaFiles.remove(mediaFileId);
@@ -106,6 +119,39 @@ public class MockMediaDatabase implements IMediaDatabase {
         return fileData.get(mediaFileId);
     }
     
+    @Override
+    public long getFileDataLength(int mediaFileId) {
+        byte[] data = fileData.get(mediaFileId);
+        return data != null ? data.length : -1;
+    }
+    
+    @Override
+    public byte[] getFileDataRange(int mediaFileId, long start, int length) {
+        byte[] data = fileData.get(mediaFileId);
+        if (data == null) {
+            return null;
+        }
+        int from = (int) Math.min(start, data.length);
+        return Arrays.copyOfRange(data, from, Math.min(data.length, from + length));
+    }
+    
+    @Override
+    public List<Integer> getMediaFileIdsWithFileData() {
+        return fileData.keySet().stream().sorted().collect(Collectors.toList());
+    }
+    
+    @Override
+    public boolean moveFileDataToFilePath(int mediaFileId, String filePath, String etag) {
+        MediaFile mediaFile = mediaFiles.get(mediaFileId);
+        if (mediaFile == null) {
+            return false;
+        }
+        mediaFile.setFilePath(filePath);
+        mediaFile.setEtag(etag);
+        fileData.remove(mediaFileId);
+        return true;
+    }
+    
     @Override
     public void deleteFileData(int mediaFileId) {
         fileData.remove(mediaFileId);
@@ -15,11 +15,19 @@ import org.mockito.junit.jupiter.MockitoExtension;
 import org.springframework.mock.web.MockMultipartFile;
 import org.springframework.web.multipart.MultipartFile;
 
+import java.io.ByteArrayInputStream;
+import java.io.FilterInputStream;
 import java.io.IOException;
+import java.io.InputStream;
 import java.nio.file.Files;
 import java.nio.file.Path;
 import java.nio.file.Paths;
+import java.security.MessageDigest;
 import java.util.Arrays;
+import java.util.HexFormat;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
 
 import static org.junit.jupiter.api.Assertions.*;
 import static org.mockito.ArgumentMatchers.any;
@@ -148,7 +156,7 @@ public class ChunkedUploadServiceTest {
         );
         
         // Create mock chunk data
-        byte[] chunkData = new byte[5 * 1024 * 1024]; // 5MB chunk
+        byte[] chunkData = new byte[10 * 1024 * 1024]; // 10MB chunk
         Arrays.fill(chunkData, (byte) 0x42); // Fill with 'B'
         MockMultipartFile chunkFile = new MockMultipartFile("chunk", "chunk_0", "application/octet-stream", chunkData);
         
@@ -201,7 +209,14 @@ public class ChunkedUploadServiceTest {
         // Verify all chunks uploaded
         ChunkedUpload finalUpload = service.getUploadStatus(upload.getUploadId());
         assertTrue(finalUpload.isComplete(), "Upload should be complete");
-        assertEquals(ChunkedUploadStatus.ASSEMBLING, finalUpload.getStatus());
+        assertEquals(ChunkedUploadStatus.COMPLETED, finalUpload.getStatus());
+        
+        // Chunks were written in place, so the file needs no assembly
+        byte[] data = Files.readAllBytes(tempDir.resolve(upload.getUploadId()).resolve(ChunkedUploadService.DATA_FILE));
+        assertEquals(25 * 1024 * 1024, data.length);
+        assertEquals(0x30, data[0]);
+        assertEquals(0x31, data[10 * 1024 * 1024]);
+        assertEquals(0x32, data[data.length - 1]);
     }
     
     @Test
@@ -281,7 +296,13 @@ public class ChunkedUploadServiceTest {
         assertThrows(IllegalArgumentException.class, () -> {
             service.uploadChunk("invalid-upload-id", 0, chunkFile, null);
         }, "Should reject invalid upload ID");
-        
+
+        // Test truncated chunk, which must not be counted as received
+        assertThrows(IllegalArgumentException.class, () -> {
+            service.uploadChunk(upload.getUploadId(), 0, chunkFile, null);
+        }, "Should reject chunk shorter than its slot");
+        assertFalse(service.getUploadStatus(upload.getUploadId()).hasChunk(0));
+
         System.out.println("✓ Invalid inputs correctly rejected");
     }
     
@@ -296,7 +317,7 @@ public class ChunkedUploadServiceTest {
             10 * 1024 * 1024, 1, "Duplicate Test", "", false, "OTHER", null
         );
         
-        byte[] chunkData = new byte[5 * 1024 * 1024];
+        byte[] chunkData = new byte[10 * 1024 * 1024];
         Arrays.fill(chunkData, (byte) 0x99);
         MockMultipartFile chunkFile = new MockMultipartFile("chunk", "chunk_0", "application/octet-stream", chunkData);
         
@@ -380,4 +401,142 @@ public class ChunkedUploadServiceTest {
             System.out.println("✓ Chunk " + i + " uploaded, progress: " + updatedUpload.getProgress() + "%");
         }
     }
-}
\ No newline at end of file
+    
+    @Test
+    @Order(9)
+    void testChunkChecksumVerification() throws Exception {
+        System.out.println("\n=== Test 9: Chunk Checksum Verification ===");
+        
+        ChunkedUpload upload = service.initializeUpload(
+            "checksum_test.bin", "application/octet-stream", 2 * 1024 * 1024L, 
+            1024 * 1024, 1, "Checksum Test", "", false, "OTHER", null
+        );
+        
+        byte[] chunkData = new byte[1024 * 1024];
+        Arrays.fill(chunkData, (byte) 0x5A);
+        String checksum = HexFormat.of().formatHex(MessageDigest.getInstance("SHA-256").digest(chunkData));
+        
+        // Corrupted in transit: rejected and still missing
+        byte[] corrupted = chunkData.clone();
+        corrupted[100] = 0;
+        MockMultipartFile badChunk = new MockMultipartFile("chunk", "chunk_0", "application/octet-stream", corrupted);
+        assertThrows(IllegalArgumentException.class, () -> {
+            service.uploadChunk(upload.getUploadId(), 0, badChunk, checksum);
+        }, "Should reject chunk that does not match its checksum");
+        assertTrue(upload.getMissingChunks().contains(0));
+        
+        // Resent intact: accepted and written over the bad bytes
+        MockMultipartFile goodChunk = new MockMultipartFile("chunk", "chunk_0", "application/octet-stream", chunkData);
+        assertTrue(service.uploadChunk(upload.getUploadId(), 0, goodChunk, checksum));
+        assertFalse(upload.getMissingChunks().contains(0));
+        byte[] data = Files.readAllBytes(tempDir.resolve(upload.getUploadId()).resolve(ChunkedUploadService.DATA_FILE));
+        assertEquals(0x5A, data[100]);
+        
+        System.out.println("✓ Chunk checksums verified while streaming");
+    }
+    
+    @Test
+    @Order(10)
+    void testRacingBadDuplicateIsRejected() throws Exception {
+        System.out.println("\n=== Test 10: Racing Bad Duplicate Chunk ===");
+        
+        ChunkedUpload upload = service.initializeUpload(
+            "race_test.bin", "application/octet-stream", 2 * 1024 * 1024L, 
+            1024 * 1024, 1, "Race Test", "", false, "OTHER", null
+        );
+        
+        byte[] chunkData = new byte[1024 * 1024];
+        Arrays.fill(chunkData, (byte) 0x5A);
+        String checksum = HexFormat.of().formatHex(MessageDigest.getInstance("SHA-256").digest(chunkData));
+        
+        // The good copy stalls halfway through its body
+        CountDownLatch started = new CountDownLatch(1);
+        CountDownLatch resume = new CountDownLatch(1);
+        MockMultipartFile slowGoodChunk = new MockMultipartFile("chunk", "chunk_0", "application/octet-stream", chunkData) {
+            @Override
+            public InputStream getInputStream() throws IOException {
+                return new FilterInputStream(super.getInputStream()) {
+                    private int read;
+                    
+                    @Override
+                    public int read(byte[] b, int off, int len) throws IOException {
+                        if (read >= chunkData.length / 2 && started.getCount() > 0) {
+                            started.countDown();
+                            try {
+                                resume.await(5, TimeUnit.SECONDS);
+                            } catch (InterruptedException e) {
+                                Thread.currentThread().interrupt();
+                            }
+                        }
+                        int n = super.read(b, off, len);
+                        read += Math.max(n, 0);
+                        return n;
+                    }
+                };
+            }
+        };
+        CompletableFuture<Boolean> good = CompletableFuture.supplyAsync(() -> {
+            try {
+                return service.uploadChunk(upload.getUploadId(), 0, slowGoodChunk, checksum);
+            } catch (IOException e) {
+                throw new RuntimeException(e);
+            }
+        });
+        assertTrue(started.await(5, TimeUnit.SECONDS));
+        
+        // A corrupted copy of the same chunk arrives meanwhile
+        byte[] corrupted = chunkData.clone();
+        Arrays.fill(corrupted, (byte) 0);
+        MockMultipartFile badChunk = new MockMultipartFile("chunk", "chunk_0", "application/octet-stream", corrupted);
+        assertThrows(IllegalStateException.class, () -> {
+            service.uploadChunk(upload.getUploadId(), 0, badChunk, checksum);
+        }, "A second copy of a chunk in flight must not write into its slot");
+        
+        resume.countDown();
+        assertTrue(good.get(5, TimeUnit.SECONDS));
+        assertFalse(upload.getMissingChunks().contains(0));
+        
+        // Once counted, a late bad copy is acknowledged without being written
+        assertTrue(service.uploadChunk(upload.getUploadId(), 0, badChunk, checksum));
+        byte[] data = Files.readAllBytes(tempDir.resolve(upload.getUploadId()).resolve(ChunkedUploadService.DATA_FILE));
+        for (int i = 0; i < chunkData.length; i++) {
+            assertEquals(0x5A, data[i], "Byte " + i + " of the verified chunk was overwritten");
+        }
+        
+        System.out.println("✓ Racing duplicate rejected, verified chunk intact");
+    }
+    
+    @Test
+    @Order(11)
+    void testRawBodyChunks() throws Exception {
+        System.out.println("\n=== Test 11: Raw Request Body Chunks ===");
+        
+        ChunkedUpload upload = service.initializeUpload(
+            "raw_test.bin", "application/octet-stream", 2 * 1024 * 1024L, 
+            1024 * 1024, 1, "Raw Test", "", false, "OTHER", null
+        );
+        
+        byte[] chunkData = new byte[1024 * 1024];
+        Arrays.fill(chunkData, (byte) 0x5A);
+        String checksum = HexFormat.of().formatHex(MessageDigest.getInstance("SHA-256").digest(chunkData));
+        
+        // Without a Content-Length the body is measured while it is written
+        byte[] tooLong = Arrays.copyOf(chunkData, chunkData.length + 1);
+        assertThrows(IllegalArgumentException.class, () -> {
+            service.uploadChunk(upload.getUploadId(), 0, new ByteArrayInputStream(tooLong), -1, null);
+        }, "Should reject a body larger than its slot");
+        assertThrows(IllegalArgumentException.class, () -> {
+            service.uploadChunk(upload.getUploadId(), 0, new ByteArrayInputStream(chunkData, 0, 1000), -1, null);
+        }, "Should reject a body shorter than its slot");
+        assertTrue(upload.getMissingChunks().contains(0));
+        
+        assertTrue(service.uploadChunk(upload.getUploadId(), 0, new ByteArrayInputStream(chunkData), -1, checksum));
+        assertTrue(service.uploadChunk(upload.getUploadId(), 1, new ByteArrayInputStream(chunkData),
+            chunkData.length, checksum));
+        assertTrue(upload.isComplete());
+        byte[] data = Files.readAllBytes(tempDir.resolve(upload.getUploadId()).resolve(ChunkedUploadService.DATA_FILE));
+        assertEquals(2 * chunkData.length, data.length);
+        
+        System.out.println("✓ Raw bodies written straight into the upload file");
+    }
+}
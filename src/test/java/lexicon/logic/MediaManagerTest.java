@@ -4,6 +4,7 @@ import lexicon.data.ILexiconDatabase;
 import lexicon.data.IMediaDatabase;
 import lexicon.object.MediaFile;
 import lexicon.object.MediaType;
+import lexicon.object.StreamResult;
 import lexicon.service.OptimizedFileStorageService;
 import lexicon.service.YtDlpService;
 import lexicon.service.VideoTranscodingService;
@@ -13,6 +14,7 @@ import org.mockito.Mock;
 import org.mockito.MockitoAnnotations;
 import org.springframework.web.multipart.MultipartFile;
 
+import java.io.ByteArrayOutputStream;
 import java.io.File;
 import java.io.IOException;
 import java.util.ArrayList;
@@ -251,6 +253,41 @@ class MediaManagerTest {
         verify(mediaDatabase, never()).deleteFileData(anyInt()); // deleteFileData is not called by deleteMediaFile
     }
     
+    @Test
+    void testDeleteMediaFile_KeepsStoredFile() {
+        // Arrange
+        MediaFile mockFile = new MediaFile();
+        mockFile.setId(5);
+        mockFile.setUploadedBy(16);
+        mockFile.setFilePath("music/compressed/song.mp3");
+        when(mediaDatabase.getMediaFile(5)).thenReturn(mockFile);
+        
+        // Act
+        boolean result = mediaManager.deleteMediaFile(5, 16);
+        
+        // Assert
+        assertTrue(result);
+        verify(fileStorageService, never()).deleteFile(anyString());
+    }
+    
+    @Test
+    void testDeleteMediaFile_ReleasesBlobReference() {
+        // Arrange
+        String blob = "blobs/ab/cd/abcdef0123456789";
+        MediaFile mockFile = new MediaFile();
+        mockFile.setId(5);
+        mockFile.setUploadedBy(16);
+        mockFile.setFilePath(blob);
+        when(mediaDatabase.getMediaFile(5)).thenReturn(mockFile);
+        
+        // Act
+        boolean result = mediaManager.deleteMediaFile(5, 16);
+        
+        // Assert
+        assertTrue(result);
+        verify(fileStorageService).deleteFile(blob);
+    }
+    
     @Test
     void testDeleteMediaFile_Unauthorized() {
         // Arrange
@@ -330,4 +367,29 @@ class MediaManagerTest {
         assertArrayEquals(mockData, result);
         verify(mediaDatabase).getFileData(10);
     }
+    
+    @Test
+    void testGetStreamDataFromDatabaseReadsOnlyTheRange() throws IOException {
+        // Arrange
+        MediaFile mediaFile = new MediaFile();
+        mediaFile.setId(11);
+        mediaFile.setContentType("audio/mpeg");
+        when(mediaDatabase.getMediaFile(11)).thenReturn(mediaFile);
+        when(mediaDatabase.getFileDataLength(11)).thenReturn(3_000_000L);
+        when(mediaDatabase.getFileDataRange(eq(11), anyLong(), anyInt()))
+            .thenAnswer(invocation -> new byte[invocation.<Integer>getArgument(2)]);
+        
+        // Act
+        StreamResult result = mediaManager.getStreamData(11, "bytes=500000-");
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        mediaManager.transferFileData(11, result.getStart(), result.getContentLength(), out);
+        
+        // Assert
+        assertTrue(result.isDatabaseBacked());
+        assertTrue(result.isPartialContent());
+        assertEquals(2_500_000L, result.getContentLength());
+        assertEquals(2_500_000, out.size());
+        verify(mediaDatabase, never()).getFileData(11);
+        verify(mediaDatabase, times(3)).getFileDataRange(eq(11), anyLong(), anyInt()); // 1MB chunks
+    }
 }
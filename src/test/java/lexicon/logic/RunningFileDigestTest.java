@@ -0,0 +1,50 @@
+package lexicon.logic;
+
+import lexicon.object.ChunkedUpload;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.security.MessageDigest;
+import java.util.HexFormat;
+import java.util.Random;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * Tests for hashing chunked uploads as their chunks arrive
+ */
+class RunningFileDigestTest {
+
+    @TempDir
+    Path tempDir;
+
+    @Test
+    void testOutOfOrderChunksAreHashedInOrder() throws Exception {
+        byte[] content = new byte[250];
+        new Random(7).nextBytes(content);
+        Path dataFile = tempDir.resolve("data.part");
+        Files.write(dataFile, content);
+        ChunkedUpload upload = new ChunkedUpload("u", "song.mp3", "audio/mpeg", content.length, 3, 100,
+                1, "Song", "", false, "MUSIC");
+        RunningFileDigest digest = new RunningFileDigest();
+
+        upload.markChunkReceived(2, 50);
+        digest.advance(upload, dataFile);
+        assertEquals(0, digest.getHashedChunks(), "Chunk 2 waits for the gap before it");
+
+        upload.markChunkReceived(0, 100);
+        digest.advance(upload, dataFile);
+        assertEquals(1, digest.getHashedChunks());
+        assertThrows(IllegalStateException.class, () -> digest.finish(upload, dataFile));
+
+        upload.markChunkReceived(1, 100);
+        digest.advance(upload, dataFile);
+        assertEquals(3, digest.getHashedChunks(), "Filling the gap releases the waiting chunk");
+
+        String expected = HexFormat.of().formatHex(MessageDigest.getInstance("SHA-256").digest(content));
+        assertEquals(expected, digest.finish(upload, dataFile));
+        assertEquals(expected, digest.finish(upload, dataFile), "Finishing twice gives the same digest");
+    }
+}
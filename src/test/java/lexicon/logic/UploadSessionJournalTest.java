@@ -0,0 +1,83 @@
+package lexicon.logic;
+
+import lexicon.object.ChunkedUpload;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.RandomAccessFile;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.Set;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * Tests for recovering chunked upload sessions after a restart
+ */
+class UploadSessionJournalTest {
+
+    @TempDir
+    Path tempDir;
+
+    @Test
+    void testSessionIsRecoveredWithItsChunks() throws Exception {
+        ChunkedUpload upload = new ChunkedUpload("abc", "movie.mp4", "video/mp4", 250, 3, 100,
+                4, "Movie", null, true, "VIDEO");
+        upload.setChecksum("deadbeef");
+        Path dataFile = dataFile(250);
+        UploadSessionJournal.writeSession(tempDir, upload);
+        UploadSessionJournal.appendChunk(tempDir, 2, 50);
+        UploadSessionJournal.appendChunk(tempDir, 0, 100);
+        UploadSessionJournal.appendChunk(tempDir, 0, 100); // Duplicate sent twice at once
+        Files.write(tempDir.resolve(UploadSessionJournal.JOURNAL_FILE), new byte[5], StandardOpenOption.APPEND); // Torn by a crash
+
+        ChunkedUpload recovered = UploadSessionJournal.recover(tempDir, dataFile);
+
+        assertNotNull(recovered);
+        assertEquals("abc", recovered.getUploadId());
+        assertEquals("movie.mp4", recovered.getOriginalFilename());
+        assertEquals(4, recovered.getUploadedBy());
+        assertTrue(recovered.isPublic());
+        assertEquals("deadbeef", recovered.getChecksum());
+        assertEquals(upload.getStartTime(), recovered.getStartTime());
+        assertEquals(Set.of(1), recovered.getMissingChunks());
+        assertEquals(150, recovered.getReceivedBytes());
+        assertFalse(recovered.isComplete());
+    }
+
+    @Test
+    void testUnusableSessionsAreSkipped() throws Exception {
+        assertNull(UploadSessionJournal.recover(tempDir, dataFile(250)), "No session file");
+
+        ChunkedUpload upload = new ChunkedUpload("abc", "movie.mp4", "video/mp4", 250, 3, 100,
+                4, "Movie", "", false, "VIDEO");
+        UploadSessionJournal.writeSession(tempDir, upload);
+        assertNull(UploadSessionJournal.recover(tempDir, dataFile(100)), "Data file does not match the session");
+    }
+
+    @Test
+    void testRecordsNotFillingTheirSlotAreSkipped() throws Exception {
+        ChunkedUpload upload = new ChunkedUpload("abc", "movie.mp4", "video/mp4", 250, 3, 100,
+                4, "Movie", "", false, "VIDEO");
+        Path dataFile = dataFile(250);
+        UploadSessionJournal.writeSession(tempDir, upload);
+        UploadSessionJournal.appendChunk(tempDir, 0, 60); // Truncated chunk
+        UploadSessionJournal.appendChunk(tempDir, 1, 100);
+        UploadSessionJournal.appendChunk(tempDir, 2, 100); // Last slot is only 50 bytes
+
+        ChunkedUpload recovered = UploadSessionJournal.recover(tempDir, dataFile);
+
+        assertNotNull(recovered);
+        assertEquals(Set.of(0, 2), recovered.getMissingChunks());
+        assertEquals(100, recovered.getReceivedBytes());
+    }
+
+    private Path dataFile(long size) throws Exception {
+        Path dataFile = tempDir.resolve("data.part");
+        try (RandomAccessFile data = new RandomAccessFile(dataFile.toFile(), "rw")) {
+            data.setLength(size);
+        }
+        return dataFile;
+    }
+}
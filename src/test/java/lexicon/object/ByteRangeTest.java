@@ -0,0 +1,83 @@
+package lexicon.object;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * Unit tests for the shared HTTP Range header parser
+ */
+class ByteRangeTest {
+
+    @Test
+    void testClosedRange() {
+        assertEquals(List.of(new ByteRange(0, 1023)), ByteRange.parse("bytes=0-1023", 10_000));
+        // End beyond the file is clipped
+        assertEquals(List.of(new ByteRange(9000, 9999)), ByteRange.parse("bytes=9000-20000", 10_000));
+    }
+
+    @Test
+    void testOpenEndedRange() {
+        assertEquals(List.of(new ByteRange(500, 9999)), ByteRange.parse("bytes=500-", 10_000));
+    }
+
+    @Test
+    void testSuffixRange() {
+        assertEquals(List.of(new ByteRange(9000, 9999)), ByteRange.parse("bytes=-1000", 10_000));
+        // Suffix longer than the file means the whole file
+        assertEquals(List.of(new ByteRange(0, 9999)), ByteRange.parse("bytes=-65536", 10_000));
+    }
+
+    @Test
+    void testMultipleRangesAreCoalesced() {
+        List<ByteRange> ranges = ByteRange.parse("bytes=0-99, -100", 10_000);
+        assertEquals(List.of(new ByteRange(0, 99), new ByteRange(9900, 9999)), ranges);
+
+        // Overlapping and adjacent ranges merge into one
+        assertEquals(List.of(new ByteRange(0, 299)), ByteRange.parse("bytes=100-299,0-99,50-150", 10_000));
+    }
+
+    @Test
+    void testUnsatisfiable() {
+        assertTrue(ByteRange.parse("bytes=10000-", 10_000).isEmpty());
+        assertTrue(ByteRange.parse("bytes=-0", 10_000).isEmpty());
+        assertTrue(ByteRange.parse("bytes=0-10", 0).isEmpty());
+        // One satisfiable range is enough
+        assertEquals(List.of(new ByteRange(0, 9)), ByteRange.parse("bytes=20000-30000,0-9", 10_000));
+    }
+
+    @Test
+    void testMalformedHeadersAreIgnored() {
+        assertNull(ByteRange.parse(null, 10_000));
+        assertNull(ByteRange.parse("items=0-10", 10_000));
+        assertNull(ByteRange.parse("bytes=abc-10", 10_000));
+        assertNull(ByteRange.parse("bytes=10-5", 10_000));
+        assertNull(ByteRange.parse("bytes=5", 10_000));
+        assertNull(ByteRange.parse("bytes=", 10_000));
+    }
+
+    @Test
+    void testTooManyRangesAreIgnored() {
+        StringBuilder header = new StringBuilder("bytes=");
+        for (int i = 0; i <= ByteRange.MAX_RANGES; i++) {
+            header.append(i == 0 ? "" : ",").append(i * 10).append('-').append(i * 10 + 1);
+        }
+        assertNull(ByteRange.parse(header.toString(), 10_000));
+    }
+
+    @Test
+    void testContentRange() {
+        assertEquals("bytes 0-99/1000", new ByteRange(0, 99).toContentRange(1000));
+        assertEquals(100L, new ByteRange(0, 99).getLength());
+    }
+
+    @Test
+    void testFromOffset() {
+        assertEquals(new ByteRange(2000, 4999), new ByteRange(0, 4999).from(2000));
+        assertEquals(new ByteRange(3000, 3999), new ByteRange(3000, 3999).from(2000));
+        assertNull(new ByteRange(0, 1023).from(2000));
+        assertEquals("bytes=2000-4999", new ByteRange(2000, 4999).toRangeHeader());
+    }
+}
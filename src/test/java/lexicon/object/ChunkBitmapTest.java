@@ -0,0 +1,61 @@
+package lexicon.object;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.Set;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * Tests for the chunk bitmap behind concurrent chunked uploads
+ */
+class ChunkBitmapTest {
+
+    @Test
+    void testSetAcrossWords() {
+        ChunkBitmap bitmap = new ChunkBitmap(130);
+
+        assertTrue(bitmap.set(0));
+        assertTrue(bitmap.set(64));
+        assertTrue(bitmap.set(129));
+        assertFalse(bitmap.set(64), "Marking twice reports the duplicate");
+
+        assertTrue(bitmap.get(129));
+        assertFalse(bitmap.get(1));
+        assertEquals(3, bitmap.cardinality());
+        assertEquals(Set.of(0, 64, 129), bitmap.received());
+        assertEquals(127, bitmap.missing().size());
+        assertFalse(bitmap.missing().contains(130), "Bits past the end are never reported");
+        assertThrows(IndexOutOfBoundsException.class, () -> bitmap.set(130));
+    }
+
+    @Test
+    void testConcurrentUploadCompletesOnce() throws Exception {
+        ChunkedUpload upload = new ChunkedUpload("u", "movie.mp4", "video/mp4", 1000L * 10, 1000, 10,
+                1, "Movie", "", false, "VIDEO");
+        AtomicInteger completions = new AtomicInteger();
+
+        ExecutorService pool = Executors.newFixedThreadPool(8);
+        for (int t = 0; t < 8; t++) {
+            pool.submit(() -> {
+                for (int chunk = 0; chunk < 1000; chunk++) { // Every thread sends every chunk
+                    if (upload.markChunkReceived(chunk, 10)) {
+                        completions.incrementAndGet();
+                    }
+                }
+            });
+        }
+        pool.shutdown();
+        assertTrue(pool.awaitTermination(10, TimeUnit.SECONDS));
+
+        assertEquals(1, completions.get(), "Exactly one caller sees the last chunk");
+        assertTrue(upload.isComplete());
+        assertEquals(1000, upload.getUploadedChunkCount());
+        assertEquals(10_000, upload.getReceivedBytes());
+        assertTrue(upload.getMissingChunks().isEmpty());
+    }
+}
@@ -0,0 +1,119 @@
+package lexicon.service;
+
+import lexicon.config.StorageProperties;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.attribute.FileTime;
+import java.util.Arrays;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * Tests for rendition streaming, caching and eviction (with a fake encoder instead of FFmpeg)
+ */
+class AudioRenditionServiceTest {
+
+    @TempDir
+    Path tempDir;
+
+    private StorageProperties storageProperties;
+    private AudioRenditionService renditionService;
+    private final AtomicInteger encodes = new AtomicInteger();
+
+    @BeforeEach
+    void setUp() throws Exception {
+        storageProperties = new StorageProperties();
+        storageProperties.setBasePath(tempDir.toString());
+
+        renditionService = new AudioRenditionService();
+        var field = AudioRenditionService.class.getDeclaredField("storageProperties");
+        field.setAccessible(true);
+        field.set(renditionService, storageProperties);
+
+        // "Encodes" to the first kilobyte of the source, written in small pieces
+        renditionService.encoder = (source, kbps, out) -> {
+            encodes.incrementAndGet();
+            byte[] data = Files.readAllBytes(source);
+            for (int i = 0; i < 1024; i += 128) {
+                out.write(data, i, 128);
+            }
+        };
+    }
+
+    @Test
+    void testFirstRequestStreamsAndLaterRequestsHitCache() throws IOException {
+        Path source = createSource("book.mp3", (byte) 7);
+
+        AudioRenditionService.Rendition first = renditionService.open("1", source, "low");
+        assertNotNull(first);
+        ByteArrayOutputStream streamed = new ByteArrayOutputStream();
+        first.writeTo(streamed);
+        assertEquals(1024, streamed.size(), "Listener follows the encoder to the end");
+
+        AudioRenditionService.Rendition second = renditionService.open("1", source, "LOW");
+        assertTrue(second.isComplete());
+        assertEquals(1024L, second.getSize());
+        assertEquals(1, encodes.get(), "Cached rendition is not encoded again");
+
+        ByteArrayOutputStream part = new ByteArrayOutputStream();
+        second.writeRange(part, 1000, 24);
+        assertEquals(24, part.size());
+        assertEquals(7, part.toByteArray()[0]);
+    }
+
+    @Test
+    void testLeastRecentlyUsedRenditionsAreEvicted() throws IOException {
+        storageProperties.setRenditionCacheBudget(2048);
+        for (int i = 1; i <= 3; i++) {
+            renditionService.open(String.valueOf(i), createSource(i + ".mp3", (byte) i), "low")
+                .writeTo(new ByteArrayOutputStream());
+        }
+
+        Path cacheDir = renditionService.getCacheDir();
+        assertFalse(Files.exists(cacheDir.resolve("1-low-64k.aac")), "Oldest rendition is evicted over budget");
+        assertTrue(Files.exists(cacheDir.resolve("3-low-64k.aac")));
+        assertEquals(2048L, (long) (Long) renditionService.getStats().get("bytes"));
+    }
+
+    @Test
+    void testBitrateChangeIsNotServedFromOldEncode() throws IOException {
+        Path source = createSource("book.mp3", (byte) 3);
+        AudioRenditionService.Rendition first = renditionService.open("1", source, "low");
+        first.writeTo(new ByteArrayOutputStream());
+        assertEquals("low-64k", first.getTag());
+
+        storageProperties.setRenditionLowKbps(32);
+        AudioRenditionService.Rendition second = renditionService.open("1", source, "low");
+        second.writeTo(new ByteArrayOutputStream());
+        assertEquals("low-32k", second.getTag());
+        assertEquals(2, encodes.get(), "New bitrate is encoded rather than served from the old file");
+        assertTrue(Files.exists(renditionService.getCacheDir().resolve("1-low-32k.aac")));
+    }
+
+    @Test
+    void testFailedEncodeFallsBack() throws IOException {
+        renditionService.encoder = (source, kbps, out) -> {
+            throw new IOException("no audio stream");
+        };
+        assertNull(renditionService.open("1", createSource("clip.mp3", (byte) 1), "low"));
+        assertNull(renditionService.open("1", createSource("clip.mp3", (byte) 1), "ultra"), "Unknown quality");
+        assertFalse(Files.exists(renditionService.getCacheDir().resolve("1-low-64k.aac.part")));
+    }
+
+    private Path createSource(String name, byte fill) throws IOException {
+        byte[] data = new byte[4096];
+        Arrays.fill(data, fill);
+        Path source = tempDir.resolve(name);
+        Files.write(source, data);
+        // Renditions are only fresh if at least as new as their source
+        Files.setLastModifiedTime(source, FileTime.fromMillis(System.currentTimeMillis() - 60_000));
+        return source;
+    }
+}
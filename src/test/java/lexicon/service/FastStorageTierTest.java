@@ -0,0 +1,168 @@
+package lexicon.service;
+
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * Tests for the fast staging tier: write-through, promotion, eviction and recovery
+ */
+class FastStorageTierTest {
+
+    @TempDir
+    Path tempDir;
+
+    private Path fastRoot;
+    private Path baseRoot;
+    private FastStorageTier tier;
+    private final List<String> relocated = Collections.synchronizedList(new ArrayList<>());
+
+    @BeforeEach
+    void setUp() throws IOException {
+        fastRoot = tempDir.resolve("fast");
+        baseRoot = tempDir.resolve("base");
+        Files.createDirectories(baseRoot);
+    }
+
+    @AfterEach
+    void tearDown() {
+        if (tier != null) {
+            tier.shutdown();
+        }
+    }
+
+    private FastStorageTier startTier(long budget, int promoteAfterReads) throws IOException {
+        tier = new FastStorageTier(fastRoot, baseRoot, budget, promoteAfterReads, relocated::add);
+        tier.start();
+        return tier;
+    }
+
+    private Path writeNew(String relativePath, int size) throws IOException {
+        Path target = tier.pathForNewFile(relativePath, size);
+        assertNotNull(target);
+        Files.createDirectories(target.getParent());
+        Files.write(target, new byte[size]);
+        tier.fileWritten(relativePath);
+        return target;
+    }
+
+    private void waitFor(java.util.function.BooleanSupplier condition) throws InterruptedException {
+        long deadline = System.currentTimeMillis() + 5000;
+        while (!condition.getAsBoolean() && System.currentTimeMillis() < deadline) {
+            Thread.sleep(20);
+        }
+        assertTrue(condition.getAsBoolean(), "Condition not met within 5s");
+    }
+
+    @Test
+    void testNewFileIsWrittenThroughToBase() throws Exception {
+        startTier(10_000, 0);
+        Path staged = writeNew("music/song.mp3", 1000);
+
+        assertEquals(staged, tier.locate("music/song.mp3"));
+        waitFor(() -> Files.exists(baseRoot.resolve("music/song.mp3")));
+        assertEquals(1000L, Files.size(baseRoot.resolve("music/song.mp3")));
+        waitFor(() -> (Long) tier.getStats().get("pendingWriteThrough") == 0L);
+    }
+
+    @Test
+    void testCleanFilesEvictedUnderBudget() throws Exception {
+        startTier(2500, 0);
+        writeNew("a.bin", 1000);
+        waitFor(() -> (Long) tier.getStats().get("pendingWriteThrough") == 0L);
+        writeNew("b.bin", 1000);
+        writeNew("c.bin", 1000);
+        waitFor(() -> (Long) tier.getStats().get("pendingWriteThrough") == 0L);
+
+        // a.bin was least recently used and is evicted; its base copy remains
+        assertNull(tier.locate("a.bin"));
+        assertFalse(Files.exists(fastRoot.resolve("a.bin")));
+        assertTrue(Files.exists(baseRoot.resolve("a.bin")));
+        assertTrue(relocated.contains("a.bin"));
+        assertTrue((Long) tier.getStats().get("usedBytes") <= 2500L);
+    }
+
+    @Test
+    void testHotBaseFileIsPromoted() throws Exception {
+        startTier(10_000, 2);
+        Files.write(baseRoot.resolve("hot.mp3"), new byte[500]);
+
+        tier.recordRead("hot.mp3", 500, 0, "player-a");
+        assertNull(tier.locate("hot.mp3"));
+        tier.recordRead("hot.mp3", 500, 0, "player-b");
+
+        waitFor(() -> tier.locate("hot.mp3") != null);
+        assertTrue(Files.exists(fastRoot.resolve("hot.mp3")));
+        assertTrue(relocated.contains("hot.mp3"));
+    }
+
+    @Test
+    void testRangesOfOnePlayCountOnce() throws Exception {
+        startTier(10_000, 2);
+        Files.write(baseRoot.resolve("song.mp3"), new byte[500]);
+
+        // One client fetching the file as several ranges, plus anonymous mid-file ranges
+        tier.recordRead("song.mp3", 500, 0, "player-a");
+        tier.recordRead("song.mp3", 500, 100, "player-a");
+        tier.recordRead("song.mp3", 500, 300, "player-a");
+        tier.recordRead("song.mp3", 500, 200, null);
+        tier.recordRead("song.mp3", 500, 400, null);
+        assertEquals(0, tier.getStats().get("pendingPromotions"));
+        assertEquals(0L, tier.getStats().get("promotions"));
+
+        // An anonymous play from the start is the second stream
+        tier.recordRead("song.mp3", 500, 0, null);
+        waitFor(() -> tier.locate("song.mp3") != null);
+        assertEquals(1L, tier.getStats().get("promotions"));
+    }
+
+    @Test
+    void testRestartRequeuesUnsyncedFiles() throws Exception {
+        // Simulate a file staged before a crash, never written through
+        Files.createDirectories(fastRoot.resolve("videos"));
+        Files.write(fastRoot.resolve("videos/clip.mp4"), new byte[700]);
+        Files.write(fastRoot.resolve("videos/partial.mp4.part"), new byte[10]);
+
+        startTier(10_000, 0);
+
+        assertNotNull(tier.locate("videos/clip.mp4"));
+        assertFalse(Files.exists(fastRoot.resolve("videos/partial.mp4.part")));
+        waitFor(() -> Files.exists(baseRoot.resolve("videos/clip.mp4")));
+    }
+
+    @Test
+    void testWriteAfterShutdownIsSyncedOnNextStart() throws Exception {
+        startTier(10_000, 0);
+        tier.shutdown();
+
+        // A store finishing during shutdown must not fail
+        writeNew("late.mp3", 400);
+        assertEquals(1L, tier.getStats().get("pendingWriteThrough"));
+
+        startTier(10_000, 0);
+        waitFor(() -> Files.exists(baseRoot.resolve("late.mp3")));
+    }
+
+    @Test
+    void testFlushAndRemove() throws Exception {
+        startTier(10_000, 0);
+        writeNew("doc.mp3", 300);
+
+        tier.flush("doc.mp3");
+        assertTrue(Files.exists(baseRoot.resolve("doc.mp3")));
+
+        tier.remove("doc.mp3");
+        assertNull(tier.locate("doc.mp3"));
+        assertFalse(Files.exists(fastRoot.resolve("doc.mp3")));
+    }
+}
@@ -0,0 +1,103 @@
+package lexicon.service;
+
+import lexicon.config.StorageProperties;
+import lexicon.data.MockMediaDatabase;
+import lexicon.object.MediaFile;
+import lexicon.object.MediaType;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.lang.reflect.Field;
+import java.nio.file.Path;
+import java.util.Map;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * Tests for moving file_data rows onto the file system
+ */
+class FileDataMigratorTest {
+
+    @TempDir
+    Path tempDir;
+
+    private MockMediaDatabase mediaDatabase;
+    private OptimizedFileStorageService storageService;
+    private FileDataMigrator migrator;
+
+    @BeforeEach
+    void setUp() throws Exception {
+        StorageProperties storageProperties = new StorageProperties();
+        storageProperties.setBasePath(tempDir.toString());
+        storageProperties.setFileDataMigrationBytesPerSecond(0);
+
+        mediaDatabase = new MockMediaDatabase();
+        storageService = new OptimizedFileStorageService();
+        inject(storageService, "storageProperties", storageProperties);
+
+        migrator = new FileDataMigrator();
+        inject(migrator, "mediaDatabase", mediaDatabase);
+        inject(migrator, "fileStorageService", storageService);
+        inject(migrator, "storageProperties", storageProperties);
+    }
+
+    @Test
+    void testMigratesRowsAndPointsMediaAtFileSystem() throws IOException {
+        byte[] data = new byte[FileDataMigrator.READ_CHUNK_SIZE * 2 + 123]; // Several chunks
+        for (int i = 0; i < data.length; i++) {
+            data[i] = (byte) i;
+        }
+        addDatabaseMedia(1, "song.mp3", data);
+        addDatabaseMedia(2, "clip.txt", new byte[] {1, 2, 3});
+
+        migrator.migrateAll();
+
+        assertTrue(mediaDatabase.getMediaFileIdsWithFileData().isEmpty(), "file_data rows are deleted");
+        MediaFile migrated = mediaDatabase.getMediaFile(1);
+        assertFalse(migrated.getFilePath().isEmpty());
+        assertNotNull(migrated.getEtag());
+        try (InputStream in = storageService.getFileInputStream(migrated.getFilePath())) {
+            assertArrayEquals(data, in.readAllBytes());
+        }
+
+        Map<String, Object> status = migrator.getStatus();
+        assertEquals("DONE", status.get("state"));
+        assertEquals(2, (int) (Integer) status.get("migratedFiles"));
+        assertEquals(100L, (long) (Long) status.get("percentComplete"));
+    }
+
+    @Test
+    void testTruncatedRowIsLeftInDatabase() throws Exception {
+        addDatabaseMedia(3, "broken.mp3", new byte[10]);
+        MockMediaDatabase truncating = new MockMediaDatabase() {
+            @Override
+            public long getFileDataLength(int mediaFileId) {
+                return 20; // Claims more bytes than it returns
+            }
+        };
+        truncating.addMediaFile(mediaDatabase.getMediaFile(3));
+        truncating.storeFileData(3, new byte[10]);
+
+        inject(migrator, "mediaDatabase", truncating);
+        assertFalse(migrator.migrate(3));
+        assertEquals(1, truncating.getMediaFileIdsWithFileData().size(), "Database copy stays authoritative");
+        assertEquals("", truncating.getMediaFile(3).getFilePath());
+    }
+
+    private void addDatabaseMedia(int id, String name, byte[] data) {
+        MediaFile mediaFile = new MediaFile(id, name, name, "application/octet-stream", data.length, "", 16,
+                name, "", true);
+        mediaFile.setMediaType(MediaType.MUSIC);
+        mediaDatabase.addMediaFile(mediaFile);
+        mediaDatabase.storeFileData(id, data);
+    }
+
+    private static void inject(Object target, String name, Object value) throws Exception {
+        Field field = target.getClass().getDeclaredField(name);
+        field.setAccessible(true);
+        field.set(target, value);
+    }
+}
@@ -0,0 +1,63 @@
+package lexicon.service;
+
+import lexicon.config.StorageProperties;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * Tests for HLS ladder configuration and package file resolution
+ */
+class HlsPackagingServiceTest {
+
+    @TempDir
+    Path tempDir;
+
+    private HlsPackagingService packagingService;
+
+    @BeforeEach
+    void setUp() throws Exception {
+        StorageProperties storageProperties = new StorageProperties();
+        storageProperties.setBasePath(tempDir.toString());
+
+        packagingService = new HlsPackagingService();
+        var field = HlsPackagingService.class.getDeclaredField("storageProperties");
+        field.setAccessible(true);
+        field.set(packagingService, storageProperties);
+    }
+
+    @Test
+    void testParseLadder() {
+        List<int[]> ladder = HlsPackagingService.parseLadder("1080:5000, 360:800,bogus,720:x,720:2800");
+        assertEquals(3, ladder.size(), "Invalid entries are skipped");
+        assertEquals(360, ladder.get(0)[0], "Renditions are ordered lowest first");
+        assertEquals(800, ladder.get(0)[1]);
+        assertEquals(1080, ladder.get(2)[0]);
+    }
+
+    @Test
+    void testResolveOnlyAcceptsPackageFiles() {
+        assertNotNull(packagingService.resolve(7, "v0", "index.m3u8"));
+        assertNotNull(packagingService.resolve(7, "v2", "seg_00012.ts"));
+
+        assertNull(packagingService.resolve(7, "..", "index.m3u8"));
+        assertNull(packagingService.resolve(7, "v0", "../../secret.ts"));
+        assertNull(packagingService.resolve(7, "v0", "master.m3u8"));
+    }
+
+    @Test
+    void testStatusFromCompleteMarker() throws Exception {
+        assertEquals(HlsPackagingService.Status.NONE, packagingService.getStatus(7));
+
+        Path outputDir = packagingService.getOutputDir(7);
+        Files.createDirectories(outputDir);
+        Files.createFile(outputDir.resolve(".complete"));
+        assertEquals(HlsPackagingService.Status.READY, packagingService.getStatus(7));
+    }
+}
@@ -9,9 +9,13 @@ import org.junit.jupiter.api.Test;
 import org.mockito.Mock;
 import org.mockito.MockitoAnnotations;
 
+import java.nio.file.Paths;
 import java.util.ArrayList;
 import java.util.Arrays;
 import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
 
 import static org.junit.jupiter.api.Assertions.*;
 import static org.mockito.ArgumentMatchers.*;
@@ -28,6 +32,12 @@ public class LiveStreamServiceTest {
     @Mock
     private IPlaylistDatabase playlistDb;
     
+    @Mock
+    private MediaProbeService mediaProbeService;
+    
+    @Mock
+    private OptimizedFileStorageService fileStorageService;
+    
     private LiveStreamService liveStreamService;
     
     @BeforeEach
@@ -120,4 +130,147 @@ public class LiveStreamServiceTest {
             liveStreamService.addToQueue("music", 5, 102);
         });
     }
+
+    @Test
+    void testSkipWhileTimerFiresDoesNotAdvanceTwice() throws Exception {
+        List<LiveStreamQueue> queue = fakeQueue("music", item(10, 1), item(11, 2));
+        when(mediaDb.getMediaFile(1)).thenReturn(media(1, 1));          // Timer due after the grace period
+        when(mediaDb.getMediaFile(2)).thenReturn(media(2, 600_000));
+        
+        liveStreamService.skipToNext("music");
+        assertEquals(LiveStreamQueue.QueueStatus.PLAYING, queue.get(0).getStatus());
+        
+        // The timer wakes up and waits for the channel while a skip holds it
+        synchronized (channelLock("music")) {
+            Thread.sleep(1500);
+            liveStreamService.skipToNext("music");
+        }
+        Thread.sleep(300);
+        
+        assertEquals(LiveStreamQueue.QueueStatus.SKIPPED, queue.get(0).getStatus());
+        assertEquals(LiveStreamQueue.QueueStatus.PLAYING, queue.get(1).getStatus(),
+            "The old timer must not complete the item the skip started");
+        verify(liveStreamDb, never()).updateQueueStatus(11, LiveStreamQueue.QueueStatus.COMPLETED);
+    }
+
+    @Test
+    void testProbeDoesNotBlockTransition() throws Exception {
+        injectField("mediaProbeService", mediaProbeService);
+        injectField("fileStorageService", fileStorageService);
+        
+        List<LiveStreamQueue> queue = fakeQueue("music", item(10, 1));
+        MediaFile unprobed = media(1, 0);
+        unprobed.setFilePath("music/compressed/track.mp3");
+        when(mediaDb.getMediaFile(1)).thenReturn(unprobed);
+        when(fileStorageService.getReadablePath(anyString())).thenReturn(Paths.get("/tmp/track.mp3"));
+        
+        CountDownLatch probeRelease = new CountDownLatch(1);
+        when(mediaProbeService.probe(any(), any())).thenAnswer(inv -> {
+            probeRelease.await(5, TimeUnit.SECONDS);
+            ((MediaFile) inv.getArgument(1)).setDurationMs(1);
+            return true;
+        });
+        
+        long start = System.currentTimeMillis();
+        liveStreamService.skipToNext("music");
+        assertTrue(System.currentTimeMillis() - start < 1000, "Starting a play must not wait for ffprobe");
+        
+        // The channel lock is free while the probe runs
+        Thread other = new Thread(() -> {
+            synchronized (channelLock("music")) {
+                // Acquired
+            }
+        });
+        other.start();
+        other.join(1000);
+        assertFalse(other.isAlive(), "ffprobe must not run under the channel lock");
+        
+        // Once probed, the timer advances by server time
+        probeRelease.countDown();
+        verify(mediaDb, timeout(2000)).updateProbedMetadata(unprobed);
+        verify(mediaDb, never()).updateMediaFile(any());
+        verify(liveStreamDb, timeout(3000)).updateQueueStatus(10, LiveStreamQueue.QueueStatus.COMPLETED);
+        assertEquals(LiveStreamQueue.QueueStatus.COMPLETED, queue.get(0).getStatus());
+    }
+
+    @Test
+    void testConcurrentAdvanceStartsOnePlay() throws Exception {
+        List<LiveStreamQueue> queue = fakeQueue("music", item(10, 1), item(11, 2));
+        when(mediaDb.getMediaFile(anyInt())).thenAnswer(inv -> media(inv.getArgument(0), 600_000));
+        
+        // The state follows setCurrentMedia, and reading it is slow enough for two calls to overlap
+        LiveStreamState state = new LiveStreamState();
+        when(liveStreamDb.getStreamState("music")).thenAnswer(inv -> {
+            int current = state.getCurrentMediaId();
+            Thread.sleep(200);
+            LiveStreamState snapshot = new LiveStreamState();
+            snapshot.setCurrentMediaId(current);
+            return snapshot;
+        });
+        doAnswer(inv -> {
+            state.setCurrentMediaId(inv.getArgument(1));
+            return null;
+        }).when(liveStreamDb).setCurrentMedia(eq("music"), anyInt(), anyLong());
+        
+        // Two POST /advance calls at once
+        Thread first = new Thread(() -> liveStreamService.checkAndAdvanceIfNeeded("music"));
+        Thread second = new Thread(() -> liveStreamService.checkAndAdvanceIfNeeded("music"));
+        first.start();
+        second.start();
+        first.join(5000);
+        second.join(5000);
+        
+        assertEquals(LiveStreamQueue.QueueStatus.PLAYING, queue.get(0).getStatus());
+        assertEquals(LiveStreamQueue.QueueStatus.QUEUED, queue.get(1).getStatus(), "Only one play may start");
+        verify(liveStreamDb, times(1)).setCurrentMedia(eq("music"), anyInt(), anyLong());
+    }
+
+    /**
+     * Backs the queue mocks with a list whose statuses follow updateQueueStatus
+     */
+    private List<LiveStreamQueue> fakeQueue(String channel, LiveStreamQueue... items) {
+        List<LiveStreamQueue> queue = new ArrayList<>(Arrays.asList(items));
+        when(liveStreamDb.getQueueItemsLightweight(channel)).thenAnswer(inv -> new ArrayList<>(queue));
+        when(liveStreamDb.getCurrentPlayingQueueId(channel)).thenAnswer(inv -> queue.stream()
+            .filter(i -> i.getStatus() == LiveStreamQueue.QueueStatus.PLAYING)
+            .map(LiveStreamQueue::getId)
+            .findFirst()
+            .orElse(null));
+        doAnswer(inv -> {
+            queue.stream()
+                .filter(i -> i.getId() == (int) inv.getArgument(0))
+                .forEach(i -> i.setStatus(inv.getArgument(1)));
+            return null;
+        }).when(liveStreamDb).updateQueueStatus(anyInt(), any());
+        when(liveStreamDb.getStreamState(channel)).thenReturn(new LiveStreamState());
+        return queue;
+    }
+
+    private static LiveStreamQueue item(int id, int mediaFileId) {
+        LiveStreamQueue item = new LiveStreamQueue();
+        item.setId(id);
+        item.setMediaFileId(mediaFileId);
+        item.setStatus(LiveStreamQueue.QueueStatus.QUEUED);
+        return item;
+    }
+
+    private static MediaFile media(int id, long durationMs) {
+        MediaFile media = new MediaFile();
+        media.setId(id);
+        media.setDurationMs(durationMs);
+        return media;
+    }
+
+    @SuppressWarnings("unchecked")
+    private Object channelLock(String channel) throws Exception {
+        var field = LiveStreamService.class.getDeclaredField("channelLocks");
+        field.setAccessible(true);
+        return ((Map<String, Object>) field.get(liveStreamService)).computeIfAbsent(channel, k -> new Object());
+    }
+
+    private void injectField(String name, Object value) throws Exception {
+        var field = LiveStreamService.class.getDeclaredField(name);
+        field.setAccessible(true);
+        field.set(liveStreamService, value);
+    }
 }
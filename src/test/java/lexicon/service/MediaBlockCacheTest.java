@@ -0,0 +1,182 @@
+package lexicon.service;
+
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.Channels;
+import java.nio.channels.FileChannel;
+import java.nio.channels.FileLock;
+import java.nio.channels.ReadableByteChannel;
+import java.nio.channels.WritableByteChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.Arrays;
+import java.util.Map;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * Tests for the off-heap MediaBlockCache
+ */
+class MediaBlockCacheTest {
+
+    private static final int BLOCK = MediaBlockCache.BLOCK_SIZE;
+
+    @TempDir
+    Path tempDir;
+
+    private MediaBlockCache cache;
+
+    @BeforeEach
+    void setUp() {
+        cache = new MediaBlockCache();
+    }
+
+    private byte[] pattern(int size) {
+        byte[] data = new byte[size];
+        for (int i = 0; i < size; i++) {
+            data[i] = (byte) (i % 253);
+        }
+        return data;
+    }
+
+    private byte[] read(String key, Path file, long start, long length) throws IOException {
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        try (FileChannel channel = FileChannel.open(file, StandardOpenOption.READ)) {
+            long written = cache.transfer(key, channel, channel.size(), start, length, Channels.newChannel(out));
+            assertEquals(out.size(), written);
+        }
+        return out.toByteArray();
+    }
+
+    @Test
+    void testRangesAcrossBlocksMatchFile() throws IOException {
+        cache.configure(8L * BLOCK);
+        byte[] content = pattern(3 * BLOCK + 1000);
+        Path file = tempDir.resolve("media.bin");
+        Files.write(file, content);
+
+        // Range spanning a block boundary, read twice (miss then hit)
+        int start = BLOCK - 100;
+        int length = BLOCK + 200;
+        byte[] expected = Arrays.copyOfRange(content, start, start + length);
+
+        assertArrayEquals(expected, read("media.bin", file, start, length));
+        assertArrayEquals(expected, read("media.bin", file, start, length));
+
+        // Tail of the file (short last block)
+        byte[] tail = read("media.bin", file, 3L * BLOCK, 5000);
+        assertArrayEquals(Arrays.copyOfRange(content, 3 * BLOCK, content.length), tail);
+
+        Map<String, Object> stats = cache.getStats();
+        assertTrue((Long) stats.get("hits") >= 2, "Second read should hit both blocks");
+    }
+
+    @Test
+    void testFrequentBlocksSurviveScan() throws IOException {
+        cache.configure(2L * BLOCK);
+        byte[] content = pattern(10 * BLOCK);
+        Path file = tempDir.resolve("scan.bin");
+        Files.write(file, content);
+
+        // Make block 0 popular
+        for (int i = 0; i < 5; i++) {
+            read("scan.bin", file, 0, 1000);
+        }
+
+        // One-off scan through the rest of the file
+        read("scan.bin", file, BLOCK, 9L * BLOCK);
+
+        long hitsBefore = (Long) cache.getStats().get("hits");
+        read("scan.bin", file, 0, 1000);
+        assertEquals(hitsBefore + 1, (long) (Long) cache.getStats().get("hits"),
+            "Popular block should not be flushed by a single scan");
+        assertTrue((Long) cache.getStats().get("rejections") > 0);
+    }
+
+    @Test
+    void testInvalidateDropsBlocks() throws IOException {
+        cache.configure(4L * BLOCK);
+        Path file = tempDir.resolve("old.bin");
+        Files.write(file, pattern(1000));
+        read("old.bin", file, 0, 1000);
+
+        cache.invalidate("old.bin");
+        assertEquals(0, cache.getStats().get("cachedBlocks"));
+
+        // New content under the same key is read fresh
+        byte[] replaced = new byte[1000];
+        Arrays.fill(replaced, (byte) 7);
+        Files.write(file, replaced);
+        assertArrayEquals(replaced, read("old.bin", file, 0, 1000));
+    }
+
+    @Test
+    void testBlockReadDuringInvalidateIsNotCached() throws IOException {
+        cache.configure(4L * BLOCK);
+        byte[] content = pattern(1000);
+        Path file = tempDir.resolve("moving.bin");
+        Files.write(file, content);
+
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        try (FileChannel channel = new InvalidatingChannel(FileChannel.open(file, StandardOpenOption.READ), "moving.bin")) {
+            cache.transfer("moving.bin", channel, 1000, 0, 1000, Channels.newChannel(out));
+        }
+
+        assertArrayEquals(content, out.toByteArray());
+        assertEquals(0, cache.getStats().get("cachedBlocks"), "Block loaded across an invalidate must not be kept");
+    }
+
+    @Test
+    void testDisabledCachePassesThrough() throws IOException {
+        byte[] content = pattern(5000);
+        Path file = tempDir.resolve("plain.bin");
+        Files.write(file, content);
+
+        assertFalse(cache.isEnabled());
+        assertArrayEquals(Arrays.copyOfRange(content, 10, 4010), read("plain.bin", file, 10, 4000));
+        assertEquals(0L, cache.getStats().get("misses"));
+    }
+
+    /**
+     * Channel that invalidates its file in the cache while a block is being read
+     */
+    private class InvalidatingChannel extends FileChannel {
+        private final FileChannel delegate;
+        private final String key;
+
+        InvalidatingChannel(FileChannel delegate, String key) {
+            this.delegate = delegate;
+            this.key = key;
+        }
+
+        @Override
+        public int read(ByteBuffer dst, long position) throws IOException {
+            cache.invalidate(key);
+            return delegate.read(dst, position);
+        }
+
+        @Override public int read(ByteBuffer dst) throws IOException { return delegate.read(dst); }
+        @Override public long read(ByteBuffer[] dsts, int offset, int length) throws IOException { return delegate.read(dsts, offset, length); }
+        @Override public int write(ByteBuffer src) throws IOException { return delegate.write(src); }
+        @Override public long write(ByteBuffer[] srcs, int offset, int length) throws IOException { return delegate.write(srcs, offset, length); }
+        @Override public int write(ByteBuffer src, long position) throws IOException { return delegate.write(src, position); }
+        @Override public long position() throws IOException { return delegate.position(); }
+        @Override public FileChannel position(long newPosition) throws IOException { delegate.position(newPosition); return this; }
+        @Override public long size() throws IOException { return delegate.size(); }
+        @Override public FileChannel truncate(long size) throws IOException { delegate.truncate(size); return this; }
+        @Override public void force(boolean metaData) throws IOException { delegate.force(metaData); }
+        @Override public long transferTo(long position, long count, WritableByteChannel target) throws IOException { return delegate.transferTo(position, count, target); }
+        @Override public long transferFrom(ReadableByteChannel src, long position, long count) throws IOException { return delegate.transferFrom(src, position, count); }
+        @Override public MappedByteBuffer map(MapMode mode, long position, long size) throws IOException { return delegate.map(mode, position, size); }
+        @Override public FileLock lock(long position, long size, boolean shared) throws IOException { return delegate.lock(position, size, shared); }
+        @Override public FileLock tryLock(long position, long size, boolean shared) throws IOException { return delegate.tryLock(position, size, shared); }
+        @Override protected void implCloseChannel() throws IOException { delegate.close(); }
+    }
+}
@@ -0,0 +1,51 @@
+package lexicon.service;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import lexicon.object.MediaFile;
+import org.junit.jupiter.api.Test;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * Tests for reading ffprobe output onto media files
+ */
+class MediaProbeServiceTest {
+
+    private final MediaProbeService probeService = new MediaProbeService();
+    private final ObjectMapper mapper = new ObjectMapper();
+
+    @Test
+    void testApplyVideo() throws Exception {
+        String json = "{\"streams\":["
+            + "{\"codec_name\":\"h264\",\"codec_type\":\"video\",\"width\":1920,\"height\":1080,\"duration\":\"596.45\"},"
+            + "{\"codec_name\":\"aac\",\"codec_type\":\"audio\",\"duration\":\"596.47\"}],"
+            + "\"format\":{\"duration\":\"596.474195\",\"bit_rate\":\"2119234\"}}";
+        MediaFile mediaFile = new MediaFile();
+
+        assertTrue(probeService.apply(mapper.readTree(json), mediaFile));
+        assertEquals(596474L, mediaFile.getDurationMs());
+        assertEquals(2119234L, mediaFile.getBitrate());
+        assertEquals("h264", mediaFile.getVideoCodec());
+        assertEquals("aac", mediaFile.getAudioCodec());
+        assertEquals(1920, mediaFile.getWidth());
+        assertEquals(1080, mediaFile.getHeight());
+    }
+
+    @Test
+    void testApplyIgnoresCoverArt() throws Exception {
+        String json = "{\"streams\":["
+            + "{\"codec_name\":\"mp3\",\"codec_type\":\"audio\"},"
+            + "{\"codec_name\":\"mjpeg\",\"codec_type\":\"video\",\"width\":500,\"height\":500,"
+            + "\"disposition\":{\"attached_pic\":1}}],"
+            + "\"format\":{\"duration\":\"215.3\",\"bit_rate\":\"320000\"}}";
+        MediaFile mediaFile = new MediaFile();
+
+        assertTrue(probeService.apply(mapper.readTree(json), mediaFile));
+        assertEquals(215300L, mediaFile.getDurationMs());
+        assertEquals("mp3", mediaFile.getAudioCodec());
+        assertNull(mediaFile.getVideoCodec(), "Embedded album art is not a video stream");
+        assertEquals(0, mediaFile.getWidth());
+
+        assertFalse(probeService.apply(mapper.readTree("{}"), mediaFile), "Unrecognised files have no format section");
+    }
+}
@@ -0,0 +1,128 @@
+package lexicon.service;
+
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.IOException;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.NoSuchFileException;
+import java.nio.file.Path;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * Tests for OpenFileCache reference counting and eviction
+ */
+class OpenFileCacheTest {
+
+    @TempDir
+    Path tempDir;
+
+    private OpenFileCache cache;
+
+    @BeforeEach
+    void setUp() {
+        cache = new OpenFileCache();
+    }
+
+    private Path createFile(String name, int size) throws IOException {
+        Path file = tempDir.resolve(name);
+        Files.write(file, new byte[size]);
+        return file;
+    }
+
+    @Test
+    void testRepeatedAcquireReusesChannel() throws IOException {
+        Path file = createFile("a.bin", 100);
+
+        FileChannel first;
+        try (OpenFileCache.Handle handle = cache.acquire("a.bin", file)) {
+            first = handle.getChannel();
+            assertEquals(100L, handle.getSize());
+        }
+        try (OpenFileCache.Handle handle = cache.acquire("a.bin", file)) {
+            assertSame(first, handle.getChannel());
+        }
+
+        assertEquals(1, cache.getMisses());
+        assertEquals(1, cache.getHits());
+        assertEquals(100L, cache.cachedSize("a.bin"));
+        assertTrue(first.isOpen(), "Released channels stay open in the cache");
+    }
+
+    @Test
+    void testLeastRecentlyUsedEvicted() throws IOException {
+        cache.configure(2, 60_000);
+        Path a = createFile("a.bin", 1);
+        Path b = createFile("b.bin", 2);
+        Path c = createFile("c.bin", 3);
+
+        FileChannel channelA;
+        try (OpenFileCache.Handle handle = cache.acquire("a.bin", a)) {
+            channelA = handle.getChannel();
+        }
+        cache.acquire("b.bin", b).close();
+        cache.acquire("c.bin", c).close();
+
+        assertEquals(2, cache.size());
+        assertEquals(-1L, cache.cachedSize("a.bin"));
+        assertFalse(channelA.isOpen(), "Evicted idle channel should be closed");
+    }
+
+    @Test
+    void testInvalidateWhileLeasedClosesOnRelease() throws IOException {
+        Path file = createFile("leased.bin", 10);
+
+        OpenFileCache.Handle handle = cache.acquire("leased.bin", file);
+        cache.invalidate("leased.bin");
+
+        assertTrue(handle.getChannel().isOpen(), "Leased channel must stay usable");
+        assertEquals(0, cache.size());
+
+        handle.close();
+        assertFalse(handle.getChannel().isOpen());
+
+        // Double close must not release twice
+        handle.close();
+    }
+
+    @Test
+    void testClosedChannelIsReopened() throws IOException {
+        Path file = createFile("a.bin", 100);
+
+        FileChannel closed;
+        try (OpenFileCache.Handle handle = cache.acquire("a.bin", file)) {
+            closed = handle.getChannel();
+            closed.close(); // What an interrupted read does to a FileChannel
+        }
+
+        try (OpenFileCache.Handle handle = cache.acquire("a.bin", file)) {
+            assertNotSame(closed, handle.getChannel());
+            assertTrue(handle.getChannel().isOpen());
+            assertEquals(100L, handle.getChannel().size());
+        }
+        assertEquals(1, cache.size());
+    }
+
+    @Test
+    void testEvictIdle() throws IOException {
+        cache.configure(10, 0);
+        Path file = createFile("idle.bin", 10);
+
+        OpenFileCache.Handle leased = cache.acquire("idle.bin", file);
+        assertEquals(0, cache.evictIdle(), "Leased entries are never idle-evicted");
+
+        leased.close();
+        assertEquals(1, cache.evictIdle());
+        assertFalse(leased.getChannel().isOpen());
+    }
+
+    @Test
+    void testMissingFileNotCached() {
+        assertThrows(NoSuchFileException.class,
+            () -> cache.acquire("missing.bin", tempDir.resolve("missing.bin")));
+        assertEquals(0, cache.size());
+    }
+}
@@ -3,16 +3,28 @@ package lexicon.service;
 import lexicon.config.StorageProperties;
 import lexicon.object.MediaFile;
 import lexicon.object.MediaType;
+import lexicon.object.StreamingMultipartFile;
 import org.junit.jupiter.api.BeforeEach;
 import org.junit.jupiter.api.Test;
 import org.junit.jupiter.api.io.TempDir;
 import org.springframework.mock.web.MockMultipartFile;
 
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
 import java.io.IOException;
 import java.io.InputStream;
+import java.nio.channels.ClosedChannelException;
 import java.nio.file.Files;
 import java.nio.file.Path;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
 import java.util.Arrays;
+import java.util.HexFormat;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
 
 import static org.junit.jupiter.api.Assertions.*;
 
@@ -79,6 +91,10 @@ class OptimizedFileStorageServiceTest {
         byte[] storedContent = Files.readAllBytes(storedFile);
         assertArrayEquals(audioContent, storedContent, "File content should match exactly");
         
+        // Content hash is recorded as the ETag
+        String expectedEtag = HexFormat.of().formatHex(sha256(audioContent));
+        assertEquals(expectedEtag, mediaFile.getEtag(), "ETag should be the SHA-256 of the content");
+        
         // Verify it's in correct directory structure (should be in music or audiobooks)
         assertTrue(relativePath.contains("music") || relativePath.contains("audiobooks"),
                    "Audio file should be in music or audiobooks directory");
@@ -159,16 +175,117 @@ class OptimizedFileStorageServiceTest {
         long rangeStart = 100;
         long rangeEnd = 199; // 100 bytes
         
-        OptimizedFileStorageService.FileStreamInfo streamInfo = 
-            storageService.getFileForStreaming(relativePath, rangeStart, rangeEnd);
+        try (OptimizedFileStorageService.FileStreamInfo streamInfo = 
+                 storageService.getFileForStreaming(relativePath, rangeStart, rangeEnd)) {
+            
+            assertNotNull(streamInfo);
+            assertEquals(100L, streamInfo.getContentLength());
+            assertEquals(rangeStart, streamInfo.getRangeStart());
+            assertEquals(rangeEnd, streamInfo.getRangeEnd());
+            
+            // Verify we can read the range
+            assertNotNull(streamInfo.getChannel());
+            assertTrue(streamInfo.getChannel().isOpen());
+        }
+    }
+
+    @Test
+    void testTransferRange() throws IOException {
+        // Create test file with a recognisable byte pattern
+        byte[] content = new byte[4096];
+        for (int i = 0; i < content.length; i++) {
+            content[i] = (byte) (i % 251);
+        }
+        
+        MockMultipartFile rangeFile = new MockMultipartFile(
+            "file", "range-test.mp4", "video/mp4", content
+        );
+        
+        MediaFile mediaFile = new MediaFile();
+        mediaFile.setTitle("Range Test");
+        mediaFile.setMediaType(MediaType.VIDEO);
+        
+        String relativePath = storageService.storeFile(rangeFile, mediaFile);
         
-        assertNotNull(streamInfo);
-        assertEquals(100L, streamInfo.getContentLength());
-        assertEquals(rangeStart, streamInfo.getRangeStart());
-        assertEquals(rangeEnd, streamInfo.getRangeEnd());
+        // Transfer a range from the middle of the file
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        long written = storageService.transferRange(relativePath, 1000, 500, out);
         
-        // Verify we can read the range
-        assertNotNull(streamInfo.getFile());
+        assertEquals(500L, written);
+        assertArrayEquals(Arrays.copyOfRange(content, 1000, 1500), out.toByteArray());
+        
+        // A range running past the end stops at end of file
+        out.reset();
+        written = storageService.transferRange(relativePath, 4000, 500, out);
+        assertEquals(96L, written);
+        assertArrayEquals(Arrays.copyOfRange(content, 4000, 4096), out.toByteArray());
+    }
+
+    @Test
+    void testTransferSurvivesAnotherReaderBeingInterrupted() throws Exception {
+        assertInterruptedReaderDoesNotBreakOthers();
+    }
+
+    @Test
+    void testCachedTransferSurvivesAnotherReaderBeingInterrupted() throws Exception {
+        storageService.getBlockCache().configure(4L * MediaBlockCache.BLOCK_SIZE);
+        assertInterruptedReaderDoesNotBreakOthers();
+    }
+
+    /**
+     * Two leases on the same cached channel: interrupting one reader closes the channel,
+     * and the other must still receive the whole range
+     */
+    private void assertInterruptedReaderDoesNotBreakOthers() throws Exception {
+        byte[] content = new byte[3 * MediaBlockCache.BLOCK_SIZE];
+        for (int i = 0; i < content.length; i++) {
+            content[i] = (byte) (i % 251);
+        }
+        MediaFile mediaFile = new MediaFile();
+        mediaFile.setTitle("Shared");
+        mediaFile.setMediaType(MediaType.VIDEO);
+        String relativePath = storageService.storeFile(
+            new MockMultipartFile("file", "shared.mp4", "video/mp4", content), mediaFile);
+
+        // The first reader stalls after its first write, holding its lease mid-transfer
+        CountDownLatch firstWrite = new CountDownLatch(1);
+        CountDownLatch interrupted = new CountDownLatch(1);
+        ByteArrayOutputStream slowOut = new ByteArrayOutputStream() {
+            @Override
+            public synchronized void write(byte[] b, int off, int len) {
+                super.write(b, off, len);
+                if (firstWrite.getCount() > 0) {
+                    firstWrite.countDown();
+                    try {
+                        interrupted.await();
+                    } catch (InterruptedException e) {
+                        throw new IllegalStateException(e);
+                    }
+                }
+            }
+        };
+        ExecutorService executor = Executors.newSingleThreadExecutor();
+        try {
+            Future<Long> slow = executor.submit(
+                () -> storageService.transferRange(relativePath, 0, content.length, slowOut, "slow"));
+            assertTrue(firstWrite.await(10, TimeUnit.SECONDS));
+
+            // The second reader's thread is interrupted (e.g. by an async request timeout)
+            // while it reads a block nobody has loaded yet
+            Thread.currentThread().interrupt();
+            try {
+                assertThrows(ClosedChannelException.class, () -> storageService.transferRange(relativePath,
+                    2L * MediaBlockCache.BLOCK_SIZE, MediaBlockCache.BLOCK_SIZE, new ByteArrayOutputStream(), "cancelled"));
+            } finally {
+                Thread.interrupted();
+                interrupted.countDown();
+            }
+
+            assertEquals((long) content.length, slow.get(10, TimeUnit.SECONDS));
+            assertArrayEquals(content, slowOut.toByteArray());
+        } finally {
+            executor.shutdownNow();
+        }
     }
 
     @Test
@@ -336,4 +453,91 @@ class OptimizedFileStorageServiceTest {
             assertArrayEquals(largeContent, retrievedContent);
         }
     }
-}
\ No newline at end of file
+
+    @Test
+    void testContentAddressedStorageSharesIdenticalContent() throws IOException {
+        storageProperties.setContentAddressed(true);
+        byte[] content = "Same track imported twice".getBytes();
+
+        MediaFile first = new MediaFile();
+        first.setTitle("First Import");
+        first.setMediaType(MediaType.MUSIC);
+        String firstPath = storageService.storeFile(
+            new MockMultipartFile("file", "track.mp3", "audio/mpeg", content), first);
+
+        MediaFile second = new MediaFile();
+        String secondPath = storageService.storeFileFromStream(
+            new ByteArrayInputStream(content), "other-name.mp3", content.length, MediaType.MUSIC, second);
+
+        String hex = HexFormat.of().formatHex(sha256(content));
+        assertEquals(firstPath, secondPath, "Identical content is stored once");
+        assertTrue(firstPath.endsWith(hex), "Blobs are named by their digest");
+        assertEquals(hex, first.getEtag());
+        assertEquals(hex, second.getEtag());
+        assertEquals(2, storageService.getReferenceCount(firstPath));
+
+        assertTrue(storageService.deleteFile(firstPath));
+        assertTrue(Files.exists(tempDir.resolve(firstPath)), "Still referenced by the second media file");
+        assertTrue(storageService.deleteFile(secondPath));
+        assertFalse(Files.exists(tempDir.resolve(firstPath)), "Deleted with its last reference");
+    }
+
+    @Test
+    void testFilesOnSecondVolumeAreServed() throws IOException {
+        Path secondVolume = tempDir.resolve("second-disk");
+        storageProperties.setVolumes(secondVolume.toString());
+        storageService.init();
+        try {
+            byte[] content = "Stored on the other disk".getBytes();
+            Path file = secondVolume.resolve("music/compressed/track.mp3");
+            Files.createDirectories(file.getParent());
+            Files.write(file, content);
+            String relativePath = "music/compressed/track.mp3";
+
+            assertTrue(storageService.fileExists(relativePath));
+            assertEquals(content.length, storageService.getFileSize(relativePath));
+            ByteArrayOutputStream out = new ByteArrayOutputStream();
+            storageService.transferRange(relativePath, 0, content.length, out);
+            assertArrayEquals(content, out.toByteArray());
+
+            String moved = storageService.moveFileToPath(relativePath, "music/lossless/track.mp3", content.length);
+            assertTrue(Files.exists(tempDir.resolve(moved)), "Moves gather the file onto basePath first");
+            assertFalse(Files.exists(file));
+            assertNotNull(storageService.getVolumeStats());
+
+            assertTrue(storageService.deleteFile(moved));
+            assertFalse(storageService.fileExists(moved));
+        } finally {
+            storageService.shutdown();
+        }
+    }
+
+    @Test
+    void testFinishedUploadIsMovedNotCopied() throws IOException {
+        byte[] content = "Uploaded in chunks".getBytes();
+        Path upload = tempDir.resolve("temp/chunks/abc/data.part");
+        Files.createDirectories(upload.getParent());
+        Files.write(upload, content);
+
+        MediaFile mediaFile = new MediaFile();
+        mediaFile.setTitle("Chunked Upload");
+        mediaFile.setMediaType(MediaType.VIDEO);
+        StreamingMultipartFile file = new StreamingMultipartFile("file", "movie.mp4", "video/mp4", upload, true);
+        String hex = HexFormat.of().formatHex(sha256(content));
+        file.setContentHash(hex); // Computed while the chunks arrived
+        String relativePath = storageService.storeFile(file, mediaFile);
+
+        assertFalse(Files.exists(upload), "The upload is renamed into storage");
+        assertArrayEquals(content, Files.readAllBytes(tempDir.resolve(relativePath)));
+        assertArrayEquals(content, file.getBytes(), "Later reads follow the file");
+        assertEquals(hex, mediaFile.getEtag());
+    }
+
+    private static byte[] sha256(byte[] content) {
+        try {
+            return MessageDigest.getInstance("SHA-256").digest(content);
+        } catch (NoSuchAlgorithmException e) {
+            throw new IllegalStateException(e);
+        }
+    }
+}
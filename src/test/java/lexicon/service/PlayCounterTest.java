@@ -0,0 +1,52 @@
+package lexicon.service;
+
+import org.junit.jupiter.api.Test;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * Tests for telling new plays apart from further ranges of the same play
+ */
+class PlayCounterTest {
+
+    @Test
+    void testRangesOfOnePlayCountOnce() {
+        PlayCounter plays = new PlayCounter(100);
+
+        assertTrue(plays.isNewPlay("a.mp3", 0, "203.0.113.7", 1000));
+        assertFalse(plays.isNewPlay("a.mp3", 65_536, "203.0.113.7", 2000));
+        assertFalse(plays.isNewPlay("a.mp3", 131_072, "203.0.113.7", 3000));
+
+        assertTrue(plays.isNewPlay("a.mp3", 0, "198.51.100.23", 3000), "Another client is another play");
+        assertTrue(plays.isNewPlay("b.mp3", 0, "203.0.113.7", 3000), "Another file is another play");
+    }
+
+    @Test
+    void testPlayEndsAfterIdleWindow() {
+        PlayCounter plays = new PlayCounter(100);
+
+        assertTrue(plays.isNewPlay("a.mp3", 0, "client", 0));
+        assertFalse(plays.isNewPlay("a.mp3", 0, "client", PlayCounter.STREAM_IDLE_MILLIS - 1));
+        assertTrue(plays.isNewPlay("a.mp3", 0, "client", 2 * PlayCounter.STREAM_IDLE_MILLIS));
+    }
+
+    @Test
+    void testWithoutClientOnlyStartOfFileCounts() {
+        PlayCounter plays = new PlayCounter(100);
+
+        assertTrue(plays.isNewPlay("a.mp3", 0, null, 0));
+        assertTrue(plays.isNewPlay("a.mp3", 0, null, 0));
+        assertFalse(plays.isNewPlay("a.mp3", 4096, null, 0));
+    }
+
+    @Test
+    void testTrackedStreamsAreBounded() {
+        PlayCounter plays = new PlayCounter(2);
+
+        plays.isNewPlay("a.mp3", 0, "one", 0);
+        plays.isNewPlay("a.mp3", 0, "two", 0);
+        plays.isNewPlay("a.mp3", 0, "three", 0);
+
+        assertTrue(plays.isNewPlay("a.mp3", 0, "one", 0), "The eldest stream was forgotten");
+    }
+}
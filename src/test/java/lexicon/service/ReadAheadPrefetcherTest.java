@@ -0,0 +1,96 @@
+package lexicon.service;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.RejectedExecutionException;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * Tests for sequential stream detection and read-ahead scheduling
+ */
+class ReadAheadPrefetcherTest {
+
+    private static final long BLOCK = 1000;
+    private static final long FILE_SIZE = 1_000_000;
+
+    private final List<long[]> loads = new ArrayList<>();
+
+    private ReadAheadPrefetcher newPrefetcher(int maxDepthBlocks) {
+        return new ReadAheadPrefetcher((path, start, length) -> loads.add(new long[] { start, length }),
+                Runnable::run, maxDepthBlocks, BLOCK);
+    }
+
+    @Test
+    void testSequentialRequestsTriggerReadAhead() {
+        ReadAheadPrefetcher prefetcher = newPrefetcher(8);
+
+        prefetcher.onRead("client", "a.mp3", 0, 2000, FILE_SIZE);
+        assertTrue(loads.isEmpty(), "A single request is not a stream yet");
+
+        prefetcher.onRead("client", "a.mp3", 2000, 2000, FILE_SIZE);
+        assertEquals(1, loads.size());
+        assertEquals(4000L, loads.get(0)[0], "Read-ahead starts where the request ends");
+        assertTrue(loads.get(0)[1] >= ReadAheadPrefetcher.MIN_DEPTH_BLOCKS * BLOCK);
+        assertTrue(loads.get(0)[1] <= 8 * BLOCK);
+    }
+
+    @Test
+    void testRandomAccessIsNotPrefetched() {
+        ReadAheadPrefetcher prefetcher = newPrefetcher(8);
+
+        prefetcher.onRead("client", "a.mp3", 0, 2000, FILE_SIZE);
+        prefetcher.onRead("client", "a.mp3", 500_000, 2000, FILE_SIZE);
+        prefetcher.onRead("client", "a.mp3", 100_000, 2000, FILE_SIZE);
+        assertTrue(loads.isEmpty());
+
+        // Different clients on the same file are separate streams
+        prefetcher.onRead("other", "a.mp3", 102_000, 2000, FILE_SIZE);
+        assertTrue(loads.isEmpty());
+    }
+
+    @Test
+    void testInterleavedClientsStaySequential() {
+        ReadAheadPrefetcher prefetcher = newPrefetcher(8);
+
+        // Two players on one file, their ranges arriving interleaved
+        prefetcher.onRead("203.0.113.7", "a.mp3", 0, 2000, FILE_SIZE);
+        prefetcher.onRead("198.51.100.23", "a.mp3", 500_000, 2000, FILE_SIZE);
+        prefetcher.onRead("203.0.113.7", "a.mp3", 2000, 2000, FILE_SIZE);
+        prefetcher.onRead("198.51.100.23", "a.mp3", 502_000, 2000, FILE_SIZE);
+
+        assertEquals(2, loads.size(), "Each player is read ahead on its own");
+        assertEquals(4000L, loads.get(0)[0]);
+        assertEquals(504_000L, loads.get(1)[0]);
+    }
+
+    @Test
+    void testAlreadyPrefetchedRangeIsNotLoadedAgain() {
+        ReadAheadPrefetcher prefetcher = newPrefetcher(8);
+
+        prefetcher.onRead("client", "a.mp3", 0, 100, FILE_SIZE);
+        prefetcher.onRead("client", "a.mp3", 100, 100, FILE_SIZE);
+        prefetcher.onRead("client", "a.mp3", 200, 100, FILE_SIZE);
+        assertEquals(1, loads.size(), "Second request was still inside the read-ahead window");
+    }
+
+    @Test
+    void testDepthFollowsConsumptionRate() {
+        ReadAheadPrefetcher prefetcher = newPrefetcher(16);
+        assertEquals(ReadAheadPrefetcher.MIN_DEPTH_BLOCKS, prefetcher.depthBlocks(0));
+        assertEquals(4, prefetcher.depthBlocks(1000)); // 4s of 1000 B/s = 4 blocks
+        assertEquals(16, prefetcher.depthBlocks(1_000_000_000), "Capped by the configured maximum");
+    }
+
+    @Test
+    void testSaturatedPoolDropsReadAhead() {
+        ReadAheadPrefetcher prefetcher = new ReadAheadPrefetcher((path, start, length) -> fail("Should not run"),
+                task -> { throw new RejectedExecutionException(); }, 8, BLOCK);
+
+        prefetcher.onRead("client", "a.mp3", 0, 2000, FILE_SIZE);
+        prefetcher.onRead("client", "a.mp3", 2000, 2000, FILE_SIZE);
+        assertEquals(1L, (long) (Long) prefetcher.getStats().get("dropped"));
+    }
+}
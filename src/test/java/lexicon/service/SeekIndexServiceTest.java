@@ -0,0 +1,170 @@
+package lexicon.service;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * Tests for MP3 and MP4 seek index building
+ */
+class SeekIndexServiceTest {
+
+    private static final int MP3_FRAME_LENGTH = 417; // MPEG1 Layer III, 128kbps, 44.1kHz, no padding
+    private static final int ID3_LENGTH = 10 + 100;
+
+    @TempDir
+    Path tempDir;
+
+    @Test
+    void testMp3FrameIndex() throws IOException {
+        Path file = tempDir.resolve("book.mp3");
+        Files.write(file, buildMp3(200));
+
+        SeekIndex index = build(file);
+        assertNotNull(index);
+        assertEquals("mp3", index.getFormat());
+        assertEquals(5224L, index.getDurationMillis(), "200 frames of 1152 samples at 44.1kHz");
+
+        SeekIndex.Point point = index.seek(2000);
+        assertTrue(point.getTimeMillis() <= 2000 && point.getTimeMillis() > 1000);
+        assertEquals(0, (point.getOffset() - ID3_LENGTH) % MP3_FRAME_LENGTH, "Seek points are frame starts");
+
+        assertEquals((long) ID3_LENGTH, index.seek(0).getOffset(), "ID3v2 tag is skipped");
+    }
+
+    @Test
+    void testMp4SampleTableIndex() throws IOException {
+        Path file = tempDir.resolve("book.m4b");
+        Files.write(file, buildMp4());
+
+        SeekIndex index = build(file);
+        assertNotNull(index);
+        assertEquals("mp4", index.getFormat());
+        assertEquals(5000L, index.getDurationMillis());
+
+        // 10 samples of 500ms / 100 bytes, two per chunk, mdat payload at offset 24
+        SeekIndex.Point point = index.seek(2300);
+        assertEquals(2000L, point.getTimeMillis());
+        assertEquals(24L + 400, point.getOffset());
+    }
+
+    @Test
+    void testForgedMp4EntryCountsAreNotIndexed() throws IOException {
+        // Counts far beyond what their boxes hold must not be allocated
+        Path huge = tempDir.resolve("huge.mp4");
+        Files.write(huge, buildMp4(box("stts", ints(0, Integer.MAX_VALUE - 8, 10, 500)),
+            box("stco", ints(0, 5, 24, 224, 424, 624, 824))));
+        assertNull(build(huge));
+
+        Path negative = tempDir.resolve("negative.mp4");
+        Files.write(negative, buildMp4(box("stts", ints(0, 1, 10, 500)), box("stco", ints(0, -1, 24))));
+        assertNull(build(negative));
+    }
+
+    @Test
+    void testUnknownFormatIsNotIndexed() throws IOException {
+        Path file = tempDir.resolve("notes.txt");
+        Files.write(file, "just some text, not media".getBytes(StandardCharsets.US_ASCII));
+        assertNull(build(file));
+    }
+
+    @Test
+    void testIndexRoundTrip() throws IOException {
+        SeekIndex index = new SeekIndex("mp3", 1234, 3000, new long[] { 0, 1000, 2000 }, new long[] { 10, 500, 900 });
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+        index.writeTo(new DataOutputStream(bytes));
+
+        SeekIndex read = SeekIndex.readFrom(new DataInputStream(new ByteArrayInputStream(bytes.toByteArray())));
+        assertNotNull(read);
+        assertEquals(1234L, read.getFileSize());
+        assertEquals(500L, read.seek(1999).getOffset());
+        assertEquals(900L, read.seek(999_999).getOffset());
+
+        // A point count larger than the rest of the sidecar is corrupt, not a huge allocation
+        byte[] forged = bytes.toByteArray();
+        ByteBuffer.wrap(forged).putInt(bytes.size() - 3 * 16 - 4, Integer.MAX_VALUE);
+        assertThrows(IOException.class,
+            () -> SeekIndex.readFrom(new DataInputStream(new ByteArrayInputStream(forged))));
+    }
+
+    private static SeekIndex build(Path file) throws IOException {
+        try (FileChannel channel = FileChannel.open(file, StandardOpenOption.READ)) {
+            return SeekIndexService.buildIndex(channel, channel.size());
+        }
+    }
+
+    private static byte[] buildMp3(int frames) {
+        ByteBuffer mp3 = ByteBuffer.allocate(ID3_LENGTH + frames * MP3_FRAME_LENGTH);
+        mp3.put(new byte[] { 'I', 'D', '3', 4, 0, 0, 0, 0, 0, 100 });
+        mp3.put(new byte[100]);
+        for (int i = 0; i < frames; i++) {
+            byte[] frame = new byte[MP3_FRAME_LENGTH];
+            frame[0] = (byte) 0xFF;
+            frame[1] = (byte) 0xFB;
+            frame[2] = (byte) 0x90;
+            frame[3] = (byte) 0x00;
+            mp3.put(frame);
+        }
+        return mp3.array();
+    }
+
+    private static byte[] buildMp4() {
+        return buildMp4(box("stts", ints(0, 1, 10, 500)), box("stco", ints(0, 5, 24, 224, 424, 624, 824)));
+    }
+
+    private static byte[] buildMp4(byte[] stts, byte[] stco) {
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        write(out, box("ftyp", ascii("M4B "), ints(0)));
+        write(out, box("mdat", new byte[1000])); // 8 byte header at 16, payload at 24
+
+        byte[] mdhd = box("mdhd", ints(0, 0, 0, 1000, 5000, 0));
+        byte[] hdlr = box("hdlr", ints(0, 0), ascii("soun"), ints(0, 0, 0), new byte[1]);
+        byte[] stsc = box("stsc", ints(0, 1, 1, 2, 1));
+        byte[] stsz = box("stsz", ints(0, 100, 10));
+        byte[] stbl = box("stbl", stts, stsc, stsz, stco);
+        byte[] trak = box("trak", box("mdia", mdhd, hdlr, box("minf", stbl)));
+        write(out, box("moov", trak)); // moov after mdat, as with many encoders
+        return out.toByteArray();
+    }
+
+    private static byte[] box(String type, byte[]... parts) {
+        ByteArrayOutputStream body = new ByteArrayOutputStream();
+        for (byte[] part : parts) {
+            write(body, part);
+        }
+        ByteBuffer box = ByteBuffer.allocate(8 + body.size());
+        box.putInt(8 + body.size());
+        box.put(ascii(type));
+        box.put(body.toByteArray());
+        return box.array();
+    }
+
+    private static byte[] ints(int... values) {
+        ByteBuffer buffer = ByteBuffer.allocate(values.length * 4);
+        for (int value : values) {
+            buffer.putInt(value);
+        }
+        return buffer.array();
+    }
+
+    private static byte[] ascii(String value) {
+        return value.getBytes(StandardCharsets.US_ASCII);
+    }
+
+    private static void write(ByteArrayOutputStream out, byte[] bytes) {
+        out.write(bytes, 0, bytes.length);
+    }
+}
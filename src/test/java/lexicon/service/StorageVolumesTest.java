@@ -0,0 +1,138 @@
+package lexicon.service;
+
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * Tests for placing, locating and moving files across storage volumes
+ */
+class StorageVolumesTest {
+
+    @TempDir
+    Path tempDir;
+
+    private Path primary;
+    private Path secondary;
+    private final List<String> relocated = new ArrayList<>();
+    private StorageVolumes volumes;
+
+    @BeforeEach
+    void setUp() throws Exception {
+        primary = tempDir.resolve("disk0");
+        secondary = tempDir.resolve("disk1");
+        volumes = new StorageVolumes(List.of(primary, secondary), List.of("music"), 0, 2, Long.MAX_VALUE,
+            relocated::add);
+        volumes.start(0);
+    }
+
+    @AfterEach
+    void tearDown() {
+        volumes.shutdown();
+    }
+
+    @Test
+    void testNewFilesAvoidBusyVolume() {
+        volumes.recordRead(volumes.get(0), "music/other.mp3", 100L * 1024 * 1024, 0, "client");
+
+        Path target = volumes.pathForNewFile("music/new.mp3", 1024);
+        assertTrue(target.startsWith(secondary), "The idle volume takes new files");
+
+        volumes.recordRead(volumes.get(1), "music/other2.mp3", 500L * 1024 * 1024, 0, "client");
+        assertTrue(volumes.pathForNewFile("music/new.mp3", 1024).startsWith(primary));
+    }
+
+    @Test
+    void testLocateAndDeleteAcrossVolumes() throws Exception {
+        Path file = secondary.resolve("music/song.mp3");
+        Files.createDirectories(file.getParent());
+        Files.writeString(file, "audio");
+
+        StorageVolumes.Volume volume = volumes.pickForRead("music/song.mp3");
+        assertNotNull(volume, "Files written outside this instance are found by probing");
+        assertEquals(1, volume.getIndex());
+        assertEquals("v1:music/song.mp3", volume.cacheKey("music/song.mp3"));
+        assertSame(volume, volumes.volumeForKey(volume.cacheKey("music/song.mp3")));
+        assertSame(volumes.get(0), volumes.volumeForKey("videos/original/clip.mp4"));
+        assertNull(volumes.pickForRead("music/missing.mp3"));
+
+        Path copy = primary.resolve("music/song.mp3");
+        Files.createDirectories(copy.getParent());
+        Files.writeString(copy, "audio");
+        assertTrue(volumes.fileWritten("music/song.mp3", copy));
+
+        assertTrue(volumes.delete("music/song.mp3"));
+        assertFalse(Files.exists(file));
+        assertFalse(Files.exists(copy), "Every replica is deleted");
+        assertNull(volumes.pickForRead("music/song.mp3"));
+    }
+
+    @Test
+    void testGatherOnPrimary() throws Exception {
+        Path file = secondary.resolve("music/song.mp3");
+        Files.createDirectories(file.getParent());
+        Files.writeString(file, "audio");
+
+        volumes.gatherOnPrimary("music/song.mp3");
+
+        assertEquals("audio", Files.readString(primary.resolve("music/song.mp3")));
+        assertFalse(Files.exists(file));
+        assertEquals(0, volumes.pickForRead("music/song.mp3").getIndex());
+        assertTrue(relocated.contains("music/song.mp3"), "Cached handles on the old copy are dropped");
+    }
+
+    @Test
+    void testHotFileIsMirrored() throws Exception {
+        Path file = primary.resolve("music/hot.mp3");
+        Files.createDirectories(file.getParent());
+        Files.writeString(file, "audio");
+
+        volumes.recordRead(volumes.get(0), "music/hot.mp3", 5, 0, "player-a");
+        volumes.recordRead(volumes.get(0), "music/hot.mp3", 5, 0, "player-b");
+
+        Path mirror = secondary.resolve("music/hot.mp3");
+        for (int i = 0; i < 100 && volumes.locate("music/hot.mp3") != 3; i++) {
+            Thread.sleep(20);
+        }
+        assertEquals(3, volumes.locate("music/hot.mp3"), "Both volumes hold the file");
+        assertEquals("audio", Files.readString(mirror));
+        assertEquals(1, volumes.pickForRead("music/hot.mp3").getIndex(), "Reads go to the idle replica");
+    }
+
+    @Test
+    void testRangesOfOnePlayDoNotMirror() throws Exception {
+        Path file = primary.resolve("music/video.mp4");
+        Files.createDirectories(file.getParent());
+        Files.writeString(file, "video");
+
+        // One player fetching the file as many ranges
+        for (int i = 0; i < 50; i++) {
+            volumes.recordRead(volumes.get(0), "music/video.mp4", 1, i, "player-a");
+        }
+
+        Thread.sleep(100);
+        assertEquals(1, volumes.locate("music/video.mp4"), "A single play is not hot");
+        assertEquals(0L, volumes.getStats().get("mirrors"));
+    }
+
+    @Test
+    void testReadsAreTrackedWithMirroringOff() {
+        StorageVolumes unmirrored = new StorageVolumes(List.of(primary, secondary), List.of("music"), 0, 0,
+            Long.MAX_VALUE, relocated::add);
+        try {
+            assertFalse(unmirrored.isRecentlyRead("music/song.mp3"));
+            unmirrored.recordRead(unmirrored.get(0), "music/song.mp3", 1000, 0, "client");
+            assertTrue(unmirrored.isRecentlyRead("music/song.mp3"), "The rebalancer must leave it alone");
+        } finally {
+            unmirrored.shutdown();
+        }
+    }
+}
@@ -0,0 +1,59 @@
+package lexicon.service;
+
+import lexicon.config.StorageProperties;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.nio.file.Path;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * Tests for the scrub-preview index and sprite sheet resolution
+ */
+class ThumbnailServiceTest {
+
+    @TempDir
+    Path tempDir;
+
+    private ThumbnailService thumbnailService;
+
+    @BeforeEach
+    void setUp() throws Exception {
+        StorageProperties storageProperties = new StorageProperties();
+        storageProperties.setBasePath(tempDir.toString());
+
+        thumbnailService = new ThumbnailService();
+        var field = ThumbnailService.class.getDeclaredField("storageProperties");
+        field.setAccessible(true);
+        field.set(thumbnailService, storageProperties);
+    }
+
+    @Test
+    void testIntervalGrowsForLongVideos() {
+        assertEquals(ThumbnailService.MIN_INTERVAL_SECONDS, ThumbnailService.intervalFor(30), 0.001);
+        assertEquals(24, ThumbnailService.intervalFor(2 * 60 * 60), 0.001, "Two hours stays within the thumbnail cap");
+    }
+
+    @Test
+    void testBuildVttPointsAtSpriteCells() {
+        String vtt = ThumbnailService.buildVtt(205, 2, 103);
+        assertTrue(vtt.startsWith("WEBVTT\n"));
+        assertTrue(vtt.contains("00:00:00.000 --> 00:00:02.000\nsprites/sprite_001.jpg#xywh=0,0,160,90\n"));
+        assertTrue(vtt.contains("00:00:22.000 --> 00:00:24.000\nsprites/sprite_001.jpg#xywh=160,90,160,90\n"),
+            "Cells fill rows left to right");
+        assertTrue(vtt.contains("00:03:20.000 --> 00:03:22.000\nsprites/sprite_002.jpg#xywh=0,0,160,90\n"),
+            "Thumbnail 101 starts the second sheet");
+        assertTrue(vtt.contains("00:03:24.000 --> 00:03:25.000\nsprites/sprite_002.jpg#xywh=320,0,160,90\n"),
+            "The last cue ends with the video");
+    }
+
+    @Test
+    void testResolveOnlyAcceptsSpriteSheets() {
+        assertNotNull(thumbnailService.resolveSprite(7, "sprite_001.jpg"));
+        assertNull(thumbnailService.resolveSprite(7, "poster.jpg"));
+        assertNull(thumbnailService.resolveSprite(7, "../sprite_001.jpg"));
+        assertFalse(thumbnailService.isReady(7));
+    }
+}
@@ -0,0 +1,65 @@
+package lexicon.service;
+
+import org.junit.jupiter.api.Test;
+
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * Tests for reducing PCM to audiowaveform peaks
+ */
+class WaveformServiceTest {
+
+    @Test
+    void testPeaksOfShortClip() throws IOException {
+        // One second: silence, then a full-scale square wave
+        ByteBuffer pcm = pcm(WaveformService.SAMPLE_RATE);
+        for (int i = 0; i < WaveformService.SAMPLE_RATE; i++) {
+            short sample = i < WaveformService.SAMPLE_RATE / 2 ? 0 : (i % 2 == 0 ? Short.MAX_VALUE : Short.MIN_VALUE);
+            pcm.putShort(sample);
+        }
+
+        ByteBuffer dat = dat(WaveformService.computePeaks(new ByteArrayInputStream(pcm.array())));
+        assertEquals(1, dat.getInt(), "Version");
+        assertEquals(1, dat.getInt(), "8-bit flag");
+        assertEquals(WaveformService.SAMPLE_RATE, dat.getInt());
+        assertEquals(WaveformService.SAMPLE_RATE * WaveformService.PEAK_MILLIS / 1000, dat.getInt());
+        int count = dat.getInt();
+        assertEquals(1000 / WaveformService.PEAK_MILLIS, count);
+
+        assertEquals(0, dat.get(WaveformService.HEADER_SIZE), "Silent min");
+        assertEquals(0, dat.get(WaveformService.HEADER_SIZE + 1), "Silent max");
+        int last = WaveformService.HEADER_SIZE + (count - 1) * 2;
+        assertEquals(Byte.MIN_VALUE, dat.get(last));
+        assertEquals(Byte.MAX_VALUE, dat.get(last + 1));
+    }
+
+    @Test
+    void testLongAudioIsCoarsenedToStaySmall() throws IOException {
+        int seconds = 3600;
+        byte[] silence = new byte[WaveformService.SAMPLE_RATE * 2 * seconds];
+
+        byte[] peaks = WaveformService.computePeaks(new ByteArrayInputStream(silence));
+        ByteBuffer dat = dat(peaks);
+        dat.position(12);
+        int samplesPerPeak = dat.getInt();
+        int count = dat.getInt();
+
+        assertTrue(count <= WaveformService.MAX_PEAKS * 2);
+        assertTrue(peaks.length <= 16 * 1024 + WaveformService.HEADER_SIZE, "A few KB even for an hour");
+        assertEquals((long) WaveformService.SAMPLE_RATE * seconds, (long) samplesPerPeak * count,
+                "Peaks still cover the whole file");
+    }
+
+    private static ByteBuffer pcm(int samples) {
+        return ByteBuffer.allocate(samples * 2).order(ByteOrder.LITTLE_ENDIAN);
+    }
+
+    private static ByteBuffer dat(byte[] bytes) {
+        return ByteBuffer.wrap(bytes).order(ByteOrder.LITTLE_ENDIAN);
+    }
+}